@@ -0,0 +1,81 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.batch.BatchEvaluator;
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.FormulaArchive;
+import com.calculator.mycalculator.engine.FormulaArchiveWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and evaluates a whole workload of distinct formulas, as the batch mode does, from its text and from
+ * its compiled archive. Each invocation starts from an empty engine, as a new process would, so the text workload
+ * pays for parsing every formula while the archive evaluates its programs in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    private static final String[] BINARY = {" + ", " - ", " * ", " / ", " ^ "};
+
+    @Param({"10000"})
+    public int size;
+
+    private String text;
+
+    private ByteBuffer archive;
+
+    @Setup
+    public void setup() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder workload = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FormulaArchiveWriter writer = new FormulaArchiveWriter(bytes)) {
+            for (int i = 0; i < size; i++) {
+                StringBuilder formula = new StringBuilder().append(i);
+                for (int term = random.nextInt(2, 6); term > 0; term--) {
+                    formula.append(BINARY[random.nextInt(BINARY.length)]).append(random.nextInt(1, 100))
+                            .append('.').append(random.nextInt(10));
+                }
+                workload.append(formula).append('\n');
+                writer.add(formula.toString());
+            }
+        }
+        text = workload.toString();
+        archive = ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Benchmark
+    public long textWorkload() throws IOException {
+        return new BatchEvaluator(new CalculatorEngine())
+                .evaluate(new BufferedReader(new StringReader(text)), Writer.nullWriter());
+    }
+
+    @Benchmark
+    public long archiveWorkload() throws IOException {
+        return new BatchEvaluator(new CalculatorEngine())
+                .evaluate(FormulaArchive.wrap(archive), Writer.nullWriter());
+    }
+}
@@ -0,0 +1,37 @@
+package com.calculator.mycalculator.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar.
+ * It accepts the usual JMH command line options, and always enables the GC profiler,
+ * so that every suite reports its allocation rate next to its throughput.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // Entry point only, not meant to be instantiated
+    }
+
+    /**
+     * Runs the benchmarks selected on the command line (all of them by default).
+     *
+     * @param args JMH command line options, e.g. a benchmark name pattern
+     * @throws Exception if the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers()) {
+            // Let the JMH launcher print the requested information
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
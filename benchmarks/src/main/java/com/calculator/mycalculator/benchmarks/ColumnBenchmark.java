@@ -0,0 +1,100 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.ColumnFormula;
+import com.calculator.mycalculator.engine.CompiledFormula;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the evaluation of a formula over a column of values: the compiled program value by value,
+ * and the {@link ColumnFormula} with plain loops and with the Vector API.
+ * <p>
+ * The forks run with the {@code jdk.incubator.vector} module. To compare AVX2 with AVX-512 on a machine that has both,
+ * pass {@code -jvmArgsAppend "--add-modules=jdk.incubator.vector -XX:UseAVX=2"}, which replaces the arguments below.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ColumnBenchmark {
+
+    /**
+     * Formulas of one variable, from a short polynomial to a longer mix of operators and functions.
+     */
+    @Param({
+            "x^2 + 3*x",
+            "1/x",
+            "x*x - 2*x + 1",
+            "(x - 1) * (x + 2) / 7 + sqrt(x * x + 1) - x % 3"
+    })
+    public String formula;
+
+    /**
+     * Number of values of the column.
+     */
+    @Param({"4096"})
+    public int size;
+
+    private CompiledFormula program;
+
+    private ColumnFormula scalar;
+
+    private ColumnFormula vector;
+
+    private double[] input;
+
+    private double[] output;
+
+    private double[] variables;
+
+    private double[] stack;
+
+    @Setup
+    public void setup() {
+        program = FormulaCompiler.compile(formula, "x");
+        scalar = new ColumnFormula(program, false);
+        vector = new ColumnFormula(program, true);
+        input = new double[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = -1000.25 + i * 0.5; // never zero, which the program would reject
+        }
+        output = new double[size];
+        variables = new double[1];
+        stack = new double[program.getMaxStackDepth()];
+    }
+
+    @Benchmark
+    public double[] perValue() {
+        for (int i = 0; i < size; i++) {
+            variables[0] = input[i];
+            output[i] = program.evaluate(variables, stack);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public double[] scalarColumn() {
+        scalar.evaluate(input, output, size);
+        return output;
+    }
+
+    @Benchmark
+    public double[] vectorColumn() {
+        vector.evaluate(input, output, size);
+        return output;
+    }
+}
@@ -0,0 +1,83 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.CompiledFormula;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares exp4j with the native {@link FormulaCompiler}, both for compiling a formula
+ * and for evaluating an already compiled one with a variable.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmark {
+
+    /**
+     * Formulas of one variable, from a short polynomial to a longer mix of operators and functions.
+     */
+    @Param({
+            "x^2 + 3*x",
+            "(x - 1) * (x + 2) / 7 + sqrt(x * x + 1) - x % 3",
+            "x + 1 + x + 2 + x + 3 + x + 4 + x + 5 + x + 6 + x + 7 + x + 8"
+    })
+    public String formula;
+
+    private Expression expression;
+
+    private CompiledFormula program;
+
+    private double[] variables;
+
+    private double[] stack;
+
+    private double x;
+
+    @Setup
+    public void setup() {
+        expression = new ExpressionBuilder(formula).variable("x").build();
+        program = FormulaCompiler.compile(formula, "x");
+        variables = new double[1];
+        stack = new double[program.getMaxStackDepth()];
+    }
+
+    @Benchmark
+    public Expression exp4jCompile() {
+        return new ExpressionBuilder(formula).variable("x").build();
+    }
+
+    @Benchmark
+    public CompiledFormula nativeCompile() {
+        return FormulaCompiler.compile(formula, "x");
+    }
+
+    @Benchmark
+    public double exp4jEvaluate() {
+        x += 0.5;
+        return expression.setVariable("x", x).evaluate();
+    }
+
+    @Benchmark
+    public double nativeEvaluate() {
+        x += 0.5;
+        variables[0] = x;
+        return program.evaluate(variables, stack);
+    }
+}
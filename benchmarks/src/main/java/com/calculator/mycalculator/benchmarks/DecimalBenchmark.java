@@ -0,0 +1,82 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.DecimalFormula;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code double} mode with the decimal precision mode, and within the decimal mode,
+ * the exact {@code double} fast path with the BigDecimal evaluation it avoids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalBenchmark {
+
+    /**
+     * Whole-number arithmetic, which takes the fast path, then decimal amounts and a repeating fraction,
+     * which need BigDecimal.
+     */
+    @Param({
+            "12 * 34 + 56 - 78 / 2",
+            "19.99 * 3 + 4.5 - 0.1",
+            "1 / 3"
+    })
+    public String formula;
+
+    private CalculatorEngine doubleEngine;
+
+    private CalculatorEngine decimalEngine;
+
+    private DecimalFormula program;
+
+    private StringBuilder text;
+
+    @Setup
+    public void setup() {
+        doubleEngine = new CalculatorEngine();
+        decimalEngine = new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, MathContext.DECIMAL128);
+        program = FormulaCompiler.tryCompileDecimal(formula);
+        text = new StringBuilder(48);
+
+        // Warm the caches so that only evaluations are measured
+        doubleEngine.evaluateTo(formula, text);
+        decimalEngine.evaluateTo(formula, text);
+    }
+
+    @Benchmark
+    public StringBuilder doubleMode() {
+        text.setLength(0);
+        return doubleEngine.evaluateTo(formula, text);
+    }
+
+    @Benchmark
+    public StringBuilder decimalMode() {
+        text.setLength(0);
+        return decimalEngine.evaluateTo(formula, text);
+    }
+
+    @Benchmark
+    public StringBuilder decimalWithoutFastPath() {
+        text.setLength(0);
+        return NumberFormatter.formatTo(program.evaluate(MathContext.DECIMAL128), text);
+    }
+}
@@ -0,0 +1,69 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing a formula with exp4j on every evaluation, as the equal button used to do,
+ * with evaluating the compiled expression served by the {@link CalculatorEngine} cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    /**
+     * Formulas as the calculator builds them: operands separated by spaced operators.
+     */
+    @Param({
+            "3 + 4 * 2",
+            "12.5 * 3.141592653589793 - 7 / 2 + 1000000 * 0.001",
+            "1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + 10 + 11 + 12 + 13 + 14 + 15 + 16"
+    })
+    public String formula;
+
+    private CalculatorEngine engine;
+
+    private StringBuilder text;
+
+    @Setup
+    public void setup() {
+        engine = new CalculatorEngine();
+        text = new StringBuilder(32);
+
+        // Warm the cache so that the cached benchmarks only measure hits
+        engine.evaluate(formula);
+    }
+
+    @Benchmark
+    public double exp4jBuildAndEvaluate() {
+        return new ExpressionBuilder(formula).build().evaluate();
+    }
+
+    @Benchmark
+    public double cachedEvaluate() {
+        return engine.evaluate(formula);
+    }
+
+    @Benchmark
+    public StringBuilder cachedEvaluateAndFormat() {
+        text.setLength(0);
+        return engine.evaluateTo(formula, text);
+    }
+}
@@ -0,0 +1,56 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.NumberFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures result formatting: building a new string for the display,
+ * and appending into a reused builder as the batch and sweep modes do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    /**
+     * Small and large integers, short and long fractions, and a value beyond the long range.
+     */
+    @Param({"42", "10000000000", "0.5", "3.141592653589793", "1.0E20"})
+    public String input;
+
+    private double value;
+
+    private StringBuilder text;
+
+    @Setup
+    public void setup() {
+        value = Double.parseDouble(input);
+        text = new StringBuilder(32);
+    }
+
+    @Benchmark
+    public String format() {
+        return NumberFormatter.format(value);
+    }
+
+    @Benchmark
+    public StringBuilder formatTo() {
+        text.setLength(0);
+        return NumberFormatter.formatTo(value, text);
+    }
+}
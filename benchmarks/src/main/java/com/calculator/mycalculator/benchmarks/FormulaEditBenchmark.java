@@ -0,0 +1,60 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.Keypad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-place edits of the last operand performed by the delete and plus-minus buttons,
+ * and a chain of unary operations on it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaEditBenchmark {
+
+    private CalculatorState state;
+
+    @Setup
+    public void setup() {
+        // A formula with a few terms and a long last operand: "1234 * 56 + 123456789"
+        state = new CalculatorState();
+        Keypad.replay(state, "1234*56+123456789");
+    }
+
+    @Benchmark
+    public String plusMinus() {
+        state.togglePlusMinus();
+        return state.getDisplay();
+    }
+
+    @Benchmark
+    public String deleteAndRetype() {
+        state.delete();
+        state.appendDigit("9");
+        return state.getDisplay();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public String inverseTwice() {
+        state.inverse();
+        state.inverse();
+        return state.getDisplay();
+    }
+}
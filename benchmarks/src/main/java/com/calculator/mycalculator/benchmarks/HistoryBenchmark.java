@@ -0,0 +1,67 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.history.HistoryEntry;
+import com.calculator.mycalculator.history.HistoryLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the persistent history: appending a calculation, as the equal button does,
+ * and reading a random entry of a history of a million entries, as the history panel does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private Path directory;
+
+    private HistoryLog log;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("history-benchmark");
+        log = HistoryLog.open(directory);
+        for (int i = 0; i < ENTRIES; i++) {
+            log.append(i, i + " * 3 + 12.5", Double.toString(i * 3 + 12.5));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        log.close();
+        Files.delete(directory.resolve(HistoryLog.DATA_FILE));
+        Files.delete(directory.resolve(HistoryLog.INDEX_FILE));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return log.append(System.currentTimeMillis(), "1234 * 56 + 789", "69893");
+    }
+
+    @Benchmark
+    public HistoryEntry randomRecall() throws IOException {
+        return log.get(ThreadLocalRandom.current().nextLong(ENTRIES));
+    }
+}
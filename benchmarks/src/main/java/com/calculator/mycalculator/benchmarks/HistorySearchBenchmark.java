@@ -0,0 +1,80 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.history.HistoryIndex;
+import com.calculator.mycalculator.history.HistoryLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the search of a history of a million random calculations, listing the 200 newest matches
+ * as the search field does: by short and long formula prefix, by operand, by exact result and by result range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySearchBenchmark {
+
+    private static final int ENTRIES = 1_000_000;
+
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+
+    @Param({"12", "1234 * 5", "#12.5", "=250", "=100..110", "=5000..6000"})
+    private String query;
+
+    private Path directory;
+
+    private HistoryLog log;
+
+    private HistoryIndex index;
+
+    private final int[] ids = new int[200];
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("history-search-benchmark");
+        log = HistoryLog.open(directory);
+        Random random = new Random(42);
+        StringBuilder formula = new StringBuilder();
+        for (int i = 0; i < ENTRIES; i++) {
+            formula.setLength(0);
+            formula.append(random.nextInt(10_000));
+            for (int terms = random.nextInt(3); terms >= 0; terms--) {
+                formula.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(random.nextInt(400) / 8.0);
+            }
+            log.append(i, formula.toString(), Long.toString(Math.round(random.nextGaussian() * 1000)));
+        }
+        index = new HistoryIndex(log);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        log.close();
+        Files.delete(directory.resolve(HistoryLog.DATA_FILE));
+        Files.delete(directory.resolve(HistoryLog.INDEX_FILE));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public int search() {
+        return index.search(query, ids);
+    }
+}
@@ -0,0 +1,54 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.Keypad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a realistic stream of button presses through the headless calculator state machine.
+ * Throughput is reported per key, end to end: editing, unary operations, operators and evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeypressBenchmark {
+
+    /**
+     * A session of several calculations, ending with a reset so that each invocation starts from a clean state.
+     */
+    static final String SESSION = "12.5*4-7/2="
+            + "+3.25ns*2="
+            + "c99dd7.5i+1="
+            + "c2x-p*3=r"
+            + "c123456n+654321=/3="
+            + "c";
+
+    private CalculatorState state;
+
+    @Setup
+    public void setup() {
+        state = new CalculatorState();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(62) // Number of keys in SESSION
+    public String session() {
+        Keypad.replay(state, SESSION);
+        return state.getDisplay();
+    }
+}
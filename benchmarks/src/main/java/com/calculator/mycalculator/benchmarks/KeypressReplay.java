@@ -0,0 +1,165 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.KeyRecorder;
+import com.calculator.mycalculator.model.Keypad;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Replays keypress sessions on the headless calculator state, outside of JMH, to measure and check them.
+ * <p>
+ * {@code bench [keys] [seed]} presses random keys, weighted like a real session, and reads the display, the formula
+ * and the preview after each one as the window does; it reports the keys per second and the bytes allocated per key.
+ * {@code record file [lines] [seed]} writes a random session in the format of {@link KeyRecorder}, as the window
+ * does with {@code --record=file}. {@code check file} replays a recorded session on a new state and compares it
+ * with every checkpoint; the process exits with status 1 on a mismatch, so it can gate a build. Sessions are
+ * replayed in the default precision mode.
+ * <p>
+ * Usage: {@code KeypressReplay bench [keys] [seed] | record file [lines] [seed] | check file}
+ */
+public final class KeypressReplay {
+
+    /**
+     * Keys drawn by the random sessions, digits being the most frequent, as when typing.
+     */
+    private static final String WEIGHTED_KEYS = "01234567890123456789012345678901234567890123456789"
+            + "..++--**//==" + Keypad.KEYS;
+
+    /**
+     * Maximum number of mismatches printed before giving up.
+     */
+    private static final int MAX_REPORTED = 20;
+
+    private KeypressReplay() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Runs a command.
+     *
+     * @param args the command and its arguments
+     * @throws IOException if a session cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        String command = args.length > 0 ? args[0] : "bench";
+        switch (command) {
+            case "bench" -> bench(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000,
+                    args.length > 2 ? Long.parseLong(args[2]) : 20240101L);
+            case "record" -> record(Path.of(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 100_000,
+                    args.length > 3 ? Long.parseLong(args[3]) : 20240101L);
+            case "check" -> {
+                if (!check(Path.of(args[1]))) {
+                    System.exit(1);
+                }
+            }
+            default -> {
+                System.err.println("Usage: KeypressReplay bench [keys] [seed] | record file [lines] [seed] | check file");
+                System.exit(2);
+            }
+        }
+    }
+
+    /**
+     * Presses random keys, twice: once to warm up, once to measure.
+     */
+    private static void bench(int count, long seed) {
+        byte[] keys = new byte[count];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) {
+            keys[i] = (byte) WEIGHTED_KEYS.charAt(random.nextInt(WEIGHTED_KEYS.length()));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int round = 0; round < 2; round++) {
+            CalculatorState state = new CalculatorState();
+            long shown = 0;
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (byte key : keys) {
+                Keypad.press(state, (char) key);
+                // Read what the window shows, so that the lazy parts of the state are computed as they would be
+                shown += state.getDisplay().length() + state.getFormula().length() + state.getPreview().length();
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+            if (round == 1) {
+                System.out.printf("%d keys in %.1f ms: %.0f keys/s, %.1f bytes/key (%d characters shown)%n",
+                        count, elapsed / 1e6, count * 1e9 / elapsed, (double) allocated / count, shown);
+            }
+        }
+    }
+
+    /**
+     * Writes a random session, with a checkpoint after each result.
+     */
+    private static void record(Path file, int lines, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        CalculatorState state = new CalculatorState();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             KeyRecorder recorder = new KeyRecorder(writer)) {
+            String lastResult = "1";
+            for (int line = 0; line < lines; line++) {
+                int length = random.nextInt(1, 30);
+                for (int i = 0; i < length; i++) {
+                    if (random.nextInt(50) == 0) {
+                        recorder.recall(lastResult);
+                        state.recall(lastResult);
+                    } else {
+                        char key = WEIGHTED_KEYS.charAt(random.nextInt(WEIGHTED_KEYS.length()));
+                        if (key != '=') {
+                            recorder.press(key);
+                            Keypad.press(state, key);
+                        }
+                    }
+                }
+                recorder.press('=');
+                Keypad.press(state, '=');
+                lastResult = state.getDisplay();
+                recorder.checkpoint(state);
+            }
+        }
+        System.out.println(lines + " checkpoints written to " + file);
+    }
+
+    /**
+     * Replays a recorded session and compares the state with each checkpoint.
+     *
+     * @return true if every checkpoint matches
+     */
+    private static boolean check(Path file) throws IOException {
+        CalculatorState state = new CalculatorState();
+        int checkpoints = 0;
+        int mismatches = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && mismatches < MAX_REPORTED) {
+                int first = line.indexOf(KeyRecorder.SEPARATOR);
+                int second = line.indexOf(KeyRecorder.SEPARATOR, first + 1);
+                if (first < 0 || second < 0) {
+                    System.out.println("Line " + (checkpoints + 1) + " is not a checkpoint: " + line);
+                    return false;
+                }
+                Keypad.replay(state, line.substring(0, first));
+                checkpoints++;
+                String display = line.substring(first + 1, second);
+                String formula = line.substring(second + 1);
+                if (!state.getDisplay().equals(display) || !state.getFormula().equals(formula)) {
+                    mismatches++;
+                    System.out.println("Mismatch at checkpoint " + checkpoints + " after \"" + line.substring(0, first)
+                            + "\": " + state.getDisplay() + " | " + state.getFormula()
+                            + " instead of " + display + " | " + formula);
+                }
+            }
+        }
+        System.out.println(checkpoints + " checkpoints, " + mismatches + " mismatches");
+        return mismatches == 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.UnaryMemo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares computing 10^x and square roots with looking them up in a {@link UnaryMemo}, over operands drawn from
+ * a set of distinct values: a set smaller than the memo gives only hits, a larger one gives evictions.
+ * The statistics of the memos are printed at the end of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoBenchmark {
+
+    /**
+     * Number of operands, drawn from this many distinct values.
+     */
+    private static final int OPERANDS = 4096;
+
+    /**
+     * Number of distinct operands, against a memo of {@value UnaryMemo#DEFAULT_CAPACITY} entries.
+     */
+    @Param({"64", "100000"})
+    public int distinct;
+
+    private double[] operands;
+
+    private UnaryMemo powerOfTen;
+
+    private UnaryMemo sqrt;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        double[] values = new double[distinct];
+        for (int i = 0; i < distinct; i++) {
+            // Display values, with a few decimals, as entered on the keypad
+            values[i] = Math.round(random.nextDouble() * 20_000 - 10_000) / 100d;
+        }
+        operands = new double[OPERANDS];
+        for (int i = 0; i < OPERANDS; i++) {
+            operands[i] = values[random.nextInt(distinct)];
+        }
+        powerOfTen = new UnaryMemo(x -> Math.pow(10, x));
+        sqrt = new UnaryMemo(Math::sqrt);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (UnaryMemo memo : new UnaryMemo[]{powerOfTen, sqrt}) {
+            if (memo.getHitCount() + memo.getMissCount() > 0) {
+                System.out.println();
+                System.out.println(memo);
+            }
+        }
+    }
+
+    @Benchmark
+    public double powerOfTen() {
+        double sum = 0;
+        for (double operand : operands) {
+            sum += Math.pow(10, operand);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double powerOfTenMemo() {
+        double sum = 0;
+        for (double operand : operands) {
+            sum += powerOfTen.applyAsDouble(operand);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double sqrt() {
+        double sum = 0;
+        for (double operand : operands) {
+            sum += Math.sqrt(operand);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double sqrtMemo() {
+        double sum = 0;
+        for (double operand : operands) {
+            sum += sqrt.applyAsDouble(operand);
+        }
+        return sum;
+    }
+}
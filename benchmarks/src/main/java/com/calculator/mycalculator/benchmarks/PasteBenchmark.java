@@ -0,0 +1,74 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.InputQueue;
+import com.calculator.mycalculator.model.Keypad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a pasted formula of increasing length: read back after each key, as when every key refreshed
+ * the window, against queued and pressed in one batch with a single refresh, as at each pulse of the window.
+ * Reading the formula after each key makes a paste quadratic in its length; one refresh per batch keeps it linear.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasteBenchmark {
+
+    /**
+     * Number of characters of the pasted text.
+     */
+    @Param({"100", "1000", "10000"})
+    public int length;
+
+    private String text;
+
+    private final InputQueue input = new InputQueue();
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("12.5 × 4 - 7 ÷ 2 + ");
+        }
+        builder.setLength(length);
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public String perKey() {
+        CalculatorState state = new CalculatorState();
+        long shown = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char key = Keypad.fromCharacter(text.charAt(i));
+            if (key != 0) {
+                Keypad.press(state, key);
+                shown += state.getDisplay().length() + state.getFormula().length() + state.getPreview().length();
+            }
+        }
+        return shown + state.getPreview();
+    }
+
+    @Benchmark
+    public String batched() {
+        CalculatorState state = new CalculatorState();
+        input.submitText(text);
+        input.apply(state, null, Long.MAX_VALUE);
+        return state.getDisplay() + state.getFormula().length() + state.getPreview();
+    }
+}
@@ -0,0 +1,69 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.Keypad;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the live preview on formulas of increasing length: the incremental preview of the state,
+ * against a full compilation and evaluation of the formula after each key.
+ * The incremental cost per key should not depend on the length of the formula.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreviewBenchmark {
+
+    /**
+     * Number of operators already typed in the formula.
+     */
+    @Param({"10", "1000", "100000"})
+    public int operations;
+
+    private CalculatorState state;
+
+    @Setup
+    public void setup() {
+        state = new CalculatorState();
+        for (int i = 0; i < operations; i++) {
+            Keypad.replay(state, i % 2 == 0 ? "12.5*" : "3+");
+        }
+        Keypad.replay(state, "4");
+        state.getPreview();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public String incremental() {
+        Keypad.press(state, '7');
+        state.getPreview();
+        Keypad.press(state, 'd');
+        return state.getPreview();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public double fullEvaluation() {
+        Keypad.press(state, '7');
+        double result = FormulaCompiler.compile(state.getFormula()).evaluate();
+        Keypad.press(state, 'd');
+        return result + FormulaCompiler.compile(state.getFormula()).evaluate();
+    }
+}
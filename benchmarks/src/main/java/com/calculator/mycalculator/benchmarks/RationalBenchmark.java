@@ -0,0 +1,75 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.engine.RationalFormula;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the exact arithmetic mode with {@code double} on the same program, unfolded in both cases.
+ * Chains of small fractions stay on the {@code long} fast path, which allocates nothing but the result;
+ * a chain that overflows a {@code long} is evaluated again on {@link java.math.BigInteger}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RationalBenchmark {
+
+    /**
+     * Whole numbers and small fractions, which stay on the fast path, then a chain whose intermediate values
+     * overflow a {@code long}.
+     */
+    @Param({
+            "12 * 34 + 56 - 78 / 2",
+            "1/3 + 2/7 * 5 - 3/11 + 4/13 * 6/17",
+            "123456789^3 / 7 + 1/3"
+    })
+    public String formula;
+
+    private RationalFormula program;
+
+    private StringBuilder text;
+
+    @Setup
+    public void setup() {
+        program = FormulaCompiler.tryCompileRational(formula);
+        text = new StringBuilder(64);
+    }
+
+    @Benchmark
+    public double doubleProgram() {
+        return program.evaluate();
+    }
+
+    @Benchmark
+    public Rational exact() {
+        return program.evaluateExact();
+    }
+
+    @Benchmark
+    public StringBuilder exactFraction() {
+        text.setLength(0);
+        return program.evaluateTo(Rational.Notation.FRACTION, text);
+    }
+
+    @Benchmark
+    public StringBuilder exactDecimal() {
+        text.setLength(0);
+        return program.evaluateTo(Rational.Notation.DECIMAL, text);
+    }
+}
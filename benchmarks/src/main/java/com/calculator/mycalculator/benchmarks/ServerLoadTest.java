@@ -0,0 +1,216 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.server.EvaluationServer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the evaluation server over keep-alive connections.
+ * <p>
+ * Each connection runs on its own virtual thread and sends {@code POST /evaluate} requests back to back, each holding
+ * a batch of random formulas, for the given duration. The test reports the request and formula throughput and
+ * the latency percentiles, and exits with status 1 if any request fails. Without a port, it starts a server
+ * in the same process; with one, it loads a server already running on the loopback address.
+ * <p>
+ * Usage: {@code ServerLoadTest [connections] [seconds] [formulas per request] [port]}
+ */
+public final class ServerLoadTest {
+
+    /**
+     * Number of distinct formulas sent, so that most of them are served from the engine's cache,
+     * like the repeated formulas of real clients.
+     */
+    private static final int DISTINCT_FORMULAS = 10_000;
+
+    /**
+     * Maximum number of latencies kept per connection for the percentiles.
+     */
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private ServerLoadTest() {
+        // Entry point only, not meant to be instantiated
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the number of connections (16 by default), the duration in seconds (10), the number of formulas
+     *             per request (1) and the port of a running server
+     * @throws Exception if the server cannot be started or the test is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        EvaluationServer server = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            server = EvaluationServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new CalculatorEngine(65_536));
+            port = server.getAddress().getPort();
+        }
+
+        String[] formulas = formulas();
+        LongAdder requests = new LongAdder();
+        LongAdder failures = new LongAdder();
+        List<long[]> latencies = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int i = 0; i < connections; i++) {
+            long[] samples = new long[MAX_SAMPLES + 1];
+            latencies.add(samples);
+            long seed = i;
+            threads.add(Thread.ofVirtual().start(() -> load(port, formulas, batch, seed, deadline, samples, requests, failures)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (server != null) {
+            server.close();
+        }
+
+        // Merge the latencies of all the connections
+        int total = 0;
+        for (long[] samples : latencies) {
+            total += (int) samples[MAX_SAMPLES];
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] samples : latencies) {
+            int count = (int) samples[MAX_SAMPLES];
+            System.arraycopy(samples, 0, all, offset, count);
+            offset += count;
+        }
+        Arrays.sort(all);
+
+        long count = requests.sum();
+        System.out.printf("%d connections, %d formulas per request, %d s%n", connections, batch, seconds);
+        System.out.printf("requests: %d (%.0f/s), formulas: %.0f/s, failures: %d%n",
+                count, count / (double) seconds, count * (double) batch / seconds, failures.sum());
+        if (all.length > 0) {
+            System.out.printf("latency: p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                    percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), all[all.length - 1] / 1000);
+        }
+        System.exit(failures.sum() == 0 && count > 0 ? 0 : 1);
+    }
+
+    /**
+     * Sends requests on one connection until the deadline, reconnecting after a failure.
+     * The number of latencies recorded is stored in the last element of the samples.
+     */
+    private static void load(int port, String[] formulas, int batch, long seed, long deadline,
+                             long[] samples, LongAdder requests, LongAdder failures) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder body = new StringBuilder();
+        while (System.nanoTime() < deadline) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                socket.setTcpNoDelay(true);
+                OutputStream output = socket.getOutputStream();
+                InputStream input = new BufferedInputStream(socket.getInputStream());
+                while (System.nanoTime() < deadline) {
+                    body.setLength(0);
+                    for (int i = 0; i < batch; i++) {
+                        body.append(formulas[random.nextInt(formulas.length)]).append('\n');
+                    }
+                    int length = body.length();
+                    body.insert(0, "POST " + EvaluationServer.EVALUATE_PATH + " HTTP/1.1\r\nHost: localhost\r\n"
+                            + "Content-Type: text/plain\r\nContent-Length: " + length + "\r\n\r\n");
+                    byte[] request = body.toString().getBytes(StandardCharsets.US_ASCII);
+
+                    // The whole request in a single write, hence a single packet for small batches
+                    long start = System.nanoTime();
+                    output.write(request);
+                    output.flush();
+                    int status = readResponse(input, batch);
+                    long elapsed = System.nanoTime() - start;
+
+                    if (status != 200) {
+                        failures.increment();
+                    }
+                    requests.increment();
+                    int count = (int) samples[MAX_SAMPLES];
+                    if (count < MAX_SAMPLES) {
+                        samples[count] = elapsed;
+                        samples[MAX_SAMPLES] = count + 1;
+                    }
+                }
+            } catch (IOException e) {
+                failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Reads a response with a fixed length, and checks that it holds one line per formula.
+     *
+     * @return the status code, or -1 if the body does not hold the expected number of lines
+     */
+    private static int readResponse(InputStream input, int lines) throws IOException {
+        String statusLine = readLine(input);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int length = 0;
+        String header;
+        while (!(header = readLine(input)).isEmpty()) {
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+        byte[] body = input.readNBytes(length);
+        if (body.length != length) {
+            throw new IOException("Connection closed by the server");
+        }
+        int newlines = 0;
+        for (byte b : body) {
+            if (b == '\n') {
+                newlines++;
+            }
+        }
+        return newlines == lines ? status : -1;
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = input.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed by the server");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000;
+    }
+
+    private static String[] formulas() {
+        SplittableRandom random = new SplittableRandom(42);
+        String[] operators = {" + ", " - ", " * ", " / "};
+        String[] formulas = new String[DISTINCT_FORMULAS];
+        for (int i = 0; i < formulas.length; i++) {
+            StringBuilder formula = new StringBuilder().append(random.nextInt(1000));
+            for (int terms = random.nextInt(4); terms >= 0; terms--) {
+                formula.append(operators[random.nextInt(operators.length)]).append(random.nextInt(1, 100));
+            }
+            formulas[i] = formula.toString();
+        }
+        return formulas;
+    }
+}
@@ -0,0 +1,116 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.Main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start benchmark of the runtime image: the time from launching {@code bin/app} to the first frame of the window.
+ * <p>
+ * Each run starts a new process with the {@code --first-frame} option, which prints a marker line once the first
+ * frame is laid out and closes the window. The time is measured here, from the launch of the process to the marker,
+ * so it includes the start of the JVM. Each run uses a new empty history. The benchmark reports the minimum,
+ * median and maximum, and exits with status 1 if the median exceeds the budget or if a run fails,
+ * e.g. without a display.
+ * <p>
+ * Usage: {@code StartupBenchmark [runs] [budget in ms] [image directory]}
+ */
+public final class StartupBenchmark {
+
+    /**
+     * Time to the first frame that the median run must not exceed, in milliseconds.
+     */
+    private static final long DEFAULT_BUDGET_MILLIS = 300;
+
+    /**
+     * Time after which a run is considered failed.
+     */
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private StartupBenchmark() {
+        // Entry point only, not meant to be instantiated
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of runs (10 by default), the budget in milliseconds (300) and the directory of
+     *             the runtime image built with {@code mvn -Pstartup package} ({@code target/app})
+     * @throws Exception if a process cannot be started or the benchmark is interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long budget = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_BUDGET_MILLIS;
+        Path image = Path.of(args.length > 2 ? args[2] : "target/app");
+        Path launcher = image.resolve("bin").resolve(System.getProperty("os.name").startsWith("Windows") ? "app.bat" : "app");
+
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = run(launcher);
+            if (millis[i] < 0) {
+                System.out.printf("run %d failed: no first frame (is there a display?)%n", i + 1);
+                System.exit(1);
+            }
+            System.out.printf("run %d: %d ms%n", i + 1, millis[i]);
+        }
+
+        Arrays.sort(millis);
+        long median = millis[runs / 2];
+        System.out.printf("time to first frame: min %d ms, median %d ms, max %d ms, budget %d ms%n",
+                millis[0], median, millis[runs - 1], budget);
+        System.exit(median <= budget ? 0 : 1);
+    }
+
+    /**
+     * Launches the calculator once and waits for its first frame.
+     *
+     * @return the time to the first frame in milliseconds, or -1 if the process fails or times out
+     */
+    private static long run(Path launcher) throws IOException, InterruptedException {
+        Path history = Files.createTempDirectory("startup-history");
+        try {
+            ProcessBuilder builder = new ProcessBuilder(launcher.toString(), Main.FIRST_FRAME_OPTION, "--history=" + history)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD);
+            long start = System.nanoTime();
+            Process process = builder.start();
+
+            // A process that hangs is killed, which ends its output
+            CompletableFuture.delayedExecutor(TIMEOUT_SECONDS, TimeUnit.SECONDS).execute(process::destroyForcibly);
+            long elapsed = -1;
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith(Main.FIRST_FRAME_MARKER)) {
+                        elapsed = (System.nanoTime() - start) / 1_000_000;
+                        break;
+                    }
+                }
+            }
+            return process.waitFor() == 0 ? elapsed : -1;
+        } finally {
+            delete(history);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(paths::add);
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.calculator.mycalculator.benchmarks;
+
+import com.calculator.mycalculator.sheet.Worksheet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the recomputation of a worksheet of 200,000 cells after a change: a root cell referenced, through
+ * 10,000 independent branches of 20 cells each, by the whole worksheet, and the first cell of one branch.
+ * Changing the root recomputes every cell, level by level, and changing a branch only recomputes its 20 cells.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class WorksheetBenchmark {
+
+    private static final int BRANCHES = 10_000;
+
+    private static final int DEPTH = 20;
+
+    /**
+     * Number of threads computing the levels of the root recomputation.
+     */
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Worksheet sheet;
+
+    private int changes;
+
+    @Setup
+    public void setup() {
+        sheet = new Worksheet(parallelism);
+        sheet.set("root", "1");
+        for (int branch = 0; branch < BRANCHES; branch++) {
+            String previous = "b" + branch + "_0";
+            sheet.set(previous, "root * " + branch + " + sqrt(root)");
+            for (int depth = 1; depth < DEPTH; depth++) {
+                String name = "b" + branch + "_" + depth;
+                sheet.set(name, previous + " * 1.5 - root / " + depth);
+                previous = name;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sheet.close();
+    }
+
+    @Benchmark
+    public List<String> changeRoot() {
+        return sheet.set("root", String.valueOf(++changes % 7));
+    }
+
+    @Benchmark
+    public List<String> changeBranch() {
+        return sheet.set("b5000_0", "root + " + (++changes % 7));
+    }
+}
@@ -0,0 +1,48 @@
+package com.calculator.mycalculator;
+
+import com.calculator.mycalculator.batch.BatchCommand;
+import com.calculator.mycalculator.batch.CompileCommand;
+import com.calculator.mycalculator.batch.SheetCommand;
+import com.calculator.mycalculator.batch.SweepCommand;
+import com.calculator.mycalculator.server.ServerCommand;
+import javafx.application.Application;
+
+/**
+ * Entry point of the Calculator program.
+ * This class does not extend Application, so the Java launcher does not start the JavaFX toolkit before
+ * {@link #main(String[])} runs. This lets the headless modes work on machines without a display.
+ */
+public final class Launcher {
+
+    private Launcher() {
+        // Entry point only, not meant to be instantiated
+    }
+
+    /**
+     * Starts the program.
+     * With the {@code --batch}, {@code --sweep} or {@code --sheet} option, formulas are evaluated headlessly, with
+     * {@code --compile} they are compiled into a binary workload, and with
+     * the {@code --serve} option they are served over HTTP; in these modes, the JavaFX UI is never loaded.
+     * Otherwise, the JavaFX application is launched.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (BatchCommand.isBatch(args)) {
+            System.exit(BatchCommand.run(args));
+        }
+        if (SweepCommand.isSweep(args)) {
+            System.exit(SweepCommand.run(args));
+        }
+        if (CompileCommand.isCompile(args)) {
+            System.exit(CompileCommand.run(args));
+        }
+        if (SheetCommand.isSheet(args)) {
+            System.exit(SheetCommand.run(args));
+        }
+        if (ServerCommand.isServe(args)) {
+            System.exit(ServerCommand.run(args));
+        }
+        Application.launch(Main.class, args);
+    }
+}
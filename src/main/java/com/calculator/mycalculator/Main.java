@@ -1,42 +1,131 @@
 package com.calculator.mycalculator;
 
+import com.calculator.mycalculator.batch.BatchCommand;
+import com.calculator.mycalculator.controller.CalculatorController;
+import com.calculator.mycalculator.controller.CalculatorView;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.engine.UnaryMemo;
+import com.calculator.mycalculator.history.HistoryLog;
+import com.calculator.mycalculator.metrics.Metrics;
+import com.calculator.mycalculator.model.KeyRecorder;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
-import org.kordamp.bootstrapfx.BootstrapFX;
 
 import java.io.IOException;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Objects;
 
 /**
  * Main class that launches the Calculator application.
  * This class extends Application and initializes the JavaFX UI.
- * It loads the FXML file, applies the styles, and displays the main window.
+ * It builds the layout, applies the styles, and displays the main window.
  */
 public class Main extends Application {
 
+    /**
+     * Option printing the time to the first frame, then closing the window; used by the startup benchmark
+     * and to record the classes of the startup archive.
+     */
+    public static final String FIRST_FRAME_OPTION = "--first-frame";
+
+    /**
+     * Line printed on the standard output with the {@value #FIRST_FRAME_OPTION} option, followed by the time
+     * in milliseconds from the start of the process to the first frame.
+     */
+    public static final String FIRST_FRAME_MARKER = "first-frame ";
+
+    /**
+     * Persistent history of the calculations, or null if it could not be opened.
+     */
+    private HistoryLog historyLog;
+
+    /**
+     * Controller of the window, or null before it is built.
+     */
+    private CalculatorController controller;
+
     /**
      * The entry point for the JavaFX application.
      * This method is called when the application starts.
-     * It loads the FXML layout, applies stylesheets, and sets up the main stage.
+     * It builds the layout, applies stylesheets, and sets up the main stage.
      *
      * @param stage The primary stage for this application.
      */
     @Override
     public void start(Stage stage) {
         try {
-            // Load the FXML layout file for the calculator
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(Main.class.getResource("/fxml/calculator.fxml"));
-            Parent root = loader.load();
+            // Build the layout of the calculator and its controller
+            long layoutStart = System.nanoTime();
+            CalculatorView root = new CalculatorView();
+            controller = new CalculatorController(root);
+            if (Metrics.ENABLED) {
+                Metrics.layoutBuilt(System.nanoTime() - layoutStart);
+            }
+
+            // Select the decimal precision mode when the program is started with --precision=digits,
+            // or the exact arithmetic mode with --exact=fraction or --exact=decimal, but not both
+            String precision = getParameters().getNamed().get("precision");
+            String exact = getParameters().getNamed().get("exact");
+            if (precision != null && exact != null) {
+                usage("Les options --precision et --exact sont incompatibles");
+            } else if (precision != null) {
+                int digits = BatchCommand.parsePositive(precision);
+                if (digits < 1) {
+                    usage("Précision invalide : " + precision);
+                } else {
+                    controller.setMathContext(new MathContext(digits));
+                }
+            } else if (exact != null) {
+                Rational.Notation notation = BatchCommand.parseNotation(exact);
+                if (notation == null) {
+                    usage("Notation invalide : " + exact);
+                } else {
+                    controller.setExactMode(notation);
+                }
+            }
+
+            // Memoize 10^x when the program is started with --memo=capacity
+            String memo = getParameters().getNamed().get("memo");
+            if (memo != null) {
+                int capacity = BatchCommand.parsePositive(memo);
+                if (capacity < 1 || capacity > UnaryMemo.MAX_CAPACITY) {
+                    usage("Capacité invalide : " + memo);
+                } else {
+                    controller.setMemo(capacity);
+                }
+            }
+
+            // Record the keys of the session when the program is started with --record=file
+            String record = getParameters().getNamed().get("record");
+            if (record != null) {
+                try {
+                    controller.setRecorder(new KeyRecorder(Files.newBufferedWriter(Path.of(record), StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    System.err.println("Enregistrement impossible : " + e.getMessage());
+                }
+            }
+
+            // Open the history, in ~/.mycalculator unless the program is started with --history=directory
+            String history = getParameters().getNamed().get("history");
+            try {
+                Path directory = history != null ? Path.of(history) : Path.of(System.getProperty("user.home"), ".mycalculator");
+                historyLog = HistoryLog.open(directory);
+                controller.setHistory(historyLog);
+            } catch (IOException e) {
+                // The calculator works without history, e.g. when another window already uses it
+            }
 
             // Set up the scene with stylesheets and the layout
             Scene scene = new Scene(root);
-            scene.getStylesheets().add(BootstrapFX.bootstrapFXStylesheet());
             scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/css/style.css")).toExternalForm());
 
             // Add the icon
@@ -48,10 +137,10 @@ public class Main extends Application {
             stage.setTitle("Ma calculatrice");
             stage.setScene(scene);
             stage.setResizable(false); // Prevent resizing of the window
+            if (getParameters().getUnnamed().contains(FIRST_FRAME_OPTION)) {
+                exitAfterFirstFrame(scene);
+            }
             stage.show(); // Display the window
-        } catch (IOException e) {
-            // Show error dialog if FXML file can't be loaded
-            showErrorDialog("Erreur de chargement", "Le fichier d'interface est introuvable ou invalide.");
         } catch (NullPointerException e) {
             // Show error dialog if a critical resource is missing
             showErrorDialog("Erreur critique", "Une ressource essentielle est introuvable.");
@@ -61,6 +150,55 @@ public class Main extends Application {
         }
     }
 
+    /**
+     * Prints the time from the start of the process to the first frame, then exits. The first frame is the one
+     * laid out by the first pulse; it is handed to the renderer when the pulse ends.
+     *
+     * @param scene the scene of the window
+     */
+    private static void exitAfterFirstFrame(Scene scene) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                Platform.runLater(() -> {
+                    Instant start = ProcessHandle.current().info().startInstant().orElseThrow();
+                    System.out.println(FIRST_FRAME_MARKER + Duration.between(start, Instant.now()).toMillis());
+                    Platform.exit();
+                });
+            }
+        });
+    }
+
+    /**
+     * Closes the history and the recorded session when the application exits, writing their last entries to the disk.
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.closeRecorder();
+        }
+        if (historyLog != null) {
+            try {
+                historyLog.close();
+            } catch (IOException e) {
+                // The entries are already in the log: only the final write to the disk failed
+            }
+        }
+    }
+
+    /**
+     * Prints an error message about an option, followed by the options of the window, which then starts
+     * in the default mode for that option.
+     *
+     * @param message the error message
+     */
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Options de la fenêtre : [--precision=chiffres | --exact=fraction|decimal] [--memo=capacité]"
+                + " [--record=fichier] [--history=dossier]");
+    }
+
     /**
      * Displays an error dialog with a given title and content.
      *
@@ -0,0 +1,258 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.FormulaArchive;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.MathContext;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Command line entry point for the headless batch mode.
+ * <p>
+ * Usage: {@code --batch [input|-] [--output file] [--threads n] [--precision digits | --exact fraction|decimal]}.
+ * Formulas are read one per line from the input file,
+ * or from the standard input when the file is omitted or is "-". Results are written to the output file,
+ * or to the standard output when no output file is given. With more than one thread, chunks of lines are
+ * evaluated in parallel and written back in input order. With a precision, results are computed in the decimal
+ * precision mode with that many significant digits. With an exact notation, results are computed on fractions and
+ * written as fractions (1/3) or as decimals (0.3333333333333333). An input file compiled by {@link CompileCommand}
+ * is recognized by its first bytes and evaluated without parsing its formulas again, on one thread and in the
+ * default {@code double} mode. The JavaFX user interface is never loaded.
+ */
+public final class BatchCommand {
+
+    /**
+     * Option that selects the batch mode.
+     */
+    public static final String BATCH_OPTION = "--batch";
+
+    /**
+     * Option that redirects the results to a file.
+     */
+    private static final String OUTPUT_OPTION = "--output";
+
+    /**
+     * Option that sets the number of worker threads.
+     */
+    private static final String THREADS_OPTION = "--threads";
+
+    /**
+     * Option that selects the decimal precision mode and its number of significant digits.
+     */
+    private static final String PRECISION_OPTION = "--precision";
+
+    /**
+     * Option that selects the exact arithmetic mode and the notation of its results.
+     */
+    private static final String EXACT_OPTION = "--exact";
+
+    /**
+     * Size of the read and write buffers. Large buffers keep system calls rare on big inputs.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private BatchCommand() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Checks whether the command line asks for the batch mode.
+     *
+     * @param args the command line arguments
+     * @return true if the first argument is {@value #BATCH_OPTION}
+     */
+    public static boolean isBatch(String @NotNull [] args) {
+        return args.length > 0 && args[0].equals(BATCH_OPTION);
+    }
+
+    /**
+     * Runs the batch mode with the given command line arguments.
+     *
+     * @param args the command line arguments, starting with {@value #BATCH_OPTION}
+     * @return the process exit code: 0 on success, 1 on an I/O error, 2 on invalid arguments
+     */
+    public static int run(String @NotNull [] args) {
+        String input = null;
+        String output = null;
+        int threads = 1;
+        MathContext mathContext = null;
+        Rational.Notation notation = null;
+
+        // Parse the arguments that follow the batch option
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(OUTPUT_OPTION) && i + 1 < args.length && output == null) {
+                output = args[++i];
+            } else if (args[i].equals(THREADS_OPTION) && i + 1 < args.length) {
+                threads = parsePositive(args[++i]);
+                if (threads < 1) {
+                    return usage("Nombre de threads invalide : " + args[i]);
+                }
+            } else if (args[i].equals(PRECISION_OPTION) && i + 1 < args.length) {
+                int digits = parsePositive(args[++i]);
+                if (digits < 1) {
+                    return usage("Précision invalide : " + args[i]);
+                }
+                mathContext = new MathContext(digits);
+            } else if (args[i].equals(EXACT_OPTION) && i + 1 < args.length) {
+                notation = parseNotation(args[++i]);
+                if (notation == null) {
+                    return usage("Notation invalide : " + args[i]);
+                }
+            } else if (input == null && (args[i].equals("-") || !args[i].startsWith("--"))) {
+                input = args[i];
+            } else {
+                return usage("Argument invalide : " + args[i]);
+            }
+        }
+        if (mathContext != null && notation != null) {
+            return usage("Les options " + PRECISION_OPTION + " et " + EXACT_OPTION + " sont incompatibles");
+        }
+
+        try {
+            if (input != null && !input.equals("-") && FormulaArchive.isArchive(Path.of(input))) {
+                if (threads > 1 || mathContext != null || notation != null) {
+                    return usage("Un fichier compilé est évalué sur un seul thread, en double");
+                }
+                return runCompiled(Path.of(input), output);
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        }
+
+        try (BufferedReader reader = openReader(input); Writer writer = openWriter(output)) {
+            MathContext precision = mathContext;
+            Rational.Notation exact = notation;
+            Supplier<CalculatorEngine> engines = exact != null
+                    ? () -> new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, exact)
+                    : () -> new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, precision);
+            if (threads > 1) {
+                new ParallelBatchEvaluator(threads, ParallelBatchEvaluator.DEFAULT_CHUNK_SIZE, engines).evaluate(reader, writer);
+            } else {
+                new BatchEvaluator(engines.get()).evaluate(reader, writer);
+            }
+
+            // With metrics on, a summary of the run goes to the standard error
+            if (Metrics.ENABLED) {
+                System.err.print(Metrics.report());
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Evaluates a compiled workload.
+     *
+     * @param input  the archive file, mapped in memory
+     * @param output the output file, or null for the standard output
+     * @return the process exit code: 0 on success, 1 on an I/O error or a damaged archive
+     */
+    private static int runCompiled(@NotNull Path input, String output) {
+        try (Writer writer = openWriter(output)) {
+            new BatchEvaluator(new CalculatorEngine()).evaluate(FormulaArchive.open(input), writer);
+            if (Metrics.ENABLED) {
+                System.err.print(Metrics.report());
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Fichier compilé invalide : " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Parses a strictly positive integer argument. The window parses its options the same way.
+     *
+     * @param value the argument to parse
+     * @return the parsed value, or -1 if the argument is not a strictly positive integer
+     */
+    public static int parsePositive(String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            return parsed > 0 ? parsed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses the notation of the exact arithmetic mode, "fraction" or "decimal" in any case.
+     *
+     * @param value the argument to parse
+     * @return the notation, or null if the argument is not one
+     */
+    public static Rational.Notation parseNotation(String value) {
+        try {
+            return Rational.Notation.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens a buffered reader on the given file, or on the standard input.
+     *
+     * @param input the input file, "-" or null for the standard input
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    static @NotNull BufferedReader openReader(String input) throws IOException {
+        if (input == null || input.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        FileChannel channel = FileChannel.open(Path.of(input), StandardOpenOption.READ);
+        return new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a buffered writer on the given file, or on the standard output.
+     * The standard output is wrapped directly, bypassing the line-flushing {@link System#out} stream.
+     *
+     * @param output the output file, or null for the standard output
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    static @NotNull Writer openWriter(String output) throws IOException {
+        if (output == null) {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        FileChannel channel = FileChannel.open(Path.of(output),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Prints an error message followed by the usage of the batch mode.
+     *
+     * @param message the error message
+     * @return the exit code for invalid arguments
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Utilisation : " + BATCH_OPTION + " [fichier|-] [" + OUTPUT_OPTION + " fichier] [" + THREADS_OPTION + " n] [" + PRECISION_OPTION + " chiffres | " + EXACT_OPTION + " fraction|decimal]");
+        return 2;
+    }
+}
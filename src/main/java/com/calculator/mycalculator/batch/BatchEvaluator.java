@@ -0,0 +1,97 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.FormulaArchive;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Evaluates a stream of formulas, one per line, without any user interface.
+ * Each line goes through the same evaluation and formatting rules as the equal button,
+ * and produces exactly one output line, so results can be matched with their input by line number.
+ */
+public class BatchEvaluator {
+
+    /**
+     * Engine shared by every line of the batch, so repeated formulas are only parsed once.
+     */
+    private final CalculatorEngine engine;
+
+    /**
+     * Creates a batch evaluator backed by the given engine.
+     *
+     * @param engine the engine used to evaluate each formula
+     */
+    public BatchEvaluator(@NotNull CalculatorEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Reads formulas from the reader and writes one result per line to the writer.
+     * <p>
+     * Lines are processed one at a time, so memory usage does not depend on the size of the input.
+     * Blank lines produce blank output lines, invalid formulas produce "Erreur".
+     * Results are formatted into a reused buffer, so no result string is created per line.
+     * The writer is flushed but not closed.
+     *
+     * @param reader the source of formulas, one per line
+     * @param writer the destination of the results
+     * @return the number of lines processed
+     * @throws IOException if reading or writing fails
+     */
+    public long evaluate(@NotNull BufferedReader reader, @NotNull Writer writer) throws IOException {
+        ResultWriter output = new ResultWriter(writer);
+        long count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            appendLine(engine, line, output.buffer());
+            output.endLine();
+            count++;
+        }
+        output.flush();
+        return count;
+    }
+
+    /**
+     * Evaluates a compiled workload and writes one result per record to the writer, exactly as {@link
+     * #evaluate(BufferedReader, Writer)} does for the formulas it was compiled from. Programs are evaluated in place
+     * in the archive, without parsing; only the formulas left as text go through the engine.
+     * The writer is flushed but not closed.
+     *
+     * @param archive the compiled workload, read from its current record on
+     * @param writer  the destination of the results
+     * @return the number of records processed
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a record of the archive is damaged
+     */
+    public long evaluate(@NotNull FormulaArchive archive, @NotNull Writer writer) throws IOException {
+        ResultWriter output = new ResultWriter(writer);
+        long count = 0;
+        while (archive.next()) {
+            archive.evaluateTo(engine, output.buffer());
+            output.endLine();
+            count++;
+        }
+        output.flush();
+        return count;
+    }
+
+    /**
+     * Evaluates a single input line and appends the matching output line, without its line terminator.
+     * Nothing is appended for a blank line.
+     *
+     * @param engine      the engine used to evaluate the formula
+     * @param line        the raw input line
+     * @param destination the builder receiving the formatted result or "Erreur"
+     */
+    static void appendLine(@NotNull CalculatorEngine engine, @NotNull String line, @NotNull StringBuilder destination) {
+        // Trim the formula exactly like the equal button does
+        String formulaText = line.trim();
+        if (!formulaText.isEmpty()) {
+            engine.evaluateTo(formulaText, destination);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.engine.FormulaArchive;
+import com.calculator.mycalculator.engine.FormulaArchiveWriter;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point for compiling workloads.
+ * <p>
+ * Usage: {@code --compile [input|-] --output file [--var name]...}. Formulas are read one per line from the input file,
+ * or from the standard input when the file is omitted or is "-", compiled with the given variables, and written
+ * to the output file in the binary format of {@link FormulaArchive}. The batch mode evaluates such a file directly
+ * when it is given as input, and the sweep mode with {@code --sweep @file}, without parsing the formulas again.
+ * A summary of the formulas compiled natively is printed on the standard error.
+ */
+public final class CompileCommand {
+
+    /**
+     * Option that selects the compile mode.
+     */
+    public static final String COMPILE_OPTION = "--compile";
+
+    private static final String OUTPUT_OPTION = "--output";
+
+    private static final String VAR_OPTION = "--var";
+
+    private CompileCommand() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Checks whether the command line asks for the compile mode.
+     *
+     * @param args the command line arguments
+     * @return true if the first argument is {@value #COMPILE_OPTION}
+     */
+    public static boolean isCompile(String @NotNull [] args) {
+        return args.length > 0 && args[0].equals(COMPILE_OPTION);
+    }
+
+    /**
+     * Runs the compile mode with the given command line arguments.
+     *
+     * @param args the command line arguments, starting with {@value #COMPILE_OPTION}
+     * @return the process exit code: 0 on success, 1 on an I/O error, 2 on invalid arguments
+     */
+    public static int run(String @NotNull [] args) {
+        String input = null;
+        String output = null;
+        List<String> variables = new ArrayList<>();
+
+        // Parse the arguments that follow the compile option
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(OUTPUT_OPTION) && i + 1 < args.length && output == null) {
+                output = args[++i];
+            } else if (args[i].equals(VAR_OPTION) && i + 1 < args.length) {
+                String name = args[++i];
+                if (FormulaCompiler.isReservedName(name) || variables.contains(name) || variables.size() == 0xFF) {
+                    return usage("Variable invalide : " + name);
+                }
+                variables.add(name);
+            } else if (input == null && (args[i].equals("-") || !args[i].startsWith("--"))) {
+                input = args[i];
+            } else {
+                return usage("Argument invalide : " + args[i]);
+            }
+        }
+        if (output == null) {
+            return usage("Fichier de sortie manquant");
+        }
+
+        try (BufferedReader reader = BatchCommand.openReader(input);
+             FormulaArchiveWriter writer = new FormulaArchiveWriter(openOutput(output), variables.toArray(new String[0]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.add(line);
+            }
+            System.err.println(writer.getProgramCount() + " formules compilées, "
+                    + writer.getTextCount() + " laissées en texte");
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Opens a buffered binary stream on the given file.
+     *
+     * @param output the output file
+     * @return the stream
+     * @throws IOException if the file cannot be created
+     */
+    private static @NotNull OutputStream openOutput(@NotNull String output) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(output),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), BatchCommand.BUFFER_SIZE);
+    }
+
+    /**
+     * Prints an error message followed by the usage of the compile mode.
+     *
+     * @param message the error message
+     * @return the exit code for invalid arguments
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Utilisation : " + COMPILE_OPTION + " [fichier|-] " + OUTPUT_OPTION + " fichier ["
+                + VAR_OPTION + " nom]...");
+        return 2;
+    }
+}
@@ -0,0 +1,184 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates a stream of formulas on several cores while keeping the results in input order.
+ * <p>
+ * The input is split into chunks of lines that are evaluated on a {@link ForkJoinPool}. Chunks are written
+ * back in the order they were read, and only a bounded number of chunks is in flight at any time,
+ * so memory usage stays constant whatever the size of the input.
+ * Each worker thread owns its own {@link CalculatorEngine}: compiled exp4j expressions are never shared
+ * between threads, and workers never contend on a common cache.
+ */
+public class ParallelBatchEvaluator {
+
+    /**
+     * Default number of lines evaluated by a single task.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int parallelism;
+
+    /**
+     * Number of lines evaluated by a single task.
+     */
+    private final int chunkSize;
+
+    /**
+     * Creates the engine of each worker thread.
+     */
+    private final Supplier<CalculatorEngine> engineFactory;
+
+    /**
+     * Creates a parallel evaluator with the default chunk size.
+     *
+     * @param parallelism the number of worker threads, must be at least 1
+     */
+    public ParallelBatchEvaluator(int parallelism) {
+        this(parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a parallel evaluator.
+     *
+     * @param parallelism the number of worker threads, must be at least 1
+     * @param chunkSize   the number of lines evaluated by a single task, must be at least 1
+     * @throws IllegalArgumentException if one of the values is lower than 1
+     */
+    public ParallelBatchEvaluator(int parallelism, int chunkSize) {
+        this(parallelism, chunkSize, CalculatorEngine::new);
+    }
+
+    /**
+     * Creates a parallel evaluator whose workers use engines created by the given factory,
+     * e.g. engines in the decimal precision mode.
+     *
+     * @param parallelism   the number of worker threads, must be at least 1
+     * @param chunkSize     the number of lines evaluated by a single task, must be at least 1
+     * @param engineFactory creates a new engine for each worker thread
+     * @throws IllegalArgumentException if one of the values is lower than 1
+     */
+    public ParallelBatchEvaluator(int parallelism, int chunkSize, @NotNull Supplier<CalculatorEngine> engineFactory) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.engineFactory = engineFactory;
+    }
+
+    /**
+     * Reads formulas from the reader and writes one result per line to the writer, in input order.
+     * <p>
+     * The output is identical to {@link BatchEvaluator#evaluate(BufferedReader, Writer)}.
+     * The writer is flushed but not closed.
+     *
+     * @param reader the source of formulas, one per line
+     * @param writer the destination of the results
+     * @return the number of lines processed
+     * @throws IOException if reading or writing fails, or if the evaluation is interrupted
+     */
+    public long evaluate(@NotNull BufferedReader reader, @NotNull Writer writer) throws IOException {
+        // One engine per worker thread, created lazily on the first chunk the worker evaluates
+        ThreadLocal<CalculatorEngine> engines = ThreadLocal.withInitial(engineFactory);
+
+        // Allow a few chunks per worker in flight so that workers never wait for the reader
+        int maxInFlight = parallelism * 2;
+        ArrayDeque<Future<String>> inFlight = new ArrayDeque<>(maxInFlight);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long count = 0;
+            String[] chunk;
+            while ((chunk = readChunk(reader)) != null) {
+                count += chunk.length;
+
+                // Wait for the oldest chunk before submitting a new one once the window is full
+                if (inFlight.size() == maxInFlight) {
+                    writer.write(await(inFlight.removeFirst()));
+                }
+                String[] lines = chunk;
+                inFlight.addLast(pool.submit(() -> evaluateChunk(engines.get(), lines)));
+            }
+
+            // Drain the remaining chunks in order
+            while (!inFlight.isEmpty()) {
+                writer.write(await(inFlight.removeFirst()));
+            }
+            writer.flush();
+            return count;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the next chunk of lines.
+     *
+     * @param reader the source of formulas
+     * @return the lines read, or null at the end of the input
+     * @throws IOException if reading fails
+     */
+    private String[] readChunk(@NotNull BufferedReader reader) throws IOException {
+        String[] lines = new String[chunkSize];
+        int size = 0;
+        String line;
+        while (size < chunkSize && (line = reader.readLine()) != null) {
+            lines[size++] = line;
+        }
+        if (size == 0) {
+            return null;
+        }
+        return size == chunkSize ? lines : Arrays.copyOf(lines, size);
+    }
+
+    /**
+     * Evaluates a chunk of lines and joins the results, one per line.
+     *
+     * @param engine the engine owned by the current worker thread
+     * @param lines  the lines to evaluate
+     * @return the results, each followed by a line terminator
+     */
+    private static @NotNull String evaluateChunk(@NotNull CalculatorEngine engine, String @NotNull [] lines) {
+        StringBuilder output = new StringBuilder(lines.length * 8);
+        for (String line : lines) {
+            BatchEvaluator.appendLine(engine, line, output);
+            output.append('\n');
+        }
+        return output.toString();
+    }
+
+    /**
+     * Waits for the result of a chunk.
+     *
+     * @param future the pending chunk
+     * @return the results of the chunk
+     * @throws IOException if the evaluation failed or was interrupted
+     */
+    private static @NotNull String await(@NotNull Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Évaluation interrompue");
+        } catch (ExecutionException e) {
+            throw new IOException("Échec de l'évaluation", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.calculator.mycalculator.batch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Accumulates output lines in a reusable buffer before handing them to a writer.
+ * <p>
+ * Results are formatted straight into {@link #buffer()}, and the buffer is copied to the writer through
+ * a reusable character array, so writing a result never creates an intermediate string.
+ */
+final class ResultWriter {
+
+    /**
+     * Number of buffered characters after which the buffer is handed to the writer.
+     */
+    private static final int FLUSH_THRESHOLD = BatchCommand.BUFFER_SIZE;
+
+    /**
+     * Destination of the buffered lines.
+     */
+    private final Writer writer;
+
+    /**
+     * Lines waiting to be written.
+     */
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 256);
+
+    /**
+     * Scratch array used to copy the buffer to the writer.
+     */
+    private char[] chars = new char[FLUSH_THRESHOLD + 256];
+
+    /**
+     * Creates a result writer on top of the given writer.
+     *
+     * @param writer the destination of the lines
+     */
+    ResultWriter(@NotNull Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @return the buffer receiving the current line
+     */
+    @NotNull StringBuilder buffer() {
+        return buffer;
+    }
+
+    /**
+     * Terminates the current line, and hands the buffer to the writer once it is large enough.
+     *
+     * @throws IOException if writing fails
+     */
+    void endLine() throws IOException {
+        buffer.append('\n');
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes every buffered line and flushes the writer.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        drain();
+        writer.flush();
+    }
+
+    /**
+     * Copies the buffer to the writer and empties it.
+     *
+     * @throws IOException if writing fails
+     */
+    private void drain() throws IOException {
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        buffer.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+        buffer.setLength(0);
+    }
+}
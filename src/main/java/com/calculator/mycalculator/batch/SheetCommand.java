@@ -0,0 +1,123 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.sheet.Worksheet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Command line entry point for worksheets of named cells.
+ * <p>
+ * Usage: {@code --sheet [input|-] [--output file] [--threads n]}. Each line of the input defines a cell,
+ * e.g. {@code b = a^2 + 1}, or removes it when the formula is empty, e.g. {@code b =}. After each line,
+ * the cells that were recomputed are written as "name = result" lines, in the order they were computed, so that
+ * the standard input can be used interactively. Invalid lines are reported on the standard error and ignored.
+ * Large recomputations run on {@code n} threads, all the processors by default.
+ */
+public final class SheetCommand {
+
+    /**
+     * Option that selects the worksheet mode.
+     */
+    public static final String SHEET_OPTION = "--sheet";
+
+    private static final String OUTPUT_OPTION = "--output";
+
+    private static final String THREADS_OPTION = "--threads";
+
+    private SheetCommand() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Checks whether the command line asks for the worksheet mode.
+     *
+     * @param args the command line arguments
+     * @return true if the first argument is {@value #SHEET_OPTION}
+     */
+    public static boolean isSheet(String @NotNull [] args) {
+        return args.length > 0 && args[0].equals(SHEET_OPTION);
+    }
+
+    /**
+     * Runs the worksheet mode with the given command line arguments.
+     *
+     * @param args the command line arguments, starting with {@value #SHEET_OPTION}
+     * @return the process exit code: 0 on success, 1 on an I/O error, 2 on invalid arguments
+     */
+    public static int run(String @NotNull [] args) {
+        String input = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // Parse the arguments that follow the worksheet option
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(OUTPUT_OPTION) && i + 1 < args.length && output == null) {
+                output = args[++i];
+            } else if (args[i].equals(THREADS_OPTION) && i + 1 < args.length) {
+                threads = BatchCommand.parsePositive(args[++i]);
+                if (threads < 1) {
+                    return usage("Nombre de threads invalide : " + args[i]);
+                }
+            } else if (input == null && (args[i].equals("-") || !args[i].startsWith("--"))) {
+                input = args[i];
+            } else {
+                return usage("Argument invalide : " + args[i]);
+            }
+        }
+
+        // Results are flushed after each line of the standard input, which may be typed in
+        boolean interactive = input == null || input.equals("-");
+        try (Worksheet sheet = new Worksheet(threads);
+             BufferedReader reader = BatchCommand.openReader(input);
+             Writer writer = BatchCommand.openWriter(output)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                List<String> recomputed;
+                try {
+                    int equals = line.indexOf('=');
+                    recomputed = equals >= 0 && line.substring(equals + 1).isBlank()
+                            ? sheet.remove(line.substring(0, equals).trim())
+                            : sheet.define(line);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Ligne " + number + " ignorée : " + line.trim());
+                    continue;
+                }
+                for (String name : recomputed) {
+                    writer.write(name);
+                    writer.write(" = ");
+                    writer.write(sheet.getText(name));
+                    writer.write('\n');
+                }
+                if (interactive) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Prints an error message followed by the usage of the worksheet mode.
+     *
+     * @param message the error message
+     * @return the exit code for invalid arguments
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Utilisation : " + SHEET_OPTION + " [fichier|-] [" + OUTPUT_OPTION + " fichier] [" + THREADS_OPTION + " n]");
+        return 2;
+    }
+}
@@ -0,0 +1,320 @@
+package com.calculator.mycalculator.batch;
+
+import com.calculator.mycalculator.engine.FormulaArchive;
+import com.calculator.mycalculator.engine.FormulaSweep;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Command line entry point for parameter sweeps.
+ * <p>
+ * Usage: {@code --sweep (formula | @archive[:n]) [--var x] (--range start:end:step | --column file[:n]) [--output file]}.
+ * The formula is compiled once, then evaluated for every value of the variable, either over an arithmetic range
+ * or over the n-th column (1 by default) of a CSV file ("-" for the standard input). With {@code @archive[:n]},
+ * the n-th formula (1 by default) of a file written by {@link CompileCommand} with the same variable is loaded
+ * instead, without parsing it.
+ * Each point produces one CSV line "value,result". Values are processed in fixed-size blocks, so memory usage does not depend on the number of points.
+ */
+public final class SweepCommand {
+
+    /**
+     * Option that selects the sweep mode.
+     */
+    public static final String SWEEP_OPTION = "--sweep";
+
+    /**
+     * Prefix of a formula argument naming a compiled workload rather than a formula.
+     */
+    private static final String ARCHIVE_PREFIX = "@";
+
+    /**
+     * Number of points evaluated together.
+     */
+    private static final int BLOCK_SIZE = 8192;
+
+    /**
+     * Maximum number of points of a range: beyond 2^53, the indices of the points are no longer exact in
+     * {@code double}, and neither are their values {@code start + i * step}.
+     */
+    static final long MAX_POINTS = 1L << 53;
+
+    private SweepCommand() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Checks whether the command line asks for the sweep mode.
+     *
+     * @param args the command line arguments
+     * @return true if the first argument is {@value #SWEEP_OPTION}
+     */
+    public static boolean isSweep(String @NotNull [] args) {
+        return args.length > 0 && args[0].equals(SWEEP_OPTION);
+    }
+
+    /**
+     * Runs the sweep mode with the given command line arguments.
+     *
+     * @param args the command line arguments, starting with {@value #SWEEP_OPTION}
+     * @return the process exit code: 0 on success, 1 on an I/O error, 2 on invalid arguments
+     */
+    public static int run(String @NotNull [] args) {
+        if (args.length < 2) {
+            return usage("Formule manquante");
+        }
+        String formulaText = args[1];
+        String variable = FormulaSweep.DEFAULT_VARIABLE;
+        String range = null;
+        String column = null;
+        String output = null;
+
+        // Parse the arguments that follow the formula
+        for (int i = 2; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                return usage("Argument invalide : " + args[i]);
+            }
+            switch (args[i]) {
+                case "--var" -> variable = args[++i];
+                case "--range" -> range = args[++i];
+                case "--column" -> column = args[++i];
+                case "--output" -> output = args[++i];
+                default -> {
+                    return usage("Argument invalide : " + args[i]);
+                }
+            }
+        }
+        if ((range == null) == (column == null)) {
+            return usage("Indiquez soit --range, soit --column");
+        }
+
+        // Compile the formula once for the whole sweep, or load it already compiled
+        FormulaSweep sweep;
+        if (formulaText.startsWith(ARCHIVE_PREFIX)) {
+            try {
+                sweep = loadSweep(formulaText.substring(ARCHIVE_PREFIX.length()), variable);
+            } catch (IOException e) {
+                System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+                return 1;
+            } catch (IllegalArgumentException e) {
+                return usage("Formule compilée invalide : " + e.getMessage());
+            }
+        } else {
+            try {
+                sweep = new FormulaSweep(formulaText, variable);
+            } catch (IllegalArgumentException e) {
+                return usage("Formule invalide : " + formulaText);
+            }
+        }
+
+        try (Writer writer = BatchCommand.openWriter(output)) {
+            if (range != null) {
+                String[] bounds = range.split(":");
+                if (bounds.length != 3) {
+                    return usage("Intervalle invalide : " + range);
+                }
+                double start, end, step;
+                try {
+                    start = Double.parseDouble(bounds[0]);
+                    end = Double.parseDouble(bounds[1]);
+                    step = Double.parseDouble(bounds[2]);
+                } catch (NumberFormatException e) {
+                    return usage("Intervalle invalide : " + range);
+                }
+                if (!Double.isFinite(start) || !Double.isFinite(end) || !Double.isFinite(step)) {
+                    return usage("Intervalle invalide : " + range);
+                }
+                if (step == 0 || (end - start) / step < 0) {
+                    return usage("Pas invalide : " + range);
+                }
+                if (pointCount(start, end, step) < 0) {
+                    return usage("Trop de points (" + MAX_POINTS + " au plus) : " + range);
+                }
+                sweepRange(sweep, start, end, step, writer);
+            } else {
+                int separator = column.lastIndexOf(':');
+                int index = 0;
+                String file = column;
+                if (separator > 0 && BatchCommand.parsePositive(column.substring(separator + 1)) > 0) {
+                    index = BatchCommand.parsePositive(column.substring(separator + 1)) - 1;
+                    file = column.substring(0, separator);
+                }
+                try (BufferedReader reader = BatchCommand.openReader(file)) {
+                    sweepColumn(sweep, reader, index, writer);
+                }
+            }
+            writer.flush();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée/sortie : " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Loads a formula of a compiled workload.
+     *
+     * @param archive  the archive file, followed by ":n" to pick its n-th formula rather than the first one
+     * @param variable the variable of the sweep, which must be the only variable of the archive
+     * @return the sweep of the formula
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an archive with this variable, or has no n-th formula
+     */
+    static @NotNull FormulaSweep loadSweep(@NotNull String archive, @NotNull String variable) throws IOException {
+        int separator = archive.lastIndexOf(':');
+        int index = 1;
+        String file = archive;
+        if (separator > 0 && BatchCommand.parsePositive(archive.substring(separator + 1)) > 0) {
+            index = BatchCommand.parsePositive(archive.substring(separator + 1));
+            file = archive.substring(0, separator);
+        }
+        FormulaArchive formulas = FormulaArchive.open(Path.of(file));
+        if (!Arrays.equals(formulas.getVariableNames(), new String[]{variable})) {
+            throw new IllegalArgumentException("variables " + Arrays.toString(formulas.getVariableNames())
+                    + " instead of [" + variable + "]");
+        }
+        for (int i = 0; i < index; i++) {
+            if (!formulas.next()) {
+                throw new IllegalArgumentException("no formula #" + index);
+            }
+        }
+        // A formula the native compiler did not handle is parsed as usual
+        return formulas.isProgram() ? new FormulaSweep(formulas.toCompiledFormula())
+                : new FormulaSweep(formulas.text(), variable);
+    }
+
+    /**
+     * Evaluates the sweep over the arithmetic range {@code start, start + step, ...} up to {@code end} included.
+     * Each value is computed as {@code start + i * step}, so rounding errors do not accumulate.
+     *
+     * @param sweep  the compiled formula
+     * @param start  the first value
+     * @param end    the last value, included if reached exactly
+     * @param step   the distance between two values
+     * @param writer the destination of the results
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the range has more than {@link #MAX_POINTS} points
+     */
+    static void sweepRange(@NotNull FormulaSweep sweep, double start, double end, double step,
+                           @NotNull Writer writer) throws IOException {
+        long points = pointCount(start, end, step);
+        if (points < 0) {
+            throw new IllegalArgumentException("Too many points: " + start + ":" + end + ":" + step);
+        }
+        ResultWriter results = new ResultWriter(writer);
+        double[] input = new double[BLOCK_SIZE];
+        double[] output = new double[BLOCK_SIZE];
+        boolean[] failures = new boolean[BLOCK_SIZE];
+        for (long first = 0; first < points; first += BLOCK_SIZE) {
+            int count = (int) Math.min(BLOCK_SIZE, points - first);
+            for (int i = 0; i < count; i++) {
+                input[i] = start + (first + i) * step;
+            }
+            sweep.evaluate(input, output, failures, count);
+            writeBlock(input, output, failures, count, results);
+        }
+        results.flush();
+    }
+
+    /**
+     * Counts the points of the range {@code start, start + step, ...} up to {@code end} included, for a step
+     * leading from the start to the end.
+     *
+     * @param start the first value
+     * @param end   the last value, included if reached exactly
+     * @param step  the distance between two values
+     * @return the number of points, or -1 if there are more than {@link #MAX_POINTS}, e.g. when the distance from
+     * the start to the end overflows to infinity
+     */
+    static long pointCount(double start, double end, double step) {
+        double intervals = Math.floor((end - start) / step);
+        // Also false for an infinite or NaN number of intervals, which the cast would wrap or turn into 0
+        return intervals < MAX_POINTS ? (long) intervals + 1 : -1;
+    }
+
+    /**
+     * Evaluates the sweep over one column of a CSV input. Lines whose column is not a number, such as a header,
+     * are skipped.
+     *
+     * @param sweep  the compiled formula
+     * @param reader the CSV input
+     * @param index  the zero-based index of the column holding the values
+     * @param writer the destination of the results
+     * @throws IOException if reading or writing fails
+     */
+    static void sweepColumn(@NotNull FormulaSweep sweep, @NotNull BufferedReader reader, int index,
+                            @NotNull Writer writer) throws IOException {
+        ResultWriter results = new ResultWriter(writer);
+        double[] input = new double[BLOCK_SIZE];
+        double[] output = new double[BLOCK_SIZE];
+        boolean[] failures = new boolean[BLOCK_SIZE];
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] cells = line.split(",", index + 2);
+            if (cells.length <= index) {
+                continue;
+            }
+            try {
+                input[count] = Double.parseDouble(cells[index].trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            // Evaluate and write the block once it is full
+            if (++count == BLOCK_SIZE) {
+                sweep.evaluate(input, output, failures, count);
+                writeBlock(input, output, failures, count, results);
+                count = 0;
+            }
+        }
+        sweep.evaluate(input, output, failures, count);
+        writeBlock(input, output, failures, count, results);
+        results.flush();
+    }
+
+    /**
+     * Writes a block of evaluated points as CSV lines. Points whose evaluation failed, such as a division by zero,
+     * are written as "Erreur"; the other results are written as the display and {@code --batch} write them,
+     * {@code NaN} and {@code Infinity} included. Numbers are formatted straight into the output buffer, without
+     * creating a string per point.
+     *
+     * @param input    the values of the variable
+     * @param output   the results
+     * @param failures whether the evaluation of each point failed
+     * @param count    the number of points to write
+     * @param results  the destination of the results
+     * @throws IOException if writing fails
+     */
+    private static void writeBlock(double @NotNull [] input, double @NotNull [] output, boolean @NotNull [] failures,
+                                   int count, @NotNull ResultWriter results) throws IOException {
+        StringBuilder buffer = results.buffer();
+        for (int i = 0; i < count; i++) {
+            NumberFormatter.formatTo(input[i], buffer).append(',');
+            if (failures[i]) {
+                buffer.append(NumberFormatter.ERROR_TEXT);
+            } else {
+                NumberFormatter.formatTo(output[i], buffer);
+            }
+            results.endLine();
+        }
+    }
+
+    /**
+     * Prints an error message followed by the usage of the sweep mode.
+     *
+     * @param message the error message
+     * @return the exit code for invalid arguments
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Utilisation : " + SWEEP_OPTION
+                + " (formule | @fichier[:n]) [--var x] (--range début:fin:pas | --column fichier[:colonne]) [--output fichier]");
+        return 2;
+    }
+}
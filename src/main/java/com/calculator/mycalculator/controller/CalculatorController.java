@@ -1,438 +1,683 @@
 package com.calculator.mycalculator.controller;
 
-import javafx.fxml.FXML;
-import javafx.fxml.Initializable;
+import com.calculator.mycalculator.engine.BackgroundEvaluator;
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.engine.UnaryMemo;
+import com.calculator.mycalculator.history.HistoryEntry;
+import com.calculator.mycalculator.history.HistoryIndex;
+import com.calculator.mycalculator.history.HistoryItems;
+import com.calculator.mycalculator.history.HistoryLog;
+import com.calculator.mycalculator.metrics.KeypressEvent;
+import com.calculator.mycalculator.metrics.Metrics;
+import com.calculator.mycalculator.model.CalculatorState;
+import com.calculator.mycalculator.model.InputQueue;
+import com.calculator.mycalculator.model.KeyRecorder;
+import com.calculator.mycalculator.model.Keypad;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.event.ActionEvent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
-import net.objecthunter.exp4j.Expression;
-import net.objecthunter.exp4j.ExpressionBuilder;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.net.URL;
-import java.util.ResourceBundle;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Controller for the Calculator application.
  * This class manages the logic and user interaction for the calculator's user interface.
- * It handles button clicks, performs the calculations, and updates the display.
+ * It handles button clicks, keyboard input and pasted text, performs the calculations, and updates the display.
+ * <p>
+ * Every key goes through one {@link InputQueue}: the keys queued since the last frame are pressed together
+ * at the next animation pulse, and the display is updated once for all of them, so that a long paste or
+ * a held key costs one update per frame rather than one per key.
  */
-public class CalculatorController implements Initializable {
+public class CalculatorController {
+
+    /**
+     * Maximum number of calculations listed by a search of the history.
+     */
+    private static final int MAX_MATCHES = 200;
+
+    /**
+     * Texts of the preview while the result of the equal button is computed, and once it took too long.
+     */
+    private static final String COMPUTING_TEXT = "Calcul en cours…";
+    private static final String TIMEOUT_TEXT = "Calcul trop long, interrompu";
+
+    /**
+     * Time the keys of a single pulse may take: half of a 60 Hz frame. The keys left are pressed at the next pulse.
+     */
+    private static final long PULSE_BUDGET_NANOS = 8_000_000L;
+
+    /**
+     * Shortcut pasting the clipboard into the formula.
+     */
+    private static final KeyCombination PASTE = new KeyCodeCombination(KeyCode.V, KeyCombination.SHORTCUT_DOWN);
 
     /**
      * UI Elements.
-     * These are the FXML-injected UI components that represent the calculator's user interface.
+     * These are the components of the {@link CalculatorView} that the controller updates.
+     */
+    private final TextField viewer; // TextField that displays the current input or result.
+
+    private final Label formula; // Label that displays the current formula being entered by the user.
+
+    private final Label preview; // Label that displays the live result of the formula as it is typed.
+
+    private final TextField search; // Search field of the history.
+
+    private final ListView<HistoryEntry> history; // List of the past calculations, newest first.
+
+    /**
+     * Headless state of the calculator: the displayed value and the formula being built.
+     * Every button is forwarded to it, then the UI is refreshed from it.
+     */
+    private CalculatorState state = new CalculatorState();
+
+    /**
+     * Number of results of 10^x memoized by the state, or 0 if they are not memoized.
      */
-    @FXML
-    private TextField viewer; // TextField that displays the current input or result.
+    private int memoCapacity;
 
-    @FXML
-    private Label formula; // Label that displays the current formula being entered by the user.
+    /**
+     * Recorder of the keys of the session, or null if the session is not recorded.
+     */
+    private KeyRecorder recorder;
 
-    @FXML
-    private Button btnOne, btnTwo, btnThree, btnFour, btnFive, btnSix, btnSeven, btnEight, btnNine, btnZero, btnDelete, btnPlusMinus, btnPoint, btnReset, btnPlus, btnMinus, btnMultiply, btnDivide, btnPi, btnSqrt, btnSquare, btnInverse, btnExponent, btnEqual; // Buttons for calculator operations.
+    /**
+     * Keys waiting for the next pulse, or for the result of the equal key ahead of them.
+     */
+    private final InputQueue input = new InputQueue();
 
     /**
-     * Stores the current formula being built by the user.
-     * This is updated as the user interacts with the calculator's buttons.
+     * Whether the state changed since the UI was last refreshed, e.g. when a result came back.
      */
-    private final StringBuilder currentFormula = new StringBuilder();
+    private boolean dirty;
 
     /**
-     * Maximum number of digits allowed for the formula input.
-     * If this limit is exceeded, the user will be notified with an alert.
+     * Whether an alert about the digit limit is about to be shown, so that a burst of refused digits shows only one.
      */
-    private static final int MAX_DIGITS = 22;
+    private boolean alertPending;
 
     /**
-     * Initializes the event handlers for all buttons in the calculator UI.
-     * This method sets up the actions triggered when the user clicks on the calculator's buttons.
+     * Evaluates the formula of the equal button off the JavaFX thread, so that the window stays responsive
+     * whatever the cost of the formula. Results come back on the JavaFX thread.
+     */
+    private final BackgroundEvaluator evaluator = new BackgroundEvaluator(Platform::runLater, BackgroundEvaluator.DEFAULT_BUDGET);
+
+    /**
+     * Persistent history shown by the history panel, or null if the calculator runs without history.
+     */
+    private HistoryLog historyLog;
+    private HistoryItems historyItems;
+
+    /**
+     * Search index of the history, or null while it is built in the background.
+     */
+    private HistoryIndex historyIndex;
+
+    /**
+     * Ids of the calculations found by the last search.
+     */
+    private final int[] matchIds = new int[MAX_MATCHES];
+
+    /**
+     * When metrics are on, time of the first key pressed since the last layout pass, or 0,
+     * and its JFR event.
+     */
+    private long pendingKeypressNanos;
+    private KeypressEvent pendingKeypressEvent;
+
+    /**
+     * Creates the controller of a calculator window, and sets up the event handlers for all its buttons.
      * Each button is associated with a specific handler method.
      *
-     * @param location the location used to resolve relative paths for the root object, or null if the location is not used
-     * @param resources the resources used to localize the root object, or null if the resources are not used
-     */
-    @Override
-    public void initialize(URL location, ResourceBundle resources) {
-        btnOne.setOnAction(event -> handleButtonClick("1"));
-        btnTwo.setOnAction(event -> handleButtonClick("2"));
-        btnThree.setOnAction(event -> handleButtonClick("3"));
-        btnFour.setOnAction(event -> handleButtonClick("4"));
-        btnFive.setOnAction(event -> handleButtonClick("5"));
-        btnSix.setOnAction(event -> handleButtonClick("6"));
-        btnSeven.setOnAction(event -> handleButtonClick("7"));
-        btnEight.setOnAction(event -> handleButtonClick("8"));
-        btnNine.setOnAction(event -> handleButtonClick("9"));
-        btnZero.setOnAction(event -> handleButtonClick("0"));
-        btnDelete.setOnAction(event -> handleDeleteButtonClick());
-        btnPlusMinus.setOnAction(event -> handlePlusMinusButtonClick());
-        btnPoint.setOnAction(event -> handlePointButtonClick());
-        btnReset.setOnAction(event -> handleResetButtonClick());
-        btnPlus.setOnAction(event -> handleOperatorButtonClick("+"));
-        btnMinus.setOnAction(event -> handleOperatorButtonClick("-"));
-        btnMultiply.setOnAction(event -> handleOperatorButtonClick("*"));
-        btnDivide.setOnAction(event -> handleOperatorButtonClick("/"));
-        btnPi.setOnAction(event -> handlePiButtonClick());
-        btnSqrt.setOnAction(event -> handleSqrtButtonClick());
-        btnSquare.setOnAction(event -> handleSquareButtonClick());
-        btnInverse.setOnAction(event -> handleInverseButtonClick());
-        btnExponent.setOnAction(event -> handleExponentButtonClick());
-        btnEqual.setOnAction(event -> handleEqualButtonClick());
-    }
-
-    /**
-     * Handles the button click event, updating the displayed text and formula.
-     * <p>
-     * This method is triggered when a button on the calculator is clicked. It appends
-     * the clicked value to the current displayed text and updates the formula being built.
-     * If the formula is empty and the clicked value is "0", the method does nothing. If the
-     * current displayed text reaches the maximum number of digits (MAX_DIGITS), an alert is shown.
-     *
-     * @param value The value of the button that was clicked (typically a number or operator).
+     * @param view the layout of the window
      */
-    private void handleButtonClick(String value) {
-        String currentText = viewer.getText();
+    public CalculatorController(@NotNull CalculatorView view) {
+        viewer = view.viewer;
+        formula = view.formula;
+        preview = view.preview;
+        search = view.search;
+        history = view.history;
+
+        view.btnOne.setOnAction(event -> handleButtonClick("1"));
+        view.btnTwo.setOnAction(event -> handleButtonClick("2"));
+        view.btnThree.setOnAction(event -> handleButtonClick("3"));
+        view.btnFour.setOnAction(event -> handleButtonClick("4"));
+        view.btnFive.setOnAction(event -> handleButtonClick("5"));
+        view.btnSix.setOnAction(event -> handleButtonClick("6"));
+        view.btnSeven.setOnAction(event -> handleButtonClick("7"));
+        view.btnEight.setOnAction(event -> handleButtonClick("8"));
+        view.btnNine.setOnAction(event -> handleButtonClick("9"));
+        view.btnZero.setOnAction(event -> handleButtonClick("0"));
+        view.btnDelete.setOnAction(event -> handleDeleteButtonClick());
+        view.btnPlusMinus.setOnAction(event -> handlePlusMinusButtonClick());
+        view.btnPoint.setOnAction(event -> handlePointButtonClick());
+        view.btnReset.setOnAction(event -> handleResetButtonClick());
+        view.btnPlus.setOnAction(event -> handleOperatorButtonClick("+"));
+        view.btnMinus.setOnAction(event -> handleOperatorButtonClick("-"));
+        view.btnMultiply.setOnAction(event -> handleOperatorButtonClick("*"));
+        view.btnDivide.setOnAction(event -> handleOperatorButtonClick("/"));
+        view.btnPi.setOnAction(event -> handlePiButtonClick());
+        view.btnSqrt.setOnAction(event -> handleSqrtButtonClick());
+        view.btnSquare.setOnAction(event -> handleSquareButtonClick());
+        view.btnInverse.setOnAction(event -> handleInverseButtonClick());
+        view.btnExponent.setOnAction(event -> handleExponentButtonClick());
+        view.btnEqual.setOnAction(event -> handleEqualButtonClick());
+
+        // A double click on a past calculation recalls its result
+        history.setCellFactory(list -> new HistoryCell());
+        history.setOnMouseClicked(event -> {
+            if (event.getClickCount() == 2) {
+                handleHistoryClick();
+            }
+        });
 
-        // If the current formula is empty and the value is "0", do nothing
-        if (currentFormula.isEmpty() && value.equals("0")) {
-            return;
-        }
+        // The history is searched as the query is typed
+        search.textProperty().addListener((observable, oldQuery, query) -> handleSearch(query));
 
-        // Only append the value if the current text has not exceeded MAX_DIGITS
-        if (currentText.length() < MAX_DIGITS) {
-            // If the current text is "0", replace it with the new value
-            if (currentText.equals("0")) {
-                viewer.setText(value);
-            } else {
-                viewer.appendText(value);
+        // The keyboard is listened to, and the keys are timed if metrics are on, once the window is shown
+        viewer.sceneProperty().addListener((observable, oldScene, scene) -> {
+            if (scene != null) {
+                installInput(scene);
+                if (Metrics.ENABLED) {
+                    installMetrics(scene);
+                }
             }
-
-            // Append the clicked value to the formula
-            currentFormula.append(value);
-            formula.setText(currentFormula.toString());
-        } else {
-            // Show an alert if the maximum number of digits is exceeded
-            showAlert();
-        }
+        });
     }
 
     /**
-     * Handles the delete button click event, updating the displayed text and formula.
+     * Queues the keys typed on the keyboard and the text pasted with the paste shortcut, unless the search field
+     * has the focus, and presses the queued keys at each pulse, before the layout pass.
      * <p>
-     * This method is triggered when the delete button on the calculator is clicked.
-     * It removes the last character from the displayed text and the formula. Special
-     * cases are handled when the text ends with a decimal point or when the text is
-     * a single character or negative single character. If the text becomes "0", it
-     * resets the displayed text and the formula appropriately.
+     * Besides the characters translated by {@link Keypad#fromCharacter(char)}, Backspace deletes a digit,
+     * and Escape and Delete reset the calculator.
+     *
+     * @param scene the scene of the window
      */
-    private void handleDeleteButtonClick() {
-        String currentText = viewer.getText();
-
-        // Only proceed if the current text is not "0"
-        if (!currentText.equals("0")) {
-            if (currentText.endsWith(".")) {
-                String newText = currentText.substring(0, currentText.length() - 1);
-                viewer.setText(newText);
-                currentFormula.deleteCharAt(currentFormula.length() - 1);
-
-                // If the result is "-0" or "0", reset the display and formula
-                if (newText.equals("-0") || newText.equals("0")) {
-                    viewer.setText("0");
-                    if (currentFormula.length() > 2) {
-                        currentFormula.deleteCharAt(currentFormula.length() - 1);
-                    } else {
-                        currentFormula.setLength(0);
-                    }
-                }
-            } else {
-                // Handle the case where the current text has one or two characters
-                if (currentText.length() == 1 || (currentText.length() == 2 && currentText.contains("-"))) {
-                    viewer.setText("0");
-                    if (currentFormula.length() > 2 && currentText.length() == 2) {
-                        currentFormula.delete(currentFormula.length() - 2, currentFormula.length());
-                    } else if (currentFormula.length() > 1 && currentText.length() == 1) {
-                        currentFormula.deleteCharAt(currentFormula.length() - 1);
-                    } else {
-                        currentFormula.setLength(0);
+    private void installInput(@NotNull Scene scene) {
+        scene.addEventFilter(KeyEvent.KEY_TYPED, event -> {
+            if (scene.getFocusOwner() == search || event.isShortcutDown() || event.getCharacter().length() != 1) {
+                return;
+            }
+            char key = Keypad.fromCharacter(event.getCharacter().charAt(0));
+            if (key != 0) {
+                event.consume();
+                keyPressed(String.valueOf(key));
+                submit(key);
+            }
+        });
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (scene.getFocusOwner() == search) {
+                return;
+            }
+            if (PASTE.match(event)) {
+                event.consume();
+                String text = Clipboard.getSystemClipboard().getString();
+                if (text != null) {
+                    keyPressed(event.getCode().getName());
+                    cancelEvaluation();
+                    if (input.submitText(text) > 0) {
+                        Platform.requestNextPulse();
                     }
-                } else {
-                    // Otherwise, just remove the last character
-                    viewer.setText(currentText.substring(0, currentText.length() - 1));
-                    currentFormula.deleteCharAt(currentFormula.length() - 1);
                 }
+            } else if (event.getCode() == KeyCode.BACK_SPACE) {
+                event.consume();
+                keyPressed(event.getCode().getName());
+                submit('d');
+            } else if (event.getCode() == KeyCode.ESCAPE || event.getCode() == KeyCode.DELETE) {
+                event.consume();
+                keyPressed(event.getCode().getName());
+                submit('c');
             }
-            // Update the formula display
-            formula.setText(currentFormula.toString());
-        }
+        });
+        scene.addPreLayoutPulseListener(this::pulse);
     }
 
     /**
-     * Handles the plus-minus button click event, toggling the sign of the displayed number.
-     * <p>
-     * This method is triggered when the plus-minus button (for switching between positive
-     * and negative) is clicked. If the current text displayed is not "0", the sign of the
-     * number is toggled: if it's positive, a minus sign is added at the beginning; if it's
-     * negative, the minus sign is removed. The formula is updated accordingly.
+     * Measures the time from each key to the layout pass that shows its effect, the last step before the frame
+     * is rendered. Keys pressed within the same frame are measured from the first one.
+     *
+     * @param scene the scene of the window
      */
-    private void handlePlusMinusButtonClick() {
-        String currentText = viewer.getText();
-
-        // Only proceed if the current text is not "0"
-        if (!currentText.equals("0")) {
-
-            // If the current text starts with a minus sign, remove it
-            if (currentText.startsWith("-")) {
-                viewer.setText(currentText.substring(1));
-                currentFormula.deleteCharAt(currentFormula.length() - currentText.length());
-            } else {
-                // Otherwise, add a minus sign at the beginning
-                viewer.setText("-" + currentText);
-                currentFormula.insert(currentFormula.length() - currentText.length(), "-");
+    private void installMetrics(@NotNull Scene scene) {
+        scene.addEventFilter(ActionEvent.ACTION,
+                event -> keyPressed(event.getSource() instanceof Button button ? button.getText() : null));
+        scene.addPostLayoutPulseListener(() -> {
+            if (pendingKeypressNanos != 0L) {
+                Metrics.KEYPRESS_TO_RENDER.recordSince(pendingKeypressNanos);
+                pendingKeypressNanos = 0L;
+                pendingKeypressEvent.commit();
+                pendingKeypressEvent = null;
             }
+        });
+    }
+
+    /**
+     * Counts a key pressed in the window and, if it is the first one since the last layout pass, starts timing it.
+     * Does nothing unless metrics are on.
+     *
+     * @param key the label of the key, or null
+     */
+    private void keyPressed(String key) {
+        if (!Metrics.ENABLED) {
+            return;
+        }
+        Metrics.keypress();
+        if (pendingKeypressNanos == 0L) {
+            pendingKeypressNanos = System.nanoTime();
+            pendingKeypressEvent = new KeypressEvent();
+            pendingKeypressEvent.begin();
+            pendingKeypressEvent.key = key;
         }
-        // Update the formula display
-        formula.setText(currentFormula.toString());
     }
 
     /**
-     * Handles the decimal point button click event, adding a decimal point to the displayed number.
-     * <p>
-     * This method is triggered when the decimal point button is clicked. If the current number
-     * does not already contain a decimal point, it adds one to the displayed text. If the current
-     * displayed number is "0", it will set the display to "0." and update the formula accordingly.
+     * Records every calculation in the given history, and shows it in the history panel.
+     *
+     * @param log the persistent history
      */
-    private void handlePointButtonClick() {
-        String currentText = viewer.getText();
-
-        // Only add a decimal point if one is not already present in the current text
-        if (!currentText.contains(".")) {
-
-            // If the current text is "0", set it to "0."
-            if (viewer.getText().equals("0")) {
-                viewer.setText("0.");
-                currentFormula.append("0.");
-            } else {
-                // Otherwise, just append the decimal point
-                viewer.appendText(".");
-                currentFormula.append(".");
+    public void setHistory(@NotNull HistoryLog log) {
+        historyLog = log;
+        historyIndex = null;
+        historyItems = new HistoryItems(log);
+        history.setItems(historyItems);
+
+        // Index the stored calculations on a virtual thread: millions of them take seconds
+        HistoryLog.Snapshot snapshot = log.snapshot();
+        Thread.ofVirtual().name("history-index").start(() -> {
+            try {
+                HistoryIndex index = new HistoryIndex(log, snapshot);
+                Platform.runLater(() -> indexBuilt(log, index));
+            } catch (IOException | UncheckedIOException e) {
+                // The history cannot be read, or was closed: it is listed but not searched
             }
+        });
+    }
+
+    /**
+     * Takes over the index built in the background, indexing the calculations recorded in the meantime,
+     * and lists the matches of the search typed while it was built.
+     *
+     * @param log   the history the index was built for
+     * @param index the index of the history
+     */
+    private void indexBuilt(@NotNull HistoryLog log, @NotNull HistoryIndex index) {
+        if (log != historyLog) {
+            return;
+        }
+        try {
+            index.update();
+        } catch (IOException | UncheckedIOException e) {
+            return;
         }
-        // Update the formula display
-        formula.setText(currentFormula.toString());
+        historyIndex = index;
+        history.setPlaceholder(null);
+        handleSearch(search.getText());
     }
 
     /**
-     * Resets the calculator's display and the current formula.
-     * <p>
-     * This method is triggered when the reset button is clicked. It resets the displayed value to "0"
-     * and clears the current formula. The formula display is also updated to reflect the empty formula.
+     * Records the keys of the session from now on, with a checkpoint after each result, so that the session can be
+     * replayed on a headless state with {@link Keypad#replay(CalculatorState, CharSequence)}. The equal button
+     * is recorded when its result is displayed: an evaluation that is cancelled or interrupted leaves
+     * the formula unchanged, as if the button had not been pressed.
+     *
+     * @param recorder the recorder of the session, or null to stop recording
      */
-    private void handleResetButtonClick() {
-        // Reset the displayed value to "0"
-        viewer.setText("0");
+    public void setRecorder(@Nullable KeyRecorder recorder) {
+        closeRecorder();
+        this.recorder = recorder;
+    }
 
-        // Clear the current formula
-        currentFormula.setLength(0);
+    /**
+     * Writes the last checkpoint of the recorded session, if there is one, and closes its trace.
+     */
+    public void closeRecorder() {
+        if (recorder == null) {
+            return;
+        }
+        KeyRecorder closing = recorder;
+        recorder = null;
+        try (closing) {
+            closing.checkpoint(state);
+        } catch (IOException e) {
+            // The trace is a diagnostic, the keys already written are kept
+        }
+    }
 
-        // Update the formula display
-        formula.setText(currentFormula.toString());
+    /**
+     * Selects the precision mode of the calculator and starts a new calculation.
+     * <p>
+     * With a math context, results are computed with decimal arithmetic rounded to its precision,
+     * which avoids binary rounding artifacts such as 0.1 + 0.2 giving 0.30000000000000004.
+     * Without one, results are computed in {@code double}, as by default.
+     *
+     * @param mathContext the precision and rounding of the decimal mode, or null for {@code double}
+     */
+    public void setMathContext(MathContext mathContext) {
+        setEngine(new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, mathContext));
     }
 
     /**
-     * Handles the button click for an operator in the calculator.
+     * Selects the exact arithmetic mode of the calculator and starts a new calculation.
      * <p>
-     * This method is called when an operator button (e.g., +, -, *, /) is clicked. It updates the
-     * current formula by appending the operator and resets the displayed value to "0".
-     * If the previous formula ends with an operator, it removes the last operator before appending the new one.
+     * Results are then computed on fractions, e.g. 1/3 * 3 gives exactly 1, and displayed in the given notation.
+     * Formulas whose result is irrational, such as a square root of 2, are computed in {@code double}.
      *
-     * @param operator The operator to be added to the formula (e.g., "+", "-", "*", "/").
+     * @param notation the notation of the results, or null to go back to {@code double}
      */
-    private void handleOperatorButtonClick(String operator) {
-        // Get the current text from the viewer (display)
-        String currentText = viewer.getText();
+    public void setExactMode(Rational.Notation notation) {
+        setEngine(new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, notation));
+    }
 
-        // If the current text is not empty, process the operator
-        if (!currentText.isEmpty()) {
+    /**
+     * Starts a new calculation on another engine, keeping the memo of the 10^x button.
+     *
+     * @param engine the engine of the new calculation
+     */
+    private void setEngine(@NotNull CalculatorEngine engine) {
+        cancelEvaluation();
+        input.clear();
+        state = new CalculatorState(engine);
+        state.setMemo(memoCapacity, UnaryMemo.Eviction.CLOCK);
+        refresh();
+    }
 
-            // If the previous operator exists, remove it and the number before it
-            if (currentFormula.length() > 2 && isOperator(currentFormula.charAt(currentFormula.length() - 2))) {
-                currentFormula.delete(currentFormula.length() - 3, currentFormula.length());
-            }
+    /**
+     * Memoizes the results of the 10^x button, so that operands used again are not recomputed.
+     *
+     * @param capacity the number of results kept, or 0 to stop memoizing
+     * @throws IllegalArgumentException if the capacity is negative or greater than 2^30
+     */
+    public void setMemo(int capacity) {
+        state.setMemo(capacity, UnaryMemo.Eviction.CLOCK);
+        memoCapacity = capacity;
+    }
+
+    /**
+     * Queues the {@link Keypad} digit key of the button, which {@link CalculatorState} applies at the next pulse,
+     * or refuses with an alert beyond {@link CalculatorState#MAX_DIGITS} digits.
+     *
+     * @param value the digit of the button
+     */
+    private void handleButtonClick(String value) {
+        submit(value.charAt(0));
+    }
 
-            // Append the operator to the formula with surrounding spaces for readability
-            currentFormula.append(" ").append(operator).append(" ");
+    /**
+     * Queues the {@link Keypad} delete key 'd', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handleDeleteButtonClick() {
+        submit('d');
+    }
 
-            // Update the formula display
-            formula.setText(currentFormula.toString());
+    /**
+     * Queues the {@link Keypad} plus-minus key 'n', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handlePlusMinusButtonClick() {
+        submit('n');
+    }
 
-            // Reset the displayed value to "0"
-            viewer.setText("0");
-        }
+    /**
+     * Queues the {@link Keypad} decimal point key '.', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handlePointButtonClick() {
+        submit('.');
     }
 
     /**
-     * Handles the button click for the Pi (π) button in the calculator.
-     * <p>
-     * This method is called when the Pi button is clicked. It adds the value of Pi to the display and
-     * appends it to the current formula. If the display is currently showing "0", it will replace it with Pi.
+     * Queues the {@link Keypad} reset key 'c', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handleResetButtonClick() {
+        submit('c');
+    }
+
+    /**
+     * Queues the {@link Keypad} key of an operator, which {@link CalculatorState} applies at the next pulse.
+     *
+     * @param operator the operator of the button, "+", "-", "*" or "/"
+     */
+    private void handleOperatorButtonClick(String operator) {
+        submit(operator.charAt(0));
+    }
+
+    /**
+     * Queues the {@link Keypad} Pi key 'p', which {@link CalculatorState} applies at the next pulse.
      */
     private void handlePiButtonClick() {
-        // Get the string representation of Pi
-        String pi = String.valueOf(Math.PI);
-
-        // If the current display is "0", replace it with Pi
-        if (viewer.getText().equals("0")) {
-            viewer.setText(pi);
-            currentFormula.append(pi);
-            formula.setText(currentFormula.toString());
-        }
+        submit('p');
     }
 
     /**
-     * Handles the button click for the square root (√) operation in the calculator.
-     * <p>
-     * This method is called when the square root button is clicked. It calculates the square root of the
-     * current value on the display. If the value is negative, the display is reset to "0". The square root
-     * result is then displayed and added to the current formula.
+     * Queues the {@link Keypad} square root key 'r', which {@link CalculatorState} applies at the next pulse.
      */
     private void handleSqrtButtonClick() {
-        // Get the current text from the display
-        String currentText = viewer.getText();
-
-        // Parse the current text to a double
-        double value = Double.parseDouble(currentText);
-
-        // Check if the value is negative
-        if (value < 0) {
-            // Reset display to 0 and remove the last value in the formula
-            viewer.setText("0");
-            int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
-            currentFormula.delete(deleteStart, currentFormula.length());
-        } else {
-            // Calculate the square root and format the result
-            String newText = formatNumber(Math.sqrt(value));
-
-            // If the current display is not "0", update the display and the formula
-            if (!currentText.equals("0")) {
-                viewer.setText(newText);
-                int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
-                currentFormula.delete(deleteStart, currentFormula.length());
-                currentFormula.append(newText);
-            }
-        }
-        // Update the formula display
-        formula.setText(currentFormula.toString());
+        submit('r');
     }
 
     /**
-     * Handles the button click for the square (x²) operation in the calculator.
-     * <p>
-     * This method is called when the square button is clicked. It calculates the square of the
-     * current value displayed on the calculator. The result is then displayed and added to the current formula.
+     * Queues the {@link Keypad} square key 's', which {@link CalculatorState} applies at the next pulse.
      */
     private void handleSquareButtonClick() {
-        // Get the current text from the display
-        String currentText = viewer.getText();
-
-        // Parse the current text to a double
-        double value = Double.parseDouble(currentText);
+        submit('s');
+    }
 
-        // Calculate the square of the value and format the result
-        String newText = formatNumber(value * value);
+    /**
+     * Queues the {@link Keypad} inverse key 'i', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handleInverseButtonClick() {
+        submit('i');
+    }
 
-        // Update the display with the new squared value
-        viewer.setText(newText);
+    /**
+     * Queues the {@link Keypad} 10^x key 'x', which {@link CalculatorState} applies at the next pulse.
+     */
+    private void handleExponentButtonClick() {
+        submit('x');
+    }
 
-        // Update the formula and the display
-        updateFormula(currentFormula, currentText, newText);
+    /**
+     * Queues the {@link Keypad} equal key '=', whose formula is evaluated by {@link #evaluate()} at the next pulse.
+     */
+    private void handleEqualButtonClick() {
+        submit('=');
     }
 
     /**
-     * Handles the button click for the inverse (1/x) operation in the calculator.
+     * Evaluates the current formula for the equal key.
      * <p>
-     * This method is called when the inverse button is clicked. It calculates the inverse (1 divided by the current value)
-     * of the number displayed on the calculator. The result is then displayed and added to the current formula.
+     * The mathematical expression represented by the current formula is evaluated off the JavaFX thread, and
+     * the result is displayed when it comes back, before the keys queued behind the equal key are pressed.
+     * If the formula is invalid, an error message is shown. While a slow evaluation runs, the preview shows that
+     * the result is being computed; any other key cancels it and applies to the formula as it was, and an evaluation
+     * exceeding the time budget is interrupted, leaving the formula unchanged.
+     *
+     * @return true if an evaluation started, false if the formula is empty
      */
-    private void handleInverseButtonClick() {
-        // Get the current text from the display
-        String currentText = viewer.getText();
-
-        // Check if the current value is not 0 to avoid division by zero
-        if (!currentText.equals("0")) {
-            // Parse the current text to a double
-            double value = Double.parseDouble(currentText);
+    private boolean evaluate() {
+        String formulaText = state.getFormula().trim();
+        if (formulaText.isEmpty()) {
+            return false;
+        }
+        evaluator.evaluate(state.getEngine(), formulaText, new BackgroundEvaluator.Callback() {
+            @Override
+            public void computing() {
+                preview.setText(COMPUTING_TEXT);
+            }
 
-            // Calculate the inverse of the value and format the result
-            String newText = formatNumber(1 / value);
+            @Override
+            public void completed(@NotNull String result) {
+                state.applyResult(result);
+                if (recorder != null) {
+                    recorder.press('=');
+                    checkpoint();
+                }
+                if (historyItems != null) {
+                    record(new HistoryEntry(System.currentTimeMillis(), formulaText, state.getDisplay()));
+                }
+                // The result is displayed at the next pulse, with the keys that waited for it
+                dirty = true;
+                Platform.requestNextPulse();
+            }
 
-            // Update the display with the inverse result
-            viewer.setText(newText);
+            @Override
+            public void timedOut() {
+                preview.setText(TIMEOUT_TEXT);
+                if (!input.isEmpty()) {
+                    Platform.requestNextPulse();
+                }
+            }
+        });
+        return true;
+    }
 
-            // Update the formula and the display
-            updateFormula(currentFormula, currentText, newText);
+    /**
+     * Handles a double click on the history panel, replacing the displayed number with the result
+     * of the selected calculation.
+     */
+    private void handleHistoryClick() {
+        HistoryEntry entry = history.getSelectionModel().getSelectedItem();
+        if (entry != null) {
+            cancelEvaluation();
+            input.submit(Keypad.RECALL_START + entry.result() + Keypad.RECALL_END);
+            Platform.requestNextPulse();
         }
     }
 
     /**
-     * Handles the button click for the exponentiation operation (10^x) in the calculator.
+     * Handles a change of the search field, listing the calculations matching the query, newest first,
+     * or the whole history if the query is blank.
      * <p>
-     * This method is called when the exponent button (10^x) is clicked. It calculates the exponentiation of 10 raised
-     * to the power of the current value displayed on the calculator. The result is then displayed and added to the current formula.
+     * The index is built in the background from startup on, then each calculation is indexed as it is recorded,
+     * and a search only reads the matches it lists. Until the index is ready, the list is empty and says so.
+     *
+     * @param query the text of the search field
      */
-    private void handleExponentButtonClick() {
-        // Get the current text from the display
-        String currentText = viewer.getText();
-
-        // Check if the current value is not 0 to avoid invalid operations
-        if (!currentText.equals("0")) {
-            // Parse the current text to a double
-            double value = Double.parseDouble(currentText);
-
-            // Calculate 10 raised to the power of the current value and format the result
-            String newText = formatNumber(Math.pow(10, value));
+    private void handleSearch(String query) {
+        if (historyItems == null) {
+            return;
+        }
+        if (query == null || query.isBlank()) {
+            history.setItems(historyItems);
+            return;
+        }
+        if (historyIndex == null) {
+            history.setPlaceholder(new Label("Indexation de l'historique…"));
+            history.setItems(FXCollections.emptyObservableList());
+            return;
+        }
+        try {
+            int count = historyIndex.search(query, matchIds);
+            List<HistoryEntry> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                matches.add(historyLog.get(matchIds[i]));
+            }
+            history.setItems(FXCollections.observableList(matches));
+        } catch (IOException | UncheckedIOException e) {
+            // The history cannot be read: nothing is found
+            history.setItems(FXCollections.emptyObservableList());
+        }
+    }
 
-            // Update the display with the calculated result
-            viewer.setText(newText);
+    /**
+     * Appends a calculation to the history. The history is a convenience: a calculation that cannot be recorded
+     * (e.g. a formula too large for the log) is still displayed.
+     *
+     * @param entry the calculation
+     */
+    private void record(@NotNull HistoryEntry entry) {
+        try {
+            long id = historyItems.append(entry);
+            if (historyIndex != null) {
+                historyIndex.add(id, entry);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // The calculation is simply left out of the history
+            return;
+        }
 
-            // Update the formula and the display
-            updateFormula(currentFormula, currentText, newText);
+        // A search in progress lists the new calculation if it matches
+        if (!search.getText().isBlank()) {
+            handleSearch(search.getText());
         }
     }
 
     /**
-     * Handles the button click for the equal (=) operation in the calculator.
-     * <p>
-     * This method is called when the equal button is clicked. It attempts to evaluate the mathematical expression
-     * represented by the current formula, and displays the result. If the formula is invalid, an error message is shown.
+     * Queues a key for the next pulse. Any key but the equal key cancels the evaluation of the equal key,
+     * and a second equal key while the result is computed is ignored.
+     *
+     * @param key the key, encoded by {@link Keypad}
      */
-    private void handleEqualButtonClick() {
-        // Get the current formula text and trim any leading or trailing whitespace
-        String formulaText = currentFormula.toString().trim();
+    private void submit(char key) {
+        if (key != '=') {
+            cancelEvaluation();
+        } else if (evaluator.isRunning() && input.isEmpty()) {
+            return;
+        }
+        input.submit(key);
+        Platform.requestNextPulse();
+    }
 
-        // Proceed if the formula is not empty
-        if (!formulaText.isEmpty()) {
-            try {
-                // Build the expression and evaluate the result
-                Expression expression = new ExpressionBuilder(formulaText).build();
-                double result = expression.evaluate();
-
-                // Format and display the result on the viewer
-                String newText = formatNumber(result);
-                viewer.setText(newText);
-
-                // Clear the current formula and update it with the result
-                currentFormula.setLength(0);
-                currentFormula.append(newText);
-
-                // Update the formula display with the result
-                formula.setText(currentFormula.toString());
-            } catch (Exception e) {
-                // In case of an error, display "Erreur" and clear the formula
-                viewer.setText("Erreur");
-                currentFormula.setLength(0);
-                formula.setText("");
+    /**
+     * Presses the queued keys, within the time budget of a pulse, and refreshes the UI once for all of them.
+     * Keys queued behind an equal key wait for its result, which comes back at a later pulse.
+     */
+    private void pulse() {
+        if (!input.isEmpty() && !evaluator.isRunning()) {
+            long deadline = System.nanoTime() + PULSE_BUDGET_NANOS;
+            int refused = input.apply(state, recorder, deadline);
+            while (System.nanoTime() - deadline < 0 && input.pollEqual() && !evaluate()) {
+                // An equal key on an empty formula does nothing
+                refused += input.apply(state, recorder, deadline);
+            }
+            dirty = true;
+            if (!input.isEmpty() && !evaluator.isRunning()) {
+                Platform.requestNextPulse();
             }
+            // The alert waits for the pulse to end, since a dialog cannot be shown during layout
+            if (refused > 0 && !alertPending) {
+                alertPending = true;
+                Platform.runLater(this::showAlert);
+            }
+        }
+        if (dirty) {
+            dirty = false;
+            refresh();
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the recorded session. The recording is a diagnostic: it stops if the trace cannot
+     * be written, and the calculator goes on.
+     */
+    private void checkpoint() {
+        try {
+            recorder.checkpoint(state);
+        } catch (IOException e) {
+            closeRecorder();
         }
     }
 
+    /**
+     * Stops the evaluation of the equal button, if one is running: its result is not displayed anymore.
+     */
+    private void cancelEvaluation() {
+        evaluator.cancel();
+    }
+
     /**
      * Displays an alert when the maximum number of digits is reached in the calculator input.
      * <p>
@@ -440,6 +685,8 @@ public class CalculatorController implements Initializable {
      * informing the user that they have reached the digit limit and cannot enter more.
      */
     private void showAlert() {
+        alertPending = false;
+
         // Create a warning alert with a message and an OK button
         Alert alert = new Alert(Alert.AlertType.WARNING, "Limite de chiffres atteinte", ButtonType.OK);
 
@@ -447,58 +694,34 @@ public class CalculatorController implements Initializable {
         alert.setTitle("Alerte");
 
         // Set the header text, which will inform the user about the digit limit
-        alert.setHeaderText("Vous ne pouvez pas entrer plus de " + MAX_DIGITS + " chiffres.");
+        alert.setHeaderText("Vous ne pouvez pas entrer plus de " + CalculatorState.MAX_DIGITS + " chiffres.");
 
         // Display the alert and wait for the user to click "OK"
         alert.showAndWait();
     }
 
     /**
-     * Checks if the given character is a valid operator (+, -, *, /).
-     * <p>
-     * This method is used to verify if the provided character represents a mathematical operator.
-     * It returns true if the character is one of the valid operators: +, -, *, or /.
-     *
-     * @param operator the character to check
-     * @return true if the character is a valid operator, false otherwise
+     * Copies the displayed value, the formula and the live preview of the result from the state to the UI.
      */
-    private boolean isOperator(char operator) {
-        return operator == '+' || operator == '-' || operator == '*' || operator == '/';
-    }
-
-    /**
-     * Formats a number as a string, removing the decimal point if the number is an integer.
-     * <p>
-     * This method checks if the provided number is an integer by comparing it to its casted integer
-     * value. If the number is an integer, it is returned as an integer string (without decimals).
-     * If the number has a decimal part, it is returned as a floating-point string.
-     *
-     * @param number the number to format
-     * @return a string representing the formatted number
-     */
-    private @NotNull String formatNumber(double number) {
-        if (number == (int) number) {
-            return String.valueOf((int) number);
-        } else {
-            return String.valueOf(number);
+    private void refresh() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        viewer.setText(state.getDisplay());
+        formula.setText(state.getFormula());
+        preview.setText(state.getPreview());
+        if (Metrics.ENABLED) {
+            Metrics.UI_UPDATE.recordSince(start);
         }
     }
 
     /**
-     * Updates the formula by removing the previous value and appending the new result.
-     * This method also updates the formula display.
-     *
-     * @param currentFormula the StringBuilder holding the current formula
-     * @param currentText the previous text (value to be replaced in the formula)
-     * @param newText the new value to append to the formula
-     */
-    private void updateFormula(@NotNull StringBuilder currentFormula, @NotNull String currentText, String newText) {
-        // Remove the previous value from the formula and append the new result
-        int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
-        currentFormula.delete(deleteStart, currentFormula.length());
-        currentFormula.append(newText);
-
-        // Update the formula display
-        formula.setText(currentFormula.toString());
+     * Cell of the history panel, showing a calculation as "formula = result".
+     */
+    private static final class HistoryCell extends ListCell<HistoryEntry> {
+
+        @Override
+        protected void updateItem(HistoryEntry entry, boolean empty) {
+            super.updateItem(entry, empty);
+            setText(empty || entry == null ? null : entry.formula() + " = " + entry.result());
+        }
     }
 }
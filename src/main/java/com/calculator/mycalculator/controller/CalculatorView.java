@@ -0,0 +1,153 @@
+package com.calculator.mycalculator.controller;
+
+import com.calculator.mycalculator.history.HistoryEntry;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Control;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.AnchorPane;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Layout of the calculator window, built in code.
+ * <p>
+ * The window is small and fixed, so it is created directly rather than loaded from FXML: this avoids parsing XML
+ * and creating the controls and injecting the controller by reflection at startup, and keeps the
+ * {@code javafx.fxml} module out of the runtime image. The ids are those used by the stylesheet.
+ */
+public final class CalculatorView extends AnchorPane {
+
+    /**
+     * Size of the keypad buttons.
+     */
+    private static final double BUTTON_WIDTH = 60.0;
+    private static final double BUTTON_HEIGHT = 50.0;
+
+    /**
+     * Displays the formula at the top of the window.
+     */
+    final Label formula = new Label();
+
+    /**
+     * Main display area for results and calculations.
+     */
+    final TextField viewer = new TextField("0");
+
+    /**
+     * Live preview of the result while the formula is typed.
+     */
+    final Label preview = new Label();
+
+    /**
+     * Scientific calculation buttons.
+     */
+    final Button btnExponent = button("btnExponent", "10^x", 13.0, 90.0);
+    final Button btnPi = button("btnPi", "π", 78.0, 90.0);
+    final Button btnReset = button("btnReset", "C", 143.0, 90.0);
+    final Button btnDelete = button("btnDelete", "⌫", 208.0, 90.0);
+
+    /**
+     * Mathematical operation buttons.
+     */
+    final Button btnInverse = button("btnInverse", "1/x", 13.0, 145.0);
+    final Button btnSquare = button("btnSquare", "x²", 78.0, 145.0);
+    final Button btnSqrt = button("btnSqrt", "²√x", 143.0, 145.0);
+    final Button btnDivide = button("btnDivide", "÷", 208.0, 145.0);
+
+    /**
+     * Number buttons.
+     */
+    final Button btnSeven = button("btnSeven", "7", 13.0, 200.0);
+    final Button btnEight = button("btnEight", "8", 78.0, 200.0);
+    final Button btnNine = button("btnNine", "9", 143.0, 200.0);
+    final Button btnMultiply = button("btnMultiply", "×", 208.0, 200.0);
+
+    final Button btnFour = button("btnFour", "4", 13.0, 255.0);
+    final Button btnFive = button("btnFive", "5", 78.0, 255.0);
+    final Button btnSix = button("btnSix", "6", 143.0, 255.0);
+    final Button btnMinus = button("btnMinus", "-", 208.0, 255.0);
+
+    final Button btnOne = button("btnOne", "1", 13.0, 310.0);
+    final Button btnTwo = button("btnTwo", "2", 78.0, 310.0);
+    final Button btnThree = button("btnThree", "3", 143.0, 310.0);
+    final Button btnPlus = button("btnPlus", "+", 208.0, 310.0);
+
+    /**
+     * Special function buttons.
+     */
+    final Button btnPlusMinus = button("btnPlusMinus", "±", 13.0, 365.0);
+    final Button btnZero = button("btnZero", "0", 78.0, 365.0);
+    final Button btnPoint = button("btnPoint", ",", 143.0, 365.0);
+    final Button btnEqual = button("btnEqual", "=", 208.0, 365.0);
+
+    /**
+     * Search of the history as you type: a formula prefix, #operand, =result or =min..max.
+     */
+    final TextField search = new TextField();
+
+    /**
+     * History of the past calculations, newest first; a double click recalls a result.
+     */
+    final ListView<HistoryEntry> history = new ListView<>();
+
+    /**
+     * Creates the controls of the window and lays them out.
+     */
+    public CalculatorView() {
+        setId("mainPane");
+        setPrefSize(503.0, 429.0);
+
+        place(formula, "formula", 6.0, 5.0, 271.0, 40.0);
+        formula.setWrapText(true);
+
+        place(viewer, "viewer", 6.0, 44.0, 271.0, 34.0);
+        viewer.setEditable(false);
+
+        place(preview, "preview", 6.0, 78.0, 271.0, 12.0);
+        preview.setAlignment(Pos.CENTER_RIGHT);
+
+        place(search, "search", 283.0, 5.0, 214.0, 26.0);
+        search.setPromptText("Rechercher : 12 +, #3, =10..20");
+
+        place(history, "history", 283.0, 36.0, 214.0, 388.0);
+        history.setFixedCellSize(22.0);
+
+        getChildren().addAll(formula, viewer, preview,
+                btnExponent, btnPi, btnReset, btnDelete,
+                btnInverse, btnSquare, btnSqrt, btnDivide,
+                btnSeven, btnEight, btnNine, btnMultiply,
+                btnFour, btnFive, btnSix, btnMinus,
+                btnOne, btnTwo, btnThree, btnPlus,
+                btnPlusMinus, btnZero, btnPoint, btnEqual,
+                search, history);
+    }
+
+    /**
+     * Creates a keypad button.
+     *
+     * @param id   the id of the button, used by the stylesheet
+     * @param text the label of the button
+     * @param x    the horizontal position
+     * @param y    the vertical position
+     * @return the button, not yet added to the layout
+     */
+    private static @NotNull Button button(@NotNull String id, @NotNull String text, double x, double y) {
+        Button button = new Button(text);
+        button.setMnemonicParsing(false);
+        place(button, id, x, y, BUTTON_WIDTH, BUTTON_HEIGHT);
+        return button;
+    }
+
+    /**
+     * Sets the id, the position and the preferred size of a control.
+     */
+    private static void place(@NotNull Control control, @NotNull String id,
+                              double x, double y, double width, double height) {
+        control.setId(id);
+        control.setLayoutX(x);
+        control.setLayoutY(y);
+        control.setPrefSize(width, height);
+    }
+}
@@ -0,0 +1,152 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates formulas off the calling thread, one at a time, so that a slow evaluation never blocks the UI.
+ * <p>
+ * Each evaluation runs on its own virtual thread, and its outcome is reported through the callback executor
+ * (e.g. {@code Platform::runLater}), on the thread that started it. An evaluation that is still running after
+ * a short delay is reported as computing; one that exceeds the time budget is stopped and reported as timed out.
+ * Starting a new evaluation or calling {@link #cancel()} stops the current one: its result, if it still comes,
+ * is discarded.
+ * <p>
+ * Stopping interrupts the worker thread, which then ends without a result. The decimal and exact evaluations, whose
+ * operations on large numbers can take long, check the interruption between two operations; the {@code double}
+ * evaluations do a few floating-point operations per token of the formula, and end promptly anyway.
+ * <p>
+ * Apart from the constructor, every method must be called on the thread the callback executor runs on.
+ */
+public final class BackgroundEvaluator {
+
+    /**
+     * Default time budget of an evaluation.
+     */
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(3);
+
+    /**
+     * Delay after which a running evaluation is reported as computing. A faster evaluation is shown directly,
+     * without a computing state flickering for a single frame.
+     */
+    public static final Duration COMPUTING_DELAY = Duration.ofMillis(100);
+
+    /**
+     * Receives the outcome of an evaluation, on the thread of the callback executor.
+     */
+    public interface Callback {
+
+        /**
+         * Called when the evaluation is still running after {@link #COMPUTING_DELAY}.
+         */
+        void computing();
+
+        /**
+         * Called with the result of the evaluation.
+         *
+         * @param result the formatted result, or the error text
+         */
+        void completed(@NotNull String result);
+
+        /**
+         * Called when the evaluation has exceeded the time budget and has been stopped.
+         */
+        void timedOut();
+    }
+
+    private final Executor callbackExecutor;
+
+    private final long budgetNanos;
+
+    /**
+     * Worker thread of the current evaluation, or null if no evaluation is running.
+     */
+    private Thread worker;
+
+    /**
+     * Number of the current evaluation. Outcomes of older evaluations are discarded.
+     */
+    private long generation;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param callbackExecutor runs the callbacks, on the thread that starts the evaluations
+     * @param budget           the maximum duration of an evaluation
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public BackgroundEvaluator(@NotNull Executor callbackExecutor, @NotNull Duration budget) {
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Time budget must be positive: " + budget);
+        }
+        this.callbackExecutor = callbackExecutor;
+        this.budgetNanos = budget.toNanos();
+    }
+
+    /**
+     * Starts evaluating a formula, stopping the current evaluation if any.
+     *
+     * @param engine      the engine that evaluates the formula
+     * @param formulaText the formula, already trimmed
+     * @param callback    receives the outcome of the evaluation
+     */
+    public void evaluate(@NotNull CalculatorEngine engine, @NotNull String formulaText, @NotNull Callback callback) {
+        cancel();
+        long current = generation;
+        worker = Thread.ofVirtual().name("calculator-evaluation").start(() -> {
+            String result = engine.evaluateToText(formulaText);
+            callbackExecutor.execute(() -> {
+                if (isCurrent(current)) {
+                    worker = null;
+                    callback.completed(result);
+                }
+            });
+        });
+
+        CompletableFuture.delayedExecutor(COMPUTING_DELAY.toNanos(), TimeUnit.NANOSECONDS, callbackExecutor).execute(() -> {
+            if (isCurrent(current)) {
+                callback.computing();
+            }
+        });
+        CompletableFuture.delayedExecutor(budgetNanos, TimeUnit.NANOSECONDS, callbackExecutor).execute(() -> {
+            if (isCurrent(current)) {
+                cancel();
+                callback.timedOut();
+            }
+        });
+    }
+
+    /**
+     * @return true if an evaluation is running
+     */
+    public boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * @return the worker thread of the current evaluation, or null if no evaluation is running
+     */
+    @Nullable Thread worker() {
+        return worker;
+    }
+
+    /**
+     * Stops the current evaluation, if any. No callback is called for it anymore.
+     */
+    public void cancel() {
+        generation++;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private boolean isCurrent(long evaluation) {
+        return worker != null && generation == evaluation;
+    }
+}
@@ -0,0 +1,326 @@
+package com.calculator.mycalculator.engine;
+
+import com.calculator.mycalculator.metrics.EvaluationEvent;
+import com.calculator.mycalculator.metrics.Metrics;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.MathContext;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Headless evaluation engine for the Calculator application.
+ * This class turns formula text into compiled formulas and evaluates them, without any dependency on JavaFX.
+ * Formulas are compiled by {@link FormulaCompiler} when they fit the calculator's grammar, and by exp4j otherwise.
+ * Compiled formulas are kept in a bounded LRU cache so that repeated formulas skip parsing altogether.
+ * <p>
+ * An engine created with a {@link MathContext} works in the decimal precision mode: the results it formats are
+ * computed with {@link java.math.BigDecimal} arithmetic, except when a {@code double} evaluation is provably exact.
+ * Formulas outside the calculator's grammar are still evaluated in {@code double} by exp4j.
+ * <p>
+ * An engine created with a {@link Rational.Notation} works in the exact arithmetic mode: results are computed
+ * as fractions by {@link RationalFormula} and written in that notation. Formulas with an irrational step or constant
+ * (e.g. {@code sqrt(2)} or {@code pi}) are evaluated in {@code double}, as in the default mode.
+ */
+public class CalculatorEngine {
+
+    /**
+     * Default number of compiled expressions kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 4096;
+
+    /**
+     * Maximum number of compiled expressions kept in the cache.
+     * Once this limit is reached, the least recently used expression is evicted.
+     */
+    private final int cacheCapacity;
+
+    /**
+     * Precision of the decimal mode, or null if results are computed in {@code double}.
+     */
+    private final MathContext mathContext;
+
+    /**
+     * Notation of the results in the exact arithmetic mode, or null if the engine is not in that mode.
+     */
+    private final Rational.Notation notation;
+
+    /**
+     * Cache from formula text to compiled expression, kept in access order.
+     * All accesses are guarded by the engine's monitor.
+     */
+    private final LinkedHashMap<String, Formula> cache;
+
+    /**
+     * Cache statistics, guarded by the engine's monitor.
+     */
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates an engine with the default cache capacity.
+     */
+    public CalculatorEngine() {
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Creates an engine whose cache holds at most the given number of compiled expressions.
+     *
+     * @param cacheCapacity the maximum number of cached expressions, must be at least 1
+     * @throws IllegalArgumentException if the capacity is lower than 1
+     */
+    public CalculatorEngine(int cacheCapacity) {
+        this(cacheCapacity, (MathContext) null);
+    }
+
+    /**
+     * Creates an engine whose cache holds at most the given number of compiled formulas,
+     * in the decimal precision mode if a math context is given.
+     *
+     * @param cacheCapacity the maximum number of cached formulas, must be at least 1
+     * @param mathContext   the precision and rounding of the decimal mode, or null to compute in {@code double}
+     * @throws IllegalArgumentException if the capacity is lower than 1
+     */
+    public CalculatorEngine(int cacheCapacity, @Nullable MathContext mathContext) {
+        this(cacheCapacity, mathContext, null);
+    }
+
+    /**
+     * Creates an engine in the exact arithmetic mode, whose cache holds at most the given number of compiled formulas.
+     *
+     * @param cacheCapacity the maximum number of cached formulas, must be at least 1
+     * @param notation      the notation of the results
+     * @throws IllegalArgumentException if the capacity is lower than 1
+     */
+    public CalculatorEngine(int cacheCapacity, @NotNull Rational.Notation notation) {
+        this(cacheCapacity, null, notation);
+    }
+
+    private CalculatorEngine(int cacheCapacity, @Nullable MathContext mathContext, @Nullable Rational.Notation notation) {
+        if (cacheCapacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1: " + cacheCapacity);
+        }
+        this.cacheCapacity = cacheCapacity;
+        this.mathContext = mathContext;
+        this.notation = notation;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Formula> eldest) {
+                // Evict the least recently used expression once the capacity is exceeded
+                if (size() > CalculatorEngine.this.cacheCapacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Evaluates the given formula and returns its numeric result.
+     * <p>
+     * The formula is compiled once and served from the cache on subsequent calls.
+     * Any parsing or evaluation problem is reported as an exception, exactly as exp4j reports it.
+     * The result is always computed in {@code double}, even in the decimal precision and exact arithmetic modes.
+     *
+     * @param formulaText the formula to evaluate (e.g. "3 + 4 * 2")
+     * @return the result of the evaluation
+     * @throws IllegalArgumentException if the formula is empty or invalid
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate(@NotNull String formulaText) {
+        return compile(formulaText).evaluate();
+    }
+
+    /**
+     * Evaluates the given formula and returns the text the calculator would display for it.
+     * <p>
+     * This mirrors the equal button: the result is formatted with {@link NumberFormatter#format(double)},
+     * and any invalid formula or evaluation error yields {@link NumberFormatter#ERROR_TEXT}.
+     *
+     * @param formulaText the formula to evaluate, already trimmed
+     * @return the formatted result, or the error text
+     */
+    public @NotNull String evaluateToText(@NotNull String formulaText) {
+        if (mathContext != null || notation != null || Metrics.ENABLED) {
+            return evaluateTo(formulaText, new StringBuilder()).toString();
+        }
+        try {
+            return NumberFormatter.format(evaluate(formulaText));
+        } catch (Exception e) {
+            return NumberFormatter.ERROR_TEXT;
+        }
+    }
+
+    /**
+     * Evaluates the given formula and appends the text the calculator would display for it to the builder.
+     * <p>
+     * This follows the same rules as {@link #evaluateToText(String)}, but writes into a reusable builder
+     * instead of creating a new string for every result. In the decimal precision mode, the result is computed
+     * by {@link DecimalFormula#evaluateTo(MathContext, StringBuilder)}, and in the exact arithmetic mode by
+     * {@link RationalFormula#evaluateTo(Rational.Notation, StringBuilder)}.
+     * <p>
+     * When {@link Metrics#ENABLED metrics} are on, the evaluation is counted, timed and emitted as a JFR event.
+     *
+     * @param formulaText the formula to evaluate, already trimmed
+     * @param destination the builder receiving the formatted result, or the error text
+     * @return the destination builder
+     */
+    public @NotNull StringBuilder evaluateTo(@NotNull String formulaText, @NotNull StringBuilder destination) {
+        if (!Metrics.ENABLED) {
+            return evaluateUnmeasured(formulaText, destination);
+        }
+        EvaluationEvent event = new EvaluationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int resultStart = destination.length();
+        evaluateUnmeasured(formulaText, destination);
+        Metrics.EVALUATION.recordSince(start);
+        event.end();
+
+        boolean error = destination.length() - resultStart == NumberFormatter.ERROR_TEXT.length()
+                && destination.indexOf(NumberFormatter.ERROR_TEXT, resultStart) == resultStart;
+        Metrics.evaluated(error);
+        if (event.shouldCommit()) {
+            event.formulaLength = formulaText.length();
+            event.error = error;
+            event.commit();
+        }
+        return destination;
+    }
+
+    /**
+     * Evaluates the given formula like {@link #evaluateTo(String, StringBuilder)}, timing only the formatting
+     * when metrics are on.
+     */
+    private @NotNull StringBuilder evaluateUnmeasured(@NotNull String formulaText, @NotNull StringBuilder destination) {
+        double result;
+        try {
+            Formula formula = compile(formulaText);
+            if (formula instanceof DecimalFormula decimal) {
+                return decimal.evaluateTo(mathContext, destination);
+            }
+            if (formula instanceof RationalFormula rational) {
+                return rational.evaluateTo(notation, destination);
+            }
+            result = formula.evaluate();
+        } catch (Exception e) {
+            return destination.append(NumberFormatter.ERROR_TEXT);
+        }
+        if (Metrics.ENABLED) {
+            long start = System.nanoTime();
+            NumberFormatter.formatTo(result, destination);
+            Metrics.FORMAT.recordSince(start);
+            return destination;
+        }
+        return NumberFormatter.formatTo(result, destination);
+    }
+
+    /**
+     * Returns the compiled formula for the given text, parsing it only on a cache miss.
+     * <p>
+     * The native compiler is tried first, producing decimal programs in the decimal precision mode and exact programs
+     * in the exact arithmetic mode, or else {@code double} programs. Formulas it does not handle, including invalid
+     * ones, are built by exp4j so that their results and errors stay exactly the same. Invalid formulas fail here,
+     * as they do with exp4j. The returned formula is shared with other callers; use
+     * {@link Exp4jFormula#copyExpression()} to obtain a private exp4j copy when variable values are needed.
+     *
+     * @param formulaText the formula to compile
+     * @return the compiled formula
+     * @throws IllegalArgumentException if the formula is empty or invalid
+     */
+    public @NotNull Formula compile(@NotNull String formulaText) {
+        synchronized (this) {
+            Formula cached = cache.get(formulaText);
+            if (cached != null) {
+                hitCount++;
+                if (Metrics.ENABLED) {
+                    Metrics.cacheHit();
+                }
+                return cached;
+            }
+            missCount++;
+        }
+
+        // Parse outside the lock so that a slow formula does not block other callers
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        Formula formula = mathContext != null ? FormulaCompiler.tryCompileDecimal(formulaText)
+                : notation != null ? FormulaCompiler.tryCompileRational(formulaText)
+                : null;
+        if (formula == null && mathContext == null) {
+            formula = FormulaCompiler.tryCompile(formulaText);
+        }
+        if (formula == null) {
+            formula = new Exp4jFormula(new ExpressionBuilder(formulaText).build());
+        }
+        if (Metrics.ENABLED) {
+            Metrics.PARSE.recordSince(start);
+            Metrics.cacheMiss();
+        }
+
+        synchronized (this) {
+            cache.put(formulaText, formula);
+        }
+        return formula;
+    }
+
+    /**
+     * Removes every compiled expression from the cache. The statistics are kept.
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return the maximum number of compiled expressions kept in the cache
+     */
+    public int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    /**
+     * @return the precision of the decimal mode, or null if results are computed in {@code double}
+     */
+    public @Nullable MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /**
+     * @return the notation of the results in the exact arithmetic mode, or null if the engine is not in that mode
+     */
+    public @Nullable Rational.Notation getNotation() {
+        return notation;
+    }
+
+    /**
+     * @return the number of compiled expressions currently in the cache
+     */
+    public synchronized int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of lookups served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that required parsing the formula
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of expressions evicted to respect the cache capacity
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,209 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates a {@link CompiledFormula} with one variable over a whole column of values.
+ * <p>
+ * Instead of running the postfix program once per value, the program runs once per chunk of {@value #CHUNK_SIZE}
+ * values: each stack slot holds a column, and each opcode is one tight loop over the chunk. Constants are kept as
+ * scalars and combined with the columns directly. The loops run on SIMD registers with the Vector API when
+ * the {@code jdk.incubator.vector} module is present (run with {@code --add-modules jdk.incubator.vector}),
+ * and as plain loops otherwise.
+ * <p>
+ * Either way the results are bit-identical to {@link CompiledFormula#evaluate(double[], double[])} value by value,
+ * and values whose evaluation fails (a division by zero) are given as {@link Double#NaN}, as by
+ * {@link FormulaSweep#evaluate(double[], double[], int)}, and can be told apart from NaN results.
+ * A column formula owns its buffers and is therefore not thread-safe: use one per thread.
+ */
+public final class ColumnFormula {
+
+    /**
+     * Number of values evaluated together, small enough for the stack columns to stay in the L1 cache.
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    private final CompiledFormula program;
+
+    private final ColumnKernels kernels;
+
+    /**
+     * Stack of the program: for each slot, either a scalar constant or a column.
+     */
+    private final double[][] columns;
+    private final double[] constants;
+    private final boolean[] isConstant;
+
+    /**
+     * Values of the chunk whose evaluation failed.
+     */
+    private final boolean[] failed = new boolean[CHUNK_SIZE];
+
+    /**
+     * Prepares the evaluation of a program, with the Vector API if it is available.
+     *
+     * @param program a program with at most one variable
+     * @throws IllegalArgumentException if the program has more than one variable
+     */
+    public ColumnFormula(@NotNull CompiledFormula program) {
+        this(program, isVectorAvailable());
+    }
+
+    /**
+     * Prepares the evaluation of a program.
+     *
+     * @param program    a program with at most one variable
+     * @param vectorized whether to use the Vector API
+     * @throws IllegalArgumentException if the program has more than one variable
+     * @throws IllegalStateException    if the Vector API is asked for but not available
+     */
+    public ColumnFormula(@NotNull CompiledFormula program, boolean vectorized) {
+        if (program.getVariableCount() > 1) {
+            throw new IllegalArgumentException("A column formula has at most one variable");
+        }
+        this.program = program;
+        this.kernels = ColumnKernels.of(vectorized);
+        int depth = program.getMaxStackDepth();
+        this.columns = new double[depth][CHUNK_SIZE];
+        this.constants = new double[depth];
+        this.isConstant = new boolean[depth];
+    }
+
+    /**
+     * @return whether the Vector API is available, i.e. the program runs with
+     * {@code --add-modules jdk.incubator.vector}
+     */
+    public static boolean isVectorAvailable() {
+        return ColumnKernels.isVectorAvailable();
+    }
+
+    /**
+     * @return whether this formula runs on the Vector API
+     */
+    public boolean isVectorized() {
+        return kernels instanceof VectorKernels;
+    }
+
+    /**
+     * Evaluates the formula for the first {@code count} input values and stores the results in the output array.
+     * Values whose evaluation fails are stored as {@link Double#NaN}.
+     *
+     * @param input  the values of the variable
+     * @param output the array receiving the results
+     * @param count  the number of values to evaluate
+     * @throws IllegalArgumentException if one of the arrays holds fewer than {@code count} values
+     */
+    public void evaluate(double @NotNull [] input, double @NotNull [] output, int count) {
+        evaluateChunks(input, output, null, count);
+    }
+
+    /**
+     * Evaluates the formula for the first {@code count} input values and stores the results in the output array.
+     * Values whose evaluation fails are stored as {@link Double#NaN}, and flagged in the failures array, so that
+     * they are not mistaken for NaN results such as sqrt(-1).
+     *
+     * @param input    the values of the variable
+     * @param output   the array receiving the results
+     * @param failures the array receiving, for each value, whether its evaluation failed
+     * @param count    the number of values to evaluate
+     * @throws IllegalArgumentException if one of the arrays holds fewer than {@code count} values
+     */
+    public void evaluate(double @NotNull [] input, double @NotNull [] output, boolean @NotNull [] failures, int count) {
+        if (count > failures.length) {
+            throw new IllegalArgumentException("Arrays are shorter than the number of values to evaluate: " + count);
+        }
+        evaluateChunks(input, output, failures, count);
+    }
+
+    /**
+     * Runs the program over all the chunks of values, flagging the failed values if failures is not null.
+     */
+    private void evaluateChunks(double[] input, double[] output, boolean @Nullable [] failures, int count) {
+        if (count > input.length || count > output.length) {
+            throw new IllegalArgumentException("Arrays are shorter than the number of values to evaluate: " + count);
+        }
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            evaluateChunk(input, output, failures, from, Math.min(CHUNK_SIZE, count - from));
+        }
+    }
+
+    /**
+     * Runs the program over one chunk of values.
+     */
+    private void evaluateChunk(double[] input, double[] output, boolean @Nullable [] failures, int from, int count) {
+        int[] code = program.code();
+        double[] pool = program.constants();
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+            switch (opcode) {
+                case CompiledFormula.CONSTANT -> {
+                    top++;
+                    isConstant[top] = true;
+                    constants[top] = pool[code[++pc]];
+                }
+                case CompiledFormula.VARIABLE -> {
+                    top++;
+                    pc++;
+                    isConstant[top] = false;
+                    System.arraycopy(input, from, columns[top], 0, count);
+                }
+                case CompiledFormula.NEGATE, CompiledFormula.SQRT -> {
+                    materialize(top, count);
+                    kernels.unary(opcode, columns[top], count);
+                }
+                default -> {
+                    top--;
+                    binary(opcode, top, count);
+                }
+            }
+        }
+
+        // The result, with the failed values replaced by NaN
+        materialize(0, count);
+        double[] result = columns[0];
+        for (int i = 0; i < count; i++) {
+            output[from + i] = failed[i] ? Double.NaN : result[i];
+        }
+        if (failures != null) {
+            System.arraycopy(failed, 0, failures, from, count);
+        }
+        Arrays.fill(failed, 0, count, false);
+    }
+
+    /**
+     * Applies a binary operator to the slots {@code left} and {@code left + 1}, leaving the result in {@code left}.
+     */
+    private void binary(int opcode, int left, int count) {
+        int right = left + 1;
+        if (isConstant[left] && isConstant[right]) {
+            // Constant operations are folded by the compiler, so this hardly happens
+            materialize(left, count);
+        }
+        if (!isConstant[left] && !isConstant[right]) {
+            kernels.binary(opcode, columns[left], columns[right], failed, count);
+        } else if (!isConstant[left]) {
+            kernels.binary(opcode, columns[left], constants[right], failed, count);
+        } else {
+            // The result is computed in the right column, which then moves to the left slot
+            kernels.binary(opcode, constants[left], columns[right], failed, count);
+            double[] result = columns[right];
+            columns[right] = columns[left];
+            columns[left] = result;
+            isConstant[left] = false;
+        }
+    }
+
+    /**
+     * Turns a constant slot into a column holding the constant.
+     */
+    private void materialize(int slot, int count) {
+        if (isConstant[slot]) {
+            Arrays.fill(columns[slot], 0, count, constants[slot]);
+            isConstant[slot] = false;
+        }
+    }
+}
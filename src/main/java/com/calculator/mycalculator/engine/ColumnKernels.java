@@ -0,0 +1,61 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lane-wise operations of {@link ColumnFormula} over columns of {@code double}.
+ * <p>
+ * Each operation applies one opcode of {@link CompiledFormula} to the first {@code count} elements of its columns,
+ * with exactly the Java arithmetic of {@link CompiledFormula#evaluate(double[], double[])}, so that both give the same
+ * bits. A division or a modulo by zero does not throw: it marks the element in {@code failed}.
+ */
+sealed interface ColumnKernels permits ScalarKernels, VectorKernels {
+
+    /**
+     * Name of the module of the Vector API.
+     */
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Computes {@code left[i] = left[i] op right[i]}.
+     */
+    void binary(int opcode, double @NotNull [] left, double @NotNull [] right, boolean @NotNull [] failed, int count);
+
+    /**
+     * Computes {@code left[i] = left[i] op right}.
+     */
+    void binary(int opcode, double @NotNull [] left, double right, boolean @NotNull [] failed, int count);
+
+    /**
+     * Computes {@code right[i] = left op right[i]}.
+     */
+    void binary(int opcode, double left, double @NotNull [] right, boolean @NotNull [] failed, int count);
+
+    /**
+     * Computes {@code operand[i] = op operand[i]}.
+     */
+    void unary(int opcode, double @NotNull [] operand, int count);
+
+    /**
+     * @return whether the Vector API is available, i.e. the program runs with
+     * {@code --add-modules jdk.incubator.vector}
+     */
+    static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /**
+     * @param vectorized whether to use the Vector API
+     * @return the kernels using the Vector API, or the scalar kernels
+     * @throws IllegalStateException if the Vector API is asked for but not available
+     */
+    static @NotNull ColumnKernels of(boolean vectorized) {
+        if (!vectorized) {
+            return ScalarKernels.INSTANCE;
+        }
+        if (!isVectorAvailable()) {
+            throw new IllegalStateException("Module " + VECTOR_MODULE + " not available");
+        }
+        return VectorKernels.INSTANCE;
+    }
+}
@@ -0,0 +1,234 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A formula compiled by {@link FormulaCompiler} into a flat postfix program.
+ * <p>
+ * The program is an array of opcodes, where {@link #CONSTANT} and {@link #VARIABLE} are followed by the index
+ * of their operand in the constant pool or in the variable values. Evaluation walks the program once over
+ * a {@code double} stack: it allocates nothing, and every operation is the same Java arithmetic exp4j performs,
+ * in the same order, so results are bit-identical. Instances are immutable and can be shared between threads.
+ */
+public final class CompiledFormula implements Formula {
+
+    /**
+     * Pushes a value of the constant pool. Followed by the index of the constant.
+     */
+    public static final int CONSTANT = 0;
+
+    /**
+     * Pushes the value of a variable. Followed by the index of the variable.
+     */
+    public static final int VARIABLE = 1;
+
+    /**
+     * Binary operators: pop the right then the left operand, push the result.
+     */
+    public static final int ADD = 2;
+    public static final int SUBTRACT = 3;
+    public static final int MULTIPLY = 4;
+    public static final int DIVIDE = 5;
+    public static final int MODULO = 6;
+    public static final int POWER = 7;
+
+    /**
+     * Unary operators: pop the operand, push the result.
+     */
+    public static final int NEGATE = 8;
+    public static final int SQRT = 9;
+
+    /**
+     * Scratch stacks used by {@link #evaluate()} and {@link #evaluate(double[])}, one per thread.
+     */
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[16]);
+
+    /**
+     * Postfix program: opcodes, each constant and variable opcode being followed by its operand index.
+     */
+    private final int[] code;
+
+    /**
+     * Constant pool referenced by the {@link #CONSTANT} opcodes.
+     */
+    private final double[] constants;
+
+    /**
+     * Names of the variables, in the order their values are expected.
+     */
+    private final String[] variableNames;
+
+    /**
+     * Maximum number of values on the stack while the program runs.
+     */
+    private final int maxStackDepth;
+
+    /**
+     * Creates a program. The program must have been checked: every operator finds its operands
+     * and exactly one value is left at the end.
+     *
+     * @param code          the postfix program
+     * @param constants     the constant pool
+     * @param variableNames the names of the variables
+     * @param maxStackDepth the maximum stack depth of the program
+     */
+    CompiledFormula(int @NotNull [] code, double @NotNull [] constants, String @NotNull [] variableNames, int maxStackDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.variableNames = variableNames;
+        this.maxStackDepth = maxStackDepth;
+    }
+
+    /**
+     * Evaluates a formula that has no variables.
+     *
+     * @return the result of the evaluation
+     * @throws IllegalArgumentException if the formula has variables
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    @Override
+    public double evaluate() {
+        if (variableNames.length > 0) {
+            throw new IllegalArgumentException("No value has been set for the variable '" + variableNames[0] + "'");
+        }
+
+        // Formulas made of constants only are folded into a single constant at compile time
+        if (code.length == 2) {
+            return constants[code[1]];
+        }
+        return evaluate(null, scratch());
+    }
+
+    /**
+     * Evaluates the formula with the given variable values.
+     *
+     * @param variables the values of the variables, in the order of {@link #getVariableNames()}
+     * @return the result of the evaluation
+     * @throws IllegalArgumentException if fewer values than variables are given
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate(double @NotNull [] variables) {
+        checkVariables(variables);
+        return evaluate(variables, scratch());
+    }
+
+    /**
+     * Evaluates the formula with the given variable values, using the given array as stack.
+     * This is the hot path of sweeps: with a reused stack, nothing at all is allocated.
+     *
+     * @param variables the values of the variables, in the order of {@link #getVariableNames()}
+     * @param stack     an array of at least {@link #getMaxStackDepth()} elements, overwritten by the evaluation
+     * @return the result of the evaluation
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate(double[] variables, double @NotNull [] stack) {
+        int[] code = this.code;
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT -> stack[++top] = constants[code[++pc]];
+                case VARIABLE -> stack[++top] = variables[code[++pc]];
+                case ADD -> {
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                }
+                case SUBTRACT -> {
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                }
+                case MULTIPLY -> {
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                }
+                case DIVIDE -> {
+                    top--;
+                    if (stack[top + 1] == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    stack[top] = stack[top] / stack[top + 1];
+                }
+                case MODULO -> {
+                    top--;
+                    if (stack[top + 1] == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    stack[top] = stack[top] % stack[top + 1];
+                }
+                case POWER -> {
+                    top--;
+                    stack[top] = Math.pow(stack[top], stack[top + 1]);
+                }
+                case NEGATE -> stack[top] = -stack[top];
+                case SQRT -> stack[top] = Math.sqrt(stack[top]);
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * @return the names of the variables, in the order their values are expected
+     */
+    public String @NotNull [] getVariableNames() {
+        return variableNames.clone();
+    }
+
+    /**
+     * @return the number of variables of the formula
+     */
+    public int getVariableCount() {
+        return variableNames.length;
+    }
+
+    /**
+     * @return the minimum size of the stack given to {@link #evaluate(double[], double[])}
+     */
+    public int getMaxStackDepth() {
+        return maxStackDepth;
+    }
+
+    /**
+     * @return the postfix program, shared with the caller: it must not be modified
+     */
+    int[] code() {
+        return code;
+    }
+
+    /**
+     * @return the constant pool, shared with the caller: it must not be modified
+     */
+    double[] constants() {
+        return constants;
+    }
+
+    /**
+     * Checks that a value is given for every variable.
+     *
+     * @param variables the values of the variables
+     */
+    private void checkVariables(double @NotNull [] variables) {
+        if (variables.length < variableNames.length) {
+            throw new IllegalArgumentException("No value has been set for the variable '"
+                    + variableNames[variables.length] + "'");
+        }
+    }
+
+    /**
+     * @return the scratch stack of the current thread, large enough for this program
+     */
+    private double @NotNull [] scratch() {
+        double[] stack = SCRATCH.get();
+        if (stack.length < maxStackDepth) {
+            stack = new double[maxStackDepth];
+            SCRATCH.set(stack);
+        }
+        return stack;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFormula" + Arrays.toString(code) + Arrays.toString(constants);
+    }
+}
@@ -0,0 +1,343 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A formula compiled by {@link FormulaCompiler} for the decimal precision mode.
+ * <p>
+ * The program is the same postfix code as a {@link CompiledFormula}, without constant folding, and every number
+ * keeps its exact decimal value. {@link #evaluate(MathContext)} computes the result with {@link BigDecimal}
+ * arithmetic rounded to the given {@link MathContext}. {@link #evaluateTo(MathContext, StringBuilder)} first tries
+ * the same program in {@code double}, and keeps that result when every step is provably exact: integers only,
+ * each one within the precision. The common case of whole-number arithmetic therefore never creates a BigDecimal,
+ * and gives exactly what the decimal evaluation would give. A formula whose {@code double} result is not a finite
+ * number, such as {@code sqrt(-1)}, {@code 0^-1} or {@code 2^1e9}, has no decimal value: it is written as the
+ * {@code double} mode writes it, so that the precision mode only refines finite results. Instances are immutable and
+ * can be shared between threads.
+ */
+public final class DecimalFormula implements Formula {
+
+    /**
+     * Largest magnitude for which every integer is exactly representable as a {@code double}.
+     */
+    private static final double MAX_EXACT_INTEGER = 0x1p53;
+    private static final BigDecimal MAX_EXACT_DECIMAL = BigDecimal.valueOf(1L << 53);
+
+    /**
+     * Exact powers of ten up to 10^15, the bounds of the fast path for precisions below 16 digits.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Largest exponent computed exactly by {@link BigDecimal#pow(int, MathContext)}.
+     */
+    private static final BigDecimal MAX_POWER = BigDecimal.valueOf(999_999_999);
+
+    /**
+     * Scratch stacks of the fast path, one per thread.
+     */
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[16]);
+
+    /**
+     * The program run in {@code double}, used by {@link #evaluate()} and by the fast path.
+     */
+    private final CompiledFormula program;
+
+    /**
+     * Exact decimal values of the constants, in the order of the constant pool.
+     */
+    private final BigDecimal[] decimals;
+
+    /**
+     * Whether every constant is an integer exactly representable as a {@code double}, which the fast path requires.
+     */
+    private final boolean integerConstants;
+
+    /**
+     * Creates a program. The program must have been checked: every operator finds its operands
+     * and exactly one value is left at the end.
+     *
+     * @param code          the postfix program, without folded constants
+     * @param constants     the constant pool, as {@code double} values
+     * @param decimals      the constant pool, as exact decimal values
+     * @param maxStackDepth the maximum stack depth of the program
+     */
+    DecimalFormula(int @NotNull [] code, double @NotNull [] constants, BigDecimal @NotNull [] decimals, int maxStackDepth) {
+        this.program = new CompiledFormula(code, constants, new String[0], maxStackDepth);
+        this.decimals = decimals;
+
+        boolean integers = true;
+        for (BigDecimal decimal : decimals) {
+            integers &= isInteger(decimal) && decimal.abs().compareTo(MAX_EXACT_DECIMAL) < 0;
+        }
+        this.integerConstants = integers;
+    }
+
+    /**
+     * Evaluates the formula in {@code double}, exactly as {@link CompiledFormula#evaluate()} does.
+     *
+     * @return the result of the evaluation
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    @Override
+    public double evaluate() {
+        return program.evaluate();
+    }
+
+    /**
+     * Evaluates the formula with decimal arithmetic.
+     * <p>
+     * Each operation is rounded to the given context. Integer powers are computed by BigDecimal; other powers,
+     * whose results are generally irrational, go through {@link Math#pow(double, double)} and are then rounded.
+     * As an operation can take long at a high precision, the evaluation stops when its thread is interrupted.
+     *
+     * @param mathContext the precision and rounding mode of the operations
+     * @return the result, rounded to the context
+     * @throws ArithmeticException   if the evaluation divides by zero, takes the square root of a negative number,
+     *                               or gives a result that is not exact under an unlimited context
+     * @throws CancellationException if the thread is interrupted during the evaluation
+     */
+    public @NotNull BigDecimal evaluate(@NotNull MathContext mathContext) {
+        int[] code = program.code();
+        BigDecimal[] stack = new BigDecimal[program.getMaxStackDepth()];
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Evaluation interrupted");
+            }
+            switch (code[pc]) {
+                case CompiledFormula.CONSTANT -> stack[++top] = decimals[code[++pc]];
+                case CompiledFormula.ADD -> {
+                    top--;
+                    stack[top] = stack[top].add(stack[top + 1], mathContext);
+                }
+                case CompiledFormula.SUBTRACT -> {
+                    top--;
+                    stack[top] = stack[top].subtract(stack[top + 1], mathContext);
+                }
+                case CompiledFormula.MULTIPLY -> {
+                    top--;
+                    stack[top] = stack[top].multiply(stack[top + 1], mathContext);
+                }
+                case CompiledFormula.DIVIDE -> {
+                    top--;
+                    checkDivisor(stack[top + 1]);
+                    stack[top] = stack[top].divide(stack[top + 1], mathContext);
+                }
+                case CompiledFormula.MODULO -> {
+                    top--;
+                    checkDivisor(stack[top + 1]);
+                    // The remainder of two decimals is always exact, whereas the context would limit the digits
+                    // of the integer quotient computed on the way
+                    stack[top] = stack[top].remainder(stack[top + 1]).round(mathContext);
+                }
+                case CompiledFormula.POWER -> {
+                    top--;
+                    stack[top] = power(stack[top], stack[top + 1], mathContext);
+                }
+                case CompiledFormula.NEGATE -> stack[top] = stack[top].negate();
+                case CompiledFormula.SQRT -> stack[top] = stack[top].sqrt(mathContext);
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            }
+        }
+        return stack[0].round(mathContext);
+    }
+
+    /**
+     * Evaluates the formula in {@code double}, and returns the result only if it is provably exact.
+     * <p>
+     * The fast path applies when every constant, intermediate value and the result are integers whose magnitude
+     * stays below both 2^53 and 10^precision. Such values are computed without rounding, both in {@code double}
+     * and by {@link #evaluate(MathContext)}, so both evaluations give the same number.
+     *
+     * @param mathContext the precision of the decimal evaluation
+     * @return the exact result, or {@link Double#NaN} if exactness cannot be proven
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluateExact(@NotNull MathContext mathContext) {
+        if (!integerConstants) {
+            return Double.NaN;
+        }
+        int precision = mathContext.getPrecision();
+        double bound = precision == 0 || precision >= POWERS_OF_TEN.length ? MAX_EXACT_INTEGER : POWERS_OF_TEN[precision];
+
+        int[] code = program.code();
+        double[] constants = program.constants();
+        double[] stack = scratch();
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            double result;
+            switch (code[pc]) {
+                case CompiledFormula.CONSTANT -> {
+                    stack[++top] = constants[code[++pc]];
+                    result = stack[top];
+                }
+                case CompiledFormula.ADD -> result = stack[top - 1] + stack[top--];
+                case CompiledFormula.SUBTRACT -> result = stack[top - 1] - stack[top--];
+                case CompiledFormula.MULTIPLY -> result = stack[top - 1] * stack[top--];
+                case CompiledFormula.DIVIDE -> {
+                    double divisor = stack[top--];
+                    if (divisor == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    result = stack[top] / divisor;
+
+                    // The quotient is exact only if it is an integer that gives the dividend back
+                    if (result != Math.rint(result) || Math.fma(result, divisor, -stack[top]) != 0d) {
+                        return Double.NaN;
+                    }
+                }
+                case CompiledFormula.MODULO -> {
+                    double divisor = stack[top--];
+                    if (divisor == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    result = stack[top] % divisor;
+                }
+                case CompiledFormula.POWER -> result = integerPower(stack[top - 1], stack[top--], bound);
+                case CompiledFormula.NEGATE -> result = -stack[top];
+                case CompiledFormula.SQRT -> {
+                    result = Math.sqrt(stack[top]);
+                    if (result != Math.rint(result) || result * result != stack[top]) {
+                        return Double.NaN;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            }
+
+            // Integers below the bound are exact: a rounded sum or product would have reached it
+            if (!(Math.abs(result) < bound)) {
+                return Double.NaN;
+            }
+            stack[top] = result;
+        }
+        return stack[0];
+    }
+
+    /**
+     * Evaluates the formula with decimal arithmetic and appends the formatted result to the builder.
+     * <p>
+     * Results proven exact by {@link #evaluateExact(MathContext)} are written directly as integers;
+     * the others are computed by {@link #evaluate(MathContext)} and written by {@link NumberFormatter#formatTo(BigDecimal, StringBuilder)}.
+     * When the decimal evaluation fails on a result that is not a finite number in {@code double}, that result
+     * (NaN or infinity) is written instead, as the {@code double} mode does.
+     *
+     * @param mathContext the precision and rounding mode of the operations
+     * @param destination the builder receiving the formatted result
+     * @return the destination builder
+     * @throws ArithmeticException if the evaluation fails
+     */
+    public @NotNull StringBuilder evaluateTo(@NotNull MathContext mathContext, @NotNull StringBuilder destination) {
+        double exact = evaluateExact(mathContext);
+        if (!Double.isNaN(exact)) {
+            return destination.append((long) exact);
+        }
+        try {
+            return NumberFormatter.formatTo(evaluate(mathContext), destination);
+        } catch (ArithmeticException e) {
+            // A division by zero fails in double too
+            double result = program.evaluate();
+            if (Double.isNaN(result) || Double.isInfinite(result)) {
+                return NumberFormatter.formatTo(result, destination);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Raises an integer to an integer power in {@code double}, if the result is an integer below the bound.
+     *
+     * @param base     the base, an integer
+     * @param exponent the exponent, an integer
+     * @param bound    the exclusive bound of the result's magnitude
+     * @return the exact result, or {@link Double#NaN} if it is not an integer below the bound
+     */
+    private static double integerPower(double base, double exponent, double bound) {
+        if (exponent < 0d) {
+            // Negative powers are fractions, left to the decimal evaluation
+            return Double.NaN;
+        }
+        if (base == 0d) {
+            return exponent == 0d ? 1d : base;
+        }
+        if (base == 1d) {
+            return base;
+        }
+        if (base == -1d) {
+            return exponent % 2d == 0d ? 1d : -1d;
+        }
+
+        // |base| >= 2, so the bound is reached within 53 multiplications
+        double result = 1d;
+        for (double i = 0d; i < exponent; i++) {
+            result *= base;
+            if (!(Math.abs(result) < bound)) {
+                return Double.NaN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Raises a number to a power with decimal arithmetic.
+     *
+     * @param base        the base
+     * @param exponent    the exponent
+     * @param mathContext the precision and rounding mode
+     * @return the rounded result
+     * @throws ArithmeticException if the result is not a finite number
+     */
+    private static @NotNull BigDecimal power(@NotNull BigDecimal base, @NotNull BigDecimal exponent,
+                                             @NotNull MathContext mathContext) {
+        if (isInteger(exponent) && exponent.abs().compareTo(MAX_POWER) <= 0) {
+            return base.pow(exponent.intValueExact(), mathContext);
+        }
+        double result = Math.pow(base.doubleValue(), exponent.doubleValue());
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            throw new ArithmeticException("Result is not a finite number: " + result);
+        }
+        return BigDecimal.valueOf(result).round(mathContext);
+    }
+
+    /**
+     * Fails like the {@code double} evaluation when dividing by zero.
+     *
+     * @param divisor the divisor to check
+     */
+    private static void checkDivisor(@NotNull BigDecimal divisor) {
+        if (divisor.signum() == 0) {
+            throw new ArithmeticException("Division by zero!");
+        }
+    }
+
+    /**
+     * @param number the number to check
+     * @return true if the number has no fractional part
+     */
+    private static boolean isInteger(@NotNull BigDecimal number) {
+        return number.signum() == 0 || number.scale() <= 0 || number.stripTrailingZeros().scale() <= 0;
+    }
+
+    /**
+     * @return the scratch stack of the current thread, large enough for this program
+     */
+    private double @NotNull [] scratch() {
+        double[] stack = SCRATCH.get();
+        if (stack.length < program.getMaxStackDepth()) {
+            stack = new double[program.getMaxStackDepth()];
+            SCRATCH.set(stack);
+        }
+        return stack;
+    }
+
+    @Override
+    public String toString() {
+        return "DecimalFormula" + program;
+    }
+}
@@ -0,0 +1,37 @@
+package com.calculator.mycalculator.engine;
+
+import net.objecthunter.exp4j.Expression;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A formula evaluated by exp4j, used for the syntax that {@link FormulaCompiler} does not handle
+ * (other functions, implicit multiplication...) and for invalid formulas, so that errors are reported exactly as before.
+ */
+public final class Exp4jFormula implements Formula {
+
+    /**
+     * Compiled exp4j expression. It is never given variable values, so it can be shared between threads.
+     */
+    private final Expression expression;
+
+    /**
+     * Wraps a compiled exp4j expression.
+     *
+     * @param expression the expression to evaluate
+     */
+    Exp4jFormula(@NotNull Expression expression) {
+        this.expression = expression;
+    }
+
+    @Override
+    public double evaluate() {
+        return expression.evaluate();
+    }
+
+    /**
+     * @return a private copy of the expression, which may be given variable values
+     */
+    public @NotNull Expression copyExpression() {
+        return new Expression(expression);
+    }
+}
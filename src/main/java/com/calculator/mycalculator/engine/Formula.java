@@ -0,0 +1,22 @@
+package com.calculator.mycalculator.engine;
+
+/**
+ * A formula compiled by the {@link CalculatorEngine}, ready to be evaluated any number of times.
+ * <p>
+ * Formulas within the calculator's grammar are compiled into a flat postfix program ({@link CompiledFormula});
+ * anything else is handed to exp4j ({@link Exp4jFormula}), so both give exactly the same results.
+ * In the decimal precision mode, formulas are compiled into {@link DecimalFormula} programs instead,
+ * and in the exact arithmetic mode into {@link RationalFormula} programs.
+ * Constant formulas can be evaluated concurrently by several threads.
+ */
+public sealed interface Formula permits CompiledFormula, DecimalFormula, Exp4jFormula, RationalFormula {
+
+    /**
+     * Evaluates a formula that has no variables.
+     *
+     * @return the result of the evaluation
+     * @throws IllegalArgumentException if the formula is malformed or uses variables
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    double evaluate();
+}
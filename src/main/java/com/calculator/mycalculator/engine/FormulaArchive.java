@@ -0,0 +1,451 @@
+package com.calculator.mycalculator.engine;
+
+import com.calculator.mycalculator.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reader of a compiled workload: a set of formulas compiled once by {@link FormulaArchiveWriter} and loaded
+ * without parsing them again.
+ * <p>
+ * The format is little-endian. The header holds the magic number {@link #MAGIC}, the version {@link #VERSION}
+ * on two bytes, then the variable names shared by every formula: their count on one byte, and each name as
+ * its UTF-8 length on two bytes followed by its bytes. Records follow until the end of the file, one per formula,
+ * in input order:
+ * <ul>
+ *     <li>{@link #PROGRAM}: the maximum stack depth and the number of constants on two bytes each, the length
+ *     of the code on four bytes, the constant pool as 8-byte IEEE 754 values, then the code: one byte per opcode
+ *     of {@link CompiledFormula}, {@link CompiledFormula#CONSTANT} and {@link CompiledFormula#VARIABLE} being
+ *     followed by their operand index on two bytes;</li>
+ *     <li>{@link #VALUE}: a program folded into a single constant, as its 8-byte value, which is the most
+ *     common record of a workload without variables;</li>
+ *     <li>{@link #TEXT}: a formula the native compiler does not handle, left to the engine, as its UTF-8 length
+ *     on four bytes followed by its bytes.</li>
+ * </ul>
+ * The reader works on the buffer it is given, typically a file mapped in memory by {@link #open(Path)}: records
+ * are walked in place and programs evaluated straight from the buffer, so that loading a workload copies nothing
+ * and allocates nothing per formula. Each record is checked when the reader moves to it, so that a damaged file
+ * is reported rather than evaluated. A reader is a cursor over its records and is therefore not thread-safe.
+ */
+public final class FormulaArchive {
+
+    /**
+     * First bytes of an archive: 0x89 then "CAL", a non-text byte first so that no formula file starts with them.
+     */
+    public static final int MAGIC = 0x4C414389;
+
+    /**
+     * Version of the format written by {@link FormulaArchiveWriter}, the only one read.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Kinds of records.
+     */
+    static final byte PROGRAM = 1;
+    static final byte TEXT = 2;
+    static final byte VALUE = 3;
+
+    /**
+     * Size of the fixed part of a program record, after its kind.
+     */
+    static final int PROGRAM_HEADER_SIZE = 8;
+
+    private static final double[] NO_VARIABLES = new double[0];
+
+    private final ByteBuffer buffer;
+
+    private final String[] variableNames;
+
+    /**
+     * Offset of the first record.
+     */
+    private final int recordsStart;
+
+    /**
+     * Offset of the next record, and kind and bounds of the current one.
+     */
+    private int next;
+    private byte kind;
+    private int maxStackDepth;
+    private int constantsStart;
+    private int codeStart;
+    private int codeEnd;
+
+    /**
+     * Evaluation stack, reused by every program.
+     */
+    private double[] stack = new double[16];
+
+    private FormulaArchive(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a formula archive");
+            }
+            int version = Short.toUnsignedInt(buffer.getShort(4));
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported formula archive version: " + version);
+            }
+            int position = 7;
+            variableNames = new String[Byte.toUnsignedInt(buffer.get(6))];
+            for (int i = 0; i < variableNames.length; i++) {
+                int length = Short.toUnsignedInt(buffer.getShort(position));
+                variableNames[i] = decode(position + 2, length);
+                position += 2 + length;
+            }
+            recordsStart = position;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated formula archive header");
+        }
+        rewind();
+    }
+
+    /**
+     * Reads an archive held in a buffer, from its position to its limit. The buffer is not copied.
+     *
+     * @param buffer the archive
+     * @return the reader, before the first record
+     * @throws IllegalArgumentException if the buffer does not hold an archive of a supported version
+     */
+    public static @NotNull FormulaArchive wrap(@NotNull ByteBuffer buffer) {
+        return new FormulaArchive(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Maps an archive file in memory and reads it. The mapping stays valid after the file is closed.
+     *
+     * @param file the archive file, up to 2 GB
+     * @return the reader, before the first record
+     * @throws IOException if the file cannot be mapped
+     * @throws IllegalArgumentException if the file is not an archive of a supported version
+     */
+    public static @NotNull FormulaArchive open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Formula archive larger than 2 GB: " + file);
+            }
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Checks whether a file starts like an archive, without reading further.
+     *
+     * @param file the file
+     * @return true if the file starts with {@link #MAGIC}
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isArchive(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Read until the four bytes are there or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * @return the names of the variables of every program, in the order their values are expected
+     */
+    public String @NotNull [] getVariableNames() {
+        return variableNames.clone();
+    }
+
+    /**
+     * Moves back before the first record.
+     */
+    public void rewind() {
+        next = recordsStart;
+        kind = 0;
+    }
+
+    /**
+     * Moves to the next record and checks it.
+     *
+     * @return false if there is no record left
+     * @throws IllegalArgumentException if the record is damaged
+     */
+    public boolean next() {
+        if (next >= buffer.limit()) {
+            kind = 0;
+            return false;
+        }
+        int position = next;
+        // The reader is on no record until this one is checked
+        kind = 0;
+        byte recordKind;
+        try {
+            recordKind = buffer.get(position++);
+            if (recordKind == PROGRAM) {
+                maxStackDepth = Short.toUnsignedInt(buffer.getShort(position));
+                int constantCount = Short.toUnsignedInt(buffer.getShort(position + 2));
+                int codeLength = buffer.getInt(position + 4);
+                constantsStart = position + PROGRAM_HEADER_SIZE;
+                codeStart = Math.addExact(constantsStart, 8 * constantCount);
+                codeEnd = Math.addExact(codeStart, codeLength);
+                if (codeLength <= 0 || codeEnd > buffer.limit()) {
+                    throw new IllegalArgumentException("Truncated program at offset " + next);
+                }
+                checkProgram(constantCount);
+                next = codeEnd;
+            } else if (recordKind == VALUE) {
+                constantsStart = position;
+                if (position + 8 > buffer.limit()) {
+                    throw new IllegalArgumentException("Truncated value at offset " + next);
+                }
+                next = position + 8;
+            } else if (recordKind == TEXT) {
+                int length = buffer.getInt(position);
+                codeStart = position + 4;
+                codeEnd = Math.addExact(codeStart, length);
+                if (length < 0 || codeEnd > buffer.limit()) {
+                    throw new IllegalArgumentException("Truncated text at offset " + next);
+                }
+                next = codeEnd;
+            } else {
+                throw new IllegalArgumentException("Unknown record kind " + recordKind + " at offset " + next);
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | ArithmeticException e) {
+            throw new IllegalArgumentException("Truncated record at offset " + next);
+        }
+        kind = recordKind;
+        return true;
+    }
+
+    /**
+     * @return true if the current record is a compiled program, false if it is a formula left to the engine
+     * @throws IllegalStateException if the reader is not on a record
+     */
+    public boolean isProgram() {
+        checkRecord();
+        return kind != TEXT;
+    }
+
+    /**
+     * @return the formula of the current record, which is not a compiled program
+     * @throws IllegalStateException if the reader is not on a text record
+     */
+    public @NotNull String text() {
+        if (kind != TEXT) {
+            throw new IllegalStateException("The current record is not a text");
+        }
+        return decode(codeStart, codeEnd - codeStart);
+    }
+
+    /**
+     * Evaluates the program of the current record without variable values.
+     *
+     * @return the result of the evaluation
+     * @throws IllegalStateException if the reader is not on a program
+     * @throws IllegalArgumentException if the program uses a variable
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    /**
+     * Evaluates the program of the current record, in place in the buffer, exactly as
+     * {@link CompiledFormula#evaluate(double[])} would.
+     *
+     * @param variables the values of the variables, in the order of {@link #getVariableNames()}
+     * @return the result of the evaluation
+     * @throws IllegalStateException if the reader is not on a program
+     * @throws IllegalArgumentException if the program uses a variable whose value is not given
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate(double @NotNull [] variables) {
+        if (kind != PROGRAM && kind != VALUE) {
+            throw new IllegalStateException("The current record is not a program");
+        }
+        if (kind == VALUE) {
+            return buffer.getDouble(constantsStart);
+        }
+        if (stack.length < maxStackDepth) {
+            stack = new double[maxStackDepth];
+        }
+        ByteBuffer buffer = this.buffer;
+        double[] stack = this.stack;
+        int top = -1;
+        for (int pc = codeStart; pc < codeEnd; pc++) {
+            switch (buffer.get(pc)) {
+                case CompiledFormula.CONSTANT -> {
+                    stack[++top] = buffer.getDouble(constantsStart + 8 * Short.toUnsignedInt(buffer.getShort(pc + 1)));
+                    pc += 2;
+                }
+                case CompiledFormula.VARIABLE -> {
+                    // Formulas that do not use the variables of the archive are evaluated without their values
+                    int index = Short.toUnsignedInt(buffer.getShort(pc + 1));
+                    if (index >= variables.length) {
+                        throw new IllegalArgumentException("No value has been set for the variable '"
+                                + variableNames[index] + "'");
+                    }
+                    stack[++top] = variables[index];
+                    pc += 2;
+                }
+                case CompiledFormula.ADD -> {
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                }
+                case CompiledFormula.SUBTRACT -> {
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                }
+                case CompiledFormula.MULTIPLY -> {
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                }
+                case CompiledFormula.DIVIDE -> {
+                    top--;
+                    if (stack[top + 1] == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    stack[top] = stack[top] / stack[top + 1];
+                }
+                case CompiledFormula.MODULO -> {
+                    top--;
+                    if (stack[top + 1] == 0d) {
+                        throw new ArithmeticException("Division by zero!");
+                    }
+                    stack[top] = stack[top] % stack[top + 1];
+                }
+                case CompiledFormula.POWER -> {
+                    top--;
+                    stack[top] = Math.pow(stack[top], stack[top + 1]);
+                }
+                case CompiledFormula.NEGATE -> stack[top] = -stack[top];
+                case CompiledFormula.SQRT -> stack[top] = Math.sqrt(stack[top]);
+                default -> throw new IllegalStateException("Unknown opcode: " + buffer.get(pc));
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Evaluates the current record and appends the text the calculator would display for it, as
+     * {@link CalculatorEngine#evaluateTo(String, StringBuilder)} does for the formula it was compiled from.
+     * Programs are evaluated in place; formulas left to the engine are evaluated by it.
+     *
+     * @param engine      the engine evaluating the text records, in the default {@code double} mode
+     * @param destination the builder receiving the formatted result, or the error text
+     * @return the destination builder
+     * @throws IllegalStateException if the reader is not on a record
+     */
+    public @NotNull StringBuilder evaluateTo(@NotNull CalculatorEngine engine, @NotNull StringBuilder destination) {
+        checkRecord();
+        if (kind == TEXT) {
+            String formulaText = text();
+            return formulaText.isEmpty() ? destination : engine.evaluateTo(formulaText, destination);
+        }
+        long start = Metrics.ENABLED ? System.nanoTime() : 0L;
+        boolean error = false;
+        try {
+            NumberFormatter.formatTo(evaluate(), destination);
+        } catch (Exception e) {
+            destination.append(NumberFormatter.ERROR_TEXT);
+            error = true;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.EVALUATION.recordSince(start);
+            Metrics.evaluated(error);
+        }
+        return destination;
+    }
+
+    /**
+     * Copies the program of the current record into a {@link CompiledFormula}, for formulas evaluated many times,
+     * such as sweeps.
+     *
+     * @return the program
+     * @throws IllegalStateException if the reader is not on a program
+     */
+    public @NotNull CompiledFormula toCompiledFormula() {
+        if (kind != PROGRAM && kind != VALUE) {
+            throw new IllegalStateException("The current record is not a program");
+        }
+        if (kind == VALUE) {
+            return new CompiledFormula(new int[]{CompiledFormula.CONSTANT, 0}, new double[]{buffer.getDouble(constantsStart)},
+                    variableNames.clone(), 1);
+        }
+        double[] constants = new double[(codeStart - constantsStart) / 8];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = buffer.getDouble(constantsStart + 8 * i);
+        }
+        int[] code = new int[codeEnd - codeStart];
+        int length = 0;
+        for (int pc = codeStart; pc < codeEnd; pc++) {
+            byte opcode = buffer.get(pc);
+            code[length++] = opcode;
+            if (opcode == CompiledFormula.CONSTANT || opcode == CompiledFormula.VARIABLE) {
+                code[length++] = Short.toUnsignedInt(buffer.getShort(pc + 1));
+                pc += 2;
+            }
+        }
+        return new CompiledFormula(Arrays.copyOf(code, length), constants, variableNames.clone(), maxStackDepth);
+    }
+
+    /**
+     * Checks that the program of the current record only uses known opcodes and operands within their pools,
+     * that every operator finds its operands, that the stack stays within the declared depth,
+     * and that exactly one value is left at the end.
+     *
+     * @param constantCount the number of constants of the program
+     */
+    private void checkProgram(int constantCount) {
+        int depth = 0;
+        for (int pc = codeStart; pc < codeEnd; pc++) {
+            byte opcode = buffer.get(pc);
+            switch (opcode) {
+                case CompiledFormula.CONSTANT, CompiledFormula.VARIABLE -> {
+                    if (pc + 2 >= codeEnd) {
+                        throw new IllegalArgumentException("Truncated operand at offset " + pc);
+                    }
+                    int index = Short.toUnsignedInt(buffer.getShort(pc + 1));
+                    if (index >= (opcode == CompiledFormula.CONSTANT ? constantCount : variableNames.length)) {
+                        throw new IllegalArgumentException("Operand out of range at offset " + pc);
+                    }
+                    depth++;
+                    pc += 2;
+                }
+                case CompiledFormula.ADD, CompiledFormula.SUBTRACT, CompiledFormula.MULTIPLY, CompiledFormula.DIVIDE,
+                     CompiledFormula.MODULO, CompiledFormula.POWER -> depth--;
+                case CompiledFormula.NEGATE, CompiledFormula.SQRT -> {
+                    // Replace the value on top of the stack
+                }
+                default -> throw new IllegalArgumentException("Unknown opcode " + opcode + " at offset " + pc);
+            }
+            if (depth < 1 || depth > maxStackDepth) {
+                throw new IllegalArgumentException("Invalid stack depth at offset " + pc);
+            }
+        }
+        if (depth != 1) {
+            throw new IllegalArgumentException("Program leaves " + depth + " values at offset " + codeEnd);
+        }
+    }
+
+    private void checkRecord() {
+        if (kind == 0) {
+            throw new IllegalStateException("The reader is not on a record");
+        }
+    }
+
+    /**
+     * Decodes UTF-8 bytes of the buffer, without moving its position.
+     */
+    private @NotNull String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a compiled workload in the format read by {@link FormulaArchive}.
+ * <p>
+ * Each formula is compiled by {@link FormulaCompiler#tryCompile(String, String...)} with the variables of the archive,
+ * constants folded, and written as its program, or as its value when it folds into a single constant. Formulas
+ * the native compiler does not handle, invalid ones included, are written as text, so that the engine evaluates
+ * them and reports their errors exactly as it does for the text form. Records are written as the formulas come,
+ * so memory usage does not depend on the size of the workload.
+ */
+public final class FormulaArchiveWriter implements Closeable {
+
+    /**
+     * Largest operand index and stack depth of a program record, stored on two bytes.
+     */
+    private static final int MAX_INDEX = 0xFFFF;
+
+    private final OutputStream output;
+
+    private final String[] variableNames;
+
+    /**
+     * Record being written, reused for every formula.
+     */
+    private ByteBuffer record = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long programCount;
+    private long textCount;
+
+    /**
+     * Creates a writer, writing the header of the archive at once. The output is closed when the writer is.
+     *
+     * @param output        the destination of the archive, buffered by the caller
+     * @param variableNames the names of the variables of every formula, in the order their values will be given
+     * @throws IOException if the header cannot be written
+     * @throws IllegalArgumentException if there are more than 255 variables, or a name longer than 65535 bytes
+     */
+    public FormulaArchiveWriter(@NotNull OutputStream output, String @NotNull ... variableNames) throws IOException {
+        if (variableNames.length > 0xFF) {
+            throw new IllegalArgumentException("Too many variables: " + variableNames.length);
+        }
+        this.output = output;
+        this.variableNames = variableNames.clone();
+        ensureCapacity(7);
+        record.putInt(FormulaArchive.MAGIC).putShort((short) FormulaArchive.VERSION).put((byte) variableNames.length);
+        for (String name : variableNames) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_INDEX) {
+                throw new IllegalArgumentException("Variable name too long: " + name.length() + " characters");
+            }
+            ensureCapacity(2 + bytes.length);
+            record.putShort((short) bytes.length).put(bytes);
+        }
+        flushRecord();
+    }
+
+    /**
+     * Compiles a formula and writes its record.
+     *
+     * @param formulaText the formula, trimmed like the equal button does; a blank formula gives a blank result
+     * @return true if the formula was written as a program, false if it was written as text
+     * @throws IOException if the record cannot be written
+     */
+    public boolean add(@NotNull String formulaText) throws IOException {
+        String trimmed = formulaText.trim();
+        CompiledFormula program = trimmed.isEmpty() ? null : FormulaCompiler.tryCompile(trimmed, variableNames);
+        if (program != null && fits(program)) {
+            writeProgram(program);
+            programCount++;
+            return true;
+        }
+        byte[] bytes = trimmed.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(5 + bytes.length);
+        record.put(FormulaArchive.TEXT).putInt(bytes.length).put(bytes);
+        flushRecord();
+        textCount++;
+        return false;
+    }
+
+    /**
+     * @return the number of formulas written as programs
+     */
+    public long getProgramCount() {
+        return programCount;
+    }
+
+    /**
+     * @return the number of formulas written as text
+     */
+    public long getTextCount() {
+        return textCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * @return true if the operand indexes and the stack depth of the program fit on two bytes
+     */
+    private static boolean fits(@NotNull CompiledFormula program) {
+        return program.constants().length <= MAX_INDEX + 1 && program.getMaxStackDepth() <= MAX_INDEX;
+    }
+
+    private void writeProgram(@NotNull CompiledFormula program) throws IOException {
+        int[] code = program.code();
+        double[] constants = program.constants();
+        if (code.length == 2 && code[0] == CompiledFormula.CONSTANT) {
+            // Folded into a single constant: only the value is written
+            ensureCapacity(9);
+            record.put(FormulaArchive.VALUE).putDouble(constants[code[1]]);
+            flushRecord();
+            return;
+        }
+
+        // Opcodes take one byte, and their operands two instead of four
+        int codeLength = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            codeLength++;
+            if (code[pc] == CompiledFormula.CONSTANT || code[pc] == CompiledFormula.VARIABLE) {
+                codeLength += 2;
+                pc++;
+            }
+        }
+        ensureCapacity(1 + FormulaArchive.PROGRAM_HEADER_SIZE + 8 * constants.length + codeLength);
+        record.put(FormulaArchive.PROGRAM)
+                .putShort((short) program.getMaxStackDepth())
+                .putShort((short) constants.length)
+                .putInt(codeLength);
+        for (double constant : constants) {
+            record.putDouble(constant);
+        }
+        for (int pc = 0; pc < code.length; pc++) {
+            record.put((byte) code[pc]);
+            if (code[pc] == CompiledFormula.CONSTANT || code[pc] == CompiledFormula.VARIABLE) {
+                record.putShort((short) code[++pc]);
+            }
+        }
+        flushRecord();
+    }
+
+    /**
+     * Makes room for the given number of bytes after the current position of the record.
+     */
+    private void ensureCapacity(int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * record.capacity(), record.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            record.flip();
+            record = larger.put(record);
+        }
+    }
+
+    private void flushRecord() throws IOException {
+        output.write(record.array(), 0, record.position());
+        record.clear();
+    }
+}
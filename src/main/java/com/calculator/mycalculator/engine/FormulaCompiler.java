@@ -0,0 +1,622 @@
+package com.calculator.mycalculator.engine;
+
+import net.objecthunter.exp4j.function.Functions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles formulas into flat postfix programs ({@link CompiledFormula}) for the calculator's grammar:
+ * numbers, {@code + - * / % ^}, unary minus and plus, parentheses, {@code sqrt}, the constants
+ * {@code pi}, {@code π}, {@code e} and {@code φ}, and declared variables.
+ * <p>
+ * The tokenizer and the shunting-yard conversion follow exp4j 0.4.8 step by step (same number scanning,
+ * same unary rules, same precedences and associativity), so a formula accepted here is evaluated with exactly
+ * the same operations, in the same order, as {@code new ExpressionBuilder(formula).build().evaluate()}.
+ * Anything outside this subset, or anything exp4j would reject, is refused so that the caller can fall back
+ * to exp4j and keep its behavior. Sub-expressions made only of constants are folded at compile time.
+ * The same parser also produces unfolded {@link DecimalFormula} programs for the decimal precision mode,
+ * and {@link RationalFormula} programs for the exact arithmetic mode.
+ */
+public final class FormulaCompiler {
+
+    /**
+     * Token types, as in the exp4j tokenizer.
+     */
+    private static final int NUMBER = 0;
+    private static final int VARIABLE = 1;
+    private static final int FUNCTION = 2;
+    private static final int OPERATOR = 3;
+    private static final int OPEN = 4;
+    private static final int CLOSE = 5;
+
+    /**
+     * Precedences of the exp4j built-in operators.
+     */
+    private static final int PRECEDENCE_ADDITION = 500;
+    private static final int PRECEDENCE_MULTIPLICATION = 1000;
+    private static final int PRECEDENCE_UNARY = 5000;
+    private static final int PRECEDENCE_POWER = 10000;
+
+    /**
+     * Operators and functions, described like exp4j describes them.
+     */
+    private static final Operator ADD = new Operator(CompiledFormula.ADD, 2, true, PRECEDENCE_ADDITION);
+    private static final Operator SUBTRACT = new Operator(CompiledFormula.SUBTRACT, 2, true, PRECEDENCE_ADDITION);
+    private static final Operator MULTIPLY = new Operator(CompiledFormula.MULTIPLY, 2, true, PRECEDENCE_MULTIPLICATION);
+    private static final Operator DIVIDE = new Operator(CompiledFormula.DIVIDE, 2, true, PRECEDENCE_MULTIPLICATION);
+    private static final Operator MODULO = new Operator(CompiledFormula.MODULO, 2, true, PRECEDENCE_MULTIPLICATION);
+    private static final Operator POWER = new Operator(CompiledFormula.POWER, 2, false, PRECEDENCE_POWER);
+    private static final Operator NEGATE = new Operator(CompiledFormula.NEGATE, 1, false, PRECEDENCE_UNARY);
+    private static final Operator IDENTITY = new Operator(-1, 1, false, PRECEDENCE_UNARY);
+    private static final Operator SQRT = new Operator(CompiledFormula.SQRT, 1, false, 0);
+
+    /**
+     * Constants predefined by exp4j, with the values it uses.
+     */
+    private static final Map<String, Double> CONSTANTS = Map.of(
+            "pi", Math.PI,
+            "π", Math.PI,
+            "e", Math.E,
+            "φ", 1.61803398874d);
+
+    /**
+     * Decimal values of the constants used by {@link DecimalFormula}, more precise than their {@code double} values,
+     * except for φ which keeps the value exp4j gives it.
+     */
+    private static final Map<String, String> DECIMAL_CONSTANTS = Map.of(
+            "pi", "3.14159265358979323846264338327950288419716939937511",
+            "π", "3.14159265358979323846264338327950288419716939937511",
+            "e", "2.71828182845904523536028747135266249775724709369996",
+            "φ", "1.61803398874");
+
+    /**
+     * Largest power of ten of a number compiled for exact evaluation, e.g. 1e400. Beyond, the formula is left
+     * to the {@code double} evaluation rather than expanded into a huge fraction.
+     */
+    private static final int MAX_RATIONAL_SCALE = 1000;
+
+    private FormulaCompiler() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Compiles a formula.
+     *
+     * @param formulaText   the formula to compile
+     * @param variableNames the names of the variables used in the formula, in the order their values will be given
+     * @return the compiled program
+     * @throws IllegalArgumentException if the formula is invalid or outside the supported grammar
+     */
+    public static @NotNull CompiledFormula compile(@NotNull String formulaText, String @NotNull ... variableNames) {
+        CompiledFormula formula = tryCompile(formulaText, variableNames);
+        if (formula == null) {
+            throw new IllegalArgumentException("Unsupported formula: " + formulaText);
+        }
+        return formula;
+    }
+
+    /**
+     * Compiles a formula, or returns null if it is invalid or outside the supported grammar.
+     * Refusing a formula costs no exception, which keeps fallbacks cheap.
+     *
+     * @param formulaText   the formula to compile
+     * @param variableNames the names of the variables used in the formula, in the order their values will be given
+     * @return the compiled program, or null
+     */
+    public static @Nullable CompiledFormula tryCompile(@NotNull String formulaText, String @NotNull ... variableNames) {
+        // Variables may not shadow a function or a constant
+        Map<String, Integer> variables = new HashMap<>();
+        for (String name : variableNames) {
+            if (Functions.getBuiltinFunction(name) != null || CONSTANTS.containsKey(name)
+                    || variables.putIfAbsent(name, variables.size()) != null) {
+                return null;
+            }
+        }
+
+        Emitter output = new Emitter(true);
+        return parse(formulaText, variables, output) ? output.build(variableNames) : null;
+    }
+
+    /**
+     * Compiles a formula without variables for decimal evaluation, or returns null if it is invalid
+     * or outside the supported grammar. Constants are not folded, and numbers keep their exact decimal value.
+     *
+     * @param formulaText the formula to compile
+     * @return the compiled program, or null
+     */
+    public static @Nullable DecimalFormula tryCompileDecimal(@NotNull String formulaText) {
+        Emitter output = new Emitter(false);
+        return parse(formulaText, Map.of(), output) ? output.buildDecimal() : null;
+    }
+
+    /**
+     * Compiles a formula without variables for exact evaluation, or returns null if it is invalid, outside
+     * the supported grammar, or uses an irrational constant such as {@code pi}. Constants are not folded,
+     * and numbers keep their exact value as fractions.
+     *
+     * @param formulaText the formula to compile
+     * @return the compiled program, or null
+     */
+    public static @Nullable RationalFormula tryCompileRational(@NotNull String formulaText) {
+        Emitter output = new Emitter(false);
+        return parse(formulaText, Map.of(), output) ? output.buildRational() : null;
+    }
+
+    /**
+     * Checks whether a name is taken by a constant or a function, in which case it cannot name a variable.
+     *
+     * @param name the name to check
+     * @return true if the name is a constant or a built-in function of exp4j
+     */
+    public static boolean isReservedName(@NotNull String name) {
+        return CONSTANTS.containsKey(name) || Functions.getBuiltinFunction(name) != null;
+    }
+
+    /**
+     * Lists the names of the variables a formula uses, i.e. the names that are neither constants nor functions,
+     * in the order of their first appearance. A name is a run of letters, digits and underscores starting with
+     * a letter or an underscore; numbers are skipped with their exponent, so that {@code 2e3} names nothing.
+     *
+     * @param formulaText the formula
+     * @return the names of the variables, without duplicates
+     */
+    public static @NotNull List<String> findVariableNames(@NotNull String formulaText) {
+        char[] expression = formulaText.toCharArray();
+        Set<String> names = new LinkedHashSet<>();
+        int pos = 0;
+        while (pos < expression.length) {
+            char ch = expression[pos];
+            if (Character.isDigit(ch) || ch == '.') {
+                pos += numberLength(expression, pos);
+            } else if (Character.isLetter(ch) || ch == '_') {
+                int end = pos + 1;
+                while (end < expression.length
+                        && (Character.isLetterOrDigit(expression[end]) || expression[end] == '_')) {
+                    end++;
+                }
+                String name = new String(expression, pos, end - pos);
+                if (!isReservedName(name)) {
+                    names.add(name);
+                }
+                pos = end;
+            } else {
+                pos++;
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    /**
+     * Tokenizes a formula and converts it to postfix order, exactly as exp4j does, sending every value
+     * and operator to the emitter.
+     *
+     * @param formulaText the formula to parse
+     * @param variables   the indexes of the declared variables, by name
+     * @param output      the emitter receiving the program
+     * @return false if the formula is invalid or outside the supported grammar
+     */
+    private static boolean parse(@NotNull String formulaText, @NotNull Map<String, Integer> variables,
+                                 @NotNull Emitter output) {
+        char[] expression = formulaText.trim().toCharArray();
+        if (expression.length == 0) {
+            return false;
+        }
+
+        ArrayDeque<Token> stack = new ArrayDeque<>();
+        Token last = null;
+        int pos = 0;
+        while (pos < expression.length) {
+            char ch = expression[pos];
+            while (Character.isWhitespace(ch)) {
+                if (++pos == expression.length) {
+                    return false;
+                }
+                ch = expression[pos];
+            }
+
+            Token token;
+            if (Character.isDigit(ch) || ch == '.') {
+                // A number right after a number is an error, after a value exp4j would multiply implicitly
+                if (last != null && isValue(last)) {
+                    return false;
+                }
+                int length = numberLength(expression, pos);
+                String literal = new String(expression, pos, length);
+                double value;
+                try {
+                    value = Double.parseDouble(literal);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                pos += length;
+                token = new Token(NUMBER, null);
+                output.pushConstant(value, literal);
+            } else if (ch == '(' || ch == '{' || ch == '[') {
+                if (last != null && isValue(last)) {
+                    return false;
+                }
+                pos++;
+                token = new Token(OPEN, null);
+                stack.push(token);
+            } else if (ch == ')' || ch == '}' || ch == ']') {
+                pos++;
+                token = new Token(CLOSE, null);
+
+                // Pop operators until the matching parenthesis, then the function it belongs to
+                while (!stack.isEmpty() && stack.peek().type != OPEN) {
+                    if (!output.apply(stack.pop().operator)) {
+                        return false;
+                    }
+                }
+                if (stack.isEmpty()) {
+                    return false;
+                }
+                stack.pop();
+                if (!stack.isEmpty() && stack.peek().type == FUNCTION && !output.apply(stack.pop().operator)) {
+                    return false;
+                }
+            } else if (ch == '+' || ch == '-' || ch == '*' || ch == '/' || ch == '%' || ch == '^') {
+                pos++;
+                Operator operator = operator(ch, last == null || last.type == OPEN || last.type == OPERATOR);
+                token = new Token(OPERATOR, operator);
+
+                // Shunting yard: pop the operators that bind at least as tightly, exactly as exp4j does
+                while (!stack.isEmpty() && stack.peek().type == OPERATOR) {
+                    Operator top = stack.peek().operator;
+                    if (operator.operands == 1 && top.operands == 2) {
+                        break;
+                    } else if ((operator.leftAssociative && operator.precedence <= top.precedence)
+                            || operator.precedence < top.precedence) {
+                        if (!output.apply(stack.pop().operator)) {
+                            return false;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                stack.push(token);
+            } else if (Character.isLetter(ch) || ch == '_') {
+                if (last != null && isValue(last)) {
+                    return false;
+                }
+
+                // Find the longest known name, as exp4j does, among variables, constants and functions
+                int end = pos;
+                int nameLength = 0;
+                String name = null;
+                while (end < expression.length && isNameCharacter(expression[end])) {
+                    end++;
+                    String candidate = new String(expression, pos, end - pos);
+                    if (variables.containsKey(candidate) || CONSTANTS.containsKey(candidate)
+                            || Functions.getBuiltinFunction(candidate) != null) {
+                        name = candidate;
+                        nameLength = end - pos;
+                    }
+                }
+                if (name == null) {
+                    return false;
+                }
+                pos += nameLength;
+
+                if (variables.containsKey(name)) {
+                    token = new Token(VARIABLE, null);
+                    output.pushVariable(variables.get(name));
+                } else if (CONSTANTS.containsKey(name)) {
+                    token = new Token(VARIABLE, null);
+                    output.pushConstant(CONSTANTS.get(name), DECIMAL_CONSTANTS.get(name));
+                    output.irrational = true;
+                } else if (name.equals("sqrt")) {
+                    token = new Token(FUNCTION, SQRT);
+                    stack.push(token);
+                } else {
+                    // Other exp4j functions are left to exp4j
+                    return false;
+                }
+            } else {
+                return false;
+            }
+            last = token;
+        }
+
+        // Pop the remaining operators and functions
+        while (!stack.isEmpty()) {
+            Token token = stack.pop();
+            if (token.type == OPEN || !output.apply(token.operator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the number starting at the given position, scanning like exp4j:
+     * digits, points, exponent markers and a sign right after an exponent marker, without a trailing marker.
+     *
+     * @param expression the formula
+     * @param offset     the position of the first character of the number
+     * @return the number of characters of the number
+     */
+    private static int numberLength(char @NotNull [] expression, int offset) {
+        int length = 1;
+        while (offset + length < expression.length) {
+            char ch = expression[offset + length];
+            char previous = expression[offset + length - 1];
+            boolean afterExponent = previous == 'e' || previous == 'E';
+            if (!(Character.isDigit(ch) || ch == '.' || ch == 'e' || ch == 'E'
+                    || (afterExponent && (ch == '-' || ch == '+')))) {
+                break;
+            }
+            length++;
+        }
+
+        // An exponent marker at the end is not part of the number
+        char lastChar = expression[offset + length - 1];
+        if (length > 1 && (lastChar == 'e' || lastChar == 'E')) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the exp4j built-in operator for a character.
+     *
+     * @param symbol the operator character
+     * @param unary  true if an operand is expected at this position, which makes + and - unary
+     * @return the operator
+     */
+    private static @NotNull Operator operator(char symbol, boolean unary) {
+        return switch (symbol) {
+            case '+' -> unary ? IDENTITY : ADD;
+            case '-' -> unary ? NEGATE : SUBTRACT;
+            case '*' -> MULTIPLY;
+            case '/' -> DIVIDE;
+            case '%' -> MODULO;
+            default -> POWER;
+        };
+    }
+
+    /**
+     * Checks whether a token ends a value, in which case exp4j would insert an implicit multiplication
+     * before a following number, name or parenthesis.
+     *
+     * @param token the previous token
+     * @return true if the token is a number, a variable or a closing parenthesis
+     */
+    private static boolean isValue(@NotNull Token token) {
+        return token.type == NUMBER || token.type == VARIABLE || token.type == CLOSE;
+    }
+
+    /**
+     * @param ch the character to check
+     * @return true if the character may be part of a variable or function name
+     */
+    private static boolean isNameCharacter(char ch) {
+        return Character.isLetter(ch) || Character.isDigit(ch) || ch == '_' || ch == '.';
+    }
+
+    /**
+     * An operator or function, described by its opcode, its number of operands, its associativity and its precedence.
+     * The opcode is negative for the unary plus, which emits no instruction.
+     */
+    private record Operator(int opcode, int operands, boolean leftAssociative, int precedence) {
+    }
+
+    /**
+     * A token of the formula. Only operators and functions carry an operator.
+     */
+    private record Token(int type, Operator operator) {
+    }
+
+    /**
+     * Builds the postfix program, checking that every operator finds its operands
+     * and, if requested, folding operations whose operands are all constants.
+     */
+    private static final class Emitter {
+
+        /**
+         * Whether operations on constants are computed at compile time.
+         */
+        private final boolean fold;
+
+        /**
+         * Whether a named constant, whose value is irrational or approximated, was pushed.
+         */
+        boolean irrational;
+
+        private int[] code = new int[16];
+        private int codeSize;
+        private double[] constants = new double[8];
+        private String[] literals = new String[8];
+        private int constantCount;
+
+        /**
+         * Whether each value currently on the stack is a constant, i.e. was produced by the last instructions.
+         */
+        private boolean[] constantOnStack = new boolean[8];
+        private int depth;
+        private int maxDepth;
+
+        Emitter(boolean fold) {
+            this.fold = fold;
+        }
+
+        /**
+         * Pushes a constant.
+         *
+         * @param value   the value of the constant
+         * @param literal the decimal text of the constant, or null for a folded value
+         */
+        void pushConstant(double value, @Nullable String literal) {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+                literals = Arrays.copyOf(literals, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            literals[constantCount] = literal;
+            emit(CompiledFormula.CONSTANT, constantCount++);
+            push(fold);
+        }
+
+        void pushVariable(int index) {
+            emit(CompiledFormula.VARIABLE, index);
+            push(false);
+        }
+
+        /**
+         * Applies an operator to the values on the stack.
+         *
+         * @param operator the operator to apply
+         * @return false if there are not enough operands
+         */
+        boolean apply(@NotNull Operator operator) {
+            if (depth < operator.operands) {
+                return false;
+            }
+            if (operator.opcode < 0) {
+                // Unary plus leaves its operand unchanged
+                return true;
+            }
+            if (operator.operands == 1) {
+                if (constantOnStack[depth - 1]) {
+                    double operand = popConstant();
+                    pushConstant(operator.opcode == CompiledFormula.NEGATE ? -operand : Math.sqrt(operand), null);
+                } else {
+                    emit(operator.opcode);
+                }
+                return true;
+            }
+
+            // Fold binary operations on two constants, except divisions by zero which must fail at evaluation
+            boolean foldable = constantOnStack[depth - 1] && constantOnStack[depth - 2]
+                    && !((operator.opcode == CompiledFormula.DIVIDE || operator.opcode == CompiledFormula.MODULO)
+                    && constants[constantCount - 1] == 0d);
+            if (foldable) {
+                double right = popConstant();
+                double left = popConstant();
+                pushConstant(fold(operator.opcode, left, right), null);
+            } else {
+                emit(operator.opcode);
+                depth--;
+                constantOnStack[depth - 1] = false;
+            }
+            return true;
+        }
+
+        /**
+         * Finishes the program.
+         *
+         * @param variableNames the names of the variables
+         * @return the program, or null if it does not leave exactly one value
+         */
+        @Nullable CompiledFormula build(String @NotNull [] variableNames) {
+            if (depth != 1) {
+                return null;
+            }
+            return new CompiledFormula(Arrays.copyOf(code, codeSize), Arrays.copyOf(constants, constantCount),
+                    variableNames.clone(), maxDepth);
+        }
+
+        /**
+         * Finishes the program for decimal evaluation.
+         *
+         * @return the program, or null if it does not leave exactly one value
+         */
+        @Nullable DecimalFormula buildDecimal() {
+            if (depth != 1) {
+                return null;
+            }
+            BigDecimal[] decimals = new BigDecimal[constantCount];
+            for (int i = 0; i < constantCount; i++) {
+                try {
+                    decimals[i] = new BigDecimal(literals[i]);
+                } catch (NumberFormatException e) {
+                    // Exponents beyond the BigDecimal range
+                    return null;
+                }
+            }
+            return new DecimalFormula(Arrays.copyOf(code, codeSize), Arrays.copyOf(constants, constantCount),
+                    decimals, maxDepth);
+        }
+
+        /**
+         * Finishes the program for exact evaluation.
+         *
+         * @return the program, or null if it does not leave exactly one value, uses a named constant, or has a number
+         * whose exact value would be unreasonably large
+         */
+        @Nullable RationalFormula buildRational() {
+            if (depth != 1 || irrational) {
+                return null;
+            }
+            Rational[] rationals = new Rational[constantCount];
+            for (int i = 0; i < constantCount; i++) {
+                BigDecimal decimal;
+                try {
+                    decimal = new BigDecimal(literals[i]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (Math.abs(decimal.scale()) > MAX_RATIONAL_SCALE) {
+                    return null;
+                }
+                rationals[i] = Rational.valueOf(decimal);
+            }
+            return new RationalFormula(Arrays.copyOf(code, codeSize), Arrays.copyOf(constants, constantCount),
+                    rationals, maxDepth);
+        }
+
+        private static double fold(int opcode, double left, double right) {
+            return switch (opcode) {
+                case CompiledFormula.ADD -> left + right;
+                case CompiledFormula.SUBTRACT -> left - right;
+                case CompiledFormula.MULTIPLY -> left * right;
+                case CompiledFormula.DIVIDE -> left / right;
+                case CompiledFormula.MODULO -> left % right;
+                default -> Math.pow(left, right);
+            };
+        }
+
+        /**
+         * Removes the constant on top of the stack, which is always the last instruction and the last pool entry.
+         */
+        private double popConstant() {
+            codeSize -= 2;
+            depth--;
+            return constants[--constantCount];
+        }
+
+        private void push(boolean constant) {
+            if (depth == constantOnStack.length) {
+                constantOnStack = Arrays.copyOf(constantOnStack, depth * 2);
+            }
+            constantOnStack[depth++] = constant;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void emit(int opcode) {
+            ensureCode(1);
+            code[codeSize++] = opcode;
+        }
+
+        private void emit(int opcode, int operand) {
+            ensureCode(2);
+            code[codeSize++] = opcode;
+            code[codeSize++] = operand;
+        }
+
+        private void ensureCode(int extra) {
+            if (codeSize + extra > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, codeSize + extra));
+            }
+        }
+    }
+}
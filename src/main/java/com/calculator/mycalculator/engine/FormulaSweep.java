@@ -0,0 +1,207 @@
+package com.calculator.mycalculator.engine;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import net.objecthunter.exp4j.ValidationResult;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Evaluates a formula with one variable over many values of that variable.
+ * <p>
+ * The formula (e.g. "x^2 + 3*x") is compiled once when the sweep is created, then evaluated for each input value
+ * through a primitive {@code double[]} in/out API, without any per-point string parsing or formatting.
+ * Formulas within the calculator's grammar run as a {@link CompiledFormula} over a reused stack, so that points are
+ * evaluated without boxing or allocation, and arrays of points run as a {@link ColumnFormula}, on SIMD registers
+ * when the Vector API is available; other formulas go through exp4j. A program loaded from a {@link FormulaArchive}
+ * can be swept as well, without parsing its formula again.
+ * A sweep owns its compiled expression and is therefore not thread-safe: use one sweep per thread.
+ */
+public class FormulaSweep {
+
+    /**
+     * Name of the variable used when none is given.
+     */
+    public static final String DEFAULT_VARIABLE = "x";
+
+    /**
+     * Native program of the formula, or null if the formula is evaluated by exp4j.
+     */
+    private final CompiledFormula program;
+
+    /**
+     * Variable values and evaluation stack of the native program, reused for every point.
+     */
+    private final double[] variables = new double[1];
+    private final double[] stack;
+
+    /**
+     * Column evaluation of the native program, or null if the formula is evaluated by exp4j.
+     */
+    private final ColumnFormula columns;
+
+    /**
+     * Compiled exp4j expression owned by this sweep, or null if the formula runs natively.
+     */
+    private final Expression expression;
+
+    /**
+     * Name of the variable that receives the input values.
+     */
+    private final String variableName;
+
+    /**
+     * Compiles the formula for the default variable {@value #DEFAULT_VARIABLE}.
+     *
+     * @param formulaText the formula to compile
+     * @throws IllegalArgumentException if the formula is invalid
+     */
+    public FormulaSweep(@NotNull String formulaText) {
+        this(formulaText, DEFAULT_VARIABLE);
+    }
+
+    /**
+     * Compiles the formula for the given variable.
+     *
+     * @param formulaText  the formula to compile
+     * @param variableName the name of the variable used in the formula
+     * @throws IllegalArgumentException if the formula is invalid, or if the variable name clashes with a function
+     */
+    public FormulaSweep(@NotNull String formulaText, @NotNull String variableName) {
+        this.variableName = variableName;
+        this.program = FormulaCompiler.tryCompile(formulaText, variableName);
+        if (program != null) {
+            this.stack = new double[program.getMaxStackDepth()];
+            this.columns = new ColumnFormula(program);
+            this.expression = null;
+            return;
+        }
+
+        this.stack = null;
+        this.columns = null;
+        try {
+            this.expression = new ExpressionBuilder(formulaText).variable(variableName).build();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // exp4j reports some malformed formulas with other exceptions, e.g. an unbalanced parenthesis
+            throw new IllegalArgumentException("Invalid formula: " + formulaText, e);
+        }
+
+        // Reject malformed formulas now rather than failing on every point
+        ValidationResult validation = expression.validate(false);
+        if (!validation.isValid()) {
+            throw new IllegalArgumentException("Invalid formula: " + String.join(", ", validation.getErrors()));
+        }
+    }
+
+    /**
+     * Wraps a program already compiled, e.g. loaded from a {@link FormulaArchive}, without parsing anything.
+     *
+     * @param program the program, whose only variable receives the input values
+     * @throws IllegalArgumentException if the program does not have exactly one variable
+     */
+    public FormulaSweep(@NotNull CompiledFormula program) {
+        if (program.getVariableCount() != 1) {
+            throw new IllegalArgumentException("A sweep needs exactly one variable, the program has "
+                    + program.getVariableCount());
+        }
+        this.variableName = program.getVariableNames()[0];
+        this.program = program;
+        this.stack = new double[program.getMaxStackDepth()];
+        this.columns = new ColumnFormula(program);
+        this.expression = null;
+    }
+
+    /**
+     * Evaluates the formula for a single value of the variable.
+     *
+     * @param value the value of the variable
+     * @return the result of the formula
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    public double evaluate(double value) {
+        if (program != null) {
+            variables[0] = value;
+            return program.evaluate(variables, stack);
+        }
+        return expression.setVariable(variableName, value).evaluate();
+    }
+
+    /**
+     * Evaluates the formula for each input value and stores the results in the output array.
+     * <p>
+     * Points whose evaluation fails (for example a division by zero) are stored as {@link Double#NaN}.
+     *
+     * @param input  the values of the variable
+     * @param output the array receiving the results, at least as long as the input
+     * @throws IllegalArgumentException if the output array is too short
+     */
+    public void evaluate(double @NotNull [] input, double @NotNull [] output) {
+        evaluate(input, output, input.length);
+    }
+
+    /**
+     * Evaluates the formula for the first {@code count} input values and stores the results in the output array.
+     * <p>
+     * Points whose evaluation fails (for example a division by zero) are stored as {@link Double#NaN}.
+     *
+     * @param input  the values of the variable
+     * @param output the array receiving the results
+     * @param count  the number of values to evaluate
+     * @throws IllegalArgumentException if one of the arrays holds fewer than {@code count} values
+     */
+    public void evaluate(double @NotNull [] input, double @NotNull [] output, int count) {
+        if (columns != null) {
+            columns.evaluate(input, output, count);
+            return;
+        }
+        if (count > input.length || count > output.length) {
+            throw new IllegalArgumentException("Arrays are shorter than the number of values to evaluate: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                output[i] = evaluate(input[i]);
+            } catch (ArithmeticException e) {
+                output[i] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the formula for the first {@code count} input values and stores the results in the output array.
+     * <p>
+     * Points whose evaluation fails are stored as {@link Double#NaN}, and flagged in the failures array, so that
+     * they are not mistaken for NaN results such as sqrt(-1).
+     *
+     * @param input    the values of the variable
+     * @param output   the array receiving the results
+     * @param failures the array receiving, for each point, whether its evaluation failed
+     * @param count    the number of values to evaluate
+     * @throws IllegalArgumentException if one of the arrays holds fewer than {@code count} values
+     */
+    public void evaluate(double @NotNull [] input, double @NotNull [] output, boolean @NotNull [] failures, int count) {
+        if (columns != null) {
+            columns.evaluate(input, output, failures, count);
+            return;
+        }
+        if (count > input.length || count > output.length || count > failures.length) {
+            throw new IllegalArgumentException("Arrays are shorter than the number of values to evaluate: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                output[i] = evaluate(input[i]);
+                failures[i] = false;
+            } catch (ArithmeticException e) {
+                output[i] = Double.NaN;
+                failures[i] = true;
+            }
+        }
+    }
+
+    /**
+     * @return the name of the variable that receives the input values
+     */
+    public @NotNull String getVariableName() {
+        return variableName;
+    }
+}
@@ -0,0 +1,103 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * Formats calculation results the way the calculator displays them.
+ * This class is shared by the user interface and the headless modes,
+ * so that every entry point renders the same number with the same text.
+ */
+public final class NumberFormatter {
+
+    /**
+     * Text displayed instead of a result when a formula cannot be evaluated.
+     */
+    public static final String ERROR_TEXT = "Erreur";
+
+    /**
+     * Maximum number of digits of an integer written in full by the decimal formatting,
+     * the precision of {@link java.math.MathContext#DECIMAL128}.
+     */
+    private static final int MAX_PLAIN_DIGITS = 34;
+
+    private NumberFormatter() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Formats a number as a string, removing the decimal point if the number is an integer.
+     * <p>
+     * Integers are written with all their digits over the whole {@code long} range (e.g. 1e10 gives "10000000000").
+     * Other numbers, including those beyond the {@code long} range, are written as floating-point strings.
+     *
+     * @param number the number to format
+     * @return a string representing the formatted number
+     */
+    public static @NotNull String format(double number) {
+        if (isLongValue(number)) {
+            return Long.toString((long) number);
+        } else {
+            return Double.toString(number);
+        }
+    }
+
+    /**
+     * Appends a formatted number to the given builder, following the same rules as {@link #format(double)}.
+     * <p>
+     * Integers are written digit by digit into the builder, and other numbers by {@link ShortestDigits}, with the digits
+     * of {@link Double#toString(double)}: a reused builder formats results without producing garbage.
+     *
+     * @param number      the number to format
+     * @param destination the builder receiving the text
+     * @return the destination builder
+     */
+    public static @NotNull StringBuilder formatTo(double number, @NotNull StringBuilder destination) {
+        if (isLongValue(number)) {
+            return destination.append((long) number);
+        } else {
+            return ShortestDigits.appendTo(number, destination);
+        }
+    }
+
+    /**
+     * Formats a decimal number as a string, without trailing zeros.
+     * <p>
+     * Integers of up to {@value #MAX_PLAIN_DIGITS} digits are written with all their digits (e.g. "10000000000"),
+     * larger ones in scientific notation (e.g. "1E+40"). Other numbers are written in plain notation, unless
+     * they are very small (e.g. "0.125", but "1.5E-7").
+     *
+     * @param number the number to format
+     * @return a string representing the formatted number
+     */
+    public static @NotNull String format(@NotNull BigDecimal number) {
+        return formatTo(number, new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends a formatted decimal number to the given builder, following the same rules as {@link #format(BigDecimal)}.
+     *
+     * @param number      the number to format
+     * @param destination the builder receiving the text
+     * @return the destination builder
+     */
+    public static @NotNull StringBuilder formatTo(@NotNull BigDecimal number, @NotNull StringBuilder destination) {
+        BigDecimal stripped = number.stripTrailingZeros();
+        if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= MAX_PLAIN_DIGITS) {
+            return destination.append(stripped.toPlainString());
+        }
+        return destination.append(stripped);
+    }
+
+    /**
+     * Checks whether a number is an integer that fits in a {@code long} without any loss.
+     * The bounds are checked first because casting larger values to {@code long} saturates.
+     *
+     * @param number the number to check
+     * @return true if the number can be written as a {@code long}
+     */
+    private static boolean isLongValue(double number) {
+        return number >= -0x1p63 && number < 0x1p63 && number == (long) number;
+    }
+}
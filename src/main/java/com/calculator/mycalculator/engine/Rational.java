@@ -0,0 +1,655 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * An exact fraction, for the exact arithmetic mode.
+ * <p>
+ * A rational number is kept in lowest terms, with a positive denominator, so that two equal numbers always have
+ * the same representation and no operation needs a final reduction. The numerator and the denominator are held
+ * in {@code long} fields while they fit, and promoted to {@link BigInteger} only when an operation overflows;
+ * a result that fits again goes back to {@code long}. Operations on {@code long} values cancel common factors
+ * before multiplying, which keeps the intermediate values small and the fast path long.
+ * <p>
+ * The {@code long} arithmetic is also available on pairs of slots of a {@code long} array, without allocating,
+ * for {@link RationalFormula}: a number at index {@code i} has its numerator at {@code 2i} and its denominator
+ * at {@code 2i + 1}. These operations return false on overflow, and on a division by zero, rather than throwing:
+ * the caller starts again on {@link BigInteger}, which costs less than the stack trace of an exception.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class Rational {
+
+    /**
+     * How a rational result is written.
+     */
+    public enum Notation {
+
+        /**
+         * As a reduced fraction, e.g. {@code 1/3}, or as an integer.
+         */
+        FRACTION,
+
+        /**
+         * As a decimal number: exact when the expansion terminates, e.g. {@code 0.375},
+         * otherwise rounded to {@link #DECIMAL_DIGITS} significant digits. Integers beyond 34 digits are written
+         * in scientific notation, like the results of the decimal precision mode.
+         */
+        DECIMAL
+    }
+
+    /**
+     * Significant digits of a decimal expansion that does not terminate, as many as the {@code double} display shows.
+     */
+    public static final int DECIMAL_DIGITS = 16;
+
+    public static final Rational ZERO = new Rational(0L, 1L, null, null);
+
+    public static final Rational ONE = new Rational(1L, 1L, null, null);
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private static final MathContext DECIMAL_CONTEXT = new MathContext(DECIMAL_DIGITS);
+
+    /**
+     * Numerator and denominator, when {@link #bigNumerator} is null.
+     */
+    private final long numerator;
+    private final long denominator;
+
+    /**
+     * Numerator and denominator of a number that does not fit in {@code long} fields, or null.
+     */
+    private final BigInteger bigNumerator;
+    private final BigInteger bigDenominator;
+
+    private Rational(long numerator, long denominator, BigInteger bigNumerator, BigInteger bigDenominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+        this.bigNumerator = bigNumerator;
+        this.bigDenominator = bigDenominator;
+    }
+
+    /**
+     * @param value an integer
+     * @return the integer as a rational number
+     */
+    public static @NotNull Rational valueOf(long value) {
+        return new Rational(value, 1L, null, null);
+    }
+
+    /**
+     * Creates a fraction, reduced to lowest terms.
+     *
+     * @param numerator   the numerator
+     * @param denominator the denominator
+     * @return the fraction
+     * @throws ArithmeticException if the denominator is zero
+     */
+    public static @NotNull Rational of(long numerator, long denominator) {
+        long[] slots = {numerator, denominator};
+        if (normalize(slots, 0)) {
+            return new Rational(slots[0], slots[1], null, null);
+        }
+        // A zero denominator is reported there, and Long.MIN_VALUE reduced
+        return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+    }
+
+    /**
+     * Creates a fraction already reduced by the arithmetic on {@code long} slots, without reducing it again.
+     *
+     * @param numerator   the numerator, coprime with the denominator
+     * @param denominator the denominator, positive
+     * @return the fraction
+     */
+    static @NotNull Rational ofReduced(long numerator, long denominator) {
+        return new Rational(numerator, denominator, null, null);
+    }
+
+    /**
+     * Creates a fraction, reduced to lowest terms.
+     *
+     * @param numerator   the numerator
+     * @param denominator the denominator
+     * @return the fraction
+     * @throws ArithmeticException if the denominator is zero
+     */
+    public static @NotNull Rational of(@NotNull BigInteger numerator, @NotNull BigInteger denominator) {
+        if (denominator.signum() == 0) {
+            throw new ArithmeticException("Division by zero!");
+        }
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+        if (fitsInLong(numerator) && fitsInLong(denominator)) {
+            return new Rational(numerator.longValue(), denominator.longValue(), null, null);
+        }
+        return new Rational(0L, 0L, numerator, denominator);
+    }
+
+    /**
+     * @param value a decimal number
+     * @return its exact value as a fraction, e.g. 3/8 for 0.375
+     */
+    public static @NotNull Rational valueOf(@NotNull BigDecimal value) {
+        if (value.scale() <= 0) {
+            return of(value.toBigIntegerExact(), BigInteger.ONE);
+        }
+        return of(value.unscaledValue(), BigInteger.TEN.pow(value.scale()));
+    }
+
+    /**
+     * Parses a number as the calculator writes it: a decimal number, possibly in scientific notation,
+     * or a fraction such as {@code -1/3}, possibly between parentheses and preceded by a minus sign.
+     *
+     * @param text the text to parse
+     * @return the exact value of the text
+     * @throws NumberFormatException if the text is not a number, or if it is a fraction with a zero denominator
+     */
+    public static @NotNull Rational parse(@NotNull CharSequence text) {
+        String number = text.toString().trim();
+        boolean negated = number.startsWith("-(");
+        if (negated) {
+            number = number.substring(1);
+        }
+        if (number.startsWith("(") && number.endsWith(")")) {
+            number = number.substring(1, number.length() - 1).trim();
+        }
+        int slash = number.indexOf('/');
+        Rational value;
+        try {
+            value = slash < 0 ? valueOf(new BigDecimal(number))
+                    : of(new BigInteger(number.substring(0, slash).trim()), new BigInteger(number.substring(slash + 1).trim()));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Not a number: " + text);
+        }
+        return negated ? value.negate() : value;
+    }
+
+    /**
+     * @return the numerator, negative if the number is
+     */
+    public @NotNull BigInteger getNumerator() {
+        return bigNumerator != null ? bigNumerator : BigInteger.valueOf(numerator);
+    }
+
+    /**
+     * @return the denominator, always positive
+     */
+    public @NotNull BigInteger getDenominator() {
+        return bigDenominator != null ? bigDenominator : BigInteger.valueOf(denominator);
+    }
+
+    /**
+     * @return the number of bits of the numerator, without its sign
+     */
+    int numeratorBitLength() {
+        return bigNumerator != null ? bigNumerator.bitLength() : 64 - Long.numberOfLeadingZeros(Math.abs(numerator));
+    }
+
+    /**
+     * @return the number of bits of the denominator
+     */
+    int denominatorBitLength() {
+        return bigDenominator != null ? bigDenominator.bitLength() : 64 - Long.numberOfLeadingZeros(denominator);
+    }
+
+    /**
+     * @return true if the numerator and the denominator are held in {@code long} fields
+     */
+    public boolean isCompact() {
+        return bigNumerator == null;
+    }
+
+    /**
+     * @return true if the number can go through the arithmetic on {@code long} slots
+     */
+    private boolean fitsInSlots() {
+        return bigNumerator == null && numerator != Long.MIN_VALUE;
+    }
+
+    /**
+     * @return true if the denominator is 1
+     */
+    public boolean isInteger() {
+        return bigNumerator == null ? denominator == 1L : bigDenominator.equals(BigInteger.ONE);
+    }
+
+    /**
+     * @return -1, 0 or 1 as the number is negative, zero or positive
+     */
+    public int signum() {
+        return bigNumerator == null ? Long.signum(numerator) : bigNumerator.signum();
+    }
+
+    public @NotNull Rational add(@NotNull Rational other) {
+        if (fitsInSlots() && other.fitsInSlots()) {
+            long[] slots = {numerator, denominator, other.numerator, other.denominator};
+            if (add(slots, 0)) {
+                return new Rational(slots[0], slots[1], null, null);
+            }
+            // Promoted below
+        }
+        return of(getNumerator().multiply(other.getDenominator()).add(other.getNumerator().multiply(getDenominator())),
+                getDenominator().multiply(other.getDenominator()));
+    }
+
+    public @NotNull Rational subtract(@NotNull Rational other) {
+        return add(other.negate());
+    }
+
+    public @NotNull Rational multiply(@NotNull Rational other) {
+        if (fitsInSlots() && other.fitsInSlots()) {
+            long[] slots = {numerator, denominator, other.numerator, other.denominator};
+            if (multiply(slots, 0)) {
+                return new Rational(slots[0], slots[1], null, null);
+            }
+            // Promoted below
+        }
+        return of(getNumerator().multiply(other.getNumerator()), getDenominator().multiply(other.getDenominator()));
+    }
+
+    /**
+     * @param other the divisor
+     * @return the quotient
+     * @throws ArithmeticException if the divisor is zero
+     */
+    public @NotNull Rational divide(@NotNull Rational other) {
+        if (other.signum() == 0) {
+            throw new ArithmeticException("Division by zero!");
+        }
+        return multiply(other.inverse());
+    }
+
+    /**
+     * Computes the remainder of the division truncated toward zero, like the {@code %} operator of Java:
+     * the result has the sign of this number.
+     *
+     * @param other the divisor
+     * @return the remainder
+     * @throws ArithmeticException if the divisor is zero
+     */
+    public @NotNull Rational remainder(@NotNull Rational other) {
+        Rational quotient = divide(other);
+        BigInteger truncated = quotient.getNumerator().divide(quotient.getDenominator());
+        return subtract(other.multiply(of(truncated, BigInteger.ONE)));
+    }
+
+    public @NotNull Rational negate() {
+        if (bigNumerator == null && numerator != Long.MIN_VALUE) {
+            return new Rational(-numerator, denominator, null, null);
+        }
+        return of(getNumerator().negate(), getDenominator());
+    }
+
+    /**
+     * @return the inverse of the number
+     * @throws ArithmeticException if the number is zero
+     */
+    public @NotNull Rational inverse() {
+        if (signum() == 0) {
+            throw new ArithmeticException("Division by zero!");
+        }
+        if (bigNumerator == null && numerator != Long.MIN_VALUE) {
+            return numerator > 0 ? new Rational(denominator, numerator, null, null)
+                    : new Rational(-denominator, -numerator, null, null);
+        }
+        return of(getDenominator(), getNumerator());
+    }
+
+    /**
+     * Raises the number to an integer power.
+     *
+     * @param exponent the exponent, negative for the power of the inverse
+     * @return the power
+     * @throws ArithmeticException if the number is zero and the exponent negative
+     */
+    public @NotNull Rational pow(int exponent) {
+        if (exponent < 0) {
+            return inverse().pow(-exponent);
+        }
+        return of(getNumerator().pow(exponent), getDenominator().pow(exponent));
+    }
+
+    /**
+     * @return the exact square root of the number, or null if it is negative or not the square of a rational number
+     */
+    public @Nullable Rational sqrt() {
+        if (signum() < 0) {
+            return null;
+        }
+        BigInteger[] numeratorRoot = getNumerator().sqrtAndRemainder();
+        BigInteger[] denominatorRoot = getDenominator().sqrtAndRemainder();
+        if (numeratorRoot[1].signum() != 0 || denominatorRoot[1].signum() != 0) {
+            return null;
+        }
+        return of(numeratorRoot[0], denominatorRoot[0]);
+    }
+
+    /**
+     * @return the closest {@code double} to the number, or an infinity beyond its range
+     */
+    public double doubleValue() {
+        if (bigNumerator == null && Math.abs(numerator) < (1L << 53) && denominator < (1L << 53)) {
+            // Both are exact doubles, and the division rounds once
+            return (double) numerator / denominator;
+        }
+        return new BigDecimal(getNumerator()).divide(new BigDecimal(getDenominator()), MathContext.DECIMAL128).doubleValue();
+    }
+
+    /**
+     * Appends the number in the given notation.
+     *
+     * @param notation    the notation
+     * @param destination the builder receiving the text
+     * @return the destination builder
+     */
+    public @NotNull StringBuilder formatTo(@NotNull Notation notation, @NotNull StringBuilder destination) {
+        if (bigNumerator == null) {
+            return formatTo(numerator, denominator, notation, destination);
+        }
+        if (notation == Notation.FRACTION) {
+            destination.append(bigNumerator);
+            return bigDenominator.equals(BigInteger.ONE) ? destination : destination.append('/').append(bigDenominator);
+        }
+        return formatDecimalTo(bigNumerator, bigDenominator, destination);
+    }
+
+    /**
+     * @param notation the notation
+     * @return the number in the given notation
+     */
+    public @NotNull String format(@NotNull Notation notation) {
+        return formatTo(notation, new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends a reduced fraction held in {@code long} values in the given notation, without allocating for integers
+     * and fractions.
+     */
+    static @NotNull StringBuilder formatTo(long numerator, long denominator, @NotNull Notation notation,
+                                           @NotNull StringBuilder destination) {
+        if (denominator == 1L) {
+            return destination.append(numerator);
+        }
+        if (notation == Notation.FRACTION) {
+            return destination.append(numerator).append('/').append(denominator);
+        }
+        return formatDecimalTo(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator), destination);
+    }
+
+    /**
+     * Appends a fraction as a decimal number, exact if its expansion terminates, i.e. if the denominator has
+     * no prime factor other than 2 and 5.
+     */
+    private static @NotNull StringBuilder formatDecimalTo(@NotNull BigInteger numerator, @NotNull BigInteger denominator,
+                                                         @NotNull StringBuilder destination) {
+        if (denominator.equals(BigInteger.ONE)) {
+            return NumberFormatter.formatTo(new BigDecimal(numerator), destination);
+        }
+        BigInteger rest = denominator.shiftRight(denominator.getLowestSetBit());
+        BigInteger five = BigInteger.valueOf(5);
+        BigInteger[] division = rest.divideAndRemainder(five);
+        while (division[1].signum() == 0) {
+            rest = division[0];
+            division = rest.divideAndRemainder(five);
+        }
+        BigDecimal quotient = rest.equals(BigInteger.ONE)
+                ? new BigDecimal(numerator).divide(new BigDecimal(denominator))
+                : new BigDecimal(numerator).divide(new BigDecimal(denominator), DECIMAL_CONTEXT);
+        return NumberFormatter.formatTo(quotient, destination);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Rational rational)) {
+            return false;
+        }
+        if (bigNumerator == null && rational.bigNumerator == null) {
+            return numerator == rational.numerator && denominator == rational.denominator;
+        }
+        // Both are reduced, and a number that fits in long fields is never held in BigInteger fields
+        return bigNumerator != null && bigNumerator.equals(rational.bigNumerator)
+                && bigDenominator.equals(rational.bigDenominator);
+    }
+
+    @Override
+    public int hashCode() {
+        return bigNumerator == null ? Long.hashCode(numerator) * 31 + Long.hashCode(denominator)
+                : bigNumerator.hashCode() * 31 + bigDenominator.hashCode();
+    }
+
+    /**
+     * @return the number as a fraction
+     */
+    @Override
+    public String toString() {
+        return format(Notation.FRACTION);
+    }
+
+    // Arithmetic on long slots, for the fast paths. Every operand is reduced, with a positive denominator,
+    // and no slot holds Long.MIN_VALUE, so that negating a value never overflows. Overflows are reported
+    // by the result rather than by an exception, whose stack trace would cost far more than the arithmetic.
+
+    /**
+     * Reduces the fraction at the given index, and makes its denominator positive.
+     *
+     * @return false if the denominator is zero, or if a value does not fit
+     */
+    static boolean normalize(long @NotNull [] slots, int index) {
+        long numerator = slots[2 * index];
+        long denominator = slots[2 * index + 1];
+        if (denominator == 0L || denominator == Long.MIN_VALUE || numerator == Long.MIN_VALUE) {
+            return false;
+        }
+        if (denominator < 0L) {
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+        long gcd = gcd(numerator, denominator);
+        slots[2 * index] = numerator / gcd;
+        slots[2 * index + 1] = denominator / gcd;
+        return true;
+    }
+
+    /**
+     * Adds the fraction at {@code index + 1} to the one at {@code index}, cancelling the common factor
+     * of the denominators first.
+     *
+     * @return false if a value does not fit
+     */
+    static boolean add(long @NotNull [] slots, int index) {
+        int left = 2 * index;
+        long a = slots[left];
+        long b = slots[left + 1];
+        long c = slots[left + 2];
+        long d = slots[left + 3];
+        long g = gcd(b, d);
+        // Divisions by a gcd of 1, the common case, are skipped: a 64-bit division costs tens of cycles
+        long s = g == 1L ? b : b / g;
+        long u = g == 1L ? d : d / g;
+        if (!fitsProduct(a, u) || !fitsProduct(c, s)) {
+            return false;
+        }
+        long x = a * u;
+        long y = c * s;
+        long t = x + y;
+        if (((x ^ t) & (y ^ t)) < 0L || t == Long.MIN_VALUE) {
+            return false;
+        }
+        if (t == 0L) {
+            slots[left] = 0L;
+            slots[left + 1] = 1L;
+            return true;
+        }
+        // With coprime denominators, the sum is already in lowest terms
+        long g2 = g == 1L ? 1L : gcd(t, g);
+        long v = g2 == 1L ? d : d / g2;
+        if (!fitsProduct(s, v)) {
+            return false;
+        }
+        slots[left] = g2 == 1L ? t : t / g2;
+        slots[left + 1] = s * v;
+        return true;
+    }
+
+    /**
+     * Negates the fraction at the given index, which never overflows.
+     */
+    static void negate(long @NotNull [] slots, int index) {
+        slots[2 * index] = -slots[2 * index];
+    }
+
+    /**
+     * Multiplies the fraction at {@code index} by the one at {@code index + 1}, cancelling the factors
+     * each numerator shares with the other denominator first.
+     *
+     * @return false if a value does not fit
+     */
+    static boolean multiply(long @NotNull [] slots, int index) {
+        int left = 2 * index;
+        long a = slots[left];
+        long b = slots[left + 1];
+        long c = slots[left + 2];
+        long d = slots[left + 3];
+        if (a == 0L || c == 0L) {
+            slots[left] = 0L;
+            slots[left + 1] = 1L;
+            return true;
+        }
+        long g1 = gcd(a, d);
+        long g2 = gcd(c, b);
+        long n1 = g1 == 1L ? a : a / g1;
+        long n2 = g2 == 1L ? c : c / g2;
+        long d1 = g2 == 1L ? b : b / g2;
+        long d2 = g1 == 1L ? d : d / g1;
+        if (!fitsProduct(n1, n2) || !fitsProduct(d1, d2)) {
+            return false;
+        }
+        slots[left] = n1 * n2;
+        slots[left + 1] = d1 * d2;
+        return true;
+    }
+
+    /**
+     * Divides the fraction at {@code index} by the one at {@code index + 1}.
+     *
+     * @return false if the divisor is zero, or if a value does not fit
+     */
+    static boolean divide(long @NotNull [] slots, int index) {
+        int right = 2 * index + 2;
+        long c = slots[right];
+        if (c == 0L) {
+            return false;
+        }
+        // Multiply by the inverse, whose denominator must stay positive
+        slots[right] = c < 0L ? -slots[right + 1] : slots[right + 1];
+        slots[right + 1] = c < 0L ? -c : c;
+        return multiply(slots, index);
+    }
+
+    /**
+     * Replaces the fraction at {@code index} by the remainder of its division by the one at {@code index + 1},
+     * truncated toward zero like the {@code %} operator of Java.
+     *
+     * @return false if the divisor is zero, or if a value does not fit
+     */
+    static boolean remainder(long @NotNull [] slots, int index) {
+        int left = 2 * index;
+        long a = slots[left];
+        long b = slots[left + 1];
+        long c = slots[left + 2];
+        long d = slots[left + 3];
+        if (c == 0L || !fitsProduct(a, d) || !fitsProduct(b, c)) {
+            return false;
+        }
+        // a/b - c/d * q, where q = trunc((a * d) / (b * c))
+        long quotient = (a * d) / (b * c);
+        if (!fitsProduct(c, quotient)) {
+            return false;
+        }
+        slots[left + 2] = -(c * quotient);
+        return normalize(slots, index + 1) && add(slots, index);
+    }
+
+    /**
+     * Raises the fraction at {@code index} to the integer at {@code index + 1}, which must be non-negative.
+     *
+     * @return false if a value does not fit
+     */
+    static boolean power(long @NotNull [] slots, int index) {
+        int left = 2 * index;
+        long exponent = slots[left + 2];
+        long a = slots[left];
+        long b = slots[left + 1];
+        long numerator = 1L;
+        long denominator = 1L;
+        // Powers of 0 and ±1 end at once; any other base overflows within 64 multiplications
+        if (a == 0L) {
+            numerator = exponent == 0L ? 1L : 0L;
+        } else if ((a == 1L || a == -1L) && b == 1L) {
+            numerator = a == -1L && (exponent & 1L) == 1L ? -1L : 1L;
+        } else {
+            for (long i = 0; i < exponent; i++) {
+                if (!fitsProduct(numerator, a) || !fitsProduct(denominator, b)) {
+                    return false;
+                }
+                numerator *= a;
+                denominator *= b;
+            }
+        }
+        slots[left] = numerator;
+        slots[left + 1] = denominator;
+        return true;
+    }
+
+    /**
+     * @return true if the product fits in a {@code long} other than {@link Long#MIN_VALUE}
+     */
+    private static boolean fitsProduct(long x, long y) {
+        long product = x * y;
+        return Math.multiplyHigh(x, y) == (product >> 63) && product != Long.MIN_VALUE;
+    }
+
+    /**
+     * Computes the greatest common divisor of two values, the first one other than {@link Long#MIN_VALUE},
+     * the second one positive, with the binary algorithm.
+     */
+    private static long gcd(long a, long b) {
+        if (b == 1L) {
+            return 1L;
+        }
+        a = Math.abs(a);
+        if (a == 0L) {
+            return b;
+        }
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>= Long.numberOfTrailingZeros(a);
+        do {
+            b >>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long swap = a;
+                a = b;
+                b = swap;
+            }
+            b -= a;
+        } while (b != 0L);
+        return a << shift;
+    }
+
+    private static boolean fitsInLong(@NotNull BigInteger value) {
+        return value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0;
+    }
+}
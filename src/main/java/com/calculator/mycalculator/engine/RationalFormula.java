@@ -0,0 +1,293 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A formula compiled by {@link FormulaCompiler} for the exact arithmetic mode.
+ * <p>
+ * The program is the same postfix code as a {@link CompiledFormula}, without constant folding, and every number
+ * keeps its exact value as a {@link Rational}. {@link #evaluateExact()} first runs the program on {@code long}
+ * fractions held in a scratch array, which allocates nothing and costs a few integer operations per step; only
+ * when a value overflows, or a division by zero has to be reported, does it start again on {@link Rational}
+ * objects, promoted to {@link BigInteger} where needed. Chains of {@code + - * /} and {@code %}, and integer powers,
+ * are exact; a square root is exact when its operand is the square of a fraction. Other steps, such as
+ * a fractional power, have irrational results: the formula is then evaluated in {@code double}, as in the default
+ * mode. So is a formula whose exact result would be too large, see {@link #MAX_BITS}, e.g. {@code (3^999)^999}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class RationalFormula implements Formula {
+
+    /**
+     * Largest exponent of an exact power, beyond which the result is computed in {@code double}.
+     */
+    private static final int MAX_EXPONENT = 9_999;
+
+    /**
+     * Largest size in bits of the numerator and the denominator of an exact value, about a thousand digits. A step
+     * whose result could be larger is not computed: the formula is evaluated in {@code double} instead.
+     */
+    public static final int MAX_BITS = 3322;
+
+    /**
+     * Scratch stacks of the fast path, one per thread: two slots per value.
+     */
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[32]);
+
+    /**
+     * The program run in {@code double}, used by {@link #evaluate()} and for irrational results.
+     */
+    private final CompiledFormula program;
+
+    /**
+     * Exact values of the constants, in the order of the constant pool.
+     */
+    private final Rational[] rationals;
+
+    /**
+     * The constants as pairs of {@code long} slots, or null if one of them needs a {@link BigInteger}.
+     */
+    private final long[] compactConstants;
+
+    /**
+     * Creates a program. The program must have been checked: every operator finds its operands
+     * and exactly one value is left at the end.
+     *
+     * @param code          the postfix program, without folded constants
+     * @param constants     the constant pool, as {@code double} values
+     * @param rationals     the constant pool, as exact values
+     * @param maxStackDepth the maximum stack depth of the program
+     */
+    RationalFormula(int @NotNull [] code, double @NotNull [] constants, Rational @NotNull [] rationals, int maxStackDepth) {
+        this.program = new CompiledFormula(code, constants, new String[0], maxStackDepth);
+        this.rationals = rationals;
+
+        long[] compact = new long[2 * rationals.length];
+        for (int i = 0; i < rationals.length && compact != null; i++) {
+            // The fast path never holds Long.MIN_VALUE, so that negations cannot overflow
+            if (rationals[i].isCompact() && rationals[i].getNumerator().longValue() != Long.MIN_VALUE) {
+                compact[2 * i] = rationals[i].getNumerator().longValue();
+                compact[2 * i + 1] = rationals[i].getDenominator().longValue();
+            } else {
+                compact = null;
+            }
+        }
+        this.compactConstants = compact;
+    }
+
+    /**
+     * Evaluates the formula in {@code double}, exactly as {@link CompiledFormula#evaluate()} does.
+     *
+     * @return the result of the evaluation
+     * @throws ArithmeticException if the evaluation divides by zero
+     */
+    @Override
+    public double evaluate() {
+        return program.evaluate();
+    }
+
+    /**
+     * Evaluates the formula exactly.
+     *
+     * @return the exact result, or null if a step has an irrational result or one too large to be computed exactly
+     * @throws ArithmeticException   if the evaluation divides by zero
+     * @throws CancellationException if the thread is interrupted during the evaluation
+     */
+    public @Nullable Rational evaluateExact() {
+        long[] slots = scratch();
+        if (evaluateCompact(slots)) {
+            return Rational.ofReduced(slots[0], slots[1]);
+        }
+        return evaluateRational();
+    }
+
+    /**
+     * Evaluates the formula exactly and appends the result to the builder in the given notation. A result that is
+     * not rational, or too large to be computed exactly, is computed in {@code double} and written like in the
+     * default mode.
+     *
+     * @param notation    the notation of the result
+     * @param destination the builder receiving the formatted result
+     * @return the destination builder
+     * @throws ArithmeticException   if the evaluation fails
+     * @throws CancellationException if the thread is interrupted during the evaluation
+     */
+    public @NotNull StringBuilder evaluateTo(@NotNull Rational.Notation notation, @NotNull StringBuilder destination) {
+        long[] slots = scratch();
+        if (evaluateCompact(slots)) {
+            return Rational.formatTo(slots[0], slots[1], notation, destination);
+        }
+        Rational result = evaluateRational();
+        if (result == null) {
+            return NumberFormatter.formatTo(program.evaluate(), destination);
+        }
+        return result.formatTo(notation, destination);
+    }
+
+    /**
+     * Runs the program on {@code long} fractions.
+     *
+     * @param slots the scratch stack, large enough for the program
+     * @return true if the result, reduced, is in the first two slots; false if a value overflowed, a division by zero
+     * occurred, or a step needs the general evaluation
+     */
+    private boolean evaluateCompact(long @NotNull [] slots) {
+        if (compactConstants == null) {
+            return false;
+        }
+        int[] code = program.code();
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            boolean fits = switch (code[pc]) {
+                case CompiledFormula.CONSTANT -> {
+                    int constant = code[++pc];
+                    top++;
+                    slots[2 * top] = compactConstants[2 * constant];
+                    slots[2 * top + 1] = compactConstants[2 * constant + 1];
+                    yield true;
+                }
+                case CompiledFormula.ADD -> Rational.add(slots, --top);
+                case CompiledFormula.SUBTRACT -> {
+                    Rational.negate(slots, top);
+                    yield Rational.add(slots, --top);
+                }
+                case CompiledFormula.MULTIPLY -> Rational.multiply(slots, --top);
+                case CompiledFormula.DIVIDE -> Rational.divide(slots, --top);
+                case CompiledFormula.MODULO -> Rational.remainder(slots, --top);
+                // Only non-negative integer exponents stay on the fast path
+                case CompiledFormula.POWER -> slots[2 * top + 1] == 1L && slots[2 * top] >= 0L
+                        && slots[2 * top] <= MAX_EXPONENT && Rational.power(slots, --top);
+                case CompiledFormula.NEGATE -> {
+                    Rational.negate(slots, top);
+                    yield true;
+                }
+                case CompiledFormula.SQRT -> false;
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            };
+            if (!fits) {
+                // Overflow or division by zero, both handled by the general evaluation
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the program on {@link Rational} objects.
+     * <p>
+     * Before each step, the size of its result is bounded from the sizes of its operands; a step whose result could
+     * exceed {@link #MAX_BITS} is not computed. As a step on large fractions can still take a while, the evaluation
+     * stops when its thread is interrupted.
+     *
+     * @return the exact result, or null if a step has an irrational result or one too large to be computed exactly
+     * @throws ArithmeticException   if the evaluation divides by zero
+     * @throws CancellationException if the thread is interrupted during the evaluation
+     */
+    private @Nullable Rational evaluateRational() {
+        int[] code = program.code();
+        Rational[] stack = new Rational[program.getMaxStackDepth()];
+        int top = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Evaluation interrupted");
+            }
+            switch (code[pc]) {
+                case CompiledFormula.CONSTANT -> stack[++top] = rationals[code[++pc]];
+                case CompiledFormula.ADD -> {
+                    top--;
+                    if (!sumFits(stack[top], stack[top + 1])) {
+                        return null;
+                    }
+                    stack[top] = stack[top].add(stack[top + 1]);
+                }
+                case CompiledFormula.SUBTRACT -> {
+                    top--;
+                    if (!sumFits(stack[top], stack[top + 1])) {
+                        return null;
+                    }
+                    stack[top] = stack[top].subtract(stack[top + 1]);
+                }
+                case CompiledFormula.MULTIPLY -> {
+                    top--;
+                    if (!fits(stack[top].numeratorBitLength() + stack[top + 1].numeratorBitLength(),
+                            stack[top].denominatorBitLength() + stack[top + 1].denominatorBitLength())) {
+                        return null;
+                    }
+                    stack[top] = stack[top].multiply(stack[top + 1]);
+                }
+                case CompiledFormula.DIVIDE, CompiledFormula.MODULO -> {
+                    top--;
+                    // The quotient is computed in both cases, and the remainder is no larger than the divisor
+                    if (!fits(stack[top].numeratorBitLength() + stack[top + 1].denominatorBitLength(),
+                            stack[top].denominatorBitLength() + stack[top + 1].numeratorBitLength())) {
+                        return null;
+                    }
+                    stack[top] = code[pc] == CompiledFormula.DIVIDE ? stack[top].divide(stack[top + 1])
+                            : stack[top].remainder(stack[top + 1]);
+                }
+                case CompiledFormula.POWER -> {
+                    top--;
+                    Rational exponent = stack[top + 1];
+                    if (!exponent.isInteger() || exponent.getNumerator().abs().compareTo(BigInteger.valueOf(MAX_EXPONENT)) > 0
+                            || (stack[top].signum() == 0 && exponent.signum() < 0)) {
+                        // Fractional powers are irrational, huge ones too large, and 0 to a negative power infinite
+                        return null;
+                    }
+                    int power = Math.abs(exponent.getNumerator().intValue());
+                    if (!fits((long) stack[top].numeratorBitLength() * power,
+                            (long) stack[top].denominatorBitLength() * power)) {
+                        return null;
+                    }
+                    stack[top] = stack[top].pow(exponent.getNumerator().intValue());
+                }
+                case CompiledFormula.NEGATE -> stack[top] = stack[top].negate();
+                case CompiledFormula.SQRT -> {
+                    stack[top] = stack[top].sqrt();
+                    if (stack[top] == null) {
+                        return null;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * @return true if the sum or the difference of two fractions is certainly within {@link #MAX_BITS}
+     */
+    private static boolean sumFits(@NotNull Rational left, @NotNull Rational right) {
+        return fits(Math.max(left.numeratorBitLength() + right.denominatorBitLength(),
+                        right.numeratorBitLength() + left.denominatorBitLength()) + 1L,
+                left.denominatorBitLength() + right.denominatorBitLength());
+    }
+
+    /**
+     * @param numeratorBits   a bound of the size of a numerator, in bits
+     * @param denominatorBits a bound of the size of the denominator
+     * @return true if both are within {@link #MAX_BITS}
+     */
+    private static boolean fits(long numeratorBits, long denominatorBits) {
+        return numeratorBits <= MAX_BITS && denominatorBits <= MAX_BITS;
+    }
+
+    /**
+     * @return the scratch stack of the current thread, large enough for this program
+     */
+    private long @NotNull [] scratch() {
+        long[] slots = SCRATCH.get();
+        if (slots.length < 2 * program.getMaxStackDepth()) {
+            slots = new long[2 * program.getMaxStackDepth()];
+            SCRATCH.set(slots);
+        }
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        return "RationalFormula" + program;
+    }
+}
@@ -0,0 +1,190 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Column operations as plain loops, used when the Vector API is not available, and for the tail of the columns
+ * and the operations that have no exact vector form ({@code %} and {@code ^}) when it is.
+ * The JIT compiler may still vectorize the simplest loops by itself.
+ */
+final class ScalarKernels implements ColumnKernels {
+
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    private ScalarKernels() {
+        // Stateless, use INSTANCE
+    }
+
+    @Override
+    public void binary(int opcode, double @NotNull [] left, double @NotNull [] right, boolean @NotNull [] failed, int count) {
+        binary(opcode, left, right, failed, 0, count);
+    }
+
+    @Override
+    public void binary(int opcode, double @NotNull [] left, double right, boolean @NotNull [] failed, int count) {
+        binary(opcode, left, right, failed, 0, count);
+    }
+
+    @Override
+    public void binary(int opcode, double left, double @NotNull [] right, boolean @NotNull [] failed, int count) {
+        binary(opcode, left, right, failed, 0, count);
+    }
+
+    @Override
+    public void unary(int opcode, double @NotNull [] operand, int count) {
+        unary(opcode, operand, 0, count);
+    }
+
+    /**
+     * Computes {@code left[i] = left[i] op right[i]} for i from {@code from} to {@code to} excluded.
+     */
+    static void binary(int opcode, double[] left, double[] right, boolean[] failed, int from, int to) {
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] + right[i];
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] - right[i];
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] * right[i];
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                for (int i = from; i < to; i++) {
+                    failed[i] |= right[i] == 0d;
+                    left[i] = left[i] / right[i];
+                }
+            }
+            case CompiledFormula.MODULO -> {
+                for (int i = from; i < to; i++) {
+                    failed[i] |= right[i] == 0d;
+                    left[i] = left[i] % right[i];
+                }
+            }
+            case CompiledFormula.POWER -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = Math.pow(left[i], right[i]);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Computes {@code left[i] = left[i] op right} for i from {@code from} to {@code to} excluded.
+     */
+    static void binary(int opcode, double[] left, double right, boolean[] failed, int from, int to) {
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] + right;
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] - right;
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] * right;
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                failIfZero(right, failed, from, to);
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] / right;
+                }
+            }
+            case CompiledFormula.MODULO -> {
+                failIfZero(right, failed, from, to);
+                for (int i = from; i < to; i++) {
+                    left[i] = left[i] % right;
+                }
+            }
+            case CompiledFormula.POWER -> {
+                for (int i = from; i < to; i++) {
+                    left[i] = Math.pow(left[i], right);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Computes {@code right[i] = left op right[i]} for i from {@code from} to {@code to} excluded.
+     */
+    static void binary(int opcode, double left, double[] right, boolean[] failed, int from, int to) {
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (int i = from; i < to; i++) {
+                    right[i] = left + right[i];
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (int i = from; i < to; i++) {
+                    right[i] = left - right[i];
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (int i = from; i < to; i++) {
+                    right[i] = left * right[i];
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                for (int i = from; i < to; i++) {
+                    failed[i] |= right[i] == 0d;
+                    right[i] = left / right[i];
+                }
+            }
+            case CompiledFormula.MODULO -> {
+                for (int i = from; i < to; i++) {
+                    failed[i] |= right[i] == 0d;
+                    right[i] = left % right[i];
+                }
+            }
+            case CompiledFormula.POWER -> {
+                for (int i = from; i < to; i++) {
+                    right[i] = Math.pow(left, right[i]);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Computes {@code operand[i] = op operand[i]} for i from {@code from} to {@code to} excluded.
+     */
+    static void unary(int opcode, double[] operand, int from, int to) {
+        switch (opcode) {
+            case CompiledFormula.NEGATE -> {
+                for (int i = from; i < to; i++) {
+                    operand[i] = -operand[i];
+                }
+            }
+            case CompiledFormula.SQRT -> {
+                for (int i = from; i < to; i++) {
+                    operand[i] = Math.sqrt(operand[i]);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Marks all the elements as failed if a constant divisor is zero.
+     */
+    static void failIfZero(double divisor, boolean[] failed, int from, int to) {
+        if (divisor == 0d) {
+            Arrays.fill(failed, from, to, true);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+
+/**
+ * Writes a {@code double} with the shortest decimal digits that read back to the same value, in the text of
+ * {@link Double#toString(double)}, straight into a builder.
+ * <p>
+ * The digits are computed by the Schubfach algorithm of Raffaello Giulietti ("The Schubfach way to render doubles",
+ * 2020), the one {@link Double#toString(double)} uses since JDK 19, with the same choice among equally short digits
+ * and the same layout: plain notation from 10^-3 up to 10^7 excluded, e.g. "0.001" or "1234567.5", and computerized
+ * scientific notation beyond, e.g. "1.0E-4" or "1.2345678E7". Unlike {@link StringBuilder#append(double)}, which
+ * goes through a temporary buffer, nothing is allocated but the room the builder may need.
+ */
+final class ShortestDigits {
+
+    /**
+     * Precision of a {@code double}, in bits, implicit bit included.
+     */
+    private static final int P = 53;
+
+    /**
+     * Exponent of the unit in the last place of the subnormal numbers.
+     */
+    private static final int Q_MIN = -1074;
+
+    /**
+     * Smallest and largest powers of ten of the table of {@link Table#G}.
+     */
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    /**
+     * Maximum number of significant digits of a shortest decimal.
+     */
+    private static final int H = 17;
+
+    /**
+     * Subnormal significands below which the decimal has one more digit than necessary, then removed.
+     */
+    private static final int C_TINY = 3;
+
+    private static final long C_MIN = 1L << (P - 1);
+
+    private static final int BQ_MASK = (1 << 11) - 1;
+
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    private static final int MASK_28 = (1 << 28) - 1;
+
+    /**
+     * Powers of ten up to 10^17.
+     */
+    private static final long[] POW10 = new long[H + 1];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i <= H; i++) {
+            POW10[i] = 10L * POW10[i - 1];
+        }
+    }
+
+    /**
+     * The scaled powers of ten, computed on the first number written.
+     */
+    private static final class Table {
+
+        /**
+         * For each power 10^-k with k from {@code K_MIN} to {@code K_MAX}, let 10^-k = β 2^r with
+         * 2^125 &le; β &lt; 2^126, and g = &lfloor;β&rfloor; + 1: the higher 63 bits of g, then its lower 63 bits.
+         */
+        static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+        static {
+            for (int k = K_MIN; k <= K_MAX; k++) {
+                int shift = 125 - flog2pow10(-k);
+                BigInteger numerator = k <= 0 ? BigInteger.TEN.pow(-k) : BigInteger.ONE;
+                BigInteger denominator = k <= 0 ? BigInteger.ONE : BigInteger.TEN.pow(k);
+                if (shift >= 0) {
+                    numerator = numerator.shiftLeft(shift);
+                } else {
+                    denominator = denominator.shiftLeft(-shift);
+                }
+                BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+                G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+                G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+            }
+        }
+    }
+
+    private ShortestDigits() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Appends a number as {@link Double#toString(double)} writes it.
+     *
+     * @param v           the number to write
+     * @param destination the builder receiving the text
+     * @return the destination builder
+     */
+    static @NotNull StringBuilder appendTo(double v, @NotNull StringBuilder destination) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            return destination.append(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        }
+        if (bits < 0) {
+            destination.append('-');
+        }
+        if (bq != 0) {
+            // Normal number, whose unit in the last place is 2^-mq
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                // An integer of fewer than 53 bits: its digits are its own
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, destination);
+                }
+            }
+            return toDecimal(-mq, c, 0, destination);
+        }
+        if (t != 0) {
+            // Subnormal number
+            return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, destination) : toDecimal(Q_MIN, t, 0, destination);
+        }
+        return destination.append("0.0");
+    }
+
+    /**
+     * Writes the shortest decimal in the rounding interval of c 2^q.
+     *
+     * @param dk the correction of the decimal exponent of the digits, -1 if c was scaled by 10
+     */
+    private static @NotNull StringBuilder toDecimal(int q, long c, int dk, @NotNull StringBuilder destination) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // A power of two: the interval below is half as wide
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long[] table = Table.G;
+        long g1 = table[2 * (k - K_MIN)];
+        long g0 = table[2 * (k - K_MIN) + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit less first
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, destination);
+            }
+        }
+
+        long u = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (u << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : u, k + dk, destination);
+        }
+        // Both are in the interval: the closest one, or the even one on a tie
+        long cmp = vb - ((s + u) << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : u, k + dk, destination);
+    }
+
+    /**
+     * @return the rounded-to-odd product of g and cp, scaled down by 2^127
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /**
+     * Writes the decimal f 10^e.
+     */
+    private static @NotNull StringBuilder toChars(long f, int e, @NotNull StringBuilder destination) {
+        // Scale f to exactly 17 digits, split into 1 + 8 + 8 digits
+        int length = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[length]) {
+            length++;
+        }
+        f *= POW10[H - length];
+        e += length;
+
+        long hm = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);
+        int m = (int) (hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {
+            // Plain notation without leading zeros
+            destination.append((char) ('0' + h));
+            int y = y(m);
+            int i = 1;
+            for (; i < e; i++) {
+                int t = 10 * y;
+                destination.append((char) ('0' + (t >>> 28)));
+                y = t & MASK_28;
+            }
+            destination.append('.');
+            for (; i <= 8; i++) {
+                int t = 10 * y;
+                destination.append((char) ('0' + (t >>> 28)));
+                y = t & MASK_28;
+            }
+            lowDigits(l, destination);
+        } else if (-3 < e && e <= 0) {
+            // Plain notation with leading zeros
+            destination.append("0.");
+            for (; e < 0; e++) {
+                destination.append('0');
+            }
+            destination.append((char) ('0' + h));
+            append8Digits(m, destination);
+            lowDigits(l, destination);
+        } else {
+            // Computerized scientific notation
+            destination.append((char) ('0' + h)).append('.');
+            append8Digits(m, destination);
+            lowDigits(l, destination);
+            exponent(e - 1, destination);
+        }
+        return destination;
+    }
+
+    /**
+     * Writes the last eight digits, then removes the trailing zeros but the one right after the point.
+     */
+    private static void lowDigits(int l, @NotNull StringBuilder destination) {
+        if (l != 0) {
+            append8Digits(l, destination);
+        }
+        int end = destination.length();
+        while (destination.charAt(end - 1) == '0' && destination.charAt(end - 2) != '.') {
+            end--;
+        }
+        destination.setLength(end);
+    }
+
+    private static void append8Digits(int m, @NotNull StringBuilder destination) {
+        int y = y(m);
+        for (int i = 0; i < 8; i++) {
+            int t = 10 * y;
+            destination.append((char) ('0' + (t >>> 28)));
+            y = t & MASK_28;
+        }
+    }
+
+    /**
+     * @return a number below 10^8 as a fixed-point fraction of 2^28, whose digits are taken by multiplying by 10
+     */
+    private static int y(int a) {
+        return (int) (Math.multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+    }
+
+    private static void exponent(int e, @NotNull StringBuilder destination) {
+        destination.append('E');
+        if (e < 0) {
+            destination.append('-');
+            e = -e;
+        }
+        if (e < 10) {
+            destination.append((char) ('0' + e));
+            return;
+        }
+        int d;
+        if (e >= 100) {
+            d = e * 1_311 >>> 17;
+            destination.append((char) ('0' + d));
+            e -= 100 * d;
+        }
+        d = e * 103 >>> 10;
+        destination.append((char) ('0' + d)).append((char) ('0' + e - 10 * d));
+    }
+
+    /**
+     * @return &lfloor;log10(2^e)&rfloor;, for |e| up to 5456721
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /**
+     * @return &lfloor;log10(3/4 2^e)&rfloor;, for |e| up to 2^20
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) ((e * 661_971_961_083L + -274_743_187_321L) >> 41);
+    }
+
+    /**
+     * @return &lfloor;log2(10^e)&rfloor;, for |e| up to 1838394
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+}
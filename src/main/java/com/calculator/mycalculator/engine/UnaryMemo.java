@@ -0,0 +1,246 @@
+package com.calculator.mycalculator.engine;
+
+import com.calculator.mycalculator.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Memo of a costly function of one {@code double}, such as {@code 10^x}, for operands that come up again and again.
+ * <p>
+ * Results are kept in an open-addressing table of primitive arrays, keyed on the raw bits of the operand, so that
+ * a lookup neither boxes nor allocates, and {@code -0.0} and {@code 0.0} are told apart as the function does.
+ * An operand is looked for in the {@value #PROBE_LIMIT} slots following its hash; when they are all taken, the
+ * {@link Eviction} policy decides whether the new result replaces one of them. Since entries are only ever replaced
+ * in place, the table needs no deletion markers.
+ * <p>
+ * A memo is not thread-safe: use one per thread, or one per calculator state.
+ */
+public final class UnaryMemo implements DoubleUnaryOperator {
+
+    /**
+     * What to do with a new result when all the slots where it could go are taken.
+     */
+    public enum Eviction {
+
+        /**
+         * Replace the first entry that was not used since the last time the slots were scanned (second chance),
+         * so that the operands used over and over stay in the memo.
+         */
+        CLOCK,
+
+        /**
+         * Keep the entries: the new result is not stored, and the memo only holds the first operands seen.
+         */
+        NONE
+    }
+
+    /**
+     * Default number of entries of a memo.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Maximum number of entries of a memo, 2^30.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Number of slots where an operand may be stored, from the slot given by its hash.
+     */
+    private static final int PROBE_LIMIT = 8;
+
+    /**
+     * States of a slot.
+     */
+    private static final byte EMPTY = 0;
+    private static final byte STORED = 1;
+    private static final byte USED = 2;
+
+    private final DoubleUnaryOperator function;
+
+    private final Eviction eviction;
+
+    /**
+     * Raw bits of the operands, their results and the states of the slots.
+     */
+    private final long[] keys;
+    private final double[] values;
+    private final byte[] states;
+
+    /**
+     * Shift giving a slot from a hashed key, i.e. 64 minus the number of bits of a slot index.
+     */
+    private final int shift;
+
+    private int size;
+
+    /**
+     * Statistics of the lookups.
+     */
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a memo of the default capacity, evicting the entries that are no longer used.
+     *
+     * @param function the function to memoize, which must always give the same result for the same operand
+     */
+    public UnaryMemo(@NotNull DoubleUnaryOperator function) {
+        this(function, DEFAULT_CAPACITY, Eviction.CLOCK);
+    }
+
+    /**
+     * Creates a memo.
+     *
+     * @param function the function to memoize, which must always give the same result for the same operand
+     * @param capacity the number of entries, rounded up to a power of two of at least {@value #PROBE_LIMIT}
+     * @param eviction what to do with a new result when the memo has no room for it
+     * @throws IllegalArgumentException if the capacity is lower than 1 or greater than 2^30
+     */
+    public UnaryMemo(@NotNull DoubleUnaryOperator function, int capacity, @NotNull Eviction eviction) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Memo capacity must be between 1 and 2^30: " + capacity);
+        }
+        int slots = Math.max(PROBE_LIMIT, Integer.highestOneBit(capacity - 1) << 1);
+        this.function = function;
+        this.eviction = eviction;
+        this.keys = new long[slots];
+        this.values = new double[slots];
+        this.states = new byte[slots];
+        this.shift = 64 - Integer.numberOfTrailingZeros(slots);
+    }
+
+    /**
+     * Gives the result of the function for an operand, from the memo if it holds it.
+     *
+     * @param operand the operand
+     * @return the result of the function
+     */
+    @Override
+    public double applyAsDouble(double operand) {
+        long key = Double.doubleToRawLongBits(operand);
+        int mask = keys.length - 1;
+        // Fibonacci hashing spreads the bits of the exponent and of the high digits over the slot index
+        int home = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & mask;
+            byte state = states[slot];
+            if (state == EMPTY) {
+                return store(slot, key, operand);
+            }
+            if (keys[slot] == key) {
+                hitCount++;
+                states[slot] = USED;
+                if (Metrics.ENABLED) {
+                    Metrics.memoHit();
+                }
+                return values[slot];
+            }
+        }
+
+        // All the slots of the operand are taken
+        if (eviction == Eviction.NONE) {
+            missCount++;
+            if (Metrics.ENABLED) {
+                Metrics.memoMiss();
+            }
+            return function.applyAsDouble(operand);
+        }
+        int victim = home;
+        for (int probe = 0; probe < PROBE_LIMIT; probe++) {
+            int slot = (home + probe) & mask;
+            if (states[slot] == STORED) {
+                victim = slot;
+                break;
+            }
+            // Second chance: the entry is replaced if it is not used again before the next scan
+            states[slot] = STORED;
+        }
+        evictionCount++;
+        size--;
+        return store(victim, key, operand);
+    }
+
+    /**
+     * Computes the result of an operand that is not in the memo and stores it in a slot.
+     */
+    private double store(int slot, long key, double operand) {
+        missCount++;
+        if (Metrics.ENABLED) {
+            Metrics.memoMiss();
+        }
+        double value = function.applyAsDouble(operand);
+        keys[slot] = key;
+        values[slot] = value;
+        states[slot] = STORED;
+        size++;
+        return value;
+    }
+
+    /**
+     * Removes all the entries. The statistics are kept.
+     */
+    public void clear() {
+        Arrays.fill(states, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @return the number of entries the memo can hold
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the number of entries held
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the policy applied when the memo has no room for a new result
+     */
+    public @NotNull Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * @return the number of results found in the memo
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of results computed because they were not in the memo
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries replaced to make room for a new result
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the share of the results found in the memo, from 0 to 1
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0d : hitCount / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("memo size=%d/%d hits=%d misses=%d evictions=%d hit rate=%.3f",
+                size, keys.length, hitCount, missCount, evictionCount, getHitRate());
+    }
+}
@@ -0,0 +1,170 @@
+package com.calculator.mycalculator.engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Column operations on SIMD registers with the Vector API: 4 lanes with AVX2, 8 with AVX-512.
+ * <p>
+ * Additions, subtractions, multiplications, divisions, negations and square roots are exactly rounded lane by lane,
+ * so they give the same bits as scalar code. {@code x ^ 2} is computed as {@code x * x}, which is what
+ * {@link Math#pow(double, double)} returns for this exponent. Other powers and the modulo have no exact vector form and
+ * run as {@link ScalarKernels}, as do the last elements of a column that do not fill a vector.
+ * <p>
+ * This class is only loaded when the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorKernels implements ColumnKernels {
+
+    static final VectorKernels INSTANCE = new VectorKernels();
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+        // Stateless, use INSTANCE
+    }
+
+    @Override
+    public void binary(int opcode, double @NotNull [] left, double @NotNull [] right, boolean @NotNull [] failed, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).add(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).sub(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).mul(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector divisor = DoubleVector.fromArray(SPECIES, right, i);
+                    markZeros(divisor, failed, i);
+                    DoubleVector.fromArray(SPECIES, left, i).div(divisor).intoArray(left, i);
+                }
+            }
+            default -> {
+                // Modulo and power
+            }
+        }
+        ScalarKernels.binary(opcode, left, right, failed, i, count);
+    }
+
+    @Override
+    public void binary(int opcode, double @NotNull [] left, double right, boolean @NotNull [] failed, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).add(right).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).sub(right).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).mul(right).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                ScalarKernels.failIfZero(right, failed, 0, bound);
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, left, i).div(right).intoArray(left, i);
+                }
+            }
+            case CompiledFormula.POWER -> {
+                if (right == 2d) {
+                    for (; i < bound; i += SPECIES.length()) {
+                        DoubleVector value = DoubleVector.fromArray(SPECIES, left, i);
+                        value.mul(value).intoArray(left, i);
+                    }
+                }
+            }
+            default -> {
+                // Modulo
+            }
+        }
+        ScalarKernels.binary(opcode, left, right, failed, i, count);
+    }
+
+    @Override
+    public void binary(int opcode, double left, double @NotNull [] right, boolean @NotNull [] failed, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        DoubleVector constant = DoubleVector.broadcast(SPECIES, left);
+        switch (opcode) {
+            case CompiledFormula.ADD -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    constant.add(DoubleVector.fromArray(SPECIES, right, i)).intoArray(right, i);
+                }
+            }
+            case CompiledFormula.SUBTRACT -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    constant.sub(DoubleVector.fromArray(SPECIES, right, i)).intoArray(right, i);
+                }
+            }
+            case CompiledFormula.MULTIPLY -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    constant.mul(DoubleVector.fromArray(SPECIES, right, i)).intoArray(right, i);
+                }
+            }
+            case CompiledFormula.DIVIDE -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector divisor = DoubleVector.fromArray(SPECIES, right, i);
+                    markZeros(divisor, failed, i);
+                    constant.div(divisor).intoArray(right, i);
+                }
+            }
+            default -> {
+                // Modulo and power
+            }
+        }
+        ScalarKernels.binary(opcode, left, right, failed, i, count);
+    }
+
+    @Override
+    public void unary(int opcode, double @NotNull [] operand, int count) {
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+        switch (opcode) {
+            case CompiledFormula.NEGATE -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, operand, i).neg().intoArray(operand, i);
+                }
+            }
+            case CompiledFormula.SQRT -> {
+                for (; i < bound; i += SPECIES.length()) {
+                    DoubleVector.fromArray(SPECIES, operand, i).sqrt().intoArray(operand, i);
+                }
+            }
+            default -> {
+                // Left to the scalar kernels, which reject it
+            }
+        }
+        ScalarKernels.unary(opcode, operand, i, count);
+    }
+
+    /**
+     * Marks the lanes whose divisor is zero as failed.
+     */
+    private static void markZeros(DoubleVector divisor, boolean[] failed, int index) {
+        VectorMask<Double> zeros = divisor.compare(VectorOperators.EQ, 0d);
+        if (zeros.anyTrue()) {
+            zeros.or(VectorMask.fromArray(SPECIES, failed, index)).intoArray(failed, index);
+        }
+    }
+}
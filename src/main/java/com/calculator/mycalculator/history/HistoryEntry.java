@@ -0,0 +1,13 @@
+package com.calculator.mycalculator.history;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A calculation of the history: the evaluated formula, the displayed result and when it was computed.
+ *
+ * @param timestamp the time of the evaluation, in milliseconds since the epoch
+ * @param formula   the formula, as displayed when the equal button was clicked
+ * @param result    the displayed result, or "Erreur"
+ */
+public record HistoryEntry(long timestamp, @NotNull String formula, @NotNull String result) {
+}
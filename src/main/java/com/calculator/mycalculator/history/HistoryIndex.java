@@ -0,0 +1,301 @@
+package com.calculator.mycalculator.history;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-memory search index over a {@link HistoryLog}, for search-as-you-type in the history panel.
+ * <p>
+ * Entries can be found by formula prefix, by operand and by result range. Each criterion is a {@link SortedRuns}
+ * keyed by a {@code long}: the first {@value #PREFIX_BYTES} bytes of the formula, the value of each operand,
+ * the value of the result. Matches are returned newest first, and a search stops as soon as it has enough
+ * of them, so a lookup takes well under a millisecond over millions of calculations. A prefix longer than the key
+ * is matched on its first bytes, then checked against the formula stored in the log.
+ * <p>
+ * The index holds about 12 bytes per key, that is 50 to 60 bytes per calculation. Like the log,
+ * it is not thread-safe; it can however be built from a {@link HistoryLog.Snapshot} on another thread,
+ * then handed over to the thread of the log, which brings it up to date with {@link #update()}.
+ */
+public final class HistoryIndex {
+
+    /**
+     * Number of leading formula bytes packed in a prefix key.
+     */
+    static final int PREFIX_BYTES = Long.BYTES;
+
+    /**
+     * Largest byte stored in a prefix key. Larger bytes, which no formula typed on the keypad contains, are clamped:
+     * keys stay positive, and a prefix containing them is always checked against the log.
+     */
+    private static final int MAX_KEY_BYTE = 0x7F;
+
+    /**
+     * Maximum number of distinct operands indexed per formula.
+     */
+    private static final int MAX_OPERANDS = 64;
+
+    private final HistoryLog log;
+
+    private final SortedRuns prefixes = new SortedRuns();
+    private final SortedRuns operands = new SortedRuns();
+    private final SortedRuns results = new SortedRuns();
+
+    /**
+     * Operands of the formula being indexed, to index each value once per formula.
+     */
+    private final long[] formulaOperands = new long[MAX_OPERANDS];
+
+    /**
+     * Number of entries of the log indexed so far.
+     */
+    private long indexed;
+
+    /**
+     * Creates the index of a log, indexing the entries already stored.
+     *
+     * @param log the history log
+     * @throws IOException if an entry cannot be read
+     */
+    public HistoryIndex(@NotNull HistoryLog log) throws IOException {
+        this.log = log;
+        update();
+    }
+
+    /**
+     * Creates the index of a log, indexing the entries of a snapshot of the log. This can run on any thread:
+     * only the snapshot is read.
+     *
+     * @param log      the history log
+     * @param snapshot the entries to index, a snapshot of the log
+     * @throws IOException if an entry cannot be read
+     */
+    public HistoryIndex(@NotNull HistoryLog log, @NotNull HistoryLog.Snapshot snapshot) throws IOException {
+        this.log = log;
+        for (long id = 0; id < snapshot.size(); id++) {
+            add(id, snapshot.get(id));
+        }
+    }
+
+    /**
+     * Indexes the entries appended to the log since the last indexed one, e.g. while the index was built
+     * from a snapshot.
+     *
+     * @throws IOException if an entry cannot be read
+     */
+    public void update() throws IOException {
+        for (long id = indexed; id < log.size(); id++) {
+            add(id, log.get(id));
+        }
+    }
+
+    /**
+     * Indexes an entry appended to the log.
+     *
+     * @param id    the index of the entry in the log
+     * @param entry the entry
+     */
+    public void add(long id, @NotNull HistoryEntry entry) {
+        indexed = Math.max(indexed, id + 1);
+        if (id > Integer.MAX_VALUE) {
+            return;
+        }
+        int entryId = (int) id;
+        prefixes.add(prefixKey(entry.formula().getBytes(StandardCharsets.UTF_8)), entryId);
+
+        // Each operand of the formula, once per value
+        int count = 0;
+        String formula = entry.formula();
+        for (int start = 0; start < formula.length() && count < MAX_OPERANDS; ) {
+            int end = formula.indexOf(' ', start);
+            if (end < 0) {
+                end = formula.length();
+            }
+            double operand = parseNumber(formula, start, end);
+            if (!Double.isNaN(operand)) {
+                long key = valueKey(operand);
+                if (!contains(formulaOperands, count, key)) {
+                    formulaOperands[count++] = key;
+                    operands.add(key, entryId);
+                }
+            }
+            start = end + 1;
+        }
+
+        double result = parseNumber(entry.result(), 0, entry.result().length());
+        if (!Double.isNaN(result)) {
+            results.add(valueKey(result), entryId);
+        }
+    }
+
+    /**
+     * Searches the calculations matching a query typed in the search field:
+     * <ul>
+     *     <li>{@code #x} finds the formulas with the operand x;</li>
+     *     <li>{@code =x} finds the results equal to x, and {@code =a..b} the results from a to b,
+     *     either bound being optional;</li>
+     *     <li>any other text finds the formulas that start with it.</li>
+     * </ul>
+     *
+     * @param query the query
+     * @param ids   receives the ids of the matches, newest first; its length is the maximum number of matches
+     * @return the number of matches written to the array, 0 if the query is not valid
+     */
+    public int search(@NotNull String query, int @NotNull [] ids) {
+        String text = query.stripLeading();
+        try {
+            if (text.startsWith("#")) {
+                return findByOperand(Double.parseDouble(text.substring(1).trim()), ids);
+            }
+            if (text.startsWith("=")) {
+                String range = text.substring(1).trim();
+                int separator = range.indexOf("..");
+                if (separator < 0) {
+                    double value = Double.parseDouble(range);
+                    return findByResult(value, value, ids);
+                }
+                String min = range.substring(0, separator).trim();
+                String max = range.substring(separator + 2).trim();
+                return findByResult(min.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(min),
+                        max.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(max), ids);
+            }
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        return findByPrefix(text, ids);
+    }
+
+    /**
+     * Finds the formulas that start with the given text.
+     *
+     * @param prefix the beginning of the formulas
+     * @param ids    receives the ids of the matches, newest first; its length is the maximum number of matches
+     * @return the number of matches written to the array
+     * @throws UncheckedIOException if a formula cannot be read from the log
+     */
+    public int findByPrefix(@NotNull String prefix, int @NotNull [] ids) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            // Every formula matches: the newest entries of the log
+            int count = (int) Math.min(ids.length, log.size());
+            for (int i = 0; i < count; i++) {
+                ids[i] = (int) (log.size() - 1 - i);
+            }
+            return count;
+        }
+
+        // The key range of the formulas whose first bytes match
+        long from = prefixKey(bytes);
+        long to = bytes.length >= PREFIX_BYTES ? from : from | (-1L >>> (Byte.SIZE * bytes.length));
+        boolean exact = bytes.length <= PREFIX_BYTES && !hasClampedByte(bytes);
+
+        return prefixes.collect(from, to, exact ? null : id -> startsWith(id, bytes), ids);
+    }
+
+    /**
+     * Finds the formulas with the given operand.
+     *
+     * @param operand the value of the operand
+     * @param ids     receives the ids of the matches, newest first; its length is the maximum number of matches
+     * @return the number of matches written to the array
+     */
+    public int findByOperand(double operand, int @NotNull [] ids) {
+        long key = valueKey(operand);
+        return operands.collect(key, key, null, ids);
+    }
+
+    /**
+     * Finds the calculations whose result is within the range.
+     *
+     * @param min the lowest result, inclusive
+     * @param max the highest result, inclusive
+     * @param ids receives the ids of the matches, newest first; its length is the maximum number of matches
+     * @return the number of matches written to the array
+     */
+    public int findByResult(double min, double max, int @NotNull [] ids) {
+        if (Double.isNaN(min) || Double.isNaN(max) || min > max) {
+            return 0;
+        }
+        return results.collect(valueKey(min), valueKey(max), null, ids);
+    }
+
+    private boolean startsWith(int id, byte @NotNull [] prefix) {
+        try {
+            return log.formulaStartsWith(id, prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Packs the first bytes of a formula in a key, big-endian, so that keys compare like the formulas.
+     *
+     * @param bytes the UTF-8 bytes of the formula or prefix
+     * @return the key
+     */
+    static long prefixKey(byte @NotNull [] bytes) {
+        long key = 0;
+        for (int i = 0; i < PREFIX_BYTES; i++) {
+            int value = i < bytes.length ? Math.min(bytes[i] & 0xFF, MAX_KEY_BYTE) : 0;
+            key = key << Byte.SIZE | value;
+        }
+        return key;
+    }
+
+    /**
+     * Maps a number to a key that compares like the numbers, with zero and negative zero as the same key.
+     *
+     * @param value the number, not NaN
+     * @return the key
+     */
+    static long valueKey(double value) {
+        long bits = Double.doubleToLongBits(value + 0d);
+        return bits ^ (bits >> 63 & Long.MAX_VALUE);
+    }
+
+    private static boolean hasClampedByte(byte @NotNull [] bytes) {
+        for (int i = 0; i < Math.min(bytes.length, PREFIX_BYTES); i++) {
+            if ((bytes[i] & 0xFF) >= MAX_KEY_BYTE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a number of a formula or a result, such as "12.5", "-3", "1.0E-5" or "Infinity".
+     *
+     * @param text  the text
+     * @param start the position of the number
+     * @param end   the position after the number
+     * @return the number, or NaN if the text is not a number (an operator, "Erreur"...)
+     */
+    private static double parseNumber(@NotNull String text, int start, int end) {
+        int first = start < end && text.charAt(start) == '-' ? start + 1 : start;
+        if (first == end) {
+            return Double.NaN;
+        }
+
+        // Operators and words are rejected without the cost of an exception
+        char ch = text.charAt(first);
+        if (!(Character.isDigit(ch) || ch == '.' || ch == 'I')) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean contains(long @NotNull [] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+package com.calculator.mycalculator.history;
+
+import javafx.collections.ObservableListBase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Read-only view of a {@link HistoryLog} as an observable list, newest entry first, for the history panel.
+ * <p>
+ * No entry is copied into the list: a list view only asks for the entries of its visible cells, and each one
+ * is read from the log when it is asked for, so the panel scrolls through millions of entries while only
+ * the pages it displays are loaded.
+ */
+public final class HistoryItems extends ObservableListBase<HistoryEntry> {
+
+    private final HistoryLog log;
+
+    /**
+     * Creates a view of the given log.
+     *
+     * @param log the history log
+     */
+    public HistoryItems(@NotNull HistoryLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Appends an entry to the log and notifies the listeners that it was inserted at the top of the list.
+     *
+     * @param entry the new entry
+     * @return the index of the entry in the log
+     * @throws IllegalArgumentException if the entry is too large for the log
+     * @throws IOException              if the log cannot grow
+     */
+    public long append(@NotNull HistoryEntry entry) throws IOException {
+        long id = log.append(entry);
+        beginChange();
+        nextAdd(0, 1);
+        endChange();
+        return id;
+    }
+
+    /**
+     * @param index the position in the list, from 0 for the newest entry
+     * @return the entry
+     * @throws UncheckedIOException if the entry cannot be read
+     */
+    @Override
+    public HistoryEntry get(int index) {
+        try {
+            return log.get(log.size() - 1 - index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(log.size(), Integer.MAX_VALUE);
+    }
+}
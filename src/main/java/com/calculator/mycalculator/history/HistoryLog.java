@@ -0,0 +1,481 @@
+package com.calculator.mycalculator.history;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent history of the calculations, stored as an append-only binary log.
+ * <p>
+ * The log is made of two files, both written through memory-mapped segments of {@value #SEGMENT_SIZE} bytes:
+ * <ul>
+ *     <li>{@value #DATA_FILE} holds the entries one after the other. Each record is a header (payload length,
+ *     CRC-32 of the payload) followed by the payload (timestamp, formula length, formula, result in UTF-8).
+ *     A record never crosses a segment boundary.</li>
+ *     <li>{@value #INDEX_FILE} holds the number of entries and the position of every record, so that entry N
+ *     is read in constant time, whatever the size of the history.</li>
+ * </ul>
+ * Appending an entry copies a few bytes into the mapped pages, without any system call: the equal button does not
+ * wait for the disk. The pages belong to the operating system as soon as they are written, so the entries survive
+ * a crash of the application; {@link #force()} also writes them to the disk, to survive a crash of the system.
+ * When the log is opened, the checksums of the last records are verified: a record torn by an unclean exit
+ * is discarded, and records written after the last update of the index are indexed again.
+ * <p>
+ * The files are locked while the log is open, so that two instances of the calculator do not write the same log.
+ * Instances are not thread-safe: the calculator appends and reads entries from the JavaFX application thread.
+ * A {@link #snapshot()} reads the entries stored so far from another thread, e.g. to index them in the background.
+ */
+public final class HistoryLog implements Closeable {
+
+    /**
+     * Names of the data and index files, in the history directory.
+     */
+    public static final String DATA_FILE = "history.dat";
+    public static final String INDEX_FILE = "history.idx";
+
+    /**
+     * Size of a mapped segment of either file.
+     */
+    static final int SEGMENT_SHIFT = 22;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * File header: magic number, format version, then the entry count in the index file.
+     */
+    private static final int DATA_MAGIC = 0x4D434844; // "MCHD"
+    private static final int INDEX_MAGIC = 0x4D434849; // "MCHI"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 16;
+    private static final int COUNT_OFFSET = 8;
+
+    /**
+     * Record layout: payload length and checksum, then the timestamp and the length of the formula.
+     */
+    private static final int RECORD_HEADER = 8;
+    private static final int FIXED_PAYLOAD = 12;
+
+    /**
+     * Length written in place of a record when the next record starts in the next segment.
+     */
+    private static final int SEGMENT_END = -1;
+
+    /**
+     * Largest payload of a record: it must fit in the first segment, after the file header,
+     * with room for the terminator that follows the last record.
+     */
+    static final int MAX_PAYLOAD = SEGMENT_SIZE - FILE_HEADER - RECORD_HEADER - Integer.BYTES;
+
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final FileLock lock;
+
+    /**
+     * Segments mapped so far, in file order. Segments are mapped on first use.
+     */
+    private final List<MappedByteBuffer> dataSegments = new ArrayList<>();
+    private final List<MappedByteBuffer> indexSegments = new ArrayList<>();
+
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Number of entries, and position right after the last record.
+     */
+    private long count;
+    private long end;
+
+    private boolean closed;
+
+    private HistoryLog(@NotNull FileChannel dataChannel, @NotNull FileChannel indexChannel, @NotNull FileLock lock) {
+        this.dataChannel = dataChannel;
+        this.indexChannel = indexChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the history stored in the given directory, creating it if needed, and recovers the entries
+     * of an unclean exit.
+     *
+     * @param directory the directory of the history files
+     * @return the opened log
+     * @throws IOException if the files cannot be opened or locked, or are not history files
+     */
+    public static @NotNull HistoryLog open(@NotNull Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel data = FileChannel.open(directory.resolve(DATA_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel index = null;
+        try {
+            index = FileChannel.open(directory.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = index.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Held by this process
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("History already in use: " + directory);
+            }
+            HistoryLog log = new HistoryLog(data, index, lock);
+            log.recover();
+            return log;
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            if (index != null) {
+                index.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Appends an entry to the log.
+     *
+     * @param timestamp the time of the evaluation, in milliseconds since the epoch
+     * @param formula   the evaluated formula
+     * @param result    the displayed result
+     * @return the index of the new entry
+     * @throws IllegalArgumentException if the entry is larger than a segment
+     * @throws IOException              if a new segment cannot be mapped
+     */
+    public long append(long timestamp, @NotNull String formula, @NotNull String result) throws IOException {
+        checkOpen();
+        byte[] formulaBytes = formula.getBytes(StandardCharsets.UTF_8);
+        byte[] resultBytes = result.getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_PAYLOAD + formulaBytes.length + resultBytes.length;
+        if (length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("History entry too large: " + length + " bytes");
+        }
+
+        // Start a new segment if the record and its terminator do not fit in the current one
+        long position = end;
+        int offset = (int) (position & SEGMENT_MASK);
+        if (offset + RECORD_HEADER + length + Integer.BYTES > SEGMENT_SIZE) {
+            if (offset + Integer.BYTES <= SEGMENT_SIZE) {
+                segment(dataSegments, dataChannel, position).putInt(offset, SEGMENT_END);
+            }
+            position = (position | SEGMENT_MASK) + 1;
+            offset = 0;
+        }
+
+        // The length is written last: until then, the record stays invisible to the recovery
+        MappedByteBuffer segment = segment(dataSegments, dataChannel, position);
+        segment.putLong(offset + RECORD_HEADER, timestamp);
+        segment.putInt(offset + RECORD_HEADER + Long.BYTES, formulaBytes.length);
+        segment.put(offset + RECORD_HEADER + FIXED_PAYLOAD, formulaBytes);
+        segment.put(offset + RECORD_HEADER + FIXED_PAYLOAD + formulaBytes.length, resultBytes);
+        segment.putInt(offset + Integer.BYTES, checksum(segment, offset + RECORD_HEADER, length));
+        segment.putInt(offset + RECORD_HEADER + length, 0);
+        segment.putInt(offset, length);
+
+        writeIndex(count, position);
+        count++;
+        segment(indexSegments, indexChannel, 0).putLong(COUNT_OFFSET, count);
+        end = position + RECORD_HEADER + length;
+        return count - 1;
+    }
+
+    /**
+     * Appends an entry to the log.
+     *
+     * @param entry the entry
+     * @return the index of the new entry
+     * @throws IllegalArgumentException if the entry is larger than a segment
+     * @throws IOException              if a new segment cannot be mapped
+     */
+    public long append(@NotNull HistoryEntry entry) throws IOException {
+        return append(entry.timestamp(), entry.formula(), entry.result());
+    }
+
+    /**
+     * Reads an entry. Only the pages of the entry and of its index slot are touched.
+     *
+     * @param index the index of the entry, from 0 for the oldest one
+     * @return the entry
+     * @throws IndexOutOfBoundsException if there is no such entry
+     * @throws IOException               if a segment cannot be mapped
+     */
+    public @NotNull HistoryEntry get(long index) throws IOException {
+        checkOpen();
+        Objects.checkIndex(index, count);
+        return read(dataSegments, indexSegments, index);
+    }
+
+    /**
+     * Returns a view of the entries stored so far, which can be read from another thread while this log keeps
+     * being appended to. Stored records and their index slots never change, and the view maps its own segments
+     * of the files, so it shares no state with the log.
+     *
+     * @return the view of the current entries
+     */
+    public @NotNull Snapshot snapshot() {
+        checkOpen();
+        return new Snapshot(count);
+    }
+
+    /**
+     * Entries of a log up to the moment the snapshot was taken, readable from any one thread.
+     */
+    public final class Snapshot {
+
+        private final long size;
+
+        private final List<MappedByteBuffer> snapshotData = new ArrayList<>();
+        private final List<MappedByteBuffer> snapshotIndex = new ArrayList<>();
+
+        private Snapshot(long size) {
+            this.size = size;
+        }
+
+        /**
+         * @return the number of entries of the snapshot
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Reads an entry of the snapshot.
+         *
+         * @param index the index of the entry, from 0 for the oldest one
+         * @return the entry
+         * @throws IndexOutOfBoundsException if there is no such entry in the snapshot
+         * @throws IOException               if a segment cannot be mapped, e.g. because the log was closed
+         */
+        public @NotNull HistoryEntry get(long index) throws IOException {
+            Objects.checkIndex(index, size);
+            return read(snapshotData, snapshotIndex, index);
+        }
+    }
+
+    /**
+     * Reads an entry through the given segments of the files.
+     */
+    private @NotNull HistoryEntry read(@NotNull List<MappedByteBuffer> data, @NotNull List<MappedByteBuffer> index,
+                                       long entry) throws IOException {
+        long slot = FILE_HEADER + entry * Long.BYTES;
+        long position = segment(index, indexChannel, slot).getLong((int) (slot & SEGMENT_MASK));
+        MappedByteBuffer segment = segment(data, dataChannel, position);
+        int offset = (int) (position & SEGMENT_MASK);
+        int length = segment.getInt(offset);
+        long timestamp = segment.getLong(offset + RECORD_HEADER);
+        int formulaLength = segment.getInt(offset + RECORD_HEADER + Long.BYTES);
+        byte[] text = new byte[length - FIXED_PAYLOAD];
+        segment.get(offset + RECORD_HEADER + FIXED_PAYLOAD, text);
+        return new HistoryEntry(timestamp,
+                new String(text, 0, formulaLength, StandardCharsets.UTF_8),
+                new String(text, formulaLength, text.length - formulaLength, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks whether the formula of an entry starts with the given bytes, reading them in place without decoding
+     * the entry.
+     *
+     * @param index  the index of the entry
+     * @param prefix the UTF-8 bytes of the prefix
+     * @return true if the formula starts with the prefix
+     * @throws IndexOutOfBoundsException if there is no such entry
+     * @throws IOException               if a segment cannot be mapped
+     */
+    boolean formulaStartsWith(long index, byte @NotNull [] prefix) throws IOException {
+        checkOpen();
+        Objects.checkIndex(index, count);
+        long position = readIndex(index);
+        MappedByteBuffer segment = segment(dataSegments, dataChannel, position);
+        int offset = (int) (position & SEGMENT_MASK);
+        if (segment.getInt(offset + RECORD_HEADER + Long.BYTES) < prefix.length) {
+            return false;
+        }
+        int start = offset + RECORD_HEADER + FIXED_PAYLOAD;
+        for (int i = 0; i < prefix.length; i++) {
+            if (segment.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the mapped pages to the disk, so that the entries also survive a crash of the system.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : dataSegments) {
+            segment.force();
+        }
+        for (MappedByteBuffer segment : indexSegments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Writes the entries to the disk and releases the files.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        force();
+        try {
+            lock.release();
+        } finally {
+            dataChannel.close();
+            indexChannel.close();
+        }
+    }
+
+    /**
+     * Initializes new files, or checks existing ones and brings the index up to date with the data.
+     *
+     * @throws IOException if the files are not history files, or cannot be mapped
+     */
+    private void recover() throws IOException {
+        if (dataChannel.size() == 0) {
+            MappedByteBuffer header = segment(dataSegments, dataChannel, 0);
+            header.putInt(0, DATA_MAGIC).putInt(Integer.BYTES, VERSION);
+        } else if (dataChannel.size() < FILE_HEADER || !hasHeader(segment(dataSegments, dataChannel, 0), DATA_MAGIC)) {
+            throw new IOException("Not a history file: " + DATA_FILE);
+        }
+
+        // A missing or foreign index is rebuilt from the data
+        MappedByteBuffer indexHeader = segment(indexSegments, indexChannel, 0);
+        if (!hasHeader(indexHeader, INDEX_MAGIC)) {
+            indexHeader.putInt(0, INDEX_MAGIC).putInt(Integer.BYTES, VERSION).putLong(COUNT_OFFSET, 0);
+        }
+        count = Math.max(0, Math.min(indexHeader.getLong(COUNT_OFFSET), (indexChannel.size() - FILE_HEADER) / Long.BYTES));
+
+        // Drop the indexed records torn by an unclean exit
+        end = FILE_HEADER;
+        while (count > 0) {
+            long next = recordEnd(readIndex(count - 1));
+            if (next > 0) {
+                end = next;
+                break;
+            }
+            count--;
+        }
+
+        // Index the complete records written after the last update of the index
+        for (long position = nextRecord(end); position > 0; position = nextRecord(end)) {
+            long next = recordEnd(position);
+            if (next < 0) {
+                break;
+            }
+            writeIndex(count++, position);
+            end = next;
+        }
+        indexHeader.putLong(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Finds where the record following the given position starts, skipping the end of a segment.
+     *
+     * @param position the position right after a record
+     * @return the position of the next record, or -1 if it is beyond the end of the file
+     */
+    private long nextRecord(long position) throws IOException {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (position + Integer.BYTES > dataChannel.size()) {
+            return -1;
+        }
+        if (offset + RECORD_HEADER + FIXED_PAYLOAD > SEGMENT_SIZE
+                || segment(dataSegments, dataChannel, position).getInt(offset) == SEGMENT_END) {
+            position = (position | SEGMENT_MASK) + 1;
+        }
+        return position < dataChannel.size() ? position : -1;
+    }
+
+    /**
+     * Checks a record: its length must be consistent and its checksum must match.
+     *
+     * @param position the position of the record
+     * @return the position right after the record, or -1 if it is incomplete or corrupted
+     */
+    private long recordEnd(long position) throws IOException {
+        int offset = (int) (position & SEGMENT_MASK);
+        if (position < FILE_HEADER || offset + RECORD_HEADER > SEGMENT_SIZE || position + RECORD_HEADER > dataChannel.size()) {
+            return -1;
+        }
+        MappedByteBuffer segment = segment(dataSegments, dataChannel, position);
+        int length = segment.getInt(offset);
+        if (length < FIXED_PAYLOAD || length > SEGMENT_SIZE - offset - RECORD_HEADER) {
+            return -1;
+        }
+        int formulaLength = segment.getInt(offset + RECORD_HEADER + Long.BYTES);
+        if (formulaLength < 0 || formulaLength > length - FIXED_PAYLOAD
+                || segment.getInt(offset + Integer.BYTES) != checksum(segment, offset + RECORD_HEADER, length)) {
+            return -1;
+        }
+        return position + RECORD_HEADER + length;
+    }
+
+    private int checksum(@NotNull MappedByteBuffer segment, int offset, int length) {
+        checksum.reset();
+        checksum.update(segment.slice(offset, length));
+        return (int) checksum.getValue();
+    }
+
+    private long readIndex(long index) throws IOException {
+        long slot = FILE_HEADER + index * Long.BYTES;
+        return segment(indexSegments, indexChannel, slot).getLong((int) (slot & SEGMENT_MASK));
+    }
+
+    private void writeIndex(long index, long position) throws IOException {
+        long slot = FILE_HEADER + index * Long.BYTES;
+        segment(indexSegments, indexChannel, slot).putLong((int) (slot & SEGMENT_MASK), position);
+    }
+
+    /**
+     * Returns the segment holding a position of a file, mapping it and the segments before it if needed.
+     * Mapping a segment beyond the end of the file extends the file.
+     *
+     * @param segments the segments of the file mapped so far
+     * @param channel  the file
+     * @param position a position in the file
+     * @return the segment
+     * @throws IOException if the segment cannot be mapped
+     */
+    private static @NotNull MappedByteBuffer segment(@NotNull List<MappedByteBuffer> segments,
+                                                     @NotNull FileChannel channel, long position) throws IOException {
+        int number = (int) (position >>> SEGMENT_SHIFT);
+        while (segments.size() <= number) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+        }
+        return segments.get(number);
+    }
+
+    private static boolean hasHeader(@NotNull MappedByteBuffer header, int magic) {
+        return header.getInt(0) == magic && header.getInt(Integer.BYTES) == VERSION;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("History log is closed");
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.calculator.mycalculator.history;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Append-only multimap from {@code long} keys to entry ids, searched by key range, newest entry first.
+ * <p>
+ * Pairs are appended to a buffer of {@value #RUN_SIZE} pairs. A full buffer is sorted by key and becomes a run;
+ * runs of the same size are then merged, like the digits of a binary counter, so that there are only
+ * about log2(n / {@value #RUN_SIZE}) runs, each covering a block of consecutive ids, the newest blocks being
+ * the smallest. A range query scans the buffer from its end, then binary-searches the runs from the newest
+ * to the oldest, and stops as soon as it has enough matches. A range that is dense enough is answered by the buffer
+ * or the small runs; a sparse one costs a few binary searches and only selects among few matches in the large runs.
+ * Either way, a query stays well under a millisecond over millions of keys.
+ */
+final class SortedRuns {
+
+    /**
+     * Number of pairs in the buffer, and in the smallest runs.
+     */
+    static final int RUN_SIZE = 8192;
+
+    /**
+     * Runs, oldest (and largest) first, each sorted by key then by id.
+     */
+    private long[][] runKeys = new long[16][];
+    private int[][] runIds = new int[16][];
+    private int runCount;
+
+    /**
+     * Pairs not yet sorted into a run, in insertion order.
+     */
+    private final long[] keys = new long[RUN_SIZE];
+    private final int[] ids = new int[RUN_SIZE];
+    private int size;
+
+    /**
+     * Scratch arrays for sorting the buffer and the matches of a query.
+     */
+    private long[] scratchKeys = new long[RUN_SIZE];
+    private int[] scratchIds = new int[RUN_SIZE];
+
+    /**
+     * Counts of each byte value, for the radix sort.
+     */
+    private final int[] counts = new int[(1 << Byte.SIZE) + 1];
+
+    /**
+     * Adds a pair. Ids must be added in increasing order.
+     *
+     * @param key the key
+     * @param id  the entry id
+     */
+    void add(long key, int id) {
+        keys[size] = key;
+        ids[size] = id;
+        if (++size == RUN_SIZE) {
+            seal();
+        }
+    }
+
+    /**
+     * Collects the ids of the keys within the range, newest first.
+     *
+     * @param from   the lowest key, inclusive
+     * @param to     the highest key, inclusive
+     * @param filter an additional condition on the ids, or null
+     * @param out    receives the ids; its length is the maximum number of matches
+     * @return the number of ids written
+     */
+    int collect(long from, long to, @Nullable IntPredicate filter, int @NotNull [] out) {
+        int count = 0;
+        for (int i = size - 1; i >= 0 && count < out.length; i--) {
+            if (keys[i] >= from && keys[i] <= to && (filter == null || filter.test(ids[i]))) {
+                out[count++] = ids[i];
+            }
+        }
+        for (int run = runCount - 1; run >= 0 && count < out.length; run--) {
+            long[] sortedKeys = runKeys[run];
+            int[] sortedIds = runIds[run];
+            int low = lowerBound(sortedKeys, from);
+            int high = to == Long.MAX_VALUE ? sortedKeys.length : lowerBound(sortedKeys, to + 1);
+            int matches = high - low;
+            int room = out.length - count;
+            if (matches <= 0) {
+                continue;
+            }
+
+            if (from == to && filter == null) {
+                // The ids of a single key are already in increasing order
+                for (int i = high - 1; i >= low && count < out.length; i--) {
+                    out[count++] = sortedIds[i];
+                }
+            } else if (filter == null && matches > room) {
+                // Only the newest matches are needed: select them without sorting the whole range
+                selectNewest(sortedIds, low, high, out, count, room);
+                count += room;
+            } else {
+                // Sort the matches by id to visit the newest first
+                if (scratchIds.length < matches) {
+                    scratchIds = new int[matches];
+                }
+                System.arraycopy(sortedIds, low, scratchIds, 0, matches);
+                Arrays.sort(scratchIds, 0, matches);
+                for (int i = matches - 1; i >= 0 && count < out.length; i--) {
+                    if (filter == null || filter.test(scratchIds[i])) {
+                        out[count++] = scratchIds[i];
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sorts the buffer into a new run, then merges the runs of the same size.
+     */
+    private void seal() {
+        long[] sortedKeys = Arrays.copyOf(keys, size);
+        int[] sortedIds = Arrays.copyOf(ids, size);
+        radixSort(sortedKeys, sortedIds);
+        size = 0;
+
+        while (runCount > 0 && runKeys[runCount - 1].length <= sortedKeys.length) {
+            runCount--;
+            long[] mergedKeys = new long[runKeys[runCount].length + sortedKeys.length];
+            int[] mergedIds = new int[mergedKeys.length];
+            merge(runKeys[runCount], runIds[runCount], sortedKeys, sortedIds, mergedKeys, mergedIds);
+            runKeys[runCount] = null;
+            runIds[runCount] = null;
+            sortedKeys = mergedKeys;
+            sortedIds = mergedIds;
+        }
+        if (runCount == runKeys.length) {
+            runKeys = Arrays.copyOf(runKeys, runCount * 2);
+            runIds = Arrays.copyOf(runIds, runCount * 2);
+        }
+        runKeys[runCount] = sortedKeys;
+        runIds[runCount] = sortedIds;
+        runCount++;
+    }
+
+    /**
+     * Merges two runs. On equal keys, the older run comes first, so that the ids stay in increasing order.
+     */
+    private static void merge(long @NotNull [] olderKeys, int @NotNull [] olderIds,
+                              long @NotNull [] newerKeys, int @NotNull [] newerIds,
+                              long @NotNull [] mergedKeys, int @NotNull [] mergedIds) {
+        int older = 0;
+        int newer = 0;
+        for (int out = 0; out < mergedKeys.length; out++) {
+            if (newer == newerKeys.length || (older < olderKeys.length && olderKeys[older] <= newerKeys[newer])) {
+                mergedKeys[out] = olderKeys[older];
+                mergedIds[out] = olderIds[older++];
+            } else {
+                mergedKeys[out] = newerKeys[newer];
+                mergedIds[out] = newerIds[newer++];
+            }
+        }
+    }
+
+    /**
+     * Stable LSD radix sort of the pairs by signed key, one byte per pass, so that equal keys keep their ids
+     * in increasing order. A pass where all the keys share the same byte is skipped.
+     */
+    private void radixSort(long @NotNull [] sortKeys, int @NotNull [] sortIds) {
+        int length = sortKeys.length;
+        long[] fromKeys = sortKeys;
+        int[] fromIds = sortIds;
+        long[] toKeys = scratchKeys;
+        int[] toIds = scratchIds;
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            // The sign bit is flipped so that negative keys come first
+            int flip = shift == Long.SIZE - Byte.SIZE ? 0x80 : 0;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; i++) {
+                counts[((int) (fromKeys[i] >>> shift) & 0xFF ^ flip) + 1]++;
+            }
+            if (counts[((int) (fromKeys[0] >>> shift) & 0xFF ^ flip) + 1] == length) {
+                continue;
+            }
+            for (int digit = 1; digit < counts.length; digit++) {
+                counts[digit] += counts[digit - 1];
+            }
+            for (int i = 0; i < length; i++) {
+                int position = counts[(int) (fromKeys[i] >>> shift) & 0xFF ^ flip]++;
+                toKeys[position] = fromKeys[i];
+                toIds[position] = fromIds[i];
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapIds = fromIds;
+            fromIds = toIds;
+            toIds = swapIds;
+        }
+        if (fromKeys != sortKeys) {
+            System.arraycopy(fromKeys, 0, sortKeys, 0, length);
+            System.arraycopy(fromIds, 0, sortIds, 0, length);
+        }
+    }
+
+    /**
+     * Writes the largest ids between the positions to the output, in decreasing order,
+     * using the output as a min-heap of the largest ids seen so far.
+     *
+     * @param sortedIds the ids of a run
+     * @param low       the first position
+     * @param high      the position after the last one
+     * @param out       the output
+     * @param offset    the first position of the output to write
+     * @param room      the number of ids to select, less than the number of positions
+     */
+    private static void selectNewest(int @NotNull [] sortedIds, int low, int high, int @NotNull [] out, int offset, int room) {
+        System.arraycopy(sortedIds, low, out, offset, room);
+        for (int i = room / 2 - 1; i >= 0; i--) {
+            siftDown(out, offset, room, i);
+        }
+        for (int i = low + room; i < high; i++) {
+            if (sortedIds[i] > out[offset]) {
+                out[offset] = sortedIds[i];
+                siftDown(out, offset, room, 0);
+            }
+        }
+        Arrays.sort(out, offset, offset + room);
+        for (int i = offset, j = offset + room - 1; i < j; i++, j--) {
+            int swap = out[i];
+            out[i] = out[j];
+            out[j] = swap;
+        }
+    }
+
+    private static void siftDown(int @NotNull [] heap, int offset, int size, int node) {
+        int value = heap[offset + node];
+        while (true) {
+            int child = 2 * node + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[offset + child + 1] < heap[offset + child]) {
+                child++;
+            }
+            if (heap[offset + child] >= value) {
+                break;
+            }
+            heap[offset + node] = heap[offset + child];
+            node = child;
+        }
+        heap[offset + node] = value;
+    }
+
+    /**
+     * @return the index of the first key greater than or equal to the given one
+     */
+    private static int lowerBound(long @NotNull [] sortedKeys, long key) {
+        int low = 0;
+        int high = sortedKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedKeys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
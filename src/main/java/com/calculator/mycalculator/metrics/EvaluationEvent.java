@@ -0,0 +1,26 @@
+package com.calculator.mycalculator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a formula evaluated by an engine, emitted when {@link Metrics#ENABLED metrics} are on.
+ * Its duration is the one recorded in {@link Metrics#EVALUATION}.
+ */
+@Name("com.calculator.mycalculator.Evaluation")
+@Label("Evaluation")
+@Category("MyCalculator")
+@Description("A formula evaluated and formatted by the calculator engine")
+@StackTrace(false)
+public final class EvaluationEvent extends jdk.jfr.Event {
+
+    @Label("Formula Length")
+    public int formulaLength;
+
+    @Label("Error")
+    @Description("Whether the evaluation gave \"Erreur\"")
+    public boolean error;
+}
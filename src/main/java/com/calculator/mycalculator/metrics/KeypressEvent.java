@@ -0,0 +1,23 @@
+package com.calculator.mycalculator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a key pressed in the window, lasting until the layout pass showing its effect,
+ * emitted when {@link Metrics#ENABLED metrics} are on. Its duration is the one recorded
+ * in {@link Metrics#KEYPRESS_TO_RENDER}.
+ */
+@Name("com.calculator.mycalculator.Keypress")
+@Label("Keypress")
+@Category("MyCalculator")
+@Description("A key pressed in the calculator window, until its effect is laid out")
+@StackTrace(false)
+public final class KeypressEvent extends jdk.jfr.Event {
+
+    @Label("Key")
+    public String key;
+}
@@ -0,0 +1,197 @@
+package com.calculator.mycalculator.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, in the manner of HdrHistogram.
+ * <p>
+ * Values are recorded in nanoseconds. Each power of two is split into {@value #SUB_BUCKETS} linear buckets, so that
+ * any percentile is reported within about 3% of the exact value, from a nanosecond up to about 18 minutes,
+ * with a fixed array of counters. Recording is lock-free and allocates nothing; it can be called from any thread.
+ */
+public final class LatencyHistogram implements LatencyMXBean {
+
+    /**
+     * Number of bits of a value kept exactly; the lower bits only select the power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * Number of linear buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Largest value recorded exactly, about 18 minutes; larger values are counted in the last bucket.
+     */
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final String name;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param name the name of the measured operation, e.g. "evaluation"
+     */
+    public LatencyHistogram(@NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the measured operation
+     */
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since the given start.
+     *
+     * @param startNanos the start, as given by {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded latencies fall.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the latency in nanoseconds, within the precision of the buckets; 0 if nothing is recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(100d, Math.max(0d, percentile)) / 100d * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0d : sum.sum() / (double) n / 1000d;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getValueAtPercentile(50d) / 1000d;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getValueAtPercentile(90d) / 1000d;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getValueAtPercentile(99d) / 1000d;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getValueAtPercentile(99.9d) / 1000d;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return getMax() / 1000d;
+    }
+
+    /**
+     * @return the largest latency recorded, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Removes all the recorded latencies. Latencies recorded meanwhile may be partly kept.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getMaxMicros());
+    }
+
+    /**
+     * @param value a value from 0 to {@link #MAX_VALUE}
+     * @return the index of its bucket
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the largest value counted in the bucket
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
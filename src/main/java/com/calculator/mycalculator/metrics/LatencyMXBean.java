@@ -0,0 +1,48 @@
+package com.calculator.mycalculator.metrics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}, registered as
+ * {@code com.calculator.mycalculator:type=Latency,name=<operation>}.
+ */
+public interface LatencyMXBean {
+
+    /**
+     * @return the number of latencies recorded
+     */
+    long getCount();
+
+    /**
+     * @return the mean latency, in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * @return the median latency, in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * @return the 90th percentile of the latencies, in microseconds
+     */
+    double getP90Micros();
+
+    /**
+     * @return the 99th percentile of the latencies, in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * @return the 99.9th percentile of the latencies, in microseconds
+     */
+    double getP999Micros();
+
+    /**
+     * @return the largest latency, in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Removes all the recorded latencies.
+     */
+    void reset();
+}
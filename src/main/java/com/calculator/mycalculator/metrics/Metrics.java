@@ -0,0 +1,249 @@
+package com.calculator.mycalculator.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of the calculator: where the time goes, how often the cache serves a formula, how many errors.
+ * <p>
+ * Metrics are off unless the program is started with {@code -Dmycalculator.metrics=true}. The switch is
+ * a {@code static final} constant, so every instrumented call site is written as {@code if (Metrics.ENABLED) ...}:
+ * when metrics are off, the JIT compiler removes the whole block, and instrumentation costs nothing at all.
+ * <p>
+ * When metrics are on, counters are {@link LongAdder}s and latencies go to {@link LatencyHistogram}s, all
+ * registered as MXBeans under the {@value #DOMAIN} domain, to be read with JConsole, VisualVM or any JMX client.
+ * The evaluations and the keypresses are also emitted as JFR events ({@link EvaluationEvent}, {@link KeypressEvent}),
+ * recorded only while a flight recording with them enabled is running.
+ */
+public final class Metrics {
+
+    /**
+     * System property turning the metrics on.
+     */
+    public static final String ENABLED_PROPERTY = "mycalculator.metrics";
+
+    /**
+     * Whether metrics are collected, fixed at startup.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    /**
+     * JMX domain of the MXBeans.
+     */
+    public static final String DOMAIN = "com.calculator.mycalculator";
+
+    /**
+     * Time from a key pressed in the window to the layout pass showing its effect.
+     */
+    public static final LatencyHistogram KEYPRESS_TO_RENDER = new LatencyHistogram("keypress-to-render");
+
+    /**
+     * Time to copy the state of the calculator to the controls of the window.
+     */
+    public static final LatencyHistogram UI_UPDATE = new LatencyHistogram("ui-update");
+
+    /**
+     * Time to evaluate a formula and format its result, from the text of the formula.
+     */
+    public static final LatencyHistogram EVALUATION = new LatencyHistogram("evaluation");
+
+    /**
+     * Time to compile a formula that is not in the cache, by the native compiler or by exp4j.
+     */
+    public static final LatencyHistogram PARSE = new LatencyHistogram("parse");
+
+    /**
+     * Time to format a result.
+     */
+    public static final LatencyHistogram FORMAT = new LatencyHistogram("format");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = List.of(KEYPRESS_TO_RENDER, UI_UPDATE, EVALUATION, PARSE, FORMAT);
+
+    private static final LongAdder KEYPRESSES = new LongAdder();
+    private static final LongAdder EVALUATIONS = new LongAdder();
+    private static final LongAdder ERRORS = new LongAdder();
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    private static final LongAdder MEMO_HITS = new LongAdder();
+    private static final LongAdder MEMO_MISSES = new LongAdder();
+
+    private static volatile long layoutNanos;
+
+    /**
+     * JMX view of the counters.
+     */
+    private static final MetricsMXBean COUNTERS = new MetricsMXBean() {
+        @Override
+        public long getKeypresses() {
+            return KEYPRESSES.sum();
+        }
+
+        @Override
+        public long getEvaluations() {
+            return EVALUATIONS.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return ERRORS.sum();
+        }
+
+        @Override
+        public long getCacheHits() {
+            return CACHE_HITS.sum();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return CACHE_MISSES.sum();
+        }
+
+        @Override
+        public double getCacheHitRate() {
+            long hits = CACHE_HITS.sum();
+            long lookups = hits + CACHE_MISSES.sum();
+            return lookups == 0 ? 0d : hits / (double) lookups;
+        }
+
+        @Override
+        public long getMemoHits() {
+            return MEMO_HITS.sum();
+        }
+
+        @Override
+        public long getMemoMisses() {
+            return MEMO_MISSES.sum();
+        }
+
+        @Override
+        public double getMemoHitRate() {
+            long hits = MEMO_HITS.sum();
+            long lookups = hits + MEMO_MISSES.sum();
+            return lookups == 0 ? 0d : hits / (double) lookups;
+        }
+
+        @Override
+        public double getLayoutMillis() {
+            return layoutNanos / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            KEYPRESSES.reset();
+            EVALUATIONS.reset();
+            ERRORS.reset();
+            CACHE_HITS.reset();
+            CACHE_MISSES.reset();
+            MEMO_HITS.reset();
+            MEMO_MISSES.reset();
+            HISTOGRAMS.forEach(LatencyHistogram::reset);
+        }
+    };
+
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    private Metrics() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Counts a key pressed in the window.
+     */
+    public static void keypress() {
+        KEYPRESSES.increment();
+    }
+
+    /**
+     * Counts an evaluation.
+     *
+     * @param error whether the evaluation gave "Erreur"
+     */
+    public static void evaluated(boolean error) {
+        EVALUATIONS.increment();
+        if (error) {
+            ERRORS.increment();
+        }
+    }
+
+    /**
+     * Counts a formula served from the cache of an engine.
+     */
+    public static void cacheHit() {
+        CACHE_HITS.increment();
+    }
+
+    /**
+     * Counts a formula parsed because it was not in the cache.
+     */
+    public static void cacheMiss() {
+        CACHE_MISSES.increment();
+    }
+
+    /**
+     * Counts a result of a unary function found in a memo.
+     */
+    public static void memoHit() {
+        MEMO_HITS.increment();
+    }
+
+    /**
+     * Counts a result of a unary function computed because it was not in a memo.
+     */
+    public static void memoMiss() {
+        MEMO_MISSES.increment();
+    }
+
+    /**
+     * Records the time taken by building the layout of the window at startup.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public static void layoutBuilt(long nanos) {
+        layoutNanos = nanos;
+    }
+
+    /**
+     * @return a summary of the counters and latencies, one line each
+     */
+    public static @NotNull String report() {
+        StringBuilder report = new StringBuilder()
+                .append(String.format("evaluations=%d errors=%d cache hits=%d misses=%d hit rate=%.3f%n",
+                        EVALUATIONS.sum(), ERRORS.sum(), CACHE_HITS.sum(), CACHE_MISSES.sum(), COUNTERS.getCacheHitRate()));
+        if (MEMO_HITS.sum() + MEMO_MISSES.sum() > 0) {
+            report.append(String.format("memo hits=%d misses=%d hit rate=%.3f%n",
+                    MEMO_HITS.sum(), MEMO_MISSES.sum(), COUNTERS.getMemoHitRate()));
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            if (histogram.getCount() > 0) {
+                report.append(histogram).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Registers the MXBeans in the platform MBean server.
+     * A failure is reported on the standard error, the metrics being still collected.
+     */
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(COUNTERS, new ObjectName(DOMAIN + ":type=Metrics"));
+            for (LatencyHistogram histogram : HISTOGRAMS) {
+                server.registerMBean(histogram, new ObjectName(DOMAIN + ":type=Latency,name=" + histogram.getName()));
+            }
+        } catch (JMException e) {
+            System.err.println("Métriques non publiées par JMX : " + e.getMessage());
+        }
+    }
+}
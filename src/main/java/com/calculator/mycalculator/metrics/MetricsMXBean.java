@@ -0,0 +1,63 @@
+package com.calculator.mycalculator.metrics;
+
+/**
+ * JMX view of the counters of {@link Metrics}, registered as {@code com.calculator.mycalculator:type=Metrics}.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the number of keys pressed in the window
+     */
+    long getKeypresses();
+
+    /**
+     * @return the number of formulas evaluated
+     */
+    long getEvaluations();
+
+    /**
+     * @return the number of evaluations that gave "Erreur"
+     */
+    long getErrors();
+
+    /**
+     * @return the number of compiled formulas served from the cache of an engine
+     */
+    long getCacheHits();
+
+    /**
+     * @return the number of formulas parsed because they were not in the cache
+     */
+    long getCacheMisses();
+
+    /**
+     * @return the share of the formulas served from the cache, from 0 to 1
+     */
+    double getCacheHitRate();
+
+    /**
+     * @return the number of results of unary functions found in a memo
+     */
+    long getMemoHits();
+
+    /**
+     * @return the number of results of unary functions computed because they were not in a memo
+     */
+    long getMemoMisses();
+
+    /**
+     * @return the share of the results of unary functions found in a memo, from 0 to 1
+     */
+    double getMemoHitRate();
+
+    /**
+     * @return the time taken by building the layout of the window at startup, in milliseconds,
+     * or 0 before the window is built
+     */
+    double getLayoutMillis();
+
+    /**
+     * Resets the counters and the latency histograms.
+     */
+    void reset();
+}
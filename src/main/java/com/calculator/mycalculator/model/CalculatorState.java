@@ -0,0 +1,578 @@
+package com.calculator.mycalculator.model;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.engine.RationalFormula;
+import com.calculator.mycalculator.engine.UnaryMemo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.UnaryOperator;
+
+/**
+ * Headless state machine behind the calculator's buttons.
+ * <p>
+ * This class holds the displayed value and the formula being built, and implements what each button does to them.
+ * It has no dependency on JavaFX: the controller forwards button clicks to it and copies the resulting
+ * display and formula to the UI, while benchmarks and tools can drive it directly.
+ * When its engine works in the decimal precision mode, the unary operations are computed with
+ * {@link BigDecimal} arithmetic in the engine's {@link MathContext} as well. When it works in the exact arithmetic
+ * mode, the inverse and the square are computed exactly, and a fraction such as 1/3 is kept as the operand
+ * {@code (1/3)}, between parentheses so that it is evaluated as a whole within the formula.
+ */
+public class CalculatorState {
+
+    /**
+     * Maximum number of digits allowed for the formula input.
+     * If this limit is exceeded, the digit is refused.
+     */
+    public static final int MAX_DIGITS = 22;
+
+    /**
+     * Largest power of ten of an operand computed exactly, as for the numbers the engine compiles for exact
+     * evaluation, e.g. 1E+1000. Beyond, or when the numerator or the denominator of the result exceeds
+     * {@link RationalFormula#MAX_BITS}, the unary operations are computed in {@code double} rather than on huge fractions.
+     */
+    private static final int MAX_EXACT_SCALE = 1000;
+
+    /**
+     * Engine used to evaluate the formula when the equal button is clicked.
+     */
+    private final CalculatorEngine engine;
+
+    /**
+     * Precision of the unary operations in the decimal mode, or null if they are computed in {@code double}.
+     */
+    private final MathContext mathContext;
+
+    /**
+     * Notation of the exact arithmetic mode, or null if the unary operations are not computed exactly.
+     */
+    private final Rational.Notation notation;
+
+    /**
+     * Value of Pi as entered by the Pi button, in the decimal mode.
+     */
+    private static final BigDecimal DECIMAL_PI = new BigDecimal(String.valueOf(Math.PI));
+
+    /**
+     * The formula being built by the user. Its last operand is the number shown by the display.
+     */
+    private final EditableFormula currentFormula = new EditableFormula();
+
+    /**
+     * Whether the display shows "Erreur" after a failed evaluation, until the next key.
+     */
+    private boolean error;
+
+    /**
+     * Text of the display, or null if it must be rendered again.
+     */
+    private String display = "0";
+
+    /**
+     * Incremental evaluation of the formula, for the live preview of its result.
+     */
+    private final RunningFormula runningFormula;
+
+    /**
+     * 10^x in {@code double}, memoized after {@link #setMemo(int, UnaryMemo.Eviction)}.
+     */
+    private DoubleUnaryOperator powerOfTenFunction = CalculatorState::powerOfTen;
+
+    /**
+     * Memo of 10^x, or null if its results are not memoized.
+     */
+    private UnaryMemo powerOfTenMemo;
+
+    /**
+     * Creates a state with its own evaluation engine.
+     */
+    public CalculatorState() {
+        this(new CalculatorEngine());
+    }
+
+    /**
+     * Creates a state that evaluates formulas with the given engine.
+     *
+     * @param engine the engine used by the equal button
+     */
+    public CalculatorState(@NotNull CalculatorEngine engine) {
+        this.engine = engine;
+        this.mathContext = engine.getMathContext();
+        this.notation = engine.getNotation();
+        this.runningFormula = new RunningFormula(engine);
+    }
+
+    /**
+     * @return the text of the display
+     */
+    public @NotNull String getDisplay() {
+        if (display == null) {
+            display = currentFormula.isOperandEmpty() ? "0" : currentFormula.operandText().toString();
+        }
+        return display;
+    }
+
+    /**
+     * @return the formula being built, as displayed above the main display
+     */
+    public @NotNull String getFormula() {
+        return currentFormula.toString();
+    }
+
+    /**
+     * Returns the live preview of the result: what the equal button would display for the formula as it stands,
+     * ignoring a trailing operator, or an empty text while the formula has no operator.
+     * <p>
+     * The preview is updated incrementally, so calling this method after every key costs the same
+     * whatever the length of the formula.
+     *
+     * @return the preview of the result
+     */
+    public @NotNull String getPreview() {
+        runningFormula.sync(currentFormula);
+        return runningFormula.getPreview();
+    }
+
+    /**
+     * Appends a digit to the displayed number and to the formula.
+     * <p>
+     * If the formula is empty and the digit is "0", nothing happens. If the displayed number
+     * has reached the maximum number of digits ({@link #MAX_DIGITS}), the digit is refused.
+     *
+     * @param value The digit that was clicked.
+     * @return false if the digit was refused because of the digit limit, true otherwise
+     */
+    public boolean appendDigit(@NotNull String value) {
+        // If the current formula is empty and the value is "0", do nothing
+        if (currentFormula.isEmpty() && value.equals("0")) {
+            return true;
+        }
+
+        // Only append the value if the current number has not exceeded MAX_DIGITS
+        if (currentFormula.operandText().length() >= MAX_DIGITS) {
+            return false;
+        }
+
+        // If the current number is "0" (or an error, or a fraction), replace it with the new value
+        if (error || currentFormula.isOperandZero() || isOperandFraction()) {
+            currentFormula.setOperand(value);
+        } else {
+            currentFormula.appendToOperand(value);
+        }
+        edited();
+        return true;
+    }
+
+    /**
+     * Removes the last character of the displayed number, in the formula as well.
+     * <p>
+     * If the number is left without a digit, or becomes zero once a trailing decimal point is removed,
+     * it is removed from the formula and the display shows "0". After an error, the display is cleared.
+     */
+    public void delete() {
+        // Only proceed if the display is not "0"; a fraction is removed as a whole
+        if (!error && isOperandFraction()) {
+            currentFormula.clearOperand();
+        } else if (!error && !currentFormula.isOperandEmpty()) {
+            currentFormula.deleteLastOperandChar();
+
+            // If the result is "-", "-0" or "0", remove the number
+            CharSequence rest = currentFormula.operandText();
+            int length = rest.length();
+            boolean signOnly = length > 0 && rest.charAt(0) == '-';
+            int digits = signOnly ? length - 1 : length;
+            if (digits == 0 || (digits == 1 && rest.charAt(length - 1) == '0')) {
+                currentFormula.clearOperand();
+            }
+        }
+        edited();
+    }
+
+    /**
+     * Toggles the sign of the displayed number.
+     * <p>
+     * If the displayed number is not "0", a minus sign is added at the beginning of a positive number,
+     * or removed from a negative one. The formula is updated accordingly.
+     */
+    public void togglePlusMinus() {
+        // Only proceed if the display holds a number other than "0"
+        if (!error && !currentFormula.isOperandEmpty() && !currentFormula.isOperandZero()) {
+            currentFormula.toggleSign();
+            edited();
+        }
+    }
+
+    /**
+     * Adds a decimal point to the displayed number, unless it already contains one.
+     * If the displayed number is "0", the display becomes "0." and the formula is updated accordingly.
+     */
+    public void appendPoint() {
+        if (error || currentFormula.isOperandEmpty() || currentFormula.isOperandZero() || isOperandFraction()) {
+            // If the current number is "0" or a fraction, set it to "0."
+            currentFormula.setOperand("0.");
+        } else if (!contains(currentFormula.operandText(), '.')) {
+            // Otherwise, append the decimal point unless one is already present
+            currentFormula.appendToOperand(".");
+        }
+        edited();
+    }
+
+    /**
+     * Resets the displayed value to "0" and clears the current formula.
+     */
+    public void reset() {
+        currentFormula.clear();
+        runningFormula.clear();
+        edited();
+    }
+
+    /**
+     * Appends an operator to the formula and resets the displayed value to "0".
+     * If the formula already ends with an operator, that operator is replaced by the new one.
+     *
+     * @param operator The operator to be added to the formula (e.g., "+", "-", "*", "/").
+     * @throws IllegalArgumentException if the operator is not one of +, -, * and /
+     */
+    public void applyOperator(@NotNull String operator) {
+        if (operator.length() != 1 || !isOperator(operator.charAt(0))) {
+            throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+
+        // Commit the displayed number with the operator, which resets the display to "0"
+        currentFormula.applyOperator(operator.charAt(0));
+        edited();
+    }
+
+    /**
+     * Replaces the displayed number with a recalled value, such as a result of the history.
+     * Nothing happens if the value is "Erreur".
+     *
+     * @param value the value to display, as formatted by the calculator
+     */
+    public void recall(@NotNull String value) {
+        if (!value.equals(NumberFormatter.ERROR_TEXT)) {
+            currentFormula.setOperand(operandOf(value));
+            edited();
+        }
+    }
+
+    /**
+     * Replaces a displayed "0" with the value of Pi and appends it to the formula.
+     */
+    public void appendPi() {
+        // If the current display is "0", replace it with Pi
+        if (error || currentFormula.isOperandEmpty() || currentFormula.isOperandZero()) {
+            if (mathContext == null) {
+                currentFormula.setOperand(Math.PI);
+            } else {
+                currentFormula.setOperand(DECIMAL_PI);
+            }
+            edited();
+        }
+    }
+
+    /**
+     * Replaces the displayed number with its square root.
+     * If the value is negative, the display is reset to "0" and the number is removed from the formula.
+     */
+    public void sqrt() {
+        if (error || currentFormula.isOperandEmpty() || currentFormula.isOperandZero()) {
+            return;
+        }
+        double value;
+        try {
+            value = currentFormula.operandValue();
+        } catch (NumberFormatException e) {
+            // The display does not hold a number (e.g. "Infinity7"), nothing to compute
+            return;
+        }
+
+        // Check if the value is negative
+        if (value < 0) {
+            // Reset display to 0 and remove the last value in the formula
+            currentFormula.clearOperand();
+            edited();
+        } else if (notation == null || !applyExact(Rational::sqrt)) {
+            // Calculate the square root and update the display and the formula; in the exact mode,
+            // only when the root is irrational or too large
+            applyUnary(Math::sqrt, number -> number.sqrt(mathContext));
+        }
+    }
+
+    /**
+     * Replaces the displayed number with its square.
+     */
+    public void square() {
+        if (notation != null && applyExact(number -> number.multiply(number))) {
+            return;
+        }
+        // Calculate the square of the value and update the display and the formula
+        applyUnary(value -> value * value, number -> number.multiply(number, mathContext));
+    }
+
+    /**
+     * Replaces the displayed number with its inverse (1/x). Nothing happens if the display is "0".
+     */
+    public void inverse() {
+        // Check if the current value is not 0 to avoid division by zero
+        if (!currentFormula.isOperandEmpty() && !currentFormula.isOperandZero()) {
+            if (notation != null && applyExact(Rational::inverse)) {
+                return;
+            }
+            // Calculate the inverse of the value and update the display and the formula
+            applyUnary(value -> 1 / value, number -> BigDecimal.ONE.divide(number, mathContext));
+        }
+    }
+
+    /**
+     * Replaces the displayed number x with 10^x. Nothing happens if the display is "0".
+     */
+    public void exponent() {
+        // Check if the current value is not 0 to avoid invalid operations
+        if (!currentFormula.isOperandEmpty() && !currentFormula.isOperandZero()) {
+            // Calculate 10 raised to the power of the current value and update the display and the formula
+            applyUnary(powerOfTenFunction, this::powerOfTen);
+        }
+    }
+
+    /**
+     * Evaluates the current formula and displays the result, which becomes the new formula.
+     * If the formula is invalid, "Erreur" is displayed and the formula is cleared.
+     */
+    public void equal() {
+        // Get the current formula text and trim any leading or trailing whitespace
+        String formulaText = currentFormula.toString().trim();
+
+        // Proceed if the formula is not empty
+        if (!formulaText.isEmpty()) {
+            // Evaluate the formula and display the formatted result, or "Erreur" in case of an error
+            applyResult(engine.evaluateToText(formulaText));
+        }
+    }
+
+    /**
+     * Completes the equal button with a result computed elsewhere, e.g. on a worker thread, from the trimmed
+     * {@link #getFormula() formula}: the result is displayed and becomes the new formula.
+     * If the result is "Erreur", it is displayed and the formula is cleared.
+     *
+     * @param result the result of the formula, as formatted by the engine
+     */
+    public void applyResult(@NotNull String result) {
+        currentFormula.clear();
+        runningFormula.clear();
+        edited();
+
+        // The result becomes the new formula, which stays cleared after an error
+        if (result.equals(NumberFormatter.ERROR_TEXT)) {
+            error = true;
+            display = result;
+        } else {
+            currentFormula.setOperand(operandOf(result));
+        }
+    }
+
+    /**
+     * Memoizes the results of 10^x in {@code double}, for sessions where the same operands come up again and again.
+     * The square root is not memoized: a single processor instruction computes it faster than a lookup,
+     * and neither is the decimal mode.
+     *
+     * @param capacity the number of results kept, or 0 to stop memoizing
+     * @param eviction what to do with a new result when a memo has no room for it
+     * @throws IllegalArgumentException if the capacity is negative or greater than 2^30
+     */
+    public void setMemo(int capacity, @NotNull UnaryMemo.Eviction eviction) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Memo capacity must not be negative: " + capacity);
+        }
+        if (capacity == 0) {
+            powerOfTenMemo = null;
+            powerOfTenFunction = CalculatorState::powerOfTen;
+        } else {
+            powerOfTenMemo = new UnaryMemo(CalculatorState::powerOfTen, capacity, eviction);
+            powerOfTenFunction = powerOfTenMemo;
+        }
+    }
+
+    /**
+     * @return the memo of 10^x, or null if the results are not memoized
+     */
+    public @Nullable UnaryMemo getPowerOfTenMemo() {
+        return powerOfTenMemo;
+    }
+
+    /**
+     * @return the engine that evaluates the formula
+     */
+    public @NotNull CalculatorEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Checks if the given character is a valid operator (+, -, *, /).
+     *
+     * @param operator the character to check
+     * @return true if the character is a valid operator, false otherwise
+     */
+    private static boolean isOperator(char operator) {
+        return operator == '+' || operator == '-' || operator == '*' || operator == '/';
+    }
+
+    /**
+     * Replaces the displayed number with the result of a unary operation, in {@code double}
+     * or, in the decimal mode, in {@link BigDecimal}. The result is kept as a number, and only rendered as text
+     * when the display or the formula is read.
+     * <p>
+     * Nothing happens if the display does not hold a number (e.g. "Erreur"), or if the decimal operation fails
+     * (e.g. the inverse of zero).
+     *
+     * @param doubleOperation  the operation in {@code double}
+     * @param decimalOperation the operation in the decimal mode
+     */
+    private void applyUnary(@NotNull DoubleUnaryOperator doubleOperation,
+                            @NotNull UnaryOperator<BigDecimal> decimalOperation) {
+        if (error) {
+            return;
+        }
+        try {
+            if (mathContext == null) {
+                double value = currentFormula.isOperandEmpty() ? 0d : currentFormula.operandValue();
+                currentFormula.setOperand(doubleOperation.applyAsDouble(value));
+            } else {
+                BigDecimal value = currentFormula.isOperandEmpty() ? BigDecimal.ZERO : currentFormula.decimalOperandValue();
+                currentFormula.setOperand(decimalOperation.apply(value));
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            return;
+        }
+        edited();
+    }
+
+    /**
+     * Replaces the displayed number with the exact result of a unary operation, in the exact arithmetic mode.
+     * Nothing happens if the display does not hold a number, or if the operation fails (e.g. the inverse of zero).
+     *
+     * @param operation the exact operation, returning null when the result is irrational
+     * @return false if the operand or the result is irrational or too large, see {@link #MAX_EXACT_SCALE},
+     * and the display was left unchanged, true otherwise
+     */
+    private boolean applyExact(@NotNull UnaryOperator<Rational> operation) {
+        if (error) {
+            return true;
+        }
+        Rational result;
+        try {
+            Rational operand = exactOperand();
+            if (operand == null) {
+                return false;
+            }
+            result = operation.apply(operand);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return true;
+        }
+        if (result == null || result.getNumerator().bitLength() > RationalFormula.MAX_BITS
+                || result.getDenominator().bitLength() > RationalFormula.MAX_BITS) {
+            return false;
+        }
+        currentFormula.setOperand(operandOf(result.format(notation)));
+        edited();
+        return true;
+    }
+
+    /**
+     * Reads the displayed number exactly, unless it is too large to be expanded into a fraction, e.g. 1E+100000.
+     * A fraction is always read, since it is the result of an exact operation.
+     *
+     * @return the displayed number, or null if its power of ten is beyond {@link #MAX_EXACT_SCALE}
+     * @throws NumberFormatException if the display does not hold a number
+     */
+    private @Nullable Rational exactOperand() {
+        if (currentFormula.isOperandEmpty()) {
+            return Rational.ZERO;
+        }
+        if (isOperandFraction()) {
+            return Rational.parse(currentFormula.operandText());
+        }
+        BigDecimal value = currentFormula.decimalOperandValue();
+        if (Math.abs(value.scale()) > MAX_EXACT_SCALE || value.precision() - value.scale() > MAX_EXACT_SCALE) {
+            return null;
+        }
+        return Rational.valueOf(value);
+    }
+
+    /**
+     * Puts a fraction of the exact arithmetic mode between parentheses, so that in the formula it is evaluated
+     * as a whole, e.g. {@code 2 / (1/3)}.
+     *
+     * @param value a number as formatted by the calculator
+     * @return the operand for the number
+     */
+    private @NotNull String operandOf(@NotNull String value) {
+        return value.indexOf('/') >= 0 && !value.startsWith("(") ? "(" + value + ")" : value;
+    }
+
+    /**
+     * @return true if the displayed number is a fraction of the exact arithmetic mode, which is not edited digit
+     * by digit
+     */
+    private boolean isOperandFraction() {
+        return notation != null && contains(currentFormula.operandText(), '/');
+    }
+
+    /**
+     * Computes 10^x in {@code double}.
+     *
+     * @param exponent the exponent
+     * @return 10 raised to the exponent
+     */
+    private static double powerOfTen(double exponent) {
+        return Math.pow(10, exponent);
+    }
+
+    /**
+     * Computes 10^x in the decimal mode. Integer exponents give exact powers of ten; the others,
+     * whose results are irrational, are computed by {@link Math#pow(double, double)} and rounded.
+     *
+     * @param exponent the exponent
+     * @return 10 raised to the exponent, rounded to the decimal precision
+     * @throws ArithmeticException if the result is not a finite number
+     */
+    private @NotNull BigDecimal powerOfTen(@NotNull BigDecimal exponent) {
+        try {
+            return BigDecimal.ONE.scaleByPowerOfTen(exponent.intValueExact()).round(mathContext);
+        } catch (ArithmeticException e) {
+            double result = Math.pow(10, exponent.doubleValue());
+            if (Double.isNaN(result) || Double.isInfinite(result)) {
+                throw new ArithmeticException("Result is not a finite number: " + result);
+            }
+            return BigDecimal.valueOf(result).round(mathContext);
+        }
+    }
+
+    /**
+     * Marks the display for rendering after an edit, and leaves the error state.
+     */
+    private void edited() {
+        error = false;
+        display = null;
+    }
+
+    /**
+     * @param text      the text to search
+     * @param character the character to find
+     * @return true if the text contains the character
+     */
+    private static boolean contains(@NotNull CharSequence text, char character) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == character) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,259 @@
+package com.calculator.mycalculator.model;
+
+import com.calculator.mycalculator.engine.NumberFormatter;
+import com.calculator.mycalculator.engine.Rational;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * The formula being built by the buttons, split into the committed part and the last operand.
+ * <p>
+ * The committed part holds the operands and operators already typed (e.g. "12 * 3 + ") and only grows,
+ * except for its trailing operator, which can be replaced in place. The last operand is the number being typed,
+ * the one shown by the main display. Every button only edits the last operand or commits it with an operator,
+ * so each edit costs the same whatever the length of the formula, and no edit can reach into the committed part.
+ * <p>
+ * The result of a unary operation is kept as a number, so that a chain of operations (square, then inverse...)
+ * works on the {@code double} or {@link BigDecimal} value directly. Its text is rendered only when it is read,
+ * and the text of the whole formula is built once and cached until the next edit.
+ */
+final class EditableFormula implements CharSequence {
+
+    /**
+     * Operands and operators already committed, empty or ending with an operator and its trailing space.
+     */
+    private final StringBuilder committed = new StringBuilder();
+
+    /**
+     * Text of the last operand. When the operand is held as a number, the text is valid only once rendered.
+     */
+    private final StringBuilder operand = new StringBuilder(24);
+
+    /**
+     * Whether the last operand is held as a number, in {@link #value} or {@link #decimalValue}.
+     */
+    private boolean numeric;
+
+    /**
+     * Whether the text of a numeric operand is up to date.
+     */
+    private boolean rendered;
+
+    /**
+     * Value of a numeric operand: a {@code double}, or a decimal number if {@link #decimalValue} is not null.
+     */
+    private double value;
+    private BigDecimal decimalValue;
+
+    /**
+     * Text of the whole formula, or null if it must be built again.
+     */
+    private String text;
+
+    /**
+     * @return true if there is no last operand, which the display shows as "0"
+     */
+    boolean isOperandEmpty() {
+        return !numeric && operand.isEmpty();
+    }
+
+    /**
+     * @return true if the last operand is displayed as "0"
+     */
+    boolean isOperandZero() {
+        if (numeric) {
+            return decimalValue == null ? value == 0d : decimalValue.signum() == 0;
+        }
+        return operand.length() == 1 && operand.charAt(0) == '0';
+    }
+
+    /**
+     * @return the text of the last operand, rendered if needed; empty if there is no operand
+     */
+    @NotNull CharSequence operandText() {
+        if (numeric && !rendered) {
+            operand.setLength(0);
+            if (decimalValue == null) {
+                NumberFormatter.formatTo(value, operand);
+            } else {
+                NumberFormatter.formatTo(decimalValue, operand);
+            }
+            rendered = true;
+        }
+        return operand;
+    }
+
+    /**
+     * @return the value of the last operand as a {@code double}, a fraction such as "(1/3)" included
+     * @throws NumberFormatException if the operand is not a number (e.g. "Infinity7")
+     */
+    double operandValue() {
+        if (numeric && decimalValue == null) {
+            return value;
+        }
+        String text = operandText().toString();
+        return text.indexOf('/') >= 0 ? Rational.parse(text).doubleValue() : Double.parseDouble(text);
+    }
+
+    /**
+     * @return the value of the last operand as a decimal number
+     * @throws NumberFormatException if the operand is not a finite number
+     */
+    @NotNull BigDecimal decimalOperandValue() {
+        if (numeric && decimalValue != null) {
+            return decimalValue;
+        }
+        return new BigDecimal(operandText().toString());
+    }
+
+    /**
+     * Appends text to the last operand.
+     *
+     * @param suffix the text to append
+     */
+    void appendToOperand(@NotNull CharSequence suffix) {
+        editText().append(suffix);
+    }
+
+    /**
+     * Replaces the last operand with the given text.
+     *
+     * @param operandText the new text of the operand
+     */
+    void setOperand(@NotNull CharSequence operandText) {
+        clearOperand();
+        operand.append(operandText);
+    }
+
+    /**
+     * Replaces the last operand with a number, rendered only when its text is read.
+     *
+     * @param number the new operand
+     */
+    void setOperand(double number) {
+        setNumber(number, null);
+    }
+
+    /**
+     * Replaces the last operand with a decimal number, rendered only when its text is read.
+     *
+     * @param number the new operand
+     */
+    void setOperand(@NotNull BigDecimal number) {
+        setNumber(0d, number);
+    }
+
+    /**
+     * Removes the last character of the last operand, if any.
+     */
+    void deleteLastOperandChar() {
+        StringBuilder digits = editText();
+        if (!digits.isEmpty()) {
+            digits.setLength(digits.length() - 1);
+        }
+    }
+
+    /**
+     * Adds a minus sign in front of the last operand, or removes it.
+     */
+    void toggleSign() {
+        StringBuilder digits = editText();
+        if (!digits.isEmpty() && digits.charAt(0) == '-') {
+            digits.deleteCharAt(0);
+        } else {
+            digits.insert(0, '-');
+        }
+    }
+
+    /**
+     * Removes the last operand, which the display then shows as "0".
+     */
+    void clearOperand() {
+        numeric = false;
+        decimalValue = null;
+        text = null;
+        operand.setLength(0);
+    }
+
+    /**
+     * Commits the last operand followed by the operator. If there is no last operand and the formula already ends
+     * with an operator, that operator is replaced instead.
+     *
+     * @param operator the operator (+, -, *, /)
+     */
+    void applyOperator(char operator) {
+        if (isOperandEmpty() && !committed.isEmpty()) {
+            committed.setCharAt(committed.length() - 2, operator);
+        } else {
+            committed.append(operandText()).append(' ').append(operator).append(' ');
+            clearOperand();
+        }
+        text = null;
+    }
+
+    /**
+     * Removes the whole formula.
+     */
+    void clear() {
+        committed.setLength(0);
+        clearOperand();
+    }
+
+    @Override
+    public int length() {
+        return committed.length() + operandText().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        int split = committed.length();
+        return index < split ? committed.charAt(index) : operandText().charAt(index - split);
+    }
+
+    @Override
+    public @NotNull CharSequence subSequence(int start, int end) {
+        int split = committed.length();
+        if (start >= split) {
+            return operandText().subSequence(start - split, end - split);
+        }
+        if (end <= split) {
+            return committed.subSequence(start, end);
+        }
+        return toString().substring(start, end);
+    }
+
+    /**
+     * @return the text of the whole formula, as displayed above the main display
+     */
+    @Override
+    public @NotNull String toString() {
+        if (text == null) {
+            CharSequence last = operandText();
+            text = committed.isEmpty() ? last.toString()
+                    : new StringBuilder(committed.length() + last.length()).append(committed).append(last).toString();
+        }
+        return text;
+    }
+
+    /**
+     * Switches the last operand to its text form, for an edit of its characters.
+     *
+     * @return the text of the operand, to be edited
+     */
+    private @NotNull StringBuilder editText() {
+        operandText();
+        numeric = false;
+        decimalValue = null;
+        text = null;
+        return operand;
+    }
+
+    private void setNumber(double number, BigDecimal decimalNumber) {
+        numeric = true;
+        rendered = false;
+        value = number;
+        decimalValue = decimalNumber;
+        text = null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.calculator.mycalculator.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Queue of the keys waiting to be pressed on a {@link CalculatorState}, whatever their source: buttons, keyboard,
+ * pasted text or results recalled from the history.
+ * <p>
+ * Keys are queued as they come, encoded by {@link Keypad}, and pressed in a batch, so that the display is updated
+ * once for a whole burst of keys, e.g. a long pasted formula or a held key, rather than once per key. A batch stops
+ * before an equal key, which is left at the head of the queue: the caller evaluates the formula, possibly off
+ * its thread, then goes on with the keys behind it once the result is displayed.
+ * A queue is not thread-safe: keys are queued and pressed on the same thread.
+ */
+public final class InputQueue {
+
+    /**
+     * Number of keys pressed between two checks of the deadline of a batch.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    /**
+     * Keys that are not pressed yet start at {@link #head}.
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    private int head;
+
+    /**
+     * Queues a single key.
+     *
+     * @param key the key, encoded by {@link Keypad}
+     * @throws IllegalArgumentException if the character is not a key
+     */
+    public void submit(char key) {
+        if (Keypad.KEYS.indexOf(key) < 0) {
+            throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        pending.append(key);
+    }
+
+    /**
+     * Queues encoded keys.
+     *
+     * @param keys the keys, encoded by {@link Keypad}, with recalled results between braces
+     * @throws IllegalArgumentException if the sequence holds a character that is not a key, or an unclosed recall
+     */
+    public void submit(@NotNull CharSequence keys) {
+        boolean inRecall = false;
+        for (int i = 0; i < keys.length(); i++) {
+            char key = keys.charAt(i);
+            if (inRecall) {
+                inRecall = key != Keypad.RECALL_END;
+            } else if (key == Keypad.RECALL_START) {
+                inRecall = true;
+            } else if (Keypad.KEYS.indexOf(key) < 0) {
+                throw new IllegalArgumentException("Unknown key: " + key);
+            }
+        }
+        if (inRecall) {
+            throw new IllegalArgumentException("Unclosed recall: " + keys);
+        }
+        pending.append(keys);
+    }
+
+    /**
+     * Queues the keys of a typed or pasted text, translated by {@link Keypad#fromCharacter(char)}.
+     * The characters that are not keys, such as spaces, are skipped.
+     *
+     * @param text the text
+     * @return the number of keys queued
+     */
+    public int submitText(@NotNull CharSequence text) {
+        int before = pending.length();
+        pending.ensureCapacity(before + text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char key = Keypad.fromCharacter(text.charAt(i));
+            if (key != 0) {
+                pending.append(key);
+            }
+        }
+        return pending.length() - before;
+    }
+
+    /**
+     * Presses the queued keys in order, until the queue is empty, an equal key is at its head, or the deadline
+     * has passed. The deadline bounds the time a huge paste takes from a single frame; the rest is pressed
+     * by the next batches.
+     *
+     * @param state    the state to drive
+     * @param recorder records the pressed keys, or null
+     * @param deadline the {@link System#nanoTime()} after which the batch stops
+     * @return the number of digits refused because of {@link CalculatorState#MAX_DIGITS}
+     */
+    public int apply(@NotNull CalculatorState state, @Nullable KeyRecorder recorder, long deadline) {
+        int refused = 0;
+        int pressed = 0;
+        int length = pending.length();
+        while (head < length && pending.charAt(head) != '=') {
+            char key = pending.charAt(head);
+            if (key == Keypad.RECALL_START) {
+                int end = pending.indexOf(String.valueOf(Keypad.RECALL_END), head);
+                String value = pending.substring(head + 1, end);
+                if (recorder != null) {
+                    recorder.recall(value);
+                }
+                state.recall(value);
+                head = end + 1;
+            } else {
+                if (recorder != null) {
+                    recorder.press(key);
+                }
+                if (!Keypad.press(state, key)) {
+                    refused++;
+                }
+                head++;
+            }
+            if (++pressed % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        compact();
+        return refused;
+    }
+
+    /**
+     * Removes the equal key at the head of the queue, for the caller to evaluate the formula.
+     *
+     * @return true if the head of the queue was an equal key, false if it is empty or starts with another key
+     */
+    public boolean pollEqual() {
+        if (head < pending.length() && pending.charAt(head) == '=') {
+            head++;
+            compact();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if no key is waiting
+     */
+    public boolean isEmpty() {
+        return head == pending.length();
+    }
+
+    /**
+     * @return the number of characters waiting, a recalled result counting for its characters
+     */
+    public int size() {
+        return pending.length() - head;
+    }
+
+    /**
+     * Removes every waiting key.
+     */
+    public void clear() {
+        pending.setLength(0);
+        head = 0;
+    }
+
+    /**
+     * Drops the pressed keys, at once when none is left, otherwise when they take most of the buffer.
+     */
+    private void compact() {
+        if (head == pending.length()) {
+            clear();
+        } else if (head > pending.length() / 2) {
+            pending.delete(0, head);
+            head = 0;
+        }
+    }
+}
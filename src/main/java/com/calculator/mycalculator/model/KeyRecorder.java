@@ -0,0 +1,76 @@
+package com.calculator.mycalculator.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Records the keys pressed in a session as a trace that can be replayed and checked on a headless state.
+ * <p>
+ * The trace is a text with one line per checkpoint, e.g. after each result: the keys pressed since the previous
+ * checkpoint, encoded by {@link Keypad}, then the display and the formula shown at the checkpoint, separated by
+ * tabulations. Replaying the keys of every line in order on a new {@link CalculatorState}, and comparing the state
+ * with the line at each checkpoint, reproduces and checks the session.
+ */
+public final class KeyRecorder implements Closeable {
+
+    /**
+     * Separator of the keys, the display and the formula on a line of the trace.
+     */
+    public static final char SEPARATOR = '\t';
+
+    private final Writer writer;
+
+    /**
+     * Keys pressed since the last checkpoint.
+     */
+    private final StringBuilder keys = new StringBuilder();
+
+    /**
+     * Creates a recorder writing the trace to the given writer, which it closes when it is closed.
+     *
+     * @param writer the destination of the trace
+     */
+    public KeyRecorder(@NotNull Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Records a key.
+     *
+     * @param key the key, encoded by {@link Keypad}
+     */
+    public void press(char key) {
+        keys.append(key);
+    }
+
+    /**
+     * Records a result recalled from the history.
+     *
+     * @param value the recalled result
+     */
+    public void recall(@NotNull String value) {
+        keys.append(Keypad.RECALL_START).append(value).append(Keypad.RECALL_END);
+    }
+
+    /**
+     * Writes the keys pressed since the last checkpoint, with the display and the formula of the state.
+     *
+     * @param state the state driven by the recorded keys
+     * @throws IOException if the trace cannot be written
+     */
+    public void checkpoint(@NotNull CalculatorState state) throws IOException {
+        writer.append(keys).append(SEPARATOR)
+                .append(state.getDisplay()).append(SEPARATOR)
+                .append(state.getFormula()).append('\n');
+        writer.flush();
+        keys.setLength(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,130 @@
+package com.calculator.mycalculator.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encodes the buttons of the calculator as characters, and presses them on a {@link CalculatorState}.
+ * <p>
+ * Each button is one character: digits, '.', '+', '-', '*', '/' and '=' as on the keypad, 'n' for plus-minus,
+ * 'd' for delete, 'c' for reset, 'p' for Pi, 'r' for square root, 's' for square, 'i' for inverse and 'x' for 10^x.
+ * A result recalled from the history is written between braces, e.g. {@code {42}}. A sequence of keys is
+ * therefore a plain string, which the controller records and which tools replay on a headless state,
+ * with exactly the effect of the buttons.
+ */
+public final class Keypad {
+
+    /**
+     * All the keys, one character each.
+     */
+    public static final String KEYS = "0123456789.+-*/=ndcprsix";
+
+    /**
+     * Characters around a recalled result.
+     */
+    public static final char RECALL_START = '{';
+    public static final char RECALL_END = '}';
+
+    private Keypad() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Presses a single key.
+     *
+     * @param state the state to drive
+     * @param key   the encoded key
+     * @return false if the key was refused, i.e. a digit beyond {@link CalculatorState#MAX_DIGITS}
+     * @throws IllegalArgumentException if the character is not a key
+     */
+    public static boolean press(@NotNull CalculatorState state, char key) {
+        switch (key) {
+            case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
+                return state.appendDigit(digit(key));
+            }
+            case '.' -> state.appendPoint();
+            case '+' -> state.applyOperator("+");
+            case '-' -> state.applyOperator("-");
+            case '*' -> state.applyOperator("*");
+            case '/' -> state.applyOperator("/");
+            case '=' -> state.equal();
+            case 'n' -> state.togglePlusMinus();
+            case 'd' -> state.delete();
+            case 'c' -> state.reset();
+            case 'p' -> state.appendPi();
+            case 'r' -> state.sqrt();
+            case 's' -> state.square();
+            case 'i' -> state.inverse();
+            case 'x' -> state.exponent();
+            default -> throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        return true;
+    }
+
+    /**
+     * Translates a character typed on the keyboard or pasted into the key it stands for: digits, operators and
+     * the point as themselves, ',' as the point, '×' and '÷' as the operators, '=' and line breaks as the equal key,
+     * 'π' as Pi, '√' as the square root and '²' as the square. Letters are not keys, so that pasted words are ignored
+     * rather than pressing unrelated buttons.
+     *
+     * @param character the typed character
+     * @return the key, or 0 if the character is not a key
+     */
+    public static char fromCharacter(char character) {
+        return switch (character) {
+            case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '.', '+', '-', '*', '/', '=' -> character;
+            case ',' -> '.';
+            case '×' -> '*';
+            case '÷' -> '/';
+            case '\r', '\n' -> '=';
+            case 'π' -> 'p';
+            case '√' -> 'r';
+            case '²' -> 's';
+            default -> 0;
+        };
+    }
+
+    /**
+     * Presses every key of a sequence, in order, and recalls the results written between braces.
+     *
+     * @param state the state to drive
+     * @param keys  the encoded keys
+     * @throws IllegalArgumentException if the sequence holds a character that is not a key, or an unclosed recall
+     */
+    public static void replay(@NotNull CalculatorState state, @NotNull CharSequence keys) {
+        for (int i = 0; i < keys.length(); i++) {
+            char key = keys.charAt(i);
+            if (key == RECALL_START) {
+                int end = i + 1;
+                while (end < keys.length() && keys.charAt(end) != RECALL_END) {
+                    end++;
+                }
+                if (end == keys.length()) {
+                    throw new IllegalArgumentException("Unclosed recall at " + i);
+                }
+                state.recall(keys.subSequence(i + 1, end).toString());
+                i = end;
+            } else {
+                press(state, key);
+            }
+        }
+    }
+
+    /**
+     * @param key a digit key
+     * @return the digit as the state expects it, without allocating
+     */
+    private static @NotNull String digit(char key) {
+        return switch (key) {
+            case '0' -> "0";
+            case '1' -> "1";
+            case '2' -> "2";
+            case '3' -> "3";
+            case '4' -> "4";
+            case '5' -> "5";
+            case '6' -> "6";
+            case '7' -> "7";
+            case '8' -> "8";
+            default -> "9";
+        };
+    }
+}
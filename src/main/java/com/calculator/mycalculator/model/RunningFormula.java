@@ -0,0 +1,456 @@
+package com.calculator.mycalculator.model;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Incremental evaluation of the formula being built, for the live preview of its result.
+ * <p>
+ * The formula built by the buttons is a chain of operands separated by spaced operators ({@code " + "}, {@code " * "}...).
+ * For every operator already typed, a frame keeps the state of the shunting yard at that point: the sum of
+ * the completed additive terms and the multiplicative term in progress, each with its pending operator.
+ * A keypress only edits the last operand or adds an operator, so {@link #sync(CharSequence)} checks the top frame,
+ * commits new operators and combines the last operand with the top frame: the cost of a key does not depend
+ * on the length of the formula. The operations are the ones the engine performs, in the same order,
+ * so the preview shows exactly what the equal button would display.
+ * <p>
+ * Formulas that do not have this regular shape (a result such as "Infinity" used as an operand, for instance)
+ * are evaluated in full by the engine, and so are all the formulas in the exact arithmetic mode, whose fractions
+ * the frames do not hold.
+ */
+public class RunningFormula {
+
+    /**
+     * Operator of a frame with no pending operation.
+     */
+    private static final char NONE = 0;
+
+    /**
+     * Engine of the calculator, used for irregular formulas. Its math context selects the decimal arithmetic.
+     */
+    private final CalculatorEngine engine;
+
+    /**
+     * Precision of the decimal mode, or null if the formula is evaluated in {@code double}.
+     */
+    private final MathContext mathContext;
+
+    /**
+     * Whether the engine works in the exact arithmetic mode.
+     */
+    private final boolean exact;
+
+    /**
+     * One frame per operator of the formula, reused from one formula to the next.
+     */
+    private Frame[] frames = new Frame[16];
+    private int frameCount;
+
+    /**
+     * Value of the last operand, set by {@link #parseOperand(CharSequence, int, int)}.
+     */
+    private double operand;
+    private BigDecimal decimalOperand;
+
+    /**
+     * Text of the preview for the formula given to the last {@link #sync(CharSequence)}.
+     */
+    private String preview = "";
+
+    /**
+     * Creates an incremental evaluation that computes like the given engine.
+     *
+     * @param engine the engine of the calculator
+     */
+    public RunningFormula(@NotNull CalculatorEngine engine) {
+        this.engine = engine;
+        this.mathContext = engine.getMathContext();
+        this.exact = engine.getNotation() != null;
+    }
+
+    /**
+     * @return the result of the formula as the equal button would display it, ignoring a trailing operator,
+     * or an empty text if the formula has no operator yet
+     */
+    public @NotNull String getPreview() {
+        return preview;
+    }
+
+    /**
+     * Forgets every operator, for a formula that was replaced rather than edited at its end.
+     */
+    public void clear() {
+        frameCount = 0;
+        preview = "";
+    }
+
+    /**
+     * Brings the evaluation up to date with the formula, which must have been edited only after its last operator
+     * since the previous call, unless {@link #clear()} was called in between.
+     *
+     * @param formula the formula being built
+     */
+    public void sync(@NotNull CharSequence formula) {
+        if (exact) {
+            preview = indexOfSpace(formula, 0) < 0 ? "" : evaluateInFull(formula);
+            return;
+        }
+        int length = formula.length();
+
+        // Drop the operators that were deleted or replaced
+        while (frameCount > 0 && !isOperatorAt(formula, frames[frameCount - 1])) {
+            frameCount--;
+        }
+
+        // Commit the operators typed since the last call
+        int start = frameCount == 0 ? 0 : frames[frameCount - 1].end;
+        int space = indexOfSpace(formula, start);
+        while (space >= 0) {
+            boolean regular = space + 2 < length && isOperator(formula.charAt(space + 1))
+                    && formula.charAt(space + 2) == ' ';
+            if (regular) {
+                // Only the first operator may come without an operand before it
+                regular = space == start ? start == 0 && commitLeading(formula.charAt(1)) : commit(formula, start, space);
+            }
+            if (!regular) {
+                preview = evaluateInFull(formula);
+                return;
+            }
+            start = space + 3;
+            space = indexOfSpace(formula, start);
+        }
+
+        if (frameCount == 0) {
+            // A single operand: nothing to preview
+            preview = "";
+        } else if (start == length) {
+            // A trailing operator is ignored
+            Frame top = frames[frameCount - 1];
+            preview = top.unary ? "" : format(top);
+        } else if (!parseOperand(formula, start, length)) {
+            preview = evaluateInFull(formula);
+        } else {
+            Frame top = frames[frameCount - 1];
+            if (top.unary) {
+                applySign(top);
+            }
+            try {
+                preview = top.error ? NumberFormatter.ERROR_TEXT
+                        : mathContext == null ? NumberFormatter.format(valueWithOperand(top))
+                        : NumberFormatter.format(decimalValueWithOperand(top).round(mathContext));
+            } catch (ArithmeticException e) {
+                preview = NumberFormatter.ERROR_TEXT;
+            }
+        }
+    }
+
+    /**
+     * Evaluates an irregular formula with the engine, ignoring a trailing operator like the incremental evaluation.
+     *
+     * @param formula the formula being built
+     * @return the formatted result, or an empty text if nothing is left to evaluate
+     */
+    private @NotNull String evaluateInFull(@NotNull CharSequence formula) {
+        String text = formula.toString().trim();
+        int length = text.length();
+        if (length > 0 && isOperator(text.charAt(length - 1)) && (length == 1 || text.charAt(length - 2) == ' ')) {
+            text = text.substring(0, length - 1).trim();
+        }
+        return text.isEmpty() ? "" : engine.evaluateToText(text);
+    }
+
+    /**
+     * Pushes a frame for an operator typed before any operand. A minus sign negates the first operand,
+     * as the unary minus of the formula does; a plus sign leaves it unchanged. A multiplication or a division
+     * lacks its left operand, so the whole formula fails.
+     *
+     * @param operator the operator
+     * @return true
+     */
+    private boolean commitLeading(char operator) {
+        Frame frame = push();
+        frame.end = 3;
+        frame.operator = operator;
+        frame.unary = true;
+        frame.error = operator == '*' || operator == '/';
+        frame.sumOperator = NONE;
+        frame.termOperator = NONE;
+        return true;
+    }
+
+    /**
+     * Pushes a frame for the operator at the given position, folding the operand that precedes it.
+     *
+     * @param formula the formula being built
+     * @param start   the position of the operand
+     * @param space   the position of the space before the operator
+     * @return false if the operand is not a plain number
+     */
+    private boolean commit(@NotNull CharSequence formula, int start, int space) {
+        if (!parseOperand(formula, start, space)) {
+            return false;
+        }
+        Frame previous = frameCount == 0 ? null : frames[frameCount - 1];
+        boolean error = previous != null && previous.error;
+        if (previous != null && previous.unary) {
+            // The leading sign applies to this operand, before any other operation
+            applySign(previous);
+            previous = null;
+        }
+
+        Frame frame = push();
+        char operator = formula.charAt(space + 1);
+        frame.end = space + 3;
+        frame.operator = operator;
+        frame.unary = false;
+        frame.error = error;
+        frame.sumOperator = previous == null ? NONE : previous.sumOperator;
+        frame.termOperator = NONE;
+
+        if (!frame.error) {
+            try {
+                if (mathContext == null) {
+                    double term = previous == null ? operand : termWithOperand(previous);
+                    frame.value = previous == null ? term : sumWithTerm(previous, term);
+                    if (operator == '+' || operator == '-') {
+                        frame.sum = frame.value;
+                        frame.sumOperator = operator;
+                    } else {
+                        frame.sum = previous == null ? 0d : previous.sum;
+                        frame.term = term;
+                        frame.termOperator = operator;
+                    }
+                } else {
+                    BigDecimal term = previous == null ? decimalOperand : decimalTermWithOperand(previous);
+                    frame.decimalValue = previous == null ? term : decimalSumWithTerm(previous, term);
+                    if (operator == '+' || operator == '-') {
+                        frame.decimalSum = frame.decimalValue;
+                        frame.sumOperator = operator;
+                    } else {
+                        frame.decimalSum = previous == null ? null : previous.decimalSum;
+                        frame.decimalTerm = term;
+                        frame.termOperator = operator;
+                    }
+                }
+            } catch (ArithmeticException e) {
+                // Division by zero: the whole formula fails, whatever follows
+                frame.error = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a new frame on top of the others, reusing a previous instance when possible
+     */
+    private @NotNull Frame push() {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        if (frames[frameCount] == null) {
+            frames[frameCount] = new Frame();
+        }
+        return frames[frameCount++];
+    }
+
+    /**
+     * Applies the leading sign of a frame to the last operand.
+     *
+     * @param frame the frame of an operator typed before any operand
+     */
+    private void applySign(@NotNull Frame frame) {
+        if (frame.operator == '-') {
+            operand = -operand;
+            decimalOperand = decimalOperand == null ? null : decimalOperand.negate();
+        }
+    }
+
+    /**
+     * Parses an operand the way the formula tokenizer reads it: an optional minus sign, then a number literal.
+     *
+     * @param formula the formula being built
+     * @param start   the position of the operand
+     * @param end     the position after the operand
+     * @return false if the operand is anything else, such as "Infinity"
+     */
+    private boolean parseOperand(@NotNull CharSequence formula, int start, int end) {
+        int digits = start < end && formula.charAt(start) == '-' ? start + 1 : start;
+        if (digits == end) {
+            return false;
+        }
+        char first = formula.charAt(digits);
+        char last = formula.charAt(end - 1);
+        if (!(Character.isDigit(first) || first == '.') || last == 'e' || last == 'E') {
+            return false;
+        }
+        for (int i = digits + 1; i < end; i++) {
+            char ch = formula.charAt(i);
+            char previous = formula.charAt(i - 1);
+            boolean afterExponent = previous == 'e' || previous == 'E';
+            if (!(Character.isDigit(ch) || ch == '.' || ch == 'e' || ch == 'E'
+                    || (afterExponent && (ch == '-' || ch == '+')))) {
+                return false;
+            }
+        }
+
+        String text = formula.subSequence(start, end).toString();
+        try {
+            if (mathContext == null) {
+                operand = Double.parseDouble(text);
+            } else {
+                decimalOperand = new BigDecimal(text);
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the value of the multiplicative term of the frame, completed by the last operand
+     */
+    private double termWithOperand(@NotNull Frame frame) {
+        return frame.unary || frame.termOperator == NONE ? operand : apply(frame.term, frame.termOperator, operand);
+    }
+
+    /**
+     * @return the value of the formula up to the frame's operator, completed by the last operand
+     */
+    private double valueWithOperand(@NotNull Frame frame) {
+        return sumWithTerm(frame, termWithOperand(frame));
+    }
+
+    private static double sumWithTerm(@NotNull Frame frame, double term) {
+        return frame.unary || frame.sumOperator == NONE ? term : apply(frame.sum, frame.sumOperator, term);
+    }
+
+    private @NotNull BigDecimal decimalTermWithOperand(@NotNull Frame frame) {
+        return frame.unary || frame.termOperator == NONE ? decimalOperand
+                : apply(frame.decimalTerm, frame.termOperator, decimalOperand, mathContext);
+    }
+
+    private @NotNull BigDecimal decimalValueWithOperand(@NotNull Frame frame) {
+        return decimalSumWithTerm(frame, decimalTermWithOperand(frame));
+    }
+
+    private @NotNull BigDecimal decimalSumWithTerm(@NotNull Frame frame, @NotNull BigDecimal term) {
+        return frame.unary || frame.sumOperator == NONE ? term : apply(frame.decimalSum, frame.sumOperator, term, mathContext);
+    }
+
+    /**
+     * Applies an operator in {@code double}, failing on a division by zero like the engine.
+     */
+    private static double apply(double left, char operator, double right) {
+        return switch (operator) {
+            case '+' -> left + right;
+            case '-' -> left - right;
+            case '*' -> left * right;
+            default -> {
+                if (right == 0d) {
+                    throw new ArithmeticException("Division by zero!");
+                }
+                yield left / right;
+            }
+        };
+    }
+
+    /**
+     * Applies an operator in decimal arithmetic, failing on a division by zero like the engine.
+     */
+    private static @NotNull BigDecimal apply(@NotNull BigDecimal left, char operator, @NotNull BigDecimal right,
+                                             @NotNull MathContext mathContext) {
+        return switch (operator) {
+            case '+' -> left.add(right, mathContext);
+            case '-' -> left.subtract(right, mathContext);
+            case '*' -> left.multiply(right, mathContext);
+            default -> {
+                if (right.signum() == 0) {
+                    throw new ArithmeticException("Division by zero!");
+                }
+                yield left.divide(right, mathContext);
+            }
+        };
+    }
+
+    /**
+     * @return the formatted value of the formula up to the frame's operator
+     */
+    private @NotNull String format(@NotNull Frame frame) {
+        if (frame.error) {
+            return NumberFormatter.ERROR_TEXT;
+        }
+        return mathContext == null ? NumberFormatter.format(frame.value)
+                : NumberFormatter.format(frame.decimalValue.round(mathContext));
+    }
+
+    /**
+     * @return true if the frame's operator is still in the formula, surrounded by its spaces
+     */
+    private static boolean isOperatorAt(@NotNull CharSequence formula, @NotNull Frame frame) {
+        return frame.end <= formula.length()
+                && formula.charAt(frame.end - 3) == ' '
+                && formula.charAt(frame.end - 2) == frame.operator
+                && formula.charAt(frame.end - 1) == ' ';
+    }
+
+    private static boolean isOperator(char ch) {
+        return ch == '+' || ch == '-' || ch == '*' || ch == '/';
+    }
+
+    private static int indexOfSpace(@NotNull CharSequence formula, int from) {
+        for (int i = from; i < formula.length(); i++) {
+            if (formula.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * State of the evaluation right after an operator of the formula.
+     * Only the fields of the current arithmetic ({@code double} or decimal) are used.
+     */
+    private static final class Frame {
+
+        /**
+         * Position right after the operator and its trailing space.
+         */
+        int end;
+        char operator;
+
+        /**
+         * Whether the operator was typed before any operand, and acts as a sign.
+         */
+        boolean unary;
+
+        /**
+         * Whether the formula already fails before this operator.
+         */
+        boolean error;
+
+        /**
+         * Value of the formula up to this operator.
+         */
+        double value;
+        BigDecimal decimalValue;
+
+        /**
+         * Sum of the completed additive terms, and the operator that adds the next term to it.
+         */
+        double sum;
+        BigDecimal decimalSum;
+        char sumOperator;
+
+        /**
+         * Multiplicative term in progress, and the operator that applies the next operand to it.
+         */
+        double term;
+        BigDecimal decimalTerm;
+        char termOperator;
+    }
+}
@@ -0,0 +1,233 @@
+package com.calculator.mycalculator.server;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP service evaluating formulas with the calculator's own rules, for other tools on the same machine.
+ * <p>
+ * {@code POST /evaluate} takes a batch of formulas and returns one result per formula, in order, exactly as
+ * the equal button and the batch mode would display them ("Erreur" for an invalid formula):
+ * <ul>
+ *     <li>with {@code Content-Type: application/json}, a JSON array of strings, answered with a JSON array
+ *     of strings;</li>
+ *     <li>otherwise, plain text with one formula per line, answered with one result per line,
+ *     a blank line giving a blank line.</li>
+ * </ul>
+ * The server is built on the JDK's {@link HttpServer}: connections are kept alive between requests, and each
+ * request is handled on its own virtual thread. All requests share one {@link CalculatorEngine},
+ * so a formula compiled for one client is served from the cache to all the others.
+ */
+public final class EvaluationServer implements AutoCloseable {
+
+    /**
+     * Path of the evaluation endpoint.
+     */
+    public static final String EVALUATE_PATH = "/evaluate";
+
+    /**
+     * Largest request body accepted, in bytes.
+     */
+    public static final int MAX_BODY_SIZE = 16 << 20;
+
+    /**
+     * System property of the JDK's server that disables Nagle's algorithm on its connections.
+     */
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final CalculatorEngine engine;
+
+    private EvaluationServer(@NotNull HttpServer server, @NotNull ExecutorService executor, @NotNull CalculatorEngine engine) {
+        this.server = server;
+        this.executor = executor;
+        this.engine = engine;
+    }
+
+    /**
+     * Starts a server.
+     * <p>
+     * The JDK's server writes the headers and the body of a response separately. With Nagle's algorithm,
+     * the body then waits for the client to acknowledge the headers, which a delayed acknowledgment holds
+     * for tens of milliseconds: a keep-alive client would get one response every 40 ms or so. Unless set
+     * otherwise, the property disabling it is therefore set before the first server of the process is created,
+     * when the JDK reads it.
+     *
+     * @param address the address to listen on, e.g. the loopback address; port 0 picks a free port
+     * @param engine  the engine shared by all the requests
+     * @return the running server
+     * @throws IOException if the address cannot be bound
+     */
+    public static @NotNull EvaluationServer start(@NotNull InetSocketAddress address, @NotNull CalculatorEngine engine) throws IOException {
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        EvaluationServer evaluationServer = new EvaluationServer(server, executor, engine);
+        server.createContext(EVALUATE_PATH, evaluationServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        return evaluationServer;
+    }
+
+    /**
+     * @return the address the server listens on, with the actual port
+     */
+    public @NotNull InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server, closing its connections without waiting for the requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Handles a request to the evaluation endpoint.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the connection fails
+     */
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // The context also receives the paths below the endpoint, such as /evaluate/x
+            if (!exchange.getRequestURI().getPath().equals(EVALUATE_PATH)) {
+                send(exchange, 404, TEXT_TYPE, "Ressource introuvable : " + exchange.getRequestURI().getPath() + "\n");
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, TEXT_TYPE, "Méthode non autorisée, utilisez POST\n");
+                return;
+            }
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                send(exchange, 413, TEXT_TYPE, "Requête trop volumineuse\n");
+                return;
+            }
+
+            String input = new String(body, StandardCharsets.UTF_8);
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+                List<String> formulas;
+                try {
+                    formulas = JsonStrings.parseArray(input);
+                } catch (IllegalArgumentException e) {
+                    send(exchange, 400, TEXT_TYPE, "Tableau JSON de chaînes attendu : " + e.getMessage() + "\n");
+                    return;
+                }
+                send(exchange, 200, JSON_TYPE, evaluateJson(formulas));
+            } else {
+                send(exchange, 200, TEXT_TYPE, evaluateLines(input));
+            }
+        }
+    }
+
+    /**
+     * Evaluates formulas given one per line, like the batch mode.
+     *
+     * @param input the formulas, one per line; a final line terminator does not start a new line
+     * @return the results, each followed by a line terminator
+     */
+    private @NotNull String evaluateLines(@NotNull String input) {
+        StringBuilder output = new StringBuilder(input.length());
+        int start = 0;
+        while (start < input.length()) {
+            int end = input.indexOf('\n', start);
+            int next = end < 0 ? input.length() : end + 1;
+            if (end < 0) {
+                end = input.length();
+            }
+            if (end > start && input.charAt(end - 1) == '\r') {
+                end--;
+            }
+            appendResult(input.substring(start, end), output);
+            output.append('\n');
+            start = next;
+        }
+        return output.toString();
+    }
+
+    /**
+     * Evaluates formulas given as a JSON array.
+     *
+     * @param formulas the formulas
+     * @return the results, as a JSON array of strings
+     */
+    private @NotNull String evaluateJson(@NotNull List<String> formulas) {
+        StringBuilder output = new StringBuilder(formulas.size() * 12 + 2).append('[');
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < formulas.size(); i++) {
+            if (i > 0) {
+                output.append(',');
+            }
+            result.setLength(0);
+            appendResult(formulas.get(i), result);
+            JsonStrings.appendQuoted(result, output);
+        }
+        return output.append(']').toString();
+    }
+
+    /**
+     * Appends the result of a formula, empty for a blank formula.
+     */
+    private void appendResult(@NotNull String formula, @NotNull StringBuilder destination) {
+        // Trim the formula exactly like the equal button does
+        String formulaText = formula.trim();
+        if (!formulaText.isEmpty()) {
+            engine.evaluateTo(formulaText, destination);
+        }
+    }
+
+    /**
+     * Reads a whole request body.
+     *
+     * @param input the body
+     * @return the bytes of the body, or null if it is larger than {@value #MAX_BODY_SIZE} bytes
+     * @throws IOException if the connection fails
+     */
+    private static byte[] readBody(@NotNull InputStream input) throws IOException {
+        byte[] body = input.readNBytes(MAX_BODY_SIZE);
+        if (body.length == MAX_BODY_SIZE && input.read() >= 0) {
+            return null;
+        }
+        return body;
+    }
+
+    /**
+     * Sends a response with a fixed length, which lets the client keep the connection alive.
+     * An empty content is sent as such (length -1), since a length of 0 would select chunked encoding.
+     */
+    private static void send(@NotNull HttpExchange exchange, int status, @NotNull String contentType,
+                             @NotNull String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.calculator.mycalculator.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal JSON support for the evaluation server: arrays of strings, which is all its requests and responses hold.
+ */
+final class JsonStrings {
+
+    private JsonStrings() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Parses a JSON array of strings, such as {@code ["1 + 2", "3 * 4"]}.
+     *
+     * @param text the JSON text
+     * @return the strings of the array, in order
+     * @throws IllegalArgumentException if the text is not a JSON array of strings
+     */
+    static @NotNull List<String> parseArray(@NotNull CharSequence text) {
+        List<String> strings = new ArrayList<>();
+        int position = skipWhitespace(text, 0);
+        position = expect(text, position, '[');
+        position = skipWhitespace(text, position);
+        if (position < text.length() && text.charAt(position) == ']') {
+            position++;
+        } else {
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                position = expect(text, skipWhitespace(text, position), '"');
+                string.setLength(0);
+                position = readString(text, position, string);
+                strings.add(string.toString());
+                position = skipWhitespace(text, position);
+                if (position < text.length() && text.charAt(position) == ',') {
+                    position++;
+                    continue;
+                }
+                position = expect(text, position, ']');
+                break;
+            }
+        }
+        if (skipWhitespace(text, position) != text.length()) {
+            throw new IllegalArgumentException("Unexpected content after the array at " + position);
+        }
+        return strings;
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     *
+     * @param string      the string
+     * @param destination the builder receiving the JSON string
+     */
+    static void appendQuoted(@NotNull CharSequence string, @NotNull StringBuilder destination) {
+        destination.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            switch (ch) {
+                case '"' -> destination.append("\\\"");
+                case '\\' -> destination.append("\\\\");
+                case '\n' -> destination.append("\\n");
+                case '\r' -> destination.append("\\r");
+                case '\t' -> destination.append("\\t");
+                default -> {
+                    if (ch < 0x20) {
+                        destination.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        destination.append(ch);
+                    }
+                }
+            }
+        }
+        destination.append('"');
+    }
+
+    /**
+     * Reads the content of a string, after its opening quote.
+     *
+     * @return the position after the closing quote
+     */
+    private static int readString(@NotNull CharSequence text, int position, @NotNull StringBuilder string) {
+        while (position < text.length()) {
+            char ch = text.charAt(position++);
+            if (ch == '"') {
+                return position;
+            }
+            if (ch < 0x20) {
+                throw new IllegalArgumentException("Control character in a string at " + (position - 1));
+            }
+            if (ch != '\\') {
+                string.append(ch);
+                continue;
+            }
+            if (position == text.length()) {
+                break;
+            }
+            char escape = text.charAt(position++);
+            switch (escape) {
+                case '"', '\\', '/' -> string.append(escape);
+                case 'b' -> string.append('\b');
+                case 'f' -> string.append('\f');
+                case 'n' -> string.append('\n');
+                case 'r' -> string.append('\r');
+                case 't' -> string.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw new IllegalArgumentException("Truncated escape at " + (position - 2));
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(text, position, position + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid escape at " + (position - 2));
+                    }
+                    position += 4;
+                }
+                default -> throw new IllegalArgumentException("Invalid escape at " + (position - 2));
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static int expect(@NotNull CharSequence text, int position, char expected) {
+        if (position >= text.length() || text.charAt(position) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + position);
+        }
+        return position + 1;
+    }
+
+    private static int skipWhitespace(@NotNull CharSequence text, int position) {
+        while (position < text.length()) {
+            char ch = text.charAt(position);
+            if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,135 @@
+package com.calculator.mycalculator.server;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.math.MathContext;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Command line entry point for the evaluation server.
+ * <p>
+ * Usage: {@code --serve [--port n] [--precision digits]}. The server listens on the loopback address only,
+ * on port {@value #DEFAULT_PORT} unless another one is given, and runs until the process is stopped.
+ * With a precision, results are computed in the decimal precision mode with that many significant digits.
+ * The JavaFX user interface is never loaded.
+ */
+public final class ServerCommand {
+
+    /**
+     * Option that selects the server mode.
+     */
+    public static final String SERVE_OPTION = "--serve";
+
+    /**
+     * Port the server listens on by default.
+     */
+    public static final int DEFAULT_PORT = 8765;
+
+    /**
+     * Option that sets the port.
+     */
+    private static final String PORT_OPTION = "--port";
+
+    /**
+     * Option that selects the decimal precision mode and its number of significant digits.
+     */
+    private static final String PRECISION_OPTION = "--precision";
+
+    /**
+     * Number of compiled formulas kept by the engine shared by all the clients.
+     */
+    private static final int CACHE_CAPACITY = 65_536;
+
+    private ServerCommand() {
+        // Utility class, not meant to be instantiated
+    }
+
+    /**
+     * Checks whether the command line asks for the server mode.
+     *
+     * @param args the command line arguments
+     * @return true if the first argument is {@value #SERVE_OPTION}
+     */
+    public static boolean isServe(String @NotNull [] args) {
+        return args.length > 0 && args[0].equals(SERVE_OPTION);
+    }
+
+    /**
+     * Runs the server mode with the given command line arguments. Once the server is started,
+     * this method only returns if the waiting thread is interrupted.
+     *
+     * @param args the command line arguments, starting with {@value #SERVE_OPTION}
+     * @return the process exit code: 0 once stopped, 1 if the port cannot be bound, 2 on invalid arguments
+     */
+    public static int run(String @NotNull [] args) {
+        int port = DEFAULT_PORT;
+        MathContext mathContext = null;
+
+        // Parse the arguments that follow the server option
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals(PORT_OPTION) && i + 1 < args.length) {
+                port = parseInt(args[++i]);
+                if (port < 0 || port > 0xFFFF) {
+                    return usage("Port invalide : " + args[i]);
+                }
+            } else if (args[i].equals(PRECISION_OPTION) && i + 1 < args.length) {
+                int digits = parseInt(args[++i]);
+                if (digits < 1) {
+                    return usage("Précision invalide : " + args[i]);
+                }
+                mathContext = new MathContext(digits);
+            } else {
+                return usage("Argument invalide : " + args[i]);
+            }
+        }
+
+        EvaluationServer server;
+        try {
+            server = EvaluationServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    new CalculatorEngine(CACHE_CAPACITY, mathContext));
+        } catch (IOException e) {
+            System.err.println("Impossible d'écouter sur le port " + port + " : " + e.getMessage());
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.err.println("Serveur d'évaluation à l'écoute sur http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + EvaluationServer.EVALUATE_PATH);
+
+        // Serve until the process is stopped
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+        return 0;
+    }
+
+    /**
+     * @param value the argument to parse
+     * @return the parsed integer, or -1 if the argument is not an integer
+     */
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Prints an error message followed by the usage of the server mode.
+     *
+     * @param message the error message
+     * @return the exit code for invalid arguments
+     */
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println("Utilisation : " + SERVE_OPTION + " [" + PORT_OPTION + " n] [" + PRECISION_OPTION + " chiffres]");
+        return 2;
+    }
+}
@@ -0,0 +1,156 @@
+package com.calculator.mycalculator.sheet;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.CompiledFormula;
+import com.calculator.mycalculator.engine.Formula;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A named cell of a {@link Worksheet}: its formula, the cells it references and the cells that reference it,
+ * and its last computed value.
+ * <p>
+ * A cell that is referenced but not defined yet has no formula; it stays in the worksheet, in error,
+ * so that the cells referencing it are computed as soon as it is defined.
+ */
+final class Cell {
+
+    final String name;
+
+    /**
+     * Text of the formula, or null if the cell is referenced but not defined.
+     */
+    String formulaText;
+
+    /**
+     * Cells referenced by the formula, in the order of the variables of the compiled formula.
+     */
+    Cell[] inputs = new Cell[0];
+
+    /**
+     * Cells whose formula references this cell, in the order they first referenced it. Cells are compared by
+     * identity, so a redefinition removes its edges in constant time whatever the number of dependents.
+     */
+    final Set<Cell> dependents = new LinkedHashSet<>();
+
+    /**
+     * Formula without references, compiled by the engine and possibly shared with its other callers.
+     */
+    private Formula constant;
+
+    /**
+     * Native program of a formula with references, or null if it runs on exp4j.
+     */
+    private CompiledFormula program;
+
+    /**
+     * Compiled exp4j expression owned by this cell, used when the native compiler does not handle the formula.
+     */
+    private Expression expression;
+
+    /**
+     * Values of the inputs, reused by every evaluation.
+     */
+    private double[] values = new double[0];
+
+    /**
+     * Result of the last evaluation, meaningful only if the cell is not in error.
+     */
+    double value;
+
+    /**
+     * Whether the last evaluation failed, or an input is in error, or the cell is not defined.
+     */
+    boolean error = true;
+
+    /**
+     * Bookkeeping of a recomputation: the recomputation that last visited the cell,
+     * and the number of its inputs that remain to be computed.
+     */
+    int visit;
+    int pending;
+
+    Cell(@NotNull String name) {
+        this.name = name;
+    }
+
+    /**
+     * Compiles a formula referencing the given cells, the names of which are its variables.
+     * Formulas without references are compiled by the engine, exactly as the equal button does.
+     *
+     * @param engine      the engine of the worksheet
+     * @param formulaText the formula
+     * @param references  the names of the cells referenced by the formula
+     * @throws IllegalArgumentException if the formula is invalid
+     */
+    void compile(@NotNull CalculatorEngine engine, @NotNull String formulaText, @NotNull List<String> references) {
+        Formula newConstant = null;
+        CompiledFormula newProgram = null;
+        Expression newExpression = null;
+        if (references.isEmpty()) {
+            newConstant = engine.compile(formulaText);
+        } else {
+            String[] names = references.toArray(new String[0]);
+            newProgram = FormulaCompiler.tryCompile(formulaText, names);
+            if (newProgram == null) {
+                newExpression = new ExpressionBuilder(formulaText).variables(names).build();
+            }
+        }
+        this.formulaText = formulaText;
+        this.constant = newConstant;
+        this.program = newProgram;
+        this.expression = newExpression;
+        this.values = new double[references.size()];
+    }
+
+    /**
+     * Removes the formula, leaving the cell undefined.
+     */
+    void undefine() {
+        formulaText = null;
+        constant = null;
+        program = null;
+        expression = null;
+        values = new double[0];
+    }
+
+    /**
+     * Computes the value of the cell from the values of its inputs, which must be up to date.
+     * The cell is in error if it is not defined, if an input is in error or if the evaluation fails.
+     */
+    void evaluate() {
+        if (formulaText == null) {
+            error = true;
+            return;
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i].error) {
+                error = true;
+                return;
+            }
+            values[i] = inputs[i].value;
+        }
+        try {
+            if (constant != null) {
+                value = constant.evaluate();
+            } else if (program != null) {
+                value = program.evaluate(values);
+            } else {
+                for (int i = 0; i < inputs.length; i++) {
+                    expression.setVariable(inputs[i].name, values[i]);
+                }
+                value = expression.evaluate();
+            }
+            error = false;
+        } catch (RuntimeException e) {
+            // Division by zero, or an invalid formula that exp4j only rejects when evaluating it
+            error = true;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.calculator.mycalculator.sheet;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.FormulaCompiler;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A worksheet of named cells whose formulas reference each other, e.g. {@code a = 3*pi} and {@code b = a^2 + 1}.
+ * <p>
+ * The cells form a dependency graph. When a cell is defined, redefined or removed, only the cells downstream of it
+ * are recomputed, each one after all of its inputs, so the cost of a change does not depend on the size of
+ * the worksheet. The cells to recompute are ordered by levels, a level holding the cells whose inputs are all in
+ * the previous ones; the cells of a level are independent of each other, and large levels are computed in parallel.
+ * <p>
+ * Cell formulas are compiled like the formulas of the equal button, by the same engine when they reference no cell,
+ * and computed in {@code double}. A cell is in error, shown as "Erreur", when its evaluation fails, when
+ * it references a cell in error or not defined, or when it is part of a cycle of references.
+ * A worksheet is not thread-safe: it is meant to be changed by one thread at a time.
+ */
+public class Worksheet implements AutoCloseable {
+
+    /**
+     * Number of cells of a level below which the level is computed on the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /**
+     * Number of cells computed by a single task.
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * Engine compiling the formulas that reference no cell.
+     */
+    private final CalculatorEngine engine;
+
+    /**
+     * Number of threads computing the large levels.
+     */
+    private final int parallelism;
+
+    /**
+     * Cells by name, defined or only referenced, in the order they first appeared.
+     */
+    private final Map<String, Cell> cells = new LinkedHashMap<>();
+
+    /**
+     * Number of cells with a formula.
+     */
+    private int definedCount;
+
+    /**
+     * Number of the current recomputation, marking the cells it visits.
+     */
+    private int visit;
+
+    /**
+     * Cells of the current recomputation, and the same cells in the order they are computed, i.e. the queue
+     * of a topological sort. Both are reused from one recomputation to the next.
+     */
+    private final ArrayList<Cell> affected = new ArrayList<>();
+    private final ArrayList<Cell> order = new ArrayList<>();
+
+    /**
+     * Pool computing the large levels, created on first use.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a worksheet computing large recomputations on all the processors.
+     */
+    public Worksheet() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a worksheet.
+     *
+     * @param parallelism the number of threads computing large recomputations, must be at least 1
+     * @throws IllegalArgumentException if the parallelism is lower than 1
+     */
+    public Worksheet(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.engine = new CalculatorEngine();
+    }
+
+    /**
+     * Checks whether a text can name a cell: a letter or an underscore followed by letters, digits
+     * and underscores, other than the name of a constant or a function.
+     *
+     * @param name the text to check
+     * @return true if the text is a valid cell name
+     */
+    public static boolean isValidName(@NotNull String name) {
+        if (name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (!(Character.isLetterOrDigit(name.charAt(i)) || name.charAt(i) == '_')) {
+                return false;
+            }
+        }
+        return !FormulaCompiler.isReservedName(name);
+    }
+
+    /**
+     * Defines a cell from a line of the form {@code name = formula}.
+     *
+     * @param line the definition
+     * @return the names of the recomputed cells, in the order they were computed
+     * @throws IllegalArgumentException if the line is not a definition, or if its name or formula is invalid
+     */
+    public @NotNull List<String> define(@NotNull String line) {
+        int equals = line.indexOf('=');
+        if (equals < 0) {
+            throw new IllegalArgumentException("Not a definition: " + line);
+        }
+        return set(line.substring(0, equals).trim(), line.substring(equals + 1).trim());
+    }
+
+    /**
+     * Defines or redefines a cell, then recomputes it and the cells downstream of it.
+     *
+     * @param name        the name of the cell
+     * @param formulaText the formula of the cell, which may reference other cells by their names
+     * @return the names of the recomputed cells, in the order they were computed
+     * @throws IllegalArgumentException if the name or the formula is invalid; the worksheet is then unchanged
+     */
+    public @NotNull List<String> set(@NotNull String name, @NotNull String formulaText) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid cell name: " + name);
+        }
+        List<String> references = FormulaCompiler.findVariableNames(formulaText);
+        for (String reference : references) {
+            if (!isValidName(reference)) {
+                throw new IllegalArgumentException("Invalid cell name: " + reference);
+            }
+        }
+
+        // An invalid formula fails to compile before the cell is changed
+        Cell cell = cells.get(name);
+        boolean added = cell == null;
+        if (added) {
+            cell = new Cell(name);
+        }
+        boolean defined = cell.formulaText != null;
+        cell.compile(engine, formulaText, references);
+        if (added) {
+            cells.put(name, cell);
+        }
+        if (!defined) {
+            definedCount++;
+        }
+
+        // Replace the edges from the previous inputs by edges from the new ones
+        Cell[] previousInputs = cell.inputs;
+        for (Cell input : previousInputs) {
+            input.dependents.remove(cell);
+        }
+        Cell[] inputs = new Cell[references.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = cells.computeIfAbsent(references.get(i), Cell::new);
+            inputs[i].dependents.add(cell);
+        }
+        cell.inputs = inputs;
+        for (Cell input : previousInputs) {
+            removeIfUnused(input);
+        }
+        return recompute(cell);
+    }
+
+    /**
+     * Removes the formula of a cell. The cells referencing it are recomputed, and are in error until it is defined
+     * again.
+     *
+     * @param name the name of the cell
+     * @return the names of the recomputed cells referencing it, in the order they were computed, or an empty list
+     * if the cell was not defined
+     */
+    public @NotNull List<String> remove(@NotNull String name) {
+        Cell cell = cells.get(name);
+        if (cell == null || cell.formulaText == null) {
+            return List.of();
+        }
+        cell.undefine();
+        definedCount--;
+        for (Cell input : cell.inputs) {
+            input.dependents.remove(cell);
+            removeIfUnused(input);
+        }
+        cell.inputs = new Cell[0];
+        // The removed cell comes first, as the only cell without inputs to recompute
+        List<String> recomputed = recompute(cell);
+        removeIfUnused(cell);
+        return recomputed.subList(1, recomputed.size());
+    }
+
+    /**
+     * @param name the name of a cell
+     * @return whether the cell has a formula
+     */
+    public boolean contains(@NotNull String name) {
+        Cell cell = cells.get(name);
+        return cell != null && cell.formulaText != null;
+    }
+
+    /**
+     * @param name the name of a cell
+     * @return the formula of the cell, or null if it is not defined
+     */
+    public @Nullable String getFormula(@NotNull String name) {
+        Cell cell = cells.get(name);
+        return cell == null ? null : cell.formulaText;
+    }
+
+    /**
+     * @param name the name of a cell
+     * @return the value of the cell, or {@link Double#NaN} if it is in error or not defined
+     */
+    public double getValue(@NotNull String name) {
+        Cell cell = cells.get(name);
+        return cell == null || cell.error ? Double.NaN : cell.value;
+    }
+
+    /**
+     * @param name the name of a cell
+     * @return the value of the cell as the calculator displays it, or "Erreur" if it is in error or not defined
+     */
+    public @NotNull String getText(@NotNull String name) {
+        Cell cell = cells.get(name);
+        return cell == null || cell.error ? NumberFormatter.ERROR_TEXT : NumberFormatter.format(cell.value);
+    }
+
+    /**
+     * @return the names of the defined cells, in the order they were first defined or referenced
+     */
+    public @NotNull List<String> getNames() {
+        List<String> names = new ArrayList<>(definedCount);
+        for (Cell cell : cells.values()) {
+            if (cell.formulaText != null) {
+                names.add(cell.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the number of defined cells
+     */
+    public int size() {
+        return definedCount;
+    }
+
+    /**
+     * Stops the threads computing large recomputations. The worksheet can still be used, on a new pool.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Recomputes a cell and all the cells downstream of it, level by level.
+     *
+     * @param changed the cell whose formula changed
+     * @return the names of the recomputed cells, in the order they were computed
+     */
+    private @NotNull List<String> recompute(@NotNull Cell changed) {
+        visit++;
+
+        // Collect the cells downstream of the changed one
+        changed.visit = visit;
+        affected.add(changed);
+        for (int i = 0; i < affected.size(); i++) {
+            for (Cell dependent : affected.get(i).dependents) {
+                if (dependent.visit != visit) {
+                    dependent.visit = visit;
+                    affected.add(dependent);
+                }
+            }
+        }
+
+        // Count the inputs of each cell that are recomputed too; the first level has none
+        for (Cell cell : affected) {
+            int pending = 0;
+            for (Cell input : cell.inputs) {
+                if (input.visit == visit) {
+                    pending++;
+                }
+            }
+            cell.pending = pending;
+            if (pending == 0) {
+                order.add(cell);
+            }
+        }
+
+        // Compute a level, then queue the cells whose last pending input was in it, which form the next level
+        int levelStart = 0;
+        while (levelStart < order.size()) {
+            int levelEnd = order.size();
+            evaluate(levelStart, levelEnd);
+            for (int i = levelStart; i < levelEnd; i++) {
+                for (Cell dependent : order.get(i).dependents) {
+                    if (dependent.visit == visit && --dependent.pending == 0) {
+                        order.add(dependent);
+                    }
+                }
+            }
+            levelStart = levelEnd;
+        }
+
+        List<String> recomputed = new ArrayList<>(affected.size());
+        for (Cell cell : order) {
+            recomputed.add(cell.name);
+        }
+
+        // The cells still waiting for an input are on a cycle, or downstream of one
+        if (order.size() < affected.size()) {
+            for (Cell cell : affected) {
+                if (cell.pending > 0) {
+                    cell.error = true;
+                    recomputed.add(cell.name);
+                }
+            }
+        }
+        affected.clear();
+        order.clear();
+        return recomputed;
+    }
+
+    /**
+     * Computes a level of {@link #order}, whose cells are independent of each other, in parallel if there are many.
+     *
+     * @param start the index of the first cell of the level
+     * @param end   the index following the last cell of the level
+     */
+    private void evaluate(int start, int end) {
+        if (parallelism == 1 || end - start < PARALLEL_THRESHOLD) {
+            for (int i = start; i < end; i++) {
+                order.get(i).evaluate();
+            }
+            return;
+        }
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        int chunks = (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int chunkEnd = Math.min(end, start + (chunk + 1) * CHUNK_SIZE);
+            for (int i = start + chunk * CHUNK_SIZE; i < chunkEnd; i++) {
+                order.get(i).evaluate();
+            }
+        })).join();
+    }
+
+    /**
+     * Removes a cell that has no formula and is referenced by no cell.
+     */
+    private void removeIfUnused(@NotNull Cell cell) {
+        if (cell.formulaText == null && cell.dependents.isEmpty()) {
+            cells.remove(cell.name);
+        }
+    }
+}
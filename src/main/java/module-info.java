@@ -1,17 +1,20 @@
 module com.calculator.mycalculator {
     requires javafx.controls;
-    requires javafx.fxml;
 
-    requires org.controlsfx.controls;
-    requires com.dlsc.formsfx;
-    requires org.kordamp.ikonli.javafx;
-    requires org.kordamp.bootstrapfx.core;
     requires org.jetbrains.annotations;
-    requires java.scripting;
     requires exp4j;
+    requires jdk.httpserver;
+    requires java.management;
+    requires jdk.jfr;
+    requires static jdk.incubator.vector;
 
-    opens com.calculator.mycalculator to javafx.fxml;
     exports com.calculator.mycalculator;
     exports com.calculator.mycalculator.controller;
-    opens com.calculator.mycalculator.controller to javafx.fxml;
+    exports com.calculator.mycalculator.engine;
+    exports com.calculator.mycalculator.batch;
+    exports com.calculator.mycalculator.model;
+    exports com.calculator.mycalculator.history;
+    exports com.calculator.mycalculator.server;
+    exports com.calculator.mycalculator.metrics;
+    exports com.calculator.mycalculator.sheet;
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.calculator.mycalculator.engine;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stopping an evaluation, by a cancellation or at the end of the time budget, ends its worker thread, instead of
+ * only hiding a result that keeps being computed.
+ */
+class BackgroundEvaluatorTest {
+
+    /**
+     * An exact formula that takes seconds: every step stays within the exact range, on fractions of about
+     * 2,500 bits.
+     */
+    private static final String SLOW_FORMULA = "3^800" + " * 3^800 / 3^800".repeat(200_000);
+
+    /**
+     * The thread of the callbacks, standing for the interface thread.
+     */
+    private final ExecutorService callbacks = Executors.newSingleThreadExecutor();
+
+    /**
+     * Outcomes reported to the callback, in order.
+     */
+    private final BlockingQueue<String> outcomes = new LinkedBlockingQueue<>();
+
+    private final BackgroundEvaluator.Callback callback = new BackgroundEvaluator.Callback() {
+        @Override
+        public void computing() {
+            outcomes.add("computing");
+        }
+
+        @Override
+        public void completed(@NotNull String result) {
+            outcomes.add(result);
+        }
+
+        @Override
+        public void timedOut() {
+            outcomes.add("timed out");
+        }
+    };
+
+    @AfterEach
+    void close() {
+        callbacks.shutdownNow();
+    }
+
+    @Test
+    void reportsTheResult() throws InterruptedException, ExecutionException {
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(callbacks, BackgroundEvaluator.DEFAULT_BUDGET);
+        callbacks.submit(() -> evaluator.evaluate(exactEngine(), "1/3 + 1/6", callback)).get();
+        assertEquals("1/2", outcomes.poll(5, TimeUnit.SECONDS));
+        assertFalse(callbacks.submit(evaluator::isRunning).get());
+    }
+
+    @Test
+    void cancellingEndsAnExactEvaluation() throws InterruptedException, ExecutionException {
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(callbacks, Duration.ofMinutes(1));
+        Thread worker = start(evaluator);
+        Thread.sleep(200);
+        assertTrue(worker.isAlive());
+
+        callbacks.submit(evaluator::cancel).get();
+        assertTrue(worker.join(Duration.ofSeconds(2)), "The worker still runs after the cancellation");
+        assertEquals("computing", outcomes.poll(1, TimeUnit.SECONDS));
+        assertNull(outcomes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void theTimeBudgetEndsAnExactEvaluation() throws InterruptedException, ExecutionException {
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(callbacks, Duration.ofMillis(500));
+        Thread worker = start(evaluator);
+        assertEquals("computing", outcomes.poll(5, TimeUnit.SECONDS));
+        assertEquals("timed out", outcomes.poll(5, TimeUnit.SECONDS));
+        assertTrue(worker.join(Duration.ofSeconds(2)), "The worker still runs after the time budget");
+    }
+
+    /**
+     * Starts evaluating the slow formula, already compiled so that the worker computes from the start.
+     *
+     * @return the worker thread
+     */
+    private Thread start(BackgroundEvaluator evaluator) throws InterruptedException, ExecutionException {
+        CalculatorEngine engine = exactEngine();
+        engine.compile(SLOW_FORMULA);
+        Thread worker = callbacks.submit(() -> {
+            evaluator.evaluate(engine, SLOW_FORMULA, callback);
+            return evaluator.worker();
+        }).get();
+        assertNotNull(worker);
+        return worker;
+    }
+
+    private static CalculatorEngine exactEngine() {
+        return new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, Rational.Notation.FRACTION);
+    }
+}
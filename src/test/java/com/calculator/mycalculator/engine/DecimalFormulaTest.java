@@ -0,0 +1,40 @@
+package com.calculator.mycalculator.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.MathContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The decimal precision mode refines the finite results of the {@code double} mode, and agrees with it elsewhere.
+ */
+class DecimalFormulaTest {
+
+    private final CalculatorEngine doubles = new CalculatorEngine();
+
+    private final CalculatorEngine decimals = new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY,
+            new MathContext(5));
+
+    @Test
+    void refinesFiniteResults() {
+        assertEquals("0.3", decimals.evaluateToText("0.1 + 0.2"));
+        assertEquals("0.33333", decimals.evaluateToText("1/3"));
+        assertEquals("1E+600", decimals.evaluateToText("1e300 * 1e300"));
+    }
+
+    @Test
+    void remainderIsExactBeyondThePrecision() {
+        assertEquals("1", decimals.evaluateToText("123456789 % 2"));
+        assertEquals("0.5", decimals.evaluateToText("123456788.5 % 2"));
+        assertEquals("1.5", decimals.evaluateToText("7.5 % 2"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sqrt(-1)", "0^-1", "2^1e9", "-(2^1e9)", "1/0", "5 % 0", "sqrt(-4) * 0"})
+    void agreesWithDoublesOnNonFiniteResultsAndErrors(String formula) {
+        assertEquals(doubles.evaluateToText(formula), decimals.evaluateToText(formula));
+    }
+}
@@ -0,0 +1,265 @@
+package com.calculator.mycalculator.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip of random workloads through the binary format: every record of an archive gives the same text as
+ * the engine for the formula it was compiled from, and the same bits as the text formula in a sweep. A damaged
+ * archive is reported as such when the reader moves to the damaged record.
+ */
+class FormulaArchiveTest {
+
+    private static final int COUNT = 20_000;
+
+    private static final long SEED = 20240101L;
+
+    private static final String[] NUMBERS = {"0", "1", "2", "3", "7", "10", "0.5", ".5", "1e3", "2.5E-3", "0.1", "1e308"};
+
+    private static final String[] BINARY = {" + ", " - ", " * ", " / ", " % ", " ^ "};
+
+    private static final double[] VALUES = {0d, -0d, 1d, -1d, 0.5, 3d, -7.25, 1e6, Double.POSITIVE_INFINITY, Double.NaN};
+
+    /**
+     * Number of damaged copies of an archive read back.
+     */
+    private static final int DAMAGED_COPIES = 2000;
+
+    private final SplittableRandom random = new SplittableRandom(SEED);
+
+    @Test
+    void recordsEvaluateLikeTheirText() throws IOException {
+        List<String> formulas = formulas();
+        FormulaArchive archive = FormulaArchive.wrap(write(formulas));
+        CalculatorEngine engine = new CalculatorEngine();
+        CalculatorEngine archiveEngine = new CalculatorEngine();
+        StringBuilder expected = new StringBuilder();
+        StringBuilder actual = new StringBuilder();
+        for (String formula : formulas) {
+            assertTrue(archive.next(), "Missing record for \"" + formula + "\"");
+            expected.setLength(0);
+            actual.setLength(0);
+            String trimmed = formula.trim();
+            if (!trimmed.isEmpty()) {
+                engine.evaluateTo(trimmed, expected);
+            }
+            archive.evaluateTo(archiveEngine, actual);
+            assertEquals(expected.toString(), actual.toString(), formula);
+        }
+        assertFalse(archive.next());
+
+        // The reader can go through the records again
+        archive.rewind();
+        assertTrue(archive.next());
+    }
+
+    @Test
+    void programsSweepLikeTheirText() throws IOException {
+        List<String> formulas = formulas();
+        FormulaArchive archive = FormulaArchive.wrap(write(formulas, "x"));
+        double[] variables = new double[1];
+        double[] fromText = new double[VALUES.length];
+        double[] fromArchive = new double[VALUES.length];
+        for (String formula : formulas) {
+            assertTrue(archive.next());
+            if (!archive.isProgram()) {
+                assertEquals(formula.trim(), archive.text());
+                continue;
+            }
+            new FormulaSweep(formula.trim(), "x").evaluate(VALUES, fromText);
+            new FormulaSweep(archive.toCompiledFormula()).evaluate(VALUES, fromArchive);
+            for (int i = 0; i < VALUES.length; i++) {
+                variables[0] = VALUES[i];
+                double inPlace;
+                try {
+                    inPlace = archive.evaluate(variables);
+                } catch (ArithmeticException e) {
+                    inPlace = Double.NaN;
+                }
+                String message = formula + " (x = " + VALUES[i] + ")";
+                assertEquals(bits(fromText[i]), bits(fromArchive[i]), message);
+                assertEquals(bits(fromText[i]), bits(inPlace), message);
+            }
+        }
+        assertFalse(archive.next());
+    }
+
+    @Test
+    void damagedArchivesAreReported() throws IOException {
+        // The damage goes to the first records, so a short workload is enough
+        byte[] archive = toArray(write(formulas().subList(0, 500)));
+        CalculatorEngine engine = new CalculatorEngine();
+        StringBuilder text = new StringBuilder();
+        for (int copy = 0; copy < DAMAGED_COPIES; copy++) {
+            byte[] damaged = archive.clone();
+            int changes = random.nextInt(1, 4);
+            for (int i = 0; i < changes; i++) {
+                damaged[random.nextInt(Math.min(damaged.length, 4096))] = (byte) random.nextInt(256);
+            }
+            int length = random.nextInt(4) == 0 ? random.nextInt(damaged.length) : damaged.length;
+            try {
+                FormulaArchive reader = FormulaArchive.wrap(ByteBuffer.wrap(damaged, 0, length));
+                while (reader.next()) {
+                    text.setLength(0);
+                    reader.evaluateTo(engine, text);
+                }
+            } catch (IllegalArgumentException e) {
+                // Damage reported
+            }
+        }
+    }
+
+    @Test
+    void refusesATruncatedRecord() throws IOException {
+        byte[] archive = toArray(write(List.of("x * 2 + 1"), "x"));
+        FormulaArchive reader = FormulaArchive.wrap(ByteBuffer.wrap(archive, 0, archive.length - 1));
+        assertThrows(IllegalArgumentException.class, reader::next);
+
+        // The reader is then on no record
+        assertThrows(IllegalStateException.class, reader::isProgram);
+    }
+
+    @Test
+    void refusesAnUnknownOpcode() {
+        FormulaArchive reader = FormulaArchive.wrap(program(1, CompiledFormula.CONSTANT, 0, 0, 99));
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void refusesAStackUnderflow() {
+        FormulaArchive reader = FormulaArchive.wrap(program(2, CompiledFormula.CONSTANT, 0, 0, CompiledFormula.ADD));
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void refusesAProgramLeavingSeveralValues() {
+        FormulaArchive reader = FormulaArchive.wrap(program(2, CompiledFormula.CONSTANT, 0, 0,
+                CompiledFormula.CONSTANT, 0, 0));
+        assertThrows(IllegalArgumentException.class, reader::next);
+    }
+
+    @Test
+    void readsAHandWrittenProgram() {
+        FormulaArchive reader = FormulaArchive.wrap(program(1, CompiledFormula.CONSTANT, 0, 0, CompiledFormula.NEGATE));
+        assertTrue(reader.next());
+        assertEquals(-2.5, reader.evaluate());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void refusesOtherFiles() {
+        assertThrows(IllegalArgumentException.class,
+                () -> FormulaArchive.wrap(ByteBuffer.wrap("1 + 2\n".getBytes())));
+        ByteBuffer unsupported = header().putShort(4, (short) (FormulaArchive.VERSION + 1));
+        assertThrows(IllegalArgumentException.class, () -> FormulaArchive.wrap(unsupported));
+        assertThrows(IllegalArgumentException.class, () -> FormulaArchive.wrap(ByteBuffer.allocate(5)));
+    }
+
+    /**
+     * Builds an archive without variables holding a single program, whose only constant is 2.5.
+     *
+     * @param maxStackDepth the declared maximum stack depth
+     * @param code          the bytes of the code
+     * @return the archive
+     */
+    private static ByteBuffer program(int maxStackDepth, int... code) {
+        ByteBuffer header = header();
+        ByteBuffer archive = ByteBuffer.allocate(header.limit() + 1 + FormulaArchive.PROGRAM_HEADER_SIZE + 8 + code.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        archive.put(header).put(FormulaArchive.PROGRAM).putShort((short) maxStackDepth).putShort((short) 1)
+                .putInt(code.length).putDouble(2.5);
+        for (int b : code) {
+            archive.put((byte) b);
+        }
+        return archive.flip();
+    }
+
+    /**
+     * @return the header of an archive without variables
+     */
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(7).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(FormulaArchive.MAGIC).putShort((short) FormulaArchive.VERSION).put((byte) 0).flip();
+    }
+
+    private static ByteBuffer write(List<String> formulas, String... variableNames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FormulaArchiveWriter writer = new FormulaArchiveWriter(bytes, variableNames)) {
+            for (String formula : formulas) {
+                writer.add(formula);
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the bits of a value, every NaN being collapsed into one since Java does not specify NaN payloads
+     */
+    private static String bits(double value) {
+        return Long.toHexString(Double.doubleToLongBits(value));
+    }
+
+    private List<String> formulas() {
+        List<String> formulas = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            formulas.add(formula());
+        }
+        return formulas;
+    }
+
+    /**
+     * @return a random formula, with the variable one time out of four, blank or damaged one time out of ten
+     */
+    private String formula() {
+        if (random.nextInt(20) == 0) {
+            return random.nextBoolean() ? "" : "  ";
+        }
+        StringBuilder formula = new StringBuilder();
+        expression(formula, random.nextInt(1, 5));
+        if (random.nextInt(10) == 0) {
+            formula.insert(random.nextInt(formula.length() + 1), "()+*x.e".charAt(random.nextInt(7)));
+        }
+        return formula.toString();
+    }
+
+    private void expression(StringBuilder formula, int depth) {
+        switch (depth == 0 ? random.nextInt(2) : random.nextInt(6)) {
+            case 0 -> formula.append(NUMBERS[random.nextInt(NUMBERS.length)]);
+            case 1 -> formula.append(random.nextInt(4) == 0 ? "x" : random.nextBoolean() ? "pi" : "2");
+            case 2 -> {
+                formula.append('-');
+                expression(formula, depth - 1);
+            }
+            case 3 -> {
+                formula.append(random.nextInt(4) == 0 ? "sin(" : "sqrt(");
+                expression(formula, depth - 1);
+                formula.append(')');
+            }
+            default -> {
+                formula.append('(');
+                expression(formula, depth - 1);
+                formula.append(BINARY[random.nextInt(BINARY.length)]);
+                expression(formula, depth - 1);
+                formula.append(')');
+            }
+        }
+    }
+}
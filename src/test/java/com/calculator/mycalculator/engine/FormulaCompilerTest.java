@@ -0,0 +1,262 @@
+package com.calculator.mycalculator.engine;
+
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Differential fuzz of the native formula compiler against exp4j.
+ * <p>
+ * Random formulas, well-formed or deliberately damaged, are evaluated both ways from a fixed seed. Every formula
+ * the native compiler accepts must give the same bits as {@code new ExpressionBuilder(f).build().evaluate()}, or
+ * fail with the same exception; refused formulas are left to exp4j by the engine. Every compiled formula is also
+ * evaluated over a column of values by {@link ColumnFormula}, which must give the same bits value by value, and flag
+ * exactly the values whose evaluation fails.
+ */
+class FormulaCompilerTest {
+
+    /**
+     * Number of random formulas of the fuzz.
+     */
+    private static final int COUNT = 200_000;
+
+    private static final long SEED = 20240101L;
+
+    /**
+     * Characters inserted by the mutations, chosen to hit the tokenizer's edge cases.
+     */
+    private static final String NOISE = "()[]{}+-*/%^.eE 0123456789x,_!π";
+
+    private static final String[] NUMBERS = {
+            "0", "1", "2", "3", "7", "10", "0.5", ".5", "5.", "1e3", "2.5E-3", "1e+2", "123456789", "0.1", "1e308",
+            "9007199254740993", "0.000001", "4e", "00", "1.5e10"
+    };
+
+    private static final String[] NAMES = {"pi", "π", "e", "φ", "x"};
+
+    private static final String[] BINARY = {" + ", " - ", " * ", " / ", " % ", " ^ ", "+", "-", "*", "/", "%", "^"};
+
+    private static final String[][] PARENTHESES = {{"(", ")"}, {"[", "]"}, {"{", "}"}};
+
+    /**
+     * Values of the variable for the column evaluations, including signed zeros, infinities and NaN.
+     * The length is not a multiple of the vector sizes, so that the tails are checked too.
+     */
+    private static final double[] COLUMN = column();
+
+    /**
+     * Maximum number of mismatches listed in a failure.
+     */
+    private static final int MAX_REPORTED = 20;
+
+    private final SplittableRandom random = new SplittableRandom(SEED);
+
+    @Test
+    void randomFormulasMatchExp4j() {
+        List<String> mismatches = new ArrayList<>();
+        int compiled = 0;
+        double[] variables = new double[1];
+        for (int i = 0; i < COUNT && mismatches.size() < MAX_REPORTED; i++) {
+            String formula = formula();
+            boolean withVariable = formula.indexOf('x') >= 0;
+            variables[0] = value();
+
+            CompiledFormula program = withVariable
+                    ? FormulaCompiler.tryCompile(formula, "x")
+                    : FormulaCompiler.tryCompile(formula);
+            if (program == null) {
+                continue;
+            }
+            compiled++;
+
+            String expected = reference(formula, withVariable, variables[0]);
+            String actual;
+            try {
+                actual = bits(program.evaluate(variables));
+            } catch (RuntimeException e) {
+                actual = e.getClass().getName();
+            }
+            if (!expected.equals(actual)) {
+                mismatches.add("\"" + formula + "\" (x = " + variables[0] + "): exp4j " + expected
+                        + ", native " + actual);
+            }
+        }
+        assertEquals(List.of(), mismatches);
+        // Most well-formed formulas are in the native grammar
+        assertTrue(compiled > COUNT / 2, compiled + " formulas compiled natively");
+    }
+
+    @Test
+    void columnsMatchTheProgram() {
+        List<String> mismatches = new ArrayList<>();
+        double[] variables = new double[1];
+        double[] results = new double[COLUMN.length];
+        boolean[] failures = new boolean[COLUMN.length];
+        boolean[] modes = ColumnFormula.isVectorAvailable() ? new boolean[]{false, true} : new boolean[]{false};
+        for (int i = 0; i < COUNT / 10 && mismatches.size() < MAX_REPORTED; i++) {
+            String formula = formula();
+            CompiledFormula program = FormulaCompiler.tryCompile(formula, "x");
+            if (program == null) {
+                continue;
+            }
+            for (boolean vectorized : modes) {
+                new ColumnFormula(program, vectorized).evaluate(COLUMN, results, failures, COLUMN.length);
+                for (int j = 0; j < COLUMN.length; j++) {
+                    variables[0] = COLUMN[j];
+                    String single;
+                    try {
+                        single = bits(program.evaluate(variables));
+                    } catch (ArithmeticException e) {
+                        single = "failed";
+                    }
+                    String column = failures[j] ? "failed" : bits(results[j]);
+                    if (!single.equals(column) || failures[j] && !Double.isNaN(results[j])) {
+                        mismatches.add("\"" + formula + "\" (x = " + COLUMN[j] + ", "
+                                + (vectorized ? "vector" : "scalar") + "): " + column + " instead of " + single);
+                        break;
+                    }
+                }
+            }
+        }
+        assertEquals(List.of(), mismatches);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1/0", "1 % 0", "0/0", "2/(3-3)", "5 % (1-1)", "-1/0", "sqrt(4)/0"})
+    void divisionByZeroFailsLikeExp4j(String formula) {
+        CompiledFormula program = FormulaCompiler.tryCompile(formula);
+        assertNotNull(program, formula);
+        ArithmeticException expected = assertThrows(ArithmeticException.class,
+                () -> new ExpressionBuilder(formula).build().evaluate());
+        ArithmeticException actual = assertThrows(ArithmeticException.class, program::evaluate);
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    void divisionByZeroVariableFailsLikeExp4j() {
+        CompiledFormula program = FormulaCompiler.compile("1 / x + x % x", "x");
+        assertThrows(ArithmeticException.class,
+                () -> new ExpressionBuilder("1 / x + x % x").variable("x").build().setVariable("x", 0).evaluate());
+        assertThrows(ArithmeticException.class, () -> program.evaluate(new double[]{0}));
+    }
+
+    /**
+     * exp4j reports some invalid formulas with other unchecked exceptions than {@link IllegalArgumentException},
+     * e.g. {@link java.util.EmptyStackException}; the engine shows "Erreur" for all of them.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"2+", "*3", "(1", "1)", "2..5", "sqrt()", "1e+", "5 $ 3", "foo", "()", "1 +* 2"})
+    void invalidFormulasAreRefused(String formula) {
+        assertThrows(RuntimeException.class, () -> new ExpressionBuilder(formula).build().evaluate());
+        assertNull(FormulaCompiler.tryCompile(formula));
+        assertThrows(IllegalArgumentException.class, () -> FormulaCompiler.compile(formula));
+    }
+
+    /**
+     * Evaluates a formula with exp4j.
+     *
+     * @return the bits of the result, or the class of the exception thrown to build or evaluate it
+     */
+    private static String reference(String formula, boolean withVariable, double x) {
+        try {
+            if (withVariable) {
+                return bits(new ExpressionBuilder(formula).variable("x").build().setVariable("x", x).evaluate());
+            }
+            return bits(new ExpressionBuilder(formula).build().evaluate());
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * @return the bits of a value, every NaN being collapsed into one since Java does not specify NaN payloads
+     */
+    private static String bits(double value) {
+        return Long.toHexString(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * @return a random formula, damaged by a few mutations one time out of four
+     */
+    private String formula() {
+        StringBuilder formula = new StringBuilder();
+        expression(formula, random.nextInt(1, 5));
+        if (random.nextInt(4) == 0) {
+            int mutations = random.nextInt(1, 4);
+            for (int i = 0; i < mutations; i++) {
+                int position = random.nextInt(formula.length() + 1);
+                if (random.nextBoolean() && position < formula.length()) {
+                    formula.deleteCharAt(position);
+                } else {
+                    formula.insert(position, NOISE.charAt(random.nextInt(NOISE.length())));
+                }
+            }
+        }
+        return formula.toString();
+    }
+
+    private void expression(StringBuilder formula, int depth) {
+        int choice = depth == 0 ? random.nextInt(2) : random.nextInt(7);
+        switch (choice) {
+            case 0 -> formula.append(NUMBERS[random.nextInt(NUMBERS.length)]);
+            case 1 -> formula.append(NAMES[random.nextInt(NAMES.length)]);
+            case 2 -> {
+                formula.append(random.nextBoolean() ? "-" : "+");
+                expression(formula, depth - 1);
+            }
+            case 3 -> {
+                String[] parentheses = PARENTHESES[random.nextInt(PARENTHESES.length)];
+                formula.append(parentheses[0]);
+                expression(formula, depth - 1);
+                formula.append(parentheses[1]);
+            }
+            case 4 -> {
+                formula.append("sqrt(");
+                expression(formula, depth - 1);
+                formula.append(')');
+            }
+            default -> {
+                expression(formula, depth - 1);
+                formula.append(BINARY[random.nextInt(BINARY.length)]);
+                expression(formula, depth - 1);
+            }
+        }
+    }
+
+    /**
+     * @return the values of the variable for the column evaluations
+     */
+    private static double[] column() {
+        double[] special = {0d, -0d, 1d, -1d, 2d, 0.5, 1e308, -1e308, Double.MIN_VALUE, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NaN};
+        SplittableRandom random = new SplittableRandom(7);
+        double[] column = new double[67];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = i < special.length ? special[i] : random.nextDouble(-1e6, 1e6);
+        }
+        return column;
+    }
+
+    /**
+     * @return a value for the variable, including zero, negative and non-integer values
+     */
+    private double value() {
+        return switch (random.nextInt(4)) {
+            case 0 -> 0d;
+            case 1 -> random.nextInt(-10, 11);
+            case 2 -> random.nextDouble(-1e6, 1e6);
+            default -> random.nextDouble();
+        };
+    }
+}
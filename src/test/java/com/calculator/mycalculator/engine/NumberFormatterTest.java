@@ -0,0 +1,85 @@
+package com.calculator.mycalculator.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Results appended to a builder have the same text as the formatted strings: integers in full, and other numbers
+ * with the digits of {@link Double#toString(double)}, written by {@link ShortestDigits} without a temporary buffer.
+ */
+class NumberFormatterTest {
+
+    private static final int COUNT = 2_000_000;
+
+    private final StringBuilder text = new StringBuilder();
+
+    @Test
+    void writesIntegersInFull() {
+        assertFormatted("42", 42);
+        assertFormatted("-7", -7);
+        assertFormatted("0", -0d);
+        assertFormatted("10000000000", 1e10);
+        assertFormatted("-9223372036854775808", -0x1p63);
+        assertFormatted("9.223372036854776E18", 0x1p63);
+        assertFormatted("1.0E20", 1e20);
+    }
+
+    @Test
+    void writesOtherNumbersLikeDoubleToString() {
+        assertFormatted("0.5", 0.5);
+        assertFormatted("3.141592653589793", Math.PI);
+        assertFormatted("0.30000000000000004", 0.1 + 0.2);
+        assertFormatted("0.001", 0.001);
+        assertFormatted("1.0E-4", 1e-4);
+        assertFormatted("1234567.5", 1234567.5);
+        assertFormatted("1.23456785E7", 12345678.5);
+        assertFormatted("-2.5E-300", -2.5e-300);
+        assertFormatted("1.0E23", 1e23);
+        assertFormatted("0.002", 2e-3);
+        assertFormatted("1.7976931348623157E308", Double.MAX_VALUE);
+        assertFormatted("2.2250738585072014E-308", Double.MIN_NORMAL);
+        assertFormatted("4.9E-324", Double.MIN_VALUE);
+        assertFormatted("NaN", Double.NaN);
+        assertFormatted("Infinity", Double.POSITIVE_INFINITY);
+        assertFormatted("-Infinity", Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Random bit patterns cover every exponent, subnormal numbers included; short decimals, powers of two and
+     * neighbours of powers of ten cover the ties and the boundaries between notations.
+     */
+    @Test
+    void matchesDoubleToStringOnRandomNumbers() {
+        SplittableRandom random = new SplittableRandom(20240101L);
+        for (int i = 0; i < COUNT; i++) {
+            double value = switch (random.nextInt(4)) {
+                case 0 -> Double.longBitsToDouble(random.nextLong());
+                case 1 -> random.nextInt(-1_000_000, 1_000_000) / Math.pow(10, random.nextInt(1, 12));
+                case 2 -> Math.scalb(1d, random.nextInt(-1074, 1024));
+                default -> {
+                    double power = Math.pow(10, random.nextInt(-325, 309));
+                    yield random.nextBoolean() ? Math.nextUp(power) : Math.nextDown(power);
+                }
+            };
+            assertFormatted(NumberFormatter.format(value), value);
+        }
+    }
+
+    @Test
+    void writesDecimalsWithoutTrailingZeros() {
+        assertEquals("0.125", NumberFormatter.format(new BigDecimal("0.1250")));
+        assertEquals("10000000000", NumberFormatter.format(new BigDecimal("1E+10")));
+        assertEquals("1E+40", NumberFormatter.format(new BigDecimal("1E+40")));
+    }
+
+    private void assertFormatted(String expected, double value) {
+        assertEquals(expected, NumberFormatter.format(value));
+        text.setLength(0);
+        text.append("x");
+        assertEquals("x" + expected, NumberFormatter.formatTo(value, text).toString(), () -> Double.toString(value));
+    }
+}
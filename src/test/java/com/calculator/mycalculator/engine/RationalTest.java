@@ -0,0 +1,174 @@
+package com.calculator.mycalculator.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rational numbers stay exact and in lowest terms, on the {@code long} fast path as after a promotion
+ * to {@link BigInteger}.
+ */
+class RationalTest {
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    @Test
+    void keepsFractionsInLowestTerms() {
+        assertEquals(Rational.of(-3, 2), Rational.of(6, -4));
+        assertEquals("-3/2", Rational.of(6, -4).toString());
+        assertEquals(BigInteger.TWO, Rational.of(6, -4).getDenominator());
+        assertEquals(Rational.ZERO, Rational.of(0, -5));
+        assertTrue(Rational.of(8, 4).isInteger());
+        assertThrows(ArithmeticException.class, () -> Rational.of(1, 0));
+    }
+
+    @Test
+    void computesWithoutDrift() {
+        Rational third = Rational.valueOf(3).inverse();
+        assertEquals(Rational.ONE, third.multiply(Rational.valueOf(3)));
+        assertEquals(Rational.of(3, 10), Rational.parse("0.1").add(Rational.parse("0.2")));
+        assertEquals(Rational.of(1, 6), Rational.of(1, 2).subtract(third));
+        assertEquals(Rational.of(3, 2), Rational.of(1, 2).divide(third));
+        assertThrows(ArithmeticException.class, () -> third.divide(Rational.ZERO));
+        assertThrows(ArithmeticException.class, Rational.ZERO::inverse);
+    }
+
+    @Test
+    void remainderHasTheSignOfTheDividend() {
+        assertEquals(Rational.of(3, 2), Rational.of(7, 2).remainder(Rational.valueOf(2)));
+        assertEquals(Rational.of(-3, 2), Rational.of(-7, 2).remainder(Rational.valueOf(2)));
+        assertEquals(Rational.of(1, 6), Rational.of(1, 2).remainder(Rational.of(1, 3)));
+        assertThrows(ArithmeticException.class, () -> Rational.ONE.remainder(Rational.ZERO));
+    }
+
+    @Test
+    void powersAndSquareRoots() {
+        assertEquals(Rational.of(8, 27), Rational.of(2, 3).pow(3));
+        assertEquals(Rational.of(9, 4), Rational.of(2, 3).pow(-2));
+        assertEquals(Rational.ONE, Rational.of(2, 3).pow(0));
+        assertEquals(Rational.of(3, 2), Rational.of(9, 4).sqrt());
+        assertNull(Rational.valueOf(2).sqrt());
+        assertNull(Rational.valueOf(-4).sqrt());
+    }
+
+    @Test
+    void promotesOnOverflowAndComesBack() {
+        Rational max = Rational.valueOf(Long.MAX_VALUE);
+        Rational beyond = max.add(Rational.ONE);
+        assertFalse(beyond.isCompact());
+        assertEquals(LONG_MAX.add(BigInteger.ONE), beyond.getNumerator());
+        Rational back = beyond.subtract(Rational.ONE);
+        assertTrue(back.isCompact());
+        assertEquals(max, back);
+        assertEquals(max.hashCode(), back.hashCode());
+
+        Rational min = Rational.valueOf(Long.MIN_VALUE);
+        assertEquals(LONG_MIN.negate(), min.negate().getNumerator());
+        assertEquals(Rational.of(BigInteger.ONE, LONG_MIN.negate()), min.inverse().negate());
+    }
+
+    @Test
+    void formatsAsFractionsOrDecimals() {
+        Rational third = Rational.of(1, 3);
+        assertEquals("1/3", third.format(Rational.Notation.FRACTION));
+        assertEquals("0.3333333333333333", third.format(Rational.Notation.DECIMAL));
+        assertEquals("0.375", Rational.of(3, 8).format(Rational.Notation.DECIMAL));
+        assertEquals("-7", Rational.valueOf(-7).format(Rational.Notation.DECIMAL));
+        assertEquals(1 / 3d, third.doubleValue());
+        assertEquals(1e30 / 3, Rational.of(BigInteger.TEN.pow(30), BigInteger.valueOf(3)).doubleValue());
+    }
+
+    @Test
+    void parsesTheNumbersTheCalculatorWrites() {
+        assertEquals(Rational.of(-1, 3), Rational.parse("(-1/3)"));
+        assertEquals(Rational.of(-1, 3), Rational.parse("-(1/3)"));
+        assertEquals(Rational.valueOf(1000), Rational.parse("1e3"));
+        assertEquals(Rational.of(1, 400), Rational.parse("2.5E-3"));
+        assertThrows(NumberFormatException.class, () -> Rational.parse("1/0"));
+        assertThrows(NumberFormatException.class, () -> Rational.parse("abc"));
+    }
+
+    @Test
+    void exactModeEvaluatesChainsWithoutDrift() {
+        CalculatorEngine fractions = new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY,
+                Rational.Notation.FRACTION);
+        assertEquals("1", fractions.evaluateToText("1/3*3"));
+        assertEquals("3/10", fractions.evaluateToText("0.1 + 0.2"));
+        assertEquals("-1/6", fractions.evaluateToText("1/3 - 1/2"));
+        assertEquals("9223372036854775808", fractions.evaluateToText("9223372036854775807 + 1"));
+    }
+
+    /**
+     * Chained powers whose exact result would be huge fall back to {@code double} at once, as in the default mode,
+     * instead of expanding fractions of millions of digits.
+     */
+    @Test
+    void chainedPowersBeyondTheExactRangeAreComputedInDouble() {
+        CalculatorEngine fractions = new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY,
+                Rational.Notation.FRACTION);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            assertEquals("Infinity", fractions.evaluateToText("(3^9999)^9999"));
+            assertEquals("Infinity", fractions.evaluateToText("(3^999)^999"));
+            assertEquals("0", fractions.evaluateToText("(1/3^999)^999"));
+            assertEquals("Infinity", fractions.evaluateToText("2^3000 * 2^3000"));
+            assertEquals("Infinity", fractions.evaluateToText("(2^1000)^3 * 2^1000"));
+        });
+        assertEquals(BigInteger.TWO.pow(1000).toString(), fractions.evaluateToText("(2^100)^10"));
+        assertEquals(BigInteger.TWO.pow(3001).toString(), fractions.evaluateToText("(2^1000)^3 + (2^1000)^3"));
+    }
+
+    /**
+     * The {@code long} fast path, and the promotion when it overflows, give the same results as the arithmetic
+     * on {@link BigInteger}, for operands from small fractions up to the limits of {@code long}.
+     */
+    @Test
+    void fastPathMatchesBigIntegerArithmetic() {
+        SplittableRandom random = new SplittableRandom(20240101L);
+        for (int i = 0; i < 100_000; i++) {
+            BigInteger[] x = {operand(random), operand(random).abs().max(BigInteger.ONE)};
+            BigInteger[] y = {operand(random), operand(random).abs().max(BigInteger.ONE)};
+            Rational a = Rational.of(x[0], x[1]);
+            Rational b = Rational.of(y[0], y[1]);
+
+            assertReduced(Rational.of(x[0].multiply(y[1]).add(y[0].multiply(x[1])), x[1].multiply(y[1])), a.add(b));
+            assertReduced(Rational.of(x[0].multiply(y[1]).subtract(y[0].multiply(x[1])), x[1].multiply(y[1])),
+                    a.subtract(b));
+            assertReduced(Rational.of(x[0].multiply(y[0]), x[1].multiply(y[1])), a.multiply(b));
+            if (y[0].signum() != 0) {
+                assertReduced(Rational.of(x[0].multiply(y[1]), x[1].multiply(y[0])), a.divide(b));
+            }
+        }
+    }
+
+    private static void assertReduced(Rational expected, Rational actual) {
+        assertEquals(expected, actual);
+        assertEquals(BigInteger.ONE, actual.getNumerator().gcd(actual.getDenominator()));
+        assertTrue(actual.getDenominator().signum() > 0);
+        boolean fits = actual.getNumerator().compareTo(LONG_MIN) >= 0 && actual.getNumerator().compareTo(LONG_MAX) <= 0
+                && actual.getDenominator().compareTo(LONG_MAX) <= 0;
+        assertEquals(fits, actual.isCompact(), actual::toString);
+    }
+
+    /**
+     * @return a random integer, small, medium or close to the limits of {@code long}
+     */
+    private static BigInteger operand(SplittableRandom random) {
+        return BigInteger.valueOf(switch (random.nextInt(4)) {
+            case 0 -> random.nextLong(-20, 21);
+            case 1 -> random.nextLong(-1_000_000, 1_000_001);
+            case 2 -> random.nextLong(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2);
+            default -> random.nextBoolean() ? Long.MAX_VALUE - random.nextInt(3) : Long.MIN_VALUE + random.nextInt(3);
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.calculator.mycalculator.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The memo computes each operand once while it holds it, and its eviction policy decides what it keeps when full.
+ * <p>
+ * The memos of these tests have the minimum capacity, 8 slots, where every operand may go in every slot, so that
+ * which operands fill the memo does not depend on their hashes.
+ */
+class UnaryMemoTest {
+
+    private static final int SLOTS = 8;
+
+    /**
+     * Number of times the memoized function was computed.
+     */
+    private int calls;
+
+    private final DoubleUnaryOperator function = x -> {
+        calls++;
+        return 1 / x;
+    };
+
+    @Test
+    void computesEachOperandOnce() {
+        UnaryMemo memo = new UnaryMemo(function);
+        assertEquals(0.5, memo.applyAsDouble(2));
+        assertEquals(0.5, memo.applyAsDouble(2));
+        assertEquals(0.25, memo.applyAsDouble(4));
+        assertEquals(2, calls);
+        assertEquals(2, memo.getSize());
+        assertEquals(1, memo.getHitCount());
+        assertEquals(2, memo.getMissCount());
+        assertEquals(1 / 3d, memo.getHitRate());
+    }
+
+    @Test
+    void tellsSignedZerosApart() {
+        UnaryMemo memo = new UnaryMemo(function);
+        assertEquals(Double.POSITIVE_INFINITY, memo.applyAsDouble(0d));
+        assertEquals(Double.NEGATIVE_INFINITY, memo.applyAsDouble(-0d));
+        assertEquals(Double.POSITIVE_INFINITY, memo.applyAsDouble(0d));
+        assertEquals(2, calls);
+    }
+
+    @Test
+    void clockEvictionKeepsTheOperandsUsedAgain() {
+        UnaryMemo memo = new UnaryMemo(function, SLOTS, UnaryMemo.Eviction.CLOCK);
+        fill(memo);
+        for (int i = 1; i <= SLOTS / 2; i++) {
+            memo.applyAsDouble(i);
+        }
+
+        // The new operand replaces one of the operands that were not used again
+        assertEquals(0.01, memo.applyAsDouble(100));
+        assertEquals(1, memo.getEvictionCount());
+        assertEquals(SLOTS, memo.getSize());
+        int before = calls;
+        for (int i = 1; i <= SLOTS / 2; i++) {
+            memo.applyAsDouble(i);
+        }
+        memo.applyAsDouble(100);
+        assertEquals(before, calls);
+    }
+
+    @Test
+    void noEvictionKeepsTheFirstOperands() {
+        UnaryMemo memo = new UnaryMemo(function, SLOTS, UnaryMemo.Eviction.NONE);
+        fill(memo);
+        assertEquals(0.01, memo.applyAsDouble(100));
+        assertEquals(0.01, memo.applyAsDouble(100));
+        assertEquals(SLOTS + 2, calls);
+        assertEquals(0, memo.getEvictionCount());
+
+        // Every operand of the filled memo is still held
+        fill(memo);
+        assertEquals(SLOTS + 2, calls);
+    }
+
+    @Test
+    void clearRemovesTheEntriesButKeepsTheStatistics() {
+        UnaryMemo memo = new UnaryMemo(function);
+        memo.applyAsDouble(2);
+        memo.applyAsDouble(2);
+        memo.clear();
+        assertEquals(0, memo.getSize());
+        memo.applyAsDouble(2);
+        assertEquals(2, calls);
+        assertEquals(1, memo.getHitCount());
+        assertEquals(2, memo.getMissCount());
+    }
+
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertEquals(SLOTS, new UnaryMemo(function, 1, UnaryMemo.Eviction.CLOCK).getCapacity());
+        assertEquals(1024, new UnaryMemo(function, 1000, UnaryMemo.Eviction.CLOCK).getCapacity());
+        assertEquals(1024, new UnaryMemo(function, 1024, UnaryMemo.Eviction.CLOCK).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new UnaryMemo(function, 0, UnaryMemo.Eviction.CLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new UnaryMemo(function, UnaryMemo.MAX_CAPACITY + 1, UnaryMemo.Eviction.CLOCK));
+    }
+
+    /**
+     * Fills all the slots of a memo with the operands 1 to {@link #SLOTS}.
+     */
+    private static void fill(UnaryMemo memo) {
+        for (int i = 1; i <= SLOTS; i++) {
+            memo.applyAsDouble(i);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.calculator.mycalculator.history;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Searches of the history by prefix, operand and result, with an index built synchronously or in the background.
+ */
+class HistoryIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private HistoryLog log;
+
+    @BeforeEach
+    void open() throws IOException {
+        log = HistoryLog.open(directory);
+        log.append(1L, "12 + 30", "42");
+        log.append(2L, "12 * 2", "24");
+        log.append(3L, "7 - 9", "-2");
+        log.append(4L, "123456789 + 1", "123456790");
+        log.append(5L, "1 / 0", "Erreur");
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        log.close();
+    }
+
+    @Test
+    void findsByPrefixOperandAndResult() throws IOException {
+        HistoryIndex index = new HistoryIndex(log);
+        assertArrayEquals(new int[]{3, 1, 0}, search(index, "12"));
+        assertArrayEquals(new int[]{1, 0}, search(index, "12 "));
+        assertArrayEquals(new int[]{3}, search(index, "123456789 +"));
+        assertArrayEquals(new int[]{1, 0}, search(index, "#12"));
+        assertArrayEquals(new int[]{2}, search(index, "=-2"));
+        assertArrayEquals(new int[]{1, 0}, search(index, "=20..50"));
+        assertArrayEquals(new int[]{2, 1}, search(index, "=..30"));
+        assertArrayEquals(new int[]{}, search(index, "#abc"));
+        assertArrayEquals(new int[]{4, 3, 2, 1, 0}, search(index, ""));
+    }
+
+    @Test
+    void catchesUpWithEntriesAppendedWhileBuiltInTheBackground() throws Exception {
+        HistoryLog.Snapshot snapshot = log.snapshot();
+        CompletableFuture<HistoryIndex> built = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new HistoryIndex(log, snapshot);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        log.append(6L, "12 - 12", "0");
+        HistoryIndex index = built.get();
+        assertEquals(5, snapshot.size());
+        assertArrayEquals(new int[]{3, 1, 0}, search(index, "12"));
+
+        index.update();
+        assertArrayEquals(new int[]{5, 3, 1, 0}, search(index, "12"));
+        index.add(log.append(7L, "12 % 5", "2"), log.get(6));
+        assertArrayEquals(new int[]{6, 5, 3, 1, 0}, search(index, "12"));
+        index.update();
+        assertArrayEquals(new int[]{6, 5}, search(index, "#12", 2));
+    }
+
+    private static int[] search(HistoryIndex index, String query) {
+        return search(index, query, 10);
+    }
+
+    private static int[] search(HistoryIndex index, String query, int limit) {
+        int[] ids = new int[limit];
+        return Arrays.copyOf(ids, index.search(query, ids));
+    }
+}
@@ -0,0 +1,152 @@
+package com.calculator.mycalculator.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The history log keeps its entries across sessions, and recovers from an index left behind by an unclean exit
+ * or a record torn while it was written.
+ */
+class HistoryLogTest {
+
+    /**
+     * Offsets of the entry count in the index file, and of the first index slot.
+     */
+    private static final int COUNT_OFFSET = 8;
+    private static final int FIRST_SLOT = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsEntriesAcrossSessions() throws IOException {
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertEquals(0, log.size());
+            assertEquals(0, log.append(1L, "1 + 2", "3"));
+            assertEquals(1, log.append(new HistoryEntry(2L, "√2 × 2", "2.8284271247461903")));
+        }
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertEquals(2, log.size());
+            assertEquals(new HistoryEntry(1L, "1 + 2", "3"), log.get(0));
+            assertEquals(new HistoryEntry(2L, "√2 × 2", "2.8284271247461903"), log.get(1));
+            assertThrows(IndexOutOfBoundsException.class, () -> log.get(2));
+        }
+    }
+
+    @Test
+    void indexesRecordsWrittenAfterTheLastIndexUpdate() throws IOException {
+        append(5);
+        // As if the process had died before updating the count of the index
+        writeIndexCount(2);
+        assertEntries(5);
+    }
+
+    @Test
+    void rebuildsAMissingIndex() throws IOException {
+        append(5);
+        Files.delete(directory.resolve(HistoryLog.INDEX_FILE));
+        assertEntries(5);
+    }
+
+    @Test
+    void dropsATornRecord() throws IOException {
+        append(5);
+        // Damage the payload of the last record, whose checksum no longer matches
+        long position = readIndexSlot(4);
+        try (FileChannel data = FileChannel.open(directory.resolve(HistoryLog.DATA_FILE), StandardOpenOption.WRITE)) {
+            data.write(ByteBuffer.wrap(new byte[]{'#'}), position + 20);
+        }
+        assertEntries(4);
+
+        // The next entry takes the place of the torn one
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            log.append(100L, "new", "entry");
+        }
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertEquals(5, log.size());
+            assertEquals(new HistoryEntry(100L, "new", "entry"), log.get(4));
+        }
+    }
+
+    @Test
+    void keepsEntriesAcrossSegments() throws IOException {
+        String formula = "1".repeat(2000);
+        int count = 2 * HistoryLog.SEGMENT_SIZE / formula.length() + 10;
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            for (int i = 0; i < count; i++) {
+                log.append(i, formula, Integer.toString(i));
+            }
+        }
+        // Recover everything from the data alone, across the segment boundaries
+        Files.delete(directory.resolve(HistoryLog.INDEX_FILE));
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertEquals(count, log.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(new HistoryEntry(i, formula, Integer.toString(i)), log.get(i));
+            }
+        }
+    }
+
+    @Test
+    void refusesEntriesLargerThanASegment() throws IOException {
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> log.append(0L, "1".repeat(HistoryLog.MAX_PAYLOAD), "1"));
+            assertEquals(0, log.size());
+        }
+    }
+
+    @Test
+    void refusesForeignFiles() throws IOException {
+        Files.writeString(directory.resolve(HistoryLog.DATA_FILE), "not a history file at all");
+        assertThrows(IOException.class, () -> HistoryLog.open(directory));
+    }
+
+    @Test
+    void refusesASecondWriter() throws IOException {
+        try (HistoryLog ignored = HistoryLog.open(directory)) {
+            assertThrows(IOException.class, () -> HistoryLog.open(directory));
+        }
+    }
+
+    private void append(int count) throws IOException {
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            for (int i = 0; i < count; i++) {
+                log.append(i, i + " * 2", Integer.toString(i * 2));
+            }
+        }
+    }
+
+    private void assertEntries(int count) throws IOException {
+        try (HistoryLog log = HistoryLog.open(directory)) {
+            assertEquals(count, log.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(new HistoryEntry(i, i + " * 2", Integer.toString(i * 2)), log.get(i));
+            }
+        }
+    }
+
+    private void writeIndexCount(long count) throws IOException {
+        try (FileChannel index = FileChannel.open(directory.resolve(HistoryLog.INDEX_FILE), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.allocate(Long.BYTES).putLong(0, count), COUNT_OFFSET);
+        }
+    }
+
+    private long readIndexSlot(long entry) throws IOException {
+        try (FileChannel index = FileChannel.open(directory.resolve(HistoryLog.INDEX_FILE), StandardOpenOption.READ)) {
+            ByteBuffer slot = ByteBuffer.allocate(Long.BYTES);
+            index.read(slot, FIRST_SLOT + entry * Long.BYTES);
+            return slot.getLong(0);
+        }
+    }
+}
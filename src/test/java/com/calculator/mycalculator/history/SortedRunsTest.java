@@ -0,0 +1,101 @@
+package com.calculator.mycalculator.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Range queries of the runs, checked against a scan of every pair, across buffer flushes and run merges.
+ */
+class SortedRunsTest {
+
+    /**
+     * Enough pairs for several generations of merged runs, and a partly filled buffer.
+     */
+    private static final int COUNT = 13 * SortedRuns.RUN_SIZE + 1234;
+
+    private final SplittableRandom random = new SplittableRandom(12);
+
+    private final long[] keys = new long[COUNT];
+
+    @Test
+    void findsTheNewestMatchesOfAnyRange() {
+        SortedRuns runs = new SortedRuns();
+        for (int id = 0; id < COUNT; id++) {
+            keys[id] = key();
+            runs.add(keys[id], id);
+
+            // Query while the runs grow, right before and after the buffer is sealed
+            if (id % SortedRuns.RUN_SIZE == 0 || id % SortedRuns.RUN_SIZE == SortedRuns.RUN_SIZE - 1) {
+                checkQueries(runs, id + 1, 20);
+            }
+        }
+        checkQueries(runs, COUNT, 500);
+    }
+
+    @Test
+    void returnsNothingForAnEmptyRange() {
+        SortedRuns runs = new SortedRuns();
+        for (int id = 0; id < 3 * SortedRuns.RUN_SIZE; id++) {
+            runs.add(id * 2L, id);
+        }
+        int[] out = new int[10];
+        assertEquals(0, runs.collect(1, 1, null, out));
+        assertEquals(0, runs.collect(10, 5, null, out));
+        assertEquals(1, runs.collect(2, 3, null, out));
+        assertEquals(1, out[0]);
+    }
+
+    private void checkQueries(SortedRuns runs, int size, int queries) {
+        for (int i = 0; i < queries; i++) {
+            long from = key();
+            long to = random.nextInt(4) == 0 ? from : key();
+            if (from > to) {
+                long swap = from;
+                from = to;
+                to = swap;
+            }
+            int limit = random.nextInt(4) == 0 ? size : random.nextInt(1, 200);
+            IntPredicate filter = random.nextInt(3) == 0 ? id -> id % 3 == 0 : null;
+
+            int[] expected = expected(size, from, to, filter, limit);
+            int[] out = new int[limit];
+            int count = runs.collect(from, to, filter, out);
+            long low = from;
+            long high = to;
+            assertArrayEquals(expected, Arrays.copyOf(out, count),
+                    () -> "[" + low + ", " + high + "] over " + size + " pairs, " + limit + " at most");
+        }
+    }
+
+    /**
+     * @return the ids of the keys within the range, newest first, by a scan of every pair
+     */
+    private int[] expected(int size, long from, long to, IntPredicate filter, int limit) {
+        int[] matches = new int[limit];
+        int count = 0;
+        for (int id = size - 1; id >= 0 && count < limit; id--) {
+            if (keys[id] >= from && keys[id] <= to && (filter == null || filter.test(id))) {
+                matches[count++] = id;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * @return a key among few distinct values, many values, or the extreme ones
+     */
+    private long key() {
+        return switch (random.nextInt(5)) {
+            case 0 -> random.nextInt(-20, 20);
+            case 1 -> random.nextLong();
+            case 2 -> random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+            default -> random.nextLong(-1_000_000, 1_000_000);
+        };
+    }
+}
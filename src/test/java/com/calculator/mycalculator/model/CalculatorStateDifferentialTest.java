@@ -0,0 +1,399 @@
+package com.calculator.mycalculator.model;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.NumberFormatter;
+import com.calculator.mycalculator.engine.Rational;
+import com.calculator.mycalculator.engine.RationalFormula;
+import com.calculator.mycalculator.engine.UnaryMemo;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Differential test of the state machine against {@link ReferenceCalculatorState}, the buttons of the baseline
+ * controller, on random key streams from a fixed seed.
+ * <p>
+ * After every key, the display, the formula and the acceptance of the key must be the same in both, or else be
+ * exactly the output of one of the changes made on purpose, see {@link #documentedOutcome}. The reference is then
+ * put in the state of the calculator, and the stream goes on. The decimal and exact modes compute the unary
+ * operations and the results in their own arithmetic, which the reference does not know: there, these keys are
+ * checked against the same arithmetic done by hand. The memo of 10^x must change nothing at all.
+ */
+class CalculatorStateDifferentialTest {
+
+    private static final long SEED = 20240101L;
+
+    private static final int STREAMS = 10_000;
+
+    private static final int KEYS_PER_STREAM = 50;
+
+    /**
+     * Keys drawn by the streams, digits being the most frequent, as when typing.
+     */
+    private static final String WEIGHTED_KEYS = "0123456789012345678901234567890123456789" + "..++--**//==" + Keypad.KEYS;
+
+    /**
+     * Maximum number of mismatches listed in a failure.
+     */
+    private static final int MAX_REPORTED = 20;
+
+    /**
+     * What a key leaves on the calculator.
+     *
+     * @param accepted whether the key was accepted, i.e. not a digit beyond the limit
+     * @param display  the text of the display
+     * @param formula  the text of the formula
+     */
+    private record Outcome(boolean accepted, String display, String formula) {
+
+        @Override
+        public String toString() {
+            return "\"" + display + "\" \"" + formula + "\"" + (accepted ? "" : " refused");
+        }
+    }
+
+    @Test
+    void defaultModeMatchesTheReference() {
+        assertMatchesReference(CalculatorEngine::new, CalculatorState::new);
+    }
+
+    @Test
+    void memoModeMatchesTheReference() {
+        // A small memo evicts results all along the streams
+        assertMatchesReference(CalculatorEngine::new, engine -> {
+            CalculatorState state = new CalculatorState(engine);
+            state.setMemo(8, UnaryMemo.Eviction.CLOCK);
+            return state;
+        });
+    }
+
+    @Test
+    void memoModeMatchesTheDefaultMode() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        CalculatorState plain = new CalculatorState();
+        CalculatorState memoized = new CalculatorState();
+        memoized.setMemo(8, UnaryMemo.Eviction.CLOCK);
+        for (int i = 0; i < STREAMS * KEYS_PER_STREAM; i++) {
+            char key = WEIGHTED_KEYS.charAt(random.nextInt(WEIGHTED_KEYS.length()));
+            assertEquals(Keypad.press(plain, key), Keypad.press(memoized, key));
+            assertEquals(plain.getDisplay(), memoized.getDisplay());
+            assertEquals(plain.getFormula(), memoized.getFormula());
+        }
+        assertTrue(memoized.getPowerOfTenMemo().getHitCount() > 0);
+    }
+
+    @Test
+    void decimalModeMatchesTheReference() {
+        assertMatchesReference(() -> new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, new MathContext(20)),
+                CalculatorState::new);
+    }
+
+    @Test
+    void fractionModeMatchesTheReference() {
+        assertMatchesReference(() -> new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY,
+                Rational.Notation.FRACTION), CalculatorState::new);
+    }
+
+    @Test
+    void exactDecimalModeMatchesTheReference() {
+        assertMatchesReference(() -> new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY,
+                Rational.Notation.DECIMAL), CalculatorState::new);
+    }
+
+    /**
+     * Presses the same random streams on the state and on the reference.
+     *
+     * @param engines the engines of the mode
+     * @param states  the states under test, created on an engine
+     */
+    private static void assertMatchesReference(Supplier<CalculatorEngine> engines,
+                                               Function<CalculatorEngine, CalculatorState> states) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<String> mismatches = new ArrayList<>();
+        int identical = 0;
+        CalculatorEngine engine = engines.get();
+        // The mode's own engine, for the results the reference does not compute in the mode
+        CalculatorEngine modeEngine = engines.get();
+        for (int stream = 0; stream < STREAMS && mismatches.size() < MAX_REPORTED; stream++) {
+            CalculatorState state = states.apply(engine);
+            ReferenceCalculatorState reference = new ReferenceCalculatorState();
+            StringBuilder keys = new StringBuilder();
+            for (int i = 0; i < KEYS_PER_STREAM; i++) {
+                char key = WEIGHTED_KEYS.charAt(random.nextInt(WEIGHTED_KEYS.length()));
+                keys.append(key);
+                Outcome before = new Outcome(true, state.getDisplay(), state.getFormula());
+                boolean referenceAccepted = true;
+                boolean referenceFailed = false;
+                try {
+                    referenceAccepted = press(reference, key);
+                } catch (RuntimeException e) {
+                    // The baseline let the exception escape the button, e.g. on a display such as "Infinity7"
+                    referenceFailed = true;
+                }
+                Outcome baseline = new Outcome(referenceAccepted, reference.getDisplay(), reference.getFormula());
+                Outcome actual = new Outcome(Keypad.press(state, key), state.getDisplay(), state.getFormula());
+                if (!referenceFailed && actual.equals(baseline)) {
+                    identical++;
+                    continue;
+                }
+                Outcome expected = documentedOutcome(key, before, baseline, referenceFailed, modeEngine);
+                if (!actual.equals(expected)) {
+                    mismatches.add("\"" + keys + "\" from " + before + ": baseline " + baseline
+                            + (referenceFailed ? " failed" : "") + ", expected " + expected + ", state " + actual);
+                    break;
+                }
+                // Go on from the state of the calculator
+                reference.restore(actual.display(), actual.formula());
+            }
+        }
+        assertEquals(List.of(), mismatches);
+        // The documented differences must not hide the comparison
+        assertTrue(identical > STREAMS * KEYS_PER_STREAM * 3 / 4, identical + " keys identical to the baseline");
+    }
+
+    /**
+     * Returns the outcome of a key that differs on purpose from the baseline, for the changes made since:
+     * <ul>
+     * <li>after "Erreur", a key that enters a number or an operator starts afresh, the others are ignored;</li>
+     * <li>the decimal and exact modes compute the unary operations and the results in their own arithmetic, and
+     * the exact mode keeps a fraction such as {@code (1/3)} as a whole operand, replaced by a digit or a point and
+     * deleted at once;</li>
+     * <li>the structured formula replaces a lone "0" operand instead of keeping it before the new digits, removes
+     * an operand left as "0" or without a digit, commits the operand as it is before an operator or replaces the
+     * trailing operator, and squares a missing operand as 0;</li>
+     * <li>results are formatted by {@link NumberFormatter}, which writes every integer of a {@code long} in full;</li>
+     * <li>a unary operation on a display that is not a number is ignored, instead of throwing.</li>
+     * </ul>
+     *
+     * @param key             the key
+     * @param before          the state of both before the key
+     * @param baseline        the reference after the key
+     * @param referenceFailed whether the key threw an exception on the reference
+     * @param modeEngine      an engine of the mode
+     * @return the expected outcome, or null if no change explains a difference
+     */
+    private static @Nullable Outcome documentedOutcome(char key, Outcome before, Outcome baseline,
+                                                       boolean referenceFailed, CalculatorEngine modeEngine) {
+        String formula = before.formula();
+        String committed = formula.substring(0, formula.lastIndexOf(' ') + 1);
+        String operand = formula.substring(committed.length());
+
+        if (before.display().equals(NumberFormatter.ERROR_TEXT)) {
+            if ("nrsix=".indexOf(key) >= 0) {
+                return before;
+            }
+            ReferenceCalculatorState fresh = new ReferenceCalculatorState();
+            boolean accepted = press(fresh, key);
+            return new Outcome(accepted, fresh.getDisplay(), fresh.getFormula());
+        }
+
+        boolean doubleMode = modeEngine.getMathContext() == null && modeEngine.getNotation() == null;
+        if (!doubleMode && "rsix=".indexOf(key) >= 0) {
+            return modeOutcome(key, before, committed, operand, modeEngine);
+        }
+        boolean digit = key >= '0' && key <= '9';
+        if (modeEngine.getNotation() != null && operand.indexOf('/') >= 0 && (key == '.' || key == 'd'
+                || digit && operand.length() < CalculatorState.MAX_DIGITS)) {
+            String replaced = key == 'd' ? "" : key == '.' ? "0." : String.valueOf(key);
+            return new Outcome(true, replaced.isEmpty() ? "0" : replaced, committed + replaced);
+        }
+
+        if (operand.equals("0") && (digit || key == '.' || key == 'p')) {
+            if (!baseline.formula().startsWith(formula)) {
+                return null;
+            }
+            return new Outcome(baseline.accepted(), baseline.display(),
+                    committed + baseline.formula().substring(formula.length()));
+        }
+        if (key == 'd' && !operand.isEmpty()) {
+            String rest = operand.substring(0, operand.length() - 1);
+            if (rest.isEmpty() || rest.equals("-") || rest.equals("0") || rest.equals("-0")) {
+                return new Outcome(true, "0", committed);
+            }
+        }
+        if ("+-*/".indexOf(key) >= 0) {
+            return new Outcome(true, "0", withOperator(formula, key));
+        }
+        if (key == 's' && operand.isEmpty()) {
+            return new Outcome(true, "0", formula + "0");
+        }
+
+        if ("rsix=".indexOf(key) >= 0 && !referenceFailed && baseline.formula().endsWith(baseline.display())) {
+            try {
+                String text = NumberFormatter.format(Double.parseDouble(baseline.display()));
+                String kept = baseline.formula().substring(0, baseline.formula().length() - baseline.display().length());
+                return new Outcome(true, text, kept + text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (referenceFailed && "rsix".indexOf(key) >= 0) {
+            return before;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the outcome of a unary operation or of the equal key in the decimal or the exact mode.
+     * <p>
+     * The equal key displays the result of the mode. The decimal mode computes the unary operations in
+     * {@link BigDecimal} at the precision of the mode. The exact mode computes the square root of a perfect square,
+     * the square and the inverse on fractions, unless the result exceeds {@link RationalFormula#MAX_BITS}, and the
+     * others in {@code double} as the default mode. As in the default mode, the inverse, 10^x and the square root
+     * ignore a missing or zero operand, the square root of a negative number removes it, and a failed operation,
+     * such as the inverse of 0.0 in the exact mode, is ignored.
+     */
+    private static Outcome modeOutcome(char key, Outcome before, String committed, String operand,
+                                       CalculatorEngine modeEngine) {
+        if (key == '=') {
+            String formula = before.formula().trim();
+            if (formula.isEmpty()) {
+                return before;
+            }
+            String result = modeEngine.evaluateToText(formula);
+            if (result.equals(NumberFormatter.ERROR_TEXT)) {
+                return new Outcome(true, result, "");
+            }
+            String text = operandOf(result);
+            return new Outcome(true, text, text);
+        }
+        if (key != 's' && (operand.isEmpty() || operand.equals("0"))) {
+            return before;
+        }
+        MathContext mathContext = modeEngine.getMathContext();
+        Rational.Notation notation = modeEngine.getNotation();
+        try {
+            if (key == 'r' && doubleValue(operand) < 0) {
+                return new Outcome(true, "0", committed);
+            }
+            if (mathContext != null) {
+                BigDecimal value = operand.isEmpty() ? BigDecimal.ZERO : new BigDecimal(operand);
+                BigDecimal result = switch (key) {
+                    case 'r' -> value.sqrt(mathContext);
+                    case 's' -> value.multiply(value, mathContext);
+                    case 'i' -> BigDecimal.ONE.divide(value, mathContext);
+                    default -> decimalPowerOfTen(value, mathContext);
+                };
+                String text = NumberFormatter.format(result);
+                return new Outcome(true, text, committed + text);
+            }
+            Rational value = key == 'x' ? null : exactValue(operand);
+            if (value != null) {
+                Rational result = switch (key) {
+                    case 'r' -> value.sqrt();
+                    case 's' -> value.multiply(value);
+                    default -> value.inverse();
+                };
+                if (result != null && result.getNumerator().bitLength() <= RationalFormula.MAX_BITS
+                        && result.getDenominator().bitLength() <= RationalFormula.MAX_BITS) {
+                    String text = operandOf(result.format(notation));
+                    return new Outcome(true, text, committed + text);
+                }
+            }
+            double number = doubleValue(operand);
+            double result = switch (key) {
+                case 'r' -> Math.sqrt(number);
+                case 's' -> number * number;
+                case 'i' -> 1 / number;
+                default -> Math.pow(10, number);
+            };
+            String text = NumberFormatter.format(result);
+            return new Outcome(true, text, committed + text);
+        } catch (NumberFormatException | ArithmeticException e) {
+            return before;
+        }
+    }
+
+    /**
+     * @return the value of an operand in {@code double}, 0 if there is none
+     */
+    private static double doubleValue(String operand) {
+        if (operand.isEmpty()) {
+            return 0d;
+        }
+        return operand.indexOf('/') >= 0 ? Rational.parse(operand).doubleValue() : Double.parseDouble(operand);
+    }
+
+    /**
+     * @return the exact value of an operand, or null if its power of ten is beyond 1000
+     */
+    private static @Nullable Rational exactValue(String operand) {
+        if (operand.isEmpty()) {
+            return Rational.ZERO;
+        }
+        if (operand.indexOf('/') >= 0) {
+            return Rational.parse(operand);
+        }
+        BigDecimal value = new BigDecimal(operand);
+        if (Math.abs(value.scale()) > 1000 || value.precision() - value.scale() > 1000) {
+            return null;
+        }
+        return Rational.valueOf(value);
+    }
+
+    /**
+     * @return 10^x rounded to the precision: exact for an integer exponent, through {@code double} otherwise
+     */
+    private static BigDecimal decimalPowerOfTen(BigDecimal exponent, MathContext mathContext) {
+        try {
+            return BigDecimal.ONE.scaleByPowerOfTen(exponent.intValueExact()).round(mathContext);
+        } catch (ArithmeticException e) {
+            double result = Math.pow(10, exponent.doubleValue());
+            if (Double.isNaN(result) || Double.isInfinite(result)) {
+                throw new ArithmeticException("Result is not a finite number: " + result);
+            }
+            return BigDecimal.valueOf(result).round(mathContext);
+        }
+    }
+
+    /**
+     * @return a fraction between parentheses, or any other number as it is
+     */
+    private static String operandOf(String value) {
+        return value.indexOf('/') >= 0 && !value.startsWith("(") ? "(" + value + ")" : value;
+    }
+
+    /**
+     * @return the formula with the operator appended, or replacing the operator it ends with
+     */
+    private static String withOperator(String formula, char operator) {
+        boolean endsWithOperator = formula.length() > 2 && formula.endsWith(" ")
+                && "+-*/".indexOf(formula.charAt(formula.length() - 2)) >= 0
+                && formula.charAt(formula.length() - 3) == ' ';
+        return (endsWithOperator ? formula.substring(0, formula.length() - 3) : formula) + " " + operator + " ";
+    }
+
+    /**
+     * Presses a key on the reference, as {@link Keypad#press(CalculatorState, char)} does on the state.
+     */
+    private static boolean press(ReferenceCalculatorState reference, char key) {
+        switch (key) {
+            case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
+                return reference.handleButtonClick(String.valueOf(key));
+            }
+            case '.' -> reference.handlePointButtonClick();
+            case '+', '-', '*', '/' -> reference.handleOperatorButtonClick(String.valueOf(key));
+            case '=' -> reference.handleEqualButtonClick();
+            case 'n' -> reference.handlePlusMinusButtonClick();
+            case 'd' -> reference.handleDeleteButtonClick();
+            case 'c' -> reference.handleResetButtonClick();
+            case 'p' -> reference.handlePiButtonClick();
+            case 'r' -> reference.handleSqrtButtonClick();
+            case 's' -> reference.handleSquareButtonClick();
+            case 'i' -> reference.handleInverseButtonClick();
+            case 'x' -> reference.handleExponentButtonClick();
+            default -> throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        return true;
+    }
+}
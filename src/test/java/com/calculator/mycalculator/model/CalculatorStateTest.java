@@ -0,0 +1,45 @@
+package com.calculator.mycalculator.model;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import com.calculator.mycalculator.engine.Rational;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The unary operations of the exact arithmetic mode stay exact on reasonable numbers, and fall back to
+ * {@code double} on numbers too large to be expanded into fractions.
+ */
+class CalculatorStateTest {
+
+    private static CalculatorState exactState(Rational.Notation notation) {
+        return new CalculatorState(new CalculatorEngine(CalculatorEngine.DEFAULT_CACHE_CAPACITY, notation));
+    }
+
+    @Test
+    void keepsFractionsExact() {
+        CalculatorState state = exactState(Rational.Notation.FRACTION);
+        Keypad.replay(state, "3i*3=");
+        assertEquals("1", state.getDisplay());
+        Keypad.replay(state, "cc2is");
+        assertEquals("(1/4)", state.getDisplay());
+    }
+
+    @Test
+    void squaresBeyondTheExactRangeInDouble() {
+        CalculatorState state = exactState(Rational.Notation.FRACTION);
+        Keypad.replay(state, "3i" + "s".repeat(30));
+        assertEquals("0", state.getDisplay());
+
+        state = exactState(Rational.Notation.DECIMAL);
+        Keypad.replay(state, "300x" + "s".repeat(30) + "i");
+        assertEquals("Infinity", state.getDisplay());
+    }
+
+    @Test
+    void readsHugePowersOfTenInDouble() {
+        CalculatorState state = exactState(Rational.Notation.DECIMAL);
+        Keypad.replay(state, "300x55i");
+        assertEquals("0", state.getDisplay());
+    }
+}
@@ -0,0 +1,135 @@
+package com.calculator.mycalculator.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Edits of the formula model: the last operand is edited or committed, and the committed part never changes
+ * except for its trailing operator.
+ */
+class EditableFormulaTest {
+
+    private final EditableFormula formula = new EditableFormula();
+
+    @Test
+    void startsEmpty() {
+        assertTrue(formula.isOperandEmpty());
+        assertFalse(formula.isOperandZero());
+        assertEquals("", formula.toString());
+        assertEquals(0, formula.length());
+    }
+
+    @Test
+    void commitsOperandsWithOperators() {
+        formula.appendToOperand("12");
+        formula.applyOperator('*');
+        formula.appendToOperand("3");
+        assertEquals("12 * 3", formula.toString());
+        assertEquals(3d, formula.operandValue());
+        formula.applyOperator('+');
+        assertTrue(formula.isOperandEmpty());
+        assertEquals("12 * 3 + ", formula.toString());
+    }
+
+    @Test
+    void replacesTheTrailingOperator() {
+        formula.appendToOperand("4");
+        formula.applyOperator('+');
+        formula.applyOperator('/');
+        assertEquals("4 / ", formula.toString());
+    }
+
+    @Test
+    void deletesOnlyFromTheLastOperand() {
+        formula.appendToOperand("7");
+        formula.applyOperator('-');
+        formula.appendToOperand("25");
+        formula.deleteLastOperandChar();
+        assertEquals("7 - 2", formula.toString());
+        formula.deleteLastOperandChar();
+        formula.deleteLastOperandChar();
+        assertEquals("7 - ", formula.toString());
+    }
+
+    @Test
+    void togglesTheSignOfTheLastOperand() {
+        formula.appendToOperand("5");
+        formula.toggleSign();
+        assertEquals("-5", formula.toString());
+        formula.toggleSign();
+        assertEquals("5", formula.toString());
+    }
+
+    @Test
+    void rendersNumericOperandsWhenRead() {
+        formula.appendToOperand("3");
+        formula.applyOperator('+');
+        formula.setOperand(0.25);
+        assertEquals(0.25, formula.operandValue());
+        assertEquals("3 + 0.25", formula.toString());
+        formula.setOperand(1e10);
+        assertEquals("3 + 10000000000", formula.toString());
+
+        // Editing a numeric operand goes back to its text
+        formula.appendToOperand("1");
+        assertEquals("3 + 100000000001", formula.toString());
+    }
+
+    @Test
+    void keepsDecimalOperandsExact() {
+        formula.setOperand(new BigDecimal("0.1000000000000000000001"));
+        assertEquals(new BigDecimal("0.1000000000000000000001"), formula.decimalOperandValue());
+        assertEquals("0.1000000000000000000001", formula.toString());
+        formula.setOperand(BigDecimal.ZERO);
+        assertTrue(formula.isOperandZero());
+    }
+
+    @Test
+    void parsesFractionOperands() {
+        formula.setOperand("(1/4)");
+        assertEquals(0.25, formula.operandValue());
+    }
+
+    @Test
+    void rejectsOperandsThatAreNotNumbers() {
+        formula.setOperand(Double.POSITIVE_INFINITY);
+        formula.appendToOperand("7");
+        assertThrows(NumberFormatException.class, formula::operandValue);
+    }
+
+    @Test
+    void recognizesALoneZero() {
+        formula.appendToOperand("0");
+        assertTrue(formula.isOperandZero());
+        formula.appendToOperand(".");
+        assertFalse(formula.isOperandZero());
+    }
+
+    @Test
+    void readsAcrossTheCommittedPartAndTheOperand() {
+        formula.appendToOperand("12");
+        formula.applyOperator('+');
+        formula.setOperand(0.5);
+        assertEquals('+', formula.charAt(3));
+        assertEquals('5', formula.charAt(7));
+        assertEquals("12 + ", formula.subSequence(0, 5).toString());
+        assertEquals("0.5", formula.subSequence(5, 8).toString());
+        assertEquals("2 + 0", formula.subSequence(1, 6).toString());
+    }
+
+    @Test
+    void clearsEverything() {
+        formula.appendToOperand("9");
+        formula.applyOperator('*');
+        formula.appendToOperand("9");
+        formula.clear();
+        assertEquals("", formula.toString());
+        assertTrue(formula.isOperandEmpty());
+    }
+}
@@ -0,0 +1,333 @@
+package com.calculator.mycalculator.model;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The button logic of the baseline {@code CalculatorController}, before any of the later changes, kept as
+ * the reference of {@link CalculatorStateDifferentialTest}.
+ * <p>
+ * The handlers are copied line by line, with the {@code TextField} and the {@code Label} replaced by two strings and
+ * the digit limit alert by a return value. Everything else is the baseline behavior, bugs included: formulas are
+ * evaluated by exp4j in {@code double}, results are formatted through an {@code int} cast, and exceptions escape
+ * the handlers as they did in the window. Do not fix anything here: the test checks each difference made on purpose
+ * against the output it documents.
+ */
+class ReferenceCalculatorState {
+
+    /**
+     * Maximum number of digits allowed for the formula input.
+     */
+    private static final int MAX_DIGITS = 22;
+
+    /**
+     * Text of the viewer: the current input or result.
+     */
+    private String viewer = "0";
+
+    /**
+     * Stores the current formula being built by the user.
+     */
+    private final StringBuilder currentFormula = new StringBuilder();
+
+    /**
+     * @return the text of the viewer
+     */
+    @NotNull String getDisplay() {
+        return viewer;
+    }
+
+    /**
+     * @return the text of the formula label
+     */
+    @NotNull String getFormula() {
+        return currentFormula.toString();
+    }
+
+    /**
+     * Puts the reference in the given state, e.g. the state of the calculator after a key that differs
+     * on purpose, so that the comparison goes on from there.
+     *
+     * @param display the text of the viewer
+     * @param formula the text of the formula
+     */
+    void restore(@NotNull String display, @NotNull String formula) {
+        viewer = display;
+        currentFormula.setLength(0);
+        currentFormula.append(formula);
+    }
+
+    /**
+     * @param value the digit that was clicked
+     * @return false if the alert of the digit limit was shown, true otherwise
+     */
+    boolean handleButtonClick(String value) {
+        String currentText = viewer;
+
+        // If the current formula is empty and the value is "0", do nothing
+        if (currentFormula.isEmpty() && value.equals("0")) {
+            return true;
+        }
+
+        // Only append the value if the current text has not exceeded MAX_DIGITS
+        if (currentText.length() < MAX_DIGITS) {
+            // If the current text is "0", replace it with the new value
+            if (currentText.equals("0")) {
+                viewer = value;
+            } else {
+                viewer = viewer + value;
+            }
+
+            // Append the clicked value to the formula
+            currentFormula.append(value);
+            return true;
+        } else {
+            // The alert of the digit limit
+            return false;
+        }
+    }
+
+    void handleDeleteButtonClick() {
+        String currentText = viewer;
+
+        // Only proceed if the current text is not "0"
+        if (!currentText.equals("0")) {
+            if (currentText.endsWith(".")) {
+                String newText = currentText.substring(0, currentText.length() - 1);
+                viewer = newText;
+                currentFormula.deleteCharAt(currentFormula.length() - 1);
+
+                // If the result is "-0" or "0", reset the display and formula
+                if (newText.equals("-0") || newText.equals("0")) {
+                    viewer = "0";
+                    if (currentFormula.length() > 2) {
+                        currentFormula.deleteCharAt(currentFormula.length() - 1);
+                    } else {
+                        currentFormula.setLength(0);
+                    }
+                }
+            } else {
+                // Handle the case where the current text has one or two characters
+                if (currentText.length() == 1 || (currentText.length() == 2 && currentText.contains("-"))) {
+                    viewer = "0";
+                    if (currentFormula.length() > 2 && currentText.length() == 2) {
+                        currentFormula.delete(currentFormula.length() - 2, currentFormula.length());
+                    } else if (currentFormula.length() > 1 && currentText.length() == 1) {
+                        currentFormula.deleteCharAt(currentFormula.length() - 1);
+                    } else {
+                        currentFormula.setLength(0);
+                    }
+                } else {
+                    // Otherwise, just remove the last character
+                    viewer = currentText.substring(0, currentText.length() - 1);
+                    currentFormula.deleteCharAt(currentFormula.length() - 1);
+                }
+            }
+        }
+    }
+
+    void handlePlusMinusButtonClick() {
+        String currentText = viewer;
+
+        // Only proceed if the current text is not "0"
+        if (!currentText.equals("0")) {
+
+            // If the current text starts with a minus sign, remove it
+            if (currentText.startsWith("-")) {
+                viewer = currentText.substring(1);
+                currentFormula.deleteCharAt(currentFormula.length() - currentText.length());
+            } else {
+                // Otherwise, add a minus sign at the beginning
+                viewer = "-" + currentText;
+                currentFormula.insert(currentFormula.length() - currentText.length(), "-");
+            }
+        }
+    }
+
+    void handlePointButtonClick() {
+        String currentText = viewer;
+
+        // Only add a decimal point if one is not already present in the current text
+        if (!currentText.contains(".")) {
+
+            // If the current text is "0", set it to "0."
+            if (viewer.equals("0")) {
+                viewer = "0.";
+                currentFormula.append("0.");
+            } else {
+                // Otherwise, just append the decimal point
+                viewer = viewer + ".";
+                currentFormula.append(".");
+            }
+        }
+    }
+
+    void handleResetButtonClick() {
+        // Reset the displayed value to "0"
+        viewer = "0";
+
+        // Clear the current formula
+        currentFormula.setLength(0);
+    }
+
+    void handleOperatorButtonClick(String operator) {
+        // Get the current text from the viewer (display)
+        String currentText = viewer;
+
+        // If the current text is not empty, process the operator
+        if (!currentText.isEmpty()) {
+
+            // If the previous operator exists, remove it and the number before it
+            if (currentFormula.length() > 2 && isOperator(currentFormula.charAt(currentFormula.length() - 2))) {
+                currentFormula.delete(currentFormula.length() - 3, currentFormula.length());
+            }
+
+            // Append the operator to the formula with surrounding spaces for readability
+            currentFormula.append(" ").append(operator).append(" ");
+
+            // Reset the displayed value to "0"
+            viewer = "0";
+        }
+    }
+
+    void handlePiButtonClick() {
+        // Get the string representation of Pi
+        String pi = String.valueOf(Math.PI);
+
+        // If the current display is "0", replace it with Pi
+        if (viewer.equals("0")) {
+            viewer = pi;
+            currentFormula.append(pi);
+        }
+    }
+
+    void handleSqrtButtonClick() {
+        // Get the current text from the display
+        String currentText = viewer;
+
+        // Parse the current text to a double
+        double value = Double.parseDouble(currentText);
+
+        // Check if the value is negative
+        if (value < 0) {
+            // Reset display to 0 and remove the last value in the formula
+            viewer = "0";
+            int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
+            currentFormula.delete(deleteStart, currentFormula.length());
+        } else {
+            // Calculate the square root and format the result
+            String newText = formatNumber(Math.sqrt(value));
+
+            // If the current display is not "0", update the display and the formula
+            if (!currentText.equals("0")) {
+                viewer = newText;
+                int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
+                currentFormula.delete(deleteStart, currentFormula.length());
+                currentFormula.append(newText);
+            }
+        }
+    }
+
+    void handleSquareButtonClick() {
+        // Get the current text from the display
+        String currentText = viewer;
+
+        // Parse the current text to a double
+        double value = Double.parseDouble(currentText);
+
+        // Calculate the square of the value and format the result
+        String newText = formatNumber(value * value);
+
+        // Update the display with the new squared value
+        viewer = newText;
+
+        // Update the formula and the display
+        updateFormula(currentFormula, currentText, newText);
+    }
+
+    void handleInverseButtonClick() {
+        // Get the current text from the display
+        String currentText = viewer;
+
+        // Check if the current value is not 0 to avoid division by zero
+        if (!currentText.equals("0")) {
+            // Parse the current text to a double
+            double value = Double.parseDouble(currentText);
+
+            // Calculate the inverse of the value and format the result
+            String newText = formatNumber(1 / value);
+
+            // Update the display with the inverse result
+            viewer = newText;
+
+            // Update the formula and the display
+            updateFormula(currentFormula, currentText, newText);
+        }
+    }
+
+    void handleExponentButtonClick() {
+        // Get the current text from the display
+        String currentText = viewer;
+
+        // Check if the current value is not 0 to avoid invalid operations
+        if (!currentText.equals("0")) {
+            // Parse the current text to a double
+            double value = Double.parseDouble(currentText);
+
+            // Calculate 10 raised to the power of the current value and format the result
+            String newText = formatNumber(Math.pow(10, value));
+
+            // Update the display with the calculated result
+            viewer = newText;
+
+            // Update the formula and the display
+            updateFormula(currentFormula, currentText, newText);
+        }
+    }
+
+    void handleEqualButtonClick() {
+        // Get the current formula text and trim any leading or trailing whitespace
+        String formulaText = currentFormula.toString().trim();
+
+        // Proceed if the formula is not empty
+        if (!formulaText.isEmpty()) {
+            try {
+                // Build the expression and evaluate the result
+                Expression expression = new ExpressionBuilder(formulaText).build();
+                double result = expression.evaluate();
+
+                // Format and display the result on the viewer
+                String newText = formatNumber(result);
+                viewer = newText;
+
+                // Clear the current formula and update it with the result
+                currentFormula.setLength(0);
+                currentFormula.append(newText);
+            } catch (Exception e) {
+                // In case of an error, display "Erreur" and clear the formula
+                viewer = "Erreur";
+                currentFormula.setLength(0);
+            }
+        }
+    }
+
+    private boolean isOperator(char operator) {
+        return operator == '+' || operator == '-' || operator == '*' || operator == '/';
+    }
+
+    private @NotNull String formatNumber(double number) {
+        if (number == (int) number) {
+            return String.valueOf((int) number);
+        } else {
+            return String.valueOf(number);
+        }
+    }
+
+    private void updateFormula(@NotNull StringBuilder currentFormula, @NotNull String currentText, String newText) {
+        // Remove the previous value from the formula and append the new result
+        int deleteStart = Math.max(0, currentFormula.length() - currentText.length());
+        currentFormula.delete(deleteStart, currentFormula.length());
+        currentFormula.append(newText);
+    }
+}
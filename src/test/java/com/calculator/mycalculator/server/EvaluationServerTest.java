@@ -0,0 +1,91 @@
+package com.calculator.mycalculator.server;
+
+import com.calculator.mycalculator.engine.CalculatorEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Requests to the evaluation endpoint over the loopback interface.
+ */
+class EvaluationServerTest {
+
+    private EvaluationServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = EvaluationServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new CalculatorEngine());
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void evaluatesLines() throws IOException {
+        assertEquals(new Response(200, "5\n\nErreur\n"), post(EvaluationServer.EVALUATE_PATH, "text/plain", "2+3\n\n2+\n"));
+    }
+
+    @Test
+    void evaluatesJsonWhateverTheLocale() throws IOException {
+        Locale locale = Locale.getDefault();
+        try {
+            // The upper case I of APPLICATION becomes a dotless i in Turkish
+            Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+            assertEquals(new Response(200, "[\"5\",\"Erreur\"]"),
+                    post(EvaluationServer.EVALUATE_PATH, "APPLICATION/JSON", "[\"2+3\", \"1/0\"]"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void answersOnlyTheEndpoint() throws IOException {
+        assertEquals(404, post(EvaluationServer.EVALUATE_PATH + "/x", "text/plain", "2+3").status());
+        assertEquals(404, post(EvaluationServer.EVALUATE_PATH + "x", "text/plain", "2+3").status());
+        assertEquals(404, post("/", "text/plain", "2+3").status());
+    }
+
+    @Test
+    void refusesOtherMethods() throws IOException {
+        HttpURLConnection connection = connect(EvaluationServer.EVALUATE_PATH);
+        assertEquals(405, connection.getResponseCode());
+        assertEquals("POST", connection.getHeaderField("Allow"));
+    }
+
+    private Response post(String path, String contentType, String body) throws IOException {
+        HttpURLConnection connection = connect(path);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", contentType);
+        connection.setDoOutput(true);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return new Response(status, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private HttpURLConnection connect(String path) throws IOException {
+        InetSocketAddress address = server.getAddress();
+        return (HttpURLConnection) URI.create("http://" + address.getHostString() + ":" + address.getPort() + path)
+                .toURL().openConnection();
+    }
+
+    private record Response(int status, String body) {
+    }
+}
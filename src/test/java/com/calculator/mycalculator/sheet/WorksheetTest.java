@@ -0,0 +1,136 @@
+package com.calculator.mycalculator.sheet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A change recomputes the cells downstream of it, level by level, and the cells on a cycle of references are
+ * in error until the cycle is broken.
+ */
+class WorksheetTest {
+
+    private final Worksheet sheet = new Worksheet(4);
+
+    @AfterEach
+    void close() {
+        sheet.close();
+    }
+
+    @Test
+    void computesCellsFromTheirInputs() {
+        assertEquals(List.of("a"), sheet.define("a = 3*pi"));
+        assertEquals(List.of("b"), sheet.define("b = a^2 + 1"));
+        assertEquals(3 * Math.PI, sheet.getValue("a"));
+        assertEquals(Math.pow(3 * Math.PI, 2) + 1, sheet.getValue("b"));
+        assertEquals(List.of("a", "b"), sheet.getNames());
+        assertEquals("a^2 + 1", sheet.getFormula("b"));
+    }
+
+    @Test
+    void recomputesOnlyTheCellsDownstreamInLevels() {
+        sheet.set("a", "1");
+        sheet.set("b", "a + 1");
+        sheet.set("c", "a * 2");
+        sheet.set("d", "b + c");
+        sheet.set("other", "5");
+        assertEquals(List.of("a", "b", "c", "d"), sheet.set("a", "10"));
+        assertEquals(31, sheet.getValue("d"));
+        assertEquals(List.of("c", "d"), sheet.set("c", "0"));
+        assertEquals(11, sheet.getValue("d"));
+    }
+
+    @Test
+    void computesCellsReferencedBeforeTheyAreDefined() {
+        sheet.set("b", "x + 1");
+        assertEquals("Erreur", sheet.getText("b"));
+        assertFalse(sheet.contains("x"));
+        assertEquals(List.of("x", "b"), sheet.set("x", "1"));
+        assertEquals("2", sheet.getText("b"));
+    }
+
+    @Test
+    void cellsOnACycleAreInError() {
+        sheet.set("a", "b + 1");
+        sheet.set("c", "a * 2");
+        assertEquals(List.of("b", "a", "c"), sheet.set("b", "a + 1"));
+        assertEquals("Erreur", sheet.getText("a"));
+        assertEquals("Erreur", sheet.getText("b"));
+        assertEquals("Erreur", sheet.getText("c"));
+
+        // Breaking the cycle computes every cell again
+        assertEquals(List.of("b", "a", "c"), sheet.set("b", "1"));
+        assertEquals(2, sheet.getValue("a"));
+        assertEquals(4, sheet.getValue("c"));
+    }
+
+    @Test
+    void aCellReferencingItselfIsInError() {
+        assertEquals(List.of("a"), sheet.set("a", "a + 1"));
+        assertTrue(Double.isNaN(sheet.getValue("a")));
+        sheet.set("a", "1");
+        assertEquals(1, sheet.getValue("a"));
+    }
+
+    @Test
+    void removingACellPutsItsDependentsInError() {
+        sheet.set("a", "2");
+        sheet.set("b", "a * 3");
+        assertEquals(List.of("b"), sheet.remove("a"));
+        assertFalse(sheet.contains("a"));
+        assertEquals("Erreur", sheet.getText("b"));
+        assertEquals(List.of(), sheet.remove("a"));
+        sheet.set("a", "4");
+        assertEquals(12, sheet.getValue("b"));
+        assertEquals(2, sheet.size());
+    }
+
+    @Test
+    void failedEvaluationsAreErrors() {
+        sheet.set("a", "0");
+        sheet.set("b", "1 / a");
+        assertEquals("Erreur", sheet.getText("b"));
+        sheet.set("a", "4");
+        assertEquals(0.25, sheet.getValue("b"));
+
+        // exp4j only rejects some invalid formulas when evaluating them
+        sheet.set("c", "a +");
+        assertEquals("Erreur", sheet.getText("c"));
+    }
+
+    @Test
+    void invalidDefinitionsLeaveTheWorksheetUnchanged() {
+        sheet.set("a", "1");
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("a", "1 $ 2"));
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("pi", "1"));
+        assertThrows(IllegalArgumentException.class, () -> sheet.set("2a", "1"));
+        assertThrows(IllegalArgumentException.class, () -> sheet.define("a 1"));
+        assertEquals("1", sheet.getFormula("a"));
+        assertEquals(1, sheet.size());
+    }
+
+    @Test
+    void recomputesALargeFanOutInParallel() {
+        int count = 10_000;
+        sheet.set("a", "1");
+        for (int i = 0; i < count; i++) {
+            sheet.set("c" + i, "a + " + i);
+        }
+        assertEquals(count + 1, sheet.set("a", "2").size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(2 + i, sheet.getValue("c" + i));
+        }
+
+        // Dropping the references one by one leaves a with no dependents
+        for (int i = 0; i < count; i++) {
+            sheet.set("c" + i, Integer.toString(i));
+        }
+        assertEquals(List.of("a"), sheet.set("a", "3"));
+    }
+}